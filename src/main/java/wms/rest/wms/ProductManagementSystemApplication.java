@@ -2,10 +2,8 @@ package wms.rest.wms;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.scheduling.annotation.EnableScheduling;
 import wms.rest.wms.repository.ProductRepository;
 
-@EnableScheduling
 @SpringBootApplication
 public class ProductManagementSystemApplication { ;
 
@@ -0,0 +1,96 @@
+package wms.rest.wms.api.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import wms.rest.wms.model.Driver;
+import wms.rest.wms.model.Vehicle;
+import wms.rest.wms.service.FleetService;
+
+import java.util.Optional;
+
+/**
+ * Controller class containing the endpoints administering the registry of Drivers and Vehicles.
+ * Every endpoint is only permitted for administrators, see SecurityConfig.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Tag(name = "Fleet administration", description = "All endpoint operations administering the Drivers and Vehicles")
+@RestController
+@AllArgsConstructor
+@RequestMapping("/api/admin/fleet")
+public class FleetAdminController {
+
+    /** Service for handling the registry of Drivers and Vehicles */
+    private final FleetService fleetService;
+
+    @Operation(summary = "Get a list of all drivers", description = "Returns every driver of the registry, active or not", responses = {
+            @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = Driver.class))),})
+    @GetMapping("/drivers")
+    public ResponseEntity<?> getDrivers() {
+        return new ResponseEntity(this.fleetService.getDrivers(), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Register a driver", description = "Registers a new driver, who is given trips departing within their shift", responses = {
+            @ApiResponse(responseCode = "201", description = "Successful creation", content = @Content(schema = @Schema(implementation = Driver.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid driver"),})
+    @PostMapping("/drivers")
+    public ResponseEntity<Driver> createDriver(@Valid @RequestBody Driver driver) {
+        return new ResponseEntity<>(this.fleetService.createDriver(driver), HttpStatus.CREATED);
+    }
+
+    @Operation(summary = "Update a driver", description = "Updates the details of a driver, and deactivates them if active is false", responses = {
+            @ApiResponse(responseCode = "200", description = "Successful update", content = @Content(schema = @Schema(implementation = Driver.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid driver"),
+            @ApiResponse(responseCode = "404", description = "Not found"),})
+    @PutMapping("/drivers/{id}")
+    public ResponseEntity<?> updateDriver(@PathVariable("id") int driverId, @Valid @RequestBody Driver driverDetails) {
+        ResponseEntity response;
+        Optional<Driver> driver = this.fleetService.updateDriver(driverId, driverDetails);
+        if (driver.isPresent()) {
+            response = new ResponseEntity(driver.get(), HttpStatus.OK);
+        } else {
+            response = new ResponseEntity("Driver with ID: " + driverId + " does not exist", HttpStatus.NOT_FOUND);
+        }
+        return response;
+    }
+
+    @Operation(summary = "Get a list of all vehicles", description = "Returns every vehicle of the registry, active or not", responses = {
+            @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = Vehicle.class))),})
+    @GetMapping("/vehicles")
+    public ResponseEntity<?> getVehicles() {
+        return new ResponseEntity(this.fleetService.getVehicles(), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Register a vehicle", description = "Registers a new vehicle, which is given trips of its temperature class", responses = {
+            @ApiResponse(responseCode = "201", description = "Successful creation", content = @Content(schema = @Schema(implementation = Vehicle.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid vehicle"),})
+    @PostMapping("/vehicles")
+    public ResponseEntity<Vehicle> createVehicle(@Valid @RequestBody Vehicle vehicle) {
+        return new ResponseEntity<>(this.fleetService.createVehicle(vehicle), HttpStatus.CREATED);
+    }
+
+    @Operation(summary = "Update a vehicle", description = "Updates the details of a vehicle, and deactivates it if active is false", responses = {
+            @ApiResponse(responseCode = "200", description = "Successful update", content = @Content(schema = @Schema(implementation = Vehicle.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid vehicle"),
+            @ApiResponse(responseCode = "404", description = "Not found"),})
+    @PutMapping("/vehicles/{id}")
+    public ResponseEntity<?> updateVehicle(@PathVariable("id") int vehicleId, @Valid @RequestBody Vehicle vehicleDetails) {
+        ResponseEntity response;
+        Optional<Vehicle> vehicle = this.fleetService.updateVehicle(vehicleId, vehicleDetails);
+        if (vehicle.isPresent()) {
+            response = new ResponseEntity(vehicle.get(), HttpStatus.OK);
+        } else {
+            response = new ResponseEntity("Vehicle with ID: " + vehicleId + " does not exist", HttpStatus.NOT_FOUND);
+        }
+        return response;
+    }
+}
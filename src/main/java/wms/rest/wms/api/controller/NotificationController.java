@@ -1,24 +1,39 @@
 package wms.rest.wms.api.controller;
 
+import lombok.AllArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
 import wms.rest.wms.api.model.NotificationRequest;
 import wms.rest.wms.api.model.NotificationResponse;
+import wms.rest.wms.exception.NotificationQueueFullException;
+import wms.rest.wms.model.NotificationStatus;
 import wms.rest.wms.service.fcm.FCMService;
 
-import java.util.concurrent.ExecutionException;
+import java.util.Optional;
 
 @RestController
+@AllArgsConstructor
 public class NotificationController {
 
     private FCMService fcmService;
 
     @PostMapping("/notification")
-    public ResponseEntity<?> sendNotification(@RequestBody NotificationRequest request) throws ExecutionException, InterruptedException {
-        fcmService.sendMessageToToken(request);
-        return new ResponseEntity<>(new NotificationResponse(HttpStatus.OK.value(), "Notification has been sent."), HttpStatus.OK);
+    public ResponseEntity<?> sendNotification(@RequestBody NotificationRequest request) {
+        try {
+            String trackingId = fcmService.sendMessageToToken(request);
+            return new ResponseEntity<>(new NotificationResponse(HttpStatus.ACCEPTED.value(), "Notification has been queued.", trackingId), HttpStatus.ACCEPTED);
+        } catch (NotificationQueueFullException e) {
+            return new ResponseEntity<>(new NotificationResponse(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage(), null), HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    @GetMapping("/notification/{trackingId}")
+    public ResponseEntity<?> getNotificationStatus(@PathVariable("trackingId") String trackingId) {
+        Optional<NotificationStatus> status = fcmService.getStatus(trackingId);
+        if (status.isPresent()) {
+            return new ResponseEntity<>(status.get(), HttpStatus.OK);
+        }
+        return new ResponseEntity<>("Notification not found", HttpStatus.NOT_FOUND);
     }
 }
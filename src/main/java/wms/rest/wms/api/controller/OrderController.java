@@ -7,15 +7,22 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.AllArgsConstructor;
 import org.apache.coyote.Response;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import wms.rest.wms.api.model.OrderIntakeResult;
 import wms.rest.wms.exception.NotEnoughStockException;
 import wms.rest.wms.model.Order;
 import wms.rest.wms.model.Customer;
+import wms.rest.wms.model.OrderTracking;
 import wms.rest.wms.model.Product;
 import wms.rest.wms.service.OrderService;
+import wms.rest.wms.service.OrderTrackingBroadcaster;
+import wms.rest.wms.service.OrderTrackingService;
 
 import java.util.List;
 import java.util.Optional;
@@ -35,6 +42,12 @@ public class OrderController {
     /** Service for handling Order service operations */
     private final OrderService orderService;
 
+    /** Service for reading the order tracking read model the progress and location polls are answered from */
+    private final OrderTrackingService orderTrackingService;
+
+    /** Broadcaster pushing the changes of the order tracking read model to the open tracking streams */
+    private final OrderTrackingBroadcaster orderTrackingBroadcaster;
+
     @Operation(summary = "Get a list of all orders associated to authenticated customer", description = "Returns a list of all orders associated to authenticated customer", responses = {
             @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = Order.class))),})
     @GetMapping
@@ -81,37 +94,66 @@ public class OrderController {
         return response;
     }
 
-    @Operation(summary = "Get the current location of an Order", description = "Get the current location of an Order by OrderId", responses = {
-            @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = Order.class))),
-            @ApiResponse(responseCode = "404", description = "Not found", content = @Content(schema = @Schema(implementation = Order.class))),})
+    @Operation(summary = "Get the current location of an Order", description = "Get the current location of an Order by OrderId." +
+            " Returns an ETag, and 304 without a body when the If-None-Match header matches it", responses = {
+            @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = String.class))),
+            @ApiResponse(responseCode = "304", description = "Not modified"),
+            @ApiResponse(responseCode = "404", description = "Not found", content = @Content(schema = @Schema(implementation = String.class))),})
     @GetMapping("/currentlocation/{id}")
     public ResponseEntity<?> getCurrentLocation(@PathVariable("id") int orderId) {
-        ResponseEntity response;
-        String currentLocation = this.orderService.getCurrentLocation(orderId);
-        if(currentLocation != null) {
-            response = new ResponseEntity(currentLocation, HttpStatus.OK);
-        } else {
-            response = new ResponseEntity("Could not find Order with ID: " + orderId, HttpStatus.NOT_FOUND);
+        Optional<OrderTracking> tracking = this.orderTrackingService.getTracking(orderId);
+        if (tracking.isEmpty()) {
+            return new ResponseEntity<>("Could not find Order with ID: " + orderId, HttpStatus.NOT_FOUND);
         }
-        return response;
+        String currentLocation = tracking.get().getCurrentLocation();
+        return pollResponse(tracking.get(), currentLocation != null ? currentLocation : "Location information not available");
     }
 
-    @Operation(summary = "Get the progress in percent of an Order", description = "Get the progress in percent of an Order by OrderId", responses = {
-            @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = Order.class))),
-            @ApiResponse(responseCode = "404", description = "Not found", content = @Content(schema = @Schema(implementation = Order.class))),})
+    @Operation(summary = "Get the progress in percent of an Order", description = "Get the progress in percent of an Order by OrderId." +
+            " Returns an ETag, and 304 without a body when the If-None-Match header matches it", responses = {
+            @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = Integer.class))),
+            @ApiResponse(responseCode = "304", description = "Not modified"),
+            @ApiResponse(responseCode = "404", description = "Not found"),})
     @GetMapping("/progressinpercent/{id}")
     public ResponseEntity<?> getProgressInPercent(@PathVariable("id") int orderId) {
-        ResponseEntity response;
-        try {
-            int progress = orderService.getProgressInPercent(orderId);
-            if (progress >= 0) {
-                return ResponseEntity.ok(progress);
-            } else {
-                return ResponseEntity.notFound().build();
-            }
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError().body("An error occurred while retrieving the order progress.");
+        Optional<OrderTracking> tracking = this.orderTrackingService.getTracking(orderId);
+        if (tracking.isEmpty()) {
+            return ResponseEntity.notFound().build();
         }
+        return pollResponse(tracking.get(), tracking.get().getProgressInPercent());
+    }
+
+    @Operation(summary = "Stream the tracking of all orders associated to authenticated customer", description = "Opens a server-sent events stream" +
+            " of the tracking of all orders associated to authenticated customer, instead of polling the progress and location of each order." +
+            " The stream starts with an order-tracking event carrying the current state of every order, followed by one each time an order changes." +
+            " Clients keep the event with the highest revision of each order, and reconnect when the stream is closed", responses = {
+            @ApiResponse(responseCode = "200", description = "Stream opened", content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE)),
+            @ApiResponse(responseCode = "401", description = "Unauthorized access"),})
+    @GetMapping(value = "/tracking/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamTracking(@AuthenticationPrincipal Customer customer) {
+        if (customer == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        int customerId = customer.getCustomerId();
+        return ResponseEntity.ok(this.orderTrackingBroadcaster.subscribe(customerId,
+                () -> this.orderTrackingService.getTrackingOfCustomer(customerId)));
+    }
+
+    /**
+     * Return the response to a progress or location poll. It carries the ETag of the tracking row, so a poll
+     * with a matching If-None-Match header is answered with 304 and no body, and tells clients to revalidate
+     * every time instead of caching the answer.
+     *
+     * @param tracking the tracking row of the Order.
+     * @param body the body of the response.
+     * @return the response to the poll.
+     */
+    private ResponseEntity<?> pollResponse(OrderTracking tracking, Object body) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(CacheControl.noCache());
+        if (tracking.getETag() != null) {
+            response.eTag(tracking.getETag());
+        }
+        return response.body(body);
     }
 
     @Operation(summary = "Create a order associated to authenticated customer", description = "Creates a new order associated to the authenticate customer" +
@@ -122,7 +164,12 @@ public class OrderController {
     @PostMapping("/createorder")
     public ResponseEntity<?> createOrder(@AuthenticationPrincipal Customer customer, @RequestBody Order order) throws NotEnoughStockException {
         if (customer != null) {
-            Order createdOrder = this.orderService.createOrder(order, customer);
+            Order createdOrder;
+            try {
+                createdOrder = this.orderService.createOrder(order, customer);
+            } catch (IllegalArgumentException e) {
+                return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+            }
             if (createdOrder != null) {
                 return new ResponseEntity<>(createdOrder, HttpStatus.CREATED);
             } else {
@@ -131,4 +178,20 @@ public class OrderController {
         }
         return new ResponseEntity<>("Customer is not authenticated", HttpStatus.FORBIDDEN);
     }
+
+    @Operation(summary = "Create several orders associated to authenticated customer", description = "Creates a batch of new orders associated to the authenticated customer" +
+            " in one request. Each order is created or rejected on its own, and the outcome of every order is returned in request order", responses = {
+            @ApiResponse(responseCode = "200", description = "Batch processed", content = @Content(schema = @Schema(implementation = OrderIntakeResult.class))),
+            @ApiResponse(responseCode = "400", description = "Bad request"),
+            @ApiResponse(responseCode = "403", description = "Customer is not authenticated"),})
+    @PostMapping("/createorders")
+    public ResponseEntity<?> createOrders(@AuthenticationPrincipal Customer customer, @RequestBody List<Order> orders) {
+        if (customer == null) {
+            return new ResponseEntity<>("Customer is not authenticated", HttpStatus.FORBIDDEN);
+        }
+        if (orders == null || orders.isEmpty()) {
+            return new ResponseEntity<>("No orders in request", HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(this.orderService.createOrders(orders, customer), HttpStatus.OK);
+    }
 }
\ No newline at end of file
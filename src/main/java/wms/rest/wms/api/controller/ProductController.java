@@ -1,5 +1,10 @@
 package wms.rest.wms.api.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -7,14 +12,26 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import wms.rest.wms.api.model.ProductPage;
+import wms.rest.wms.api.model.StockBalance;
 import wms.rest.wms.model.Product;
+import wms.rest.wms.model.StockMovement;
 import wms.rest.wms.service.ProductService;
+import wms.rest.wms.service.ledger.StockLedgerService;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Controller class containing all endpoints related to Products.
@@ -28,9 +45,21 @@ import java.util.Optional;
 @RequestMapping("/api/products")
 public class ProductController {
 
+    /** Maximum number of Products in one page */
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /** Number of Products fetched per statement and written between flushes when streaming the catalog */
+    private static final int STREAM_BATCH_SIZE = 500;
+
     /** Service for handling Product service operations */
     private final ProductService productService;
 
+    /** ObjectMapper of the application, used to write streamed Products with the same settings as other responses */
+    private final ObjectMapper objectMapper;
+
+    /** Service for reading the stock ledger */
+    private final StockLedgerService stockLedgerService;
+
     @Operation(summary = "Get a list of all products", description = "Returns a list of all products in database", responses = {
             @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = Product.class))),
             @ApiResponse(responseCode = "204", description = "Bad Request"),})
@@ -46,6 +75,82 @@ public class ProductController {
         return response;
     }
 
+    @Operation(summary = "Get a page of products", description = "Returns up to size products with a productId greater than after, " +
+            "and the cursor to request the next page with", responses = {
+            @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = ProductPage.class))),
+            @ApiResponse(responseCode = "400", description = "Bad Request"),})
+    @GetMapping("/page")
+    public ResponseEntity<ProductPage> getProductPage(@RequestParam(value = "after", defaultValue = "0") int after,
+                                                      @RequestParam(value = "size", defaultValue = "100") int size) {
+        ResponseEntity response;
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            response = new ResponseEntity("Page size must be between 1 and " + MAX_PAGE_SIZE, HttpStatus.BAD_REQUEST);
+        } else {
+            // One extra Product tells whether there is a next page without another round trip
+            List<Product> products = this.productService.getProductsAfter(after, size + 1);
+            Integer nextCursor = null;
+            if (products.size() > size) {
+                products = products.subList(0, size);
+                nextCursor = products.get(size - 1).getProductId();
+            }
+            response = new ResponseEntity(new ProductPage(products, nextCursor), HttpStatus.OK);
+        }
+        return response;
+    }
+
+    @Operation(summary = "Stream all products as NDJSON", description = "Streams every product in ascending productId order, " +
+            "one JSON object per line, while they are fetched in fixed-size batches", responses = {
+            @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE)),})
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamProductsAsNdjson() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> writeProducts(outputStream, false));
+    }
+
+    @Operation(summary = "Stream all products as a JSON array", description = "Streams every product in ascending productId order " +
+            "as one JSON array, while they are fetched in fixed-size batches", responses = {
+            @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE)),})
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamProductsAsJsonArray() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(outputStream -> writeProducts(outputStream, true));
+    }
+
+    /**
+     * Writes every Product to the response as it is fetched, flushing after every batch,
+     * so neither the Products nor the serialized response are held in memory as a whole.
+     *
+     * @param outputStream the response body to write to.
+     * @param asArray true to write one JSON array, false to write one JSON object per line.
+     * @throws IOException if writing to the response fails.
+     */
+    private void writeProducts(OutputStream outputStream, boolean asArray) throws IOException {
+        // Flushed once per batch rather than after every Product
+        ObjectWriter writer = this.objectMapper.writerFor(Product.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (Stream<Product> products = this.productService.streamProducts(STREAM_BATCH_SIZE);
+             JsonGenerator generator = this.objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            if (asArray) {
+                generator.writeStartArray();
+            }
+            int written = 0;
+            Iterator<Product> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                writer.writeValue(generator, iterator.next());
+                if (++written % STREAM_BATCH_SIZE == 0) {
+                    generator.flush();
+                }
+            }
+            if (asArray) {
+                generator.writeEndArray();
+            } else if (written > 0) {
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
     @Operation(summary = "Get a specific product by id", description = "Returns a specific product by id", responses = {
             @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = Product.class))),
             @ApiResponse(responseCode = "400", description = "Bad Request"),})
@@ -61,6 +166,36 @@ public class ProductController {
         return response;
     }
 
+    @Operation(summary = "Get the stock of a product at a point in time", description = "Returns the total, reserved and " +
+            "available stock of a product as of a time, now if none is given, summed from the stock ledger", responses = {
+            @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = StockBalance.class))),})
+    @GetMapping("{id}/stock")
+    public ResponseEntity<StockBalance> getStockBalance(@PathVariable("id") int id,
+                                                        @RequestParam(value = "asOf", required = false)
+                                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf) {
+        return new ResponseEntity<>(this.stockLedgerService.getBalanceAsOf(id, asOf != null ? asOf : LocalDateTime.now()),
+                HttpStatus.OK);
+    }
+
+    @Operation(summary = "Get the stock movements of a product", description = "Returns the entries of the stock ledger " +
+            "for a product recorded between from and to, oldest first", responses = {
+            @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = StockMovement.class))),
+            @ApiResponse(responseCode = "400", description = "Bad Request"),})
+    @GetMapping("{id}/stock/movements")
+    public ResponseEntity<List<StockMovement>> getStockMovements(@PathVariable("id") int id,
+                                                                 @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                 @RequestParam(value = "to", required = false)
+                                                                 @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        ResponseEntity response;
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        if (from.isAfter(end)) {
+            response = new ResponseEntity("The start of the period must not be after its end", HttpStatus.BAD_REQUEST);
+        } else {
+            response = new ResponseEntity(this.stockLedgerService.getMovements(id, from, end), HttpStatus.OK);
+        }
+        return response;
+    }
+
     @Operation(summary = "Search for a product by name query", description = "Returns a list of products containing search query", responses = {
             @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = Product.class))),
             @ApiResponse(responseCode = "404", description = "Not found"),})
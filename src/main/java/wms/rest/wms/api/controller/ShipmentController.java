@@ -9,12 +9,10 @@ import lombok.AllArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import wms.rest.wms.model.Product;
-import wms.rest.wms.model.Shipment;
+import wms.rest.wms.api.model.ShipmentSummary;
 import wms.rest.wms.service.ShipmentService;
 
 import java.util.List;
-import java.util.Optional;
 
 /**
  * Controller class containing all endpoints related to Shipments.
@@ -31,13 +29,13 @@ public class ShipmentController {
     /** Service for handling Shipment service operations */
     private final ShipmentService shipmentService;
 
-    @Operation(summary = "Get a list of all shipments", description = "Returns a list of all shipments", responses = {
-            @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = Shipment.class))),
+    @Operation(summary = "Get a list of all shipments", description = "Returns a list of all shipments with the IDs of their trip and orders", responses = {
+            @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = ShipmentSummary.class))),
             @ApiResponse(responseCode = "204", description = "No content"),})
     @GetMapping
-    public ResponseEntity<Optional<Shipment>> getShipments() {
+    public ResponseEntity<List<ShipmentSummary>> getShipments() {
         ResponseEntity response;
-        List<Shipment> shipments = this.shipmentService.getShipments();
+        List<ShipmentSummary> shipments = this.shipmentService.getShipments();
         if (!shipments.isEmpty()) {
             response = new ResponseEntity(shipments, HttpStatus.OK);
         } else {
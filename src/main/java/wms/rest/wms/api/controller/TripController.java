@@ -9,6 +9,7 @@ import lombok.AllArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import wms.rest.wms.api.model.TripSummary;
 import wms.rest.wms.model.Trip;
 import wms.rest.wms.service.TripService;
 
@@ -30,13 +31,13 @@ public class TripController {
     /** Service for handling Trip service operations */
     private final TripService tripService;
 
-    @Operation(summary = "Get a list of all trips", description = "Returns a list of all trips", responses = {
-            @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = Trip.class))),
+    @Operation(summary = "Get a list of all trips", description = "Returns a list of all trips with the IDs of their shipments", responses = {
+            @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = TripSummary.class))),
             @ApiResponse(responseCode = "204", description = "No content"),})
     @GetMapping
-    public ResponseEntity<List<Trip>> getTrips() {
+    public ResponseEntity<List<TripSummary>> getTrips() {
         ResponseEntity response;
-        List<Trip> trips = this.tripService.getAll();
+        List<TripSummary> trips = this.tripService.getAll();
         if (!trips.isEmpty()) {
             response = new ResponseEntity(trips, HttpStatus.OK);
         } else {
@@ -45,12 +46,12 @@ public class TripController {
         return response;
     }
 
-    @Operation(summary = "Get a specific trip by id", description = "Returns a specific trip by id", responses = {
-            @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = Trip.class))),
+    @Operation(summary = "Get a specific trip by id", description = "Returns a specific trip by id with the IDs of its shipments", responses = {
+            @ApiResponse(responseCode = "200", description = "Successful retrieval", content = @Content(schema = @Schema(implementation = TripSummary.class))),
             @ApiResponse(responseCode = "404", description = "Not found"),})
     @GetMapping("/{id}")
-    public ResponseEntity<Optional<Trip>> getTripById(@PathVariable("id") int id) {
-        Optional<Trip> trip = this.tripService.findTripById(id);
+    public ResponseEntity<Optional<TripSummary>> getTripById(@PathVariable("id") int id) {
+        Optional<TripSummary> trip = this.tripService.findTripById(id);
         ResponseEntity response;
         if (trip.isPresent()) {
             response = new ResponseEntity(trip, HttpStatus.OK);
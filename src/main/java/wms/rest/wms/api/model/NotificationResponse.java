@@ -14,4 +14,6 @@ public class NotificationResponse {
     private int status;
 
     private String message;
+
+    private String trackingId;
 }
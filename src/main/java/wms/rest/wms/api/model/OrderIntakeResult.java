@@ -0,0 +1,30 @@
+package wms.rest.wms.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Represents the outcome of a single Order in a batch order intake request.
+ *
+ * @author Mikkel Stavelie.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class OrderIntakeResult {
+
+    /** The position of the Order in the request, starting at 0 */
+    private int index;
+
+    /** The orderId of the created Order, or null if the Order was not created */
+    private Integer orderId;
+
+    /** Whether the Order was created */
+    private boolean success;
+
+    /** A description of the outcome */
+    private String message;
+}
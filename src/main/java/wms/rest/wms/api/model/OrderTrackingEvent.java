@@ -0,0 +1,47 @@
+package wms.rest.wms.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import wms.rest.wms.model.OrderStatus;
+import wms.rest.wms.model.OrderTracking;
+
+/**
+ * Represents the tracking state of an Order sent on the order tracking stream. The revision increases with every
+ * change of the Order, so a client keeps the event with the highest revision of each Order.
+ *
+ * @author Mikkel Stavelie.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class OrderTrackingEvent {
+
+    /** The orderId of the Order */
+    private int orderId;
+
+    /** The OrderStatus of the Order */
+    private OrderStatus orderStatus;
+
+    /** The progressInPercent of the Order */
+    private int progressInPercent;
+
+    /** The current location of the Order, or null if it is not on a Trip yet */
+    private String currentLocation;
+
+    /** The revision of the tracking row of the Order */
+    private long revision;
+
+    /**
+     * Return the event of a tracking row.
+     *
+     * @param tracking the tracking row of the Order.
+     * @return the event of the tracking row.
+     */
+    public static OrderTrackingEvent of(OrderTracking tracking) {
+        return new OrderTrackingEvent(tracking.getOrderId(), tracking.getOrderStatus(), tracking.getProgressInPercent(),
+                tracking.getCurrentLocation(), tracking.getRevision());
+    }
+}
@@ -0,0 +1,28 @@
+package wms.rest.wms.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import wms.rest.wms.model.Product;
+
+import java.util.List;
+
+/**
+ * Represents one page of the Product catalog in keyset pagination. The next page is requested
+ * with nextCursor as the 'after' parameter, until nextCursor is null.
+ *
+ * @author Mikkel Stavelie.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class ProductPage {
+
+    /** The Products of the page in ascending productId order */
+    private List<Product> products;
+
+    /** The productId to request the next page after, or null if this is the last page */
+    private Integer nextCursor;
+}
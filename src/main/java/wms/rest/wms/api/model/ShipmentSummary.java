@@ -0,0 +1,63 @@
+package wms.rest.wms.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import wms.rest.wms.model.Order;
+import wms.rest.wms.model.Shipment;
+import wms.rest.wms.model.TripStatus;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Represents a Shipment in the list of every Shipment. The Trip and the Orders are referred to by ID,
+ * instead of serializing every Order with its Customer, Store and Products.
+ *
+ * @author Mikkel Stavelie.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class ShipmentSummary {
+
+    /** The shipmentId of the Shipment */
+    private int shipmentId;
+
+    /** Where the Shipment is loaded */
+    private String shipmentLoadLocation;
+
+    /** Where the Shipment is unloaded */
+    private String shipmentUnloadLocation;
+
+    /** The position of the Shipment on its Trip */
+    private int sequenceAtTrip;
+
+    /** The date the Shipment is delivered */
+    private LocalDate shipmentDeliveryDate;
+
+    /** The tripId of the Trip carrying the Shipment, or null if it is not on a Trip yet */
+    private Integer tripId;
+
+    /** The TripStatus of the Trip carrying the Shipment, or null if it is not on a Trip yet */
+    private TripStatus tripStatus;
+
+    /** The orderIds of the Orders on the Shipment in ascending order */
+    private List<Integer> orderIds;
+
+    /**
+     * Return the summary of a Shipment, which must have been read with its Trip and Orders.
+     *
+     * @param shipment the Shipment to summarize.
+     * @return the summary of the Shipment.
+     */
+    public static ShipmentSummary of(Shipment shipment) {
+        boolean onTrip = shipment.getTrip() != null;
+        return new ShipmentSummary(shipment.getShipmentId(), shipment.getShipmentLoadLocation(),
+                shipment.getShipmentUnloadLocation(), shipment.getSequenceAtTrip(), shipment.getShipmentDeliveryDate(),
+                onTrip ? shipment.getTrip().getTripId() : null, onTrip ? shipment.getTrip().getTripStatus() : null,
+                shipment.getOrders().stream().map(Order::getOrderId).sorted().toList());
+    }
+}
@@ -0,0 +1,35 @@
+package wms.rest.wms.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents the stock of a Product at a point in time, as summed from the stock ledger.
+ *
+ * @author Mikkel Stavelie.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class StockBalance {
+
+    /** The productId of the Product */
+    private int productId;
+
+    /** The time the stock is given at */
+    private LocalDateTime asOf;
+
+    /** The total stock at that time */
+    private int totalStock;
+
+    /** The reserved stock at that time */
+    private int reservedStock;
+
+    /** The available stock at that time */
+    private int availableStock;
+}
@@ -0,0 +1,86 @@
+package wms.rest.wms.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import wms.rest.wms.model.ProductType;
+import wms.rest.wms.model.Shipment;
+import wms.rest.wms.model.Trip;
+import wms.rest.wms.model.TripStatus;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Represents a Trip in the list of every Trip. The Shipments are referred to by ID in the order they are
+ * delivered, instead of serializing every Shipment with its Orders.
+ *
+ * @author Mikkel Stavelie.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class TripSummary {
+
+    /** The tripId of the Trip */
+    private int tripId;
+
+    /** The TripStatus of the Trip */
+    private TripStatus tripStatus;
+
+    /** Where the Trip starts */
+    private String tripStartLocation;
+
+    /** Where the Trip ends */
+    private String tripEndLocation;
+
+    /** Where the Trip is now */
+    private String tripCurrentLocation;
+
+    /** Where the Trip goes next */
+    private String tripNextLocation;
+
+    /** The date the Trip starts */
+    private LocalDate tripStartDate;
+
+    /** The date the Trip ends */
+    private LocalDate tripEndDate;
+
+    /** The name of the driver */
+    private String tripDriver;
+
+    /** The phone number of the driver */
+    private int tripDriverPhone;
+
+    /** The temperature class of the vehicle, or null if the Trip was not planned by load */
+    private ProductType tripTemperatureClass;
+
+    /** The weight of the packages on the Trip, in grams */
+    private double tripLoadWeightInGrams;
+
+    /** The volume of the packages on the Trip, in cubic centimetres */
+    private double tripLoadVolumeInCm3;
+
+    /** The shipmentIds of the Shipments on the Trip, in the sequence they are delivered */
+    private List<Integer> shipmentIds;
+
+    /**
+     * Return the summary of a Trip, which must have been read with its Shipments.
+     *
+     * @param trip the Trip to summarize.
+     * @return the summary of the Trip.
+     */
+    public static TripSummary of(Trip trip) {
+        return new TripSummary(trip.getTripId(), trip.getTripStatus(), trip.getTripStartLocation(),
+                trip.getTripEndLocation(), trip.getTripCurrentLocation(), trip.getTripNextLocation(),
+                trip.getTripStartDate(), trip.getTripEndDate(), trip.getTripDriver(), trip.getTripDriverPhone(),
+                trip.getTripTemperatureClass(), trip.getTripLoadWeightInGrams(), trip.getTripLoadVolumeInCm3(),
+                trip.getShipments().stream()
+                        .sorted(Comparator.comparingInt(Shipment::getSequenceAtTrip))
+                        .map(Shipment::getShipmentId)
+                        .toList());
+    }
+}
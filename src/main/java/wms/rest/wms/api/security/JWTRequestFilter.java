@@ -1,22 +1,25 @@
 package wms.rest.wms.api.security;
 
-import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.exceptions.JWTVerificationException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import wms.rest.wms.model.Customer;
 import wms.rest.wms.repository.CustomerRepository;
+import wms.rest.wms.service.security.CustomerPrincipalCache;
 import wms.rest.wms.service.security.JwtService;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -35,6 +38,9 @@ public class JWTRequestFilter extends OncePerRequestFilter {
     /** Repository for handling Customer persistence operations */
     private CustomerRepository customerRepository;
 
+    /** Cache of authenticated Customers, sparing a database query on every request */
+    private CustomerPrincipalCache customerPrincipalCache;
+
     /**
      * Filters incoming HTTP requests to authenticate JWT tokens.
      *
@@ -50,15 +56,16 @@ public class JWTRequestFilter extends OncePerRequestFilter {
         if(tokenHeader != null && tokenHeader.startsWith("Bearer ")) {
             String token = tokenHeader.substring(7);
             try {
-                String email = jwtService.getEmail(token); // Compare JWT to Customer with email
-                Optional<Customer> opUser = customerRepository.findByEmail(email);
+                String email = jwtService.getEmail(token); // Verify JWT and compare it to Customer with email
+                Optional<Customer> opUser = customerPrincipalCache.get(email, customerRepository::findByEmail);
                 if(opUser.isPresent()){
                     Customer user = opUser.get();
-                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(user, null, new ArrayList()); // Create authentication object
+                    List<SimpleGrantedAuthority> authorities = user.isAdmin() ? List.of(new SimpleGrantedAuthority(SecurityConfig.ADMIN_AUTHORITY)) : new ArrayList<>();
+                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(user, null, authorities); // Create authentication object
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authentication); // Set the authentication object to the Spring security context
                 }
-            } catch (JWTDecodeException ex) {
+            } catch (JWTVerificationException ex) {
             }
         }
         filterChain.doFilter(request, response); // Run defined filter
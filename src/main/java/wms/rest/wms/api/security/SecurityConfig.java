@@ -20,6 +20,16 @@ public class SecurityConfig {
     /** JWT request filter for handling JWT authentication */
     private JWTRequestFilter jwtRequestFilter;
 
+    /** Authority of the Customers administering the registry of Drivers and Vehicles */
+    public static final String ADMIN_AUTHORITY = "ROLE_ADMIN";
+
+    /**
+     * List of all endpoints only permitted for administrators.
+     */
+    private static final String[] ADMIN_ENDPOINTS = {
+            "/api/admin/**"
+    };
+
     /**
      * List of all endpoints permitted without authentication.
      */
@@ -56,7 +66,8 @@ public class SecurityConfig {
         http
                 .csrf(csrf -> csrf.disable())
                 .addFilterBefore(jwtRequestFilter, AuthorizationFilter.class) // Run authentication filter before http request filter
-                .authorizeHttpRequests(authorize -> authorize.requestMatchers(WHITELIST_DEVELOPMENT).permitAll() // Exclusion rules
+                .authorizeHttpRequests(authorize -> authorize.requestMatchers(ADMIN_ENDPOINTS).hasAuthority(ADMIN_AUTHORITY) // Administration
+                        .requestMatchers(WHITELIST_DEVELOPMENT).permitAll() // Exclusion rules
                         .anyRequest().authenticated()); // Everything else needs authorization
         return http.build();
     }
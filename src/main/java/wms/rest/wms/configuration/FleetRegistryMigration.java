@@ -0,0 +1,106 @@
+package wms.rest.wms.configuration;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import wms.rest.wms.model.Driver;
+import wms.rest.wms.model.ProductType;
+import wms.rest.wms.model.Vehicle;
+import wms.rest.wms.repository.DriverRepository;
+import wms.rest.wms.repository.VehicleRepository;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fills an empty driver and vehicle registry. The Trips used to be given one of three drivers hard-coded in
+ * TripService, and now need a Driver and a Vehicle from the registry, so a database without them gets those three
+ * Drivers and an initial fleet of Vehicles for every temperature class. The migration runs on every startup, and
+ * does nothing once the registry has Drivers or Vehicles.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Component
+public class FleetRegistryMigration {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(FleetRegistryMigration.class);
+
+    /** The prefix of the registration numbers of the initial Vehicles of each temperature class */
+    private static final Map<ProductType, String> REGISTRATION_PREFIXES = Map.of(ProductType.DRY_GOODS, "DRY",
+            ProductType.REFRIGERATED_GOODS, "REF", ProductType.FROZEN_GOODS, "FRZ");
+
+    /** Repository for the Drivers of the registry */
+    private final DriverRepository driverRepository;
+
+    /** Repository for the Vehicles of the registry */
+    private final VehicleRepository vehicleRepository;
+
+    /** Number of Vehicles of each temperature class in the initial fleet */
+    private final int vehiclesPerClass;
+
+    /**
+     * Creates the migration.
+     *
+     * @param driverRepository repository for the Drivers of the registry.
+     * @param vehicleRepository repository for the Vehicles of the registry.
+     * @param vehiclesPerClass number of Vehicles of each temperature class in the initial fleet.
+     */
+    public FleetRegistryMigration(DriverRepository driverRepository, VehicleRepository vehicleRepository,
+                                  @Value("${trip.fleet.initial-vehicles-per-class:3}") int vehiclesPerClass) {
+        this.driverRepository = driverRepository;
+        this.vehicleRepository = vehicleRepository;
+        this.vehiclesPerClass = vehiclesPerClass;
+    }
+
+    /**
+     * Registers the former hard-coded Drivers and the initial fleet if the registry has none.
+     */
+    @PostConstruct
+    public void migrate() {
+        if (this.driverRepository.count() == 0) {
+            this.driverRepository.saveAll(List.of(
+                    driver("Pietr Didrik", 48056693, LocalTime.of(6, 0), LocalTime.of(14, 0)),
+                    driver("Hans Pettersen", 49285943, LocalTime.of(6, 0), LocalTime.of(16, 0)),
+                    driver("Lus Hoston", 94682497, LocalTime.of(5, 0), LocalTime.of(15, 0))));
+            log.info("Registered the three drivers formerly hard-coded in TripService");
+        }
+        if (this.vehicleRepository.count() == 0) {
+            List<Vehicle> vehicles = new ArrayList<>();
+            for (ProductType temperatureClass : ProductType.values()) {
+                for (int i = 1; i <= this.vehiclesPerClass; i++) {
+                    Vehicle vehicle = new Vehicle();
+                    vehicle.setRegistrationNumber(String.format("%s-%02d", REGISTRATION_PREFIXES.get(temperatureClass), i));
+                    vehicle.setTemperatureClass(temperatureClass);
+                    vehicles.add(vehicle);
+                }
+            }
+            this.vehicleRepository.saveAll(vehicles);
+            log.info("Registered an initial fleet of {} vehicles per temperature class", this.vehiclesPerClass);
+        }
+    }
+
+    /**
+     * Create a Driver.
+     *
+     * @param name the name of the Driver.
+     * @param phone the phone number of the Driver.
+     * @param shiftStart the time of day the shift of the Driver starts.
+     * @param shiftEnd the time of day the shift of the Driver ends.
+     * @return the Driver.
+     */
+    private static Driver driver(String name, int phone, LocalTime shiftStart, LocalTime shiftEnd) {
+        Driver driver = new Driver();
+        driver.setName(name);
+        driver.setPhone(phone);
+        driver.setShiftStart(shiftStart);
+        driver.setShiftEnd(shiftEnd);
+        return driver;
+    }
+}
@@ -0,0 +1,83 @@
+package wms.rest.wms.configuration;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import wms.rest.wms.model.FleetResourceType;
+import wms.rest.wms.model.TripStatus;
+import wms.rest.wms.repository.FleetReservationRepository;
+
+import java.time.LocalDate;
+
+/**
+ * Opens the fleet reservations for the Trips from before them. A Driver or Vehicle used to be reserved up to the
+ * latest date of its Trips, and is now reserved for the dates of each Trip, so every Trip that is not finished and
+ * has not ended gives its Driver and Vehicle a reservation for its dates. The migration runs on every startup, and
+ * does nothing once there are reservations.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Component
+public class FleetReservationMigration {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(FleetReservationMigration.class);
+
+    /** Reserves the Drivers or Vehicles of the Trips that have not ended, one reservation per Trip */
+    private static final String RESERVE_SQL = "INSERT INTO fleet_reservation " +
+            "(reservation_id, resource_type, resource_id, reserved_from, reserved_until) " +
+            "SELECT NEXT VALUE FOR fleet_reservation_seq, :type, %1$s, start_date, end_date FROM trip " +
+            "WHERE %1$s IS NOT NULL AND start_date IS NOT NULL AND end_date >= :today " +
+            "AND (trip_status IS NULL OR trip_status <> :finished)";
+
+    /** JDBC template for copying the dates of the Trips */
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /** Repository for the reservations of the Drivers and Vehicles */
+    private final FleetReservationRepository fleetReservationRepository;
+
+    /**
+     * Creates the migration.
+     *
+     * @param jdbcTemplate JDBC template for copying the dates of the Trips.
+     * @param fleetReservationRepository repository for the reservations of the Drivers and Vehicles.
+     */
+    public FleetReservationMigration(NamedParameterJdbcTemplate jdbcTemplate,
+                                     FleetReservationRepository fleetReservationRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fleetReservationRepository = fleetReservationRepository;
+    }
+
+    /**
+     * Reserves the Drivers and Vehicles of the Trips that have not ended if there are no reservations.
+     */
+    @PostConstruct
+    public void migrate() {
+        if (this.fleetReservationRepository.count() > 0) {
+            return;
+        }
+        int reserved = reserve(FleetResourceType.DRIVER, "driver_id") + reserve(FleetResourceType.VEHICLE, "vehicle_id");
+        if (reserved > 0) {
+            log.info("Reserved the drivers and vehicles of the unfinished trips with {} fleet reservations", reserved);
+        }
+    }
+
+    /**
+     * Reserves the Drivers or Vehicles of the Trips that have not ended.
+     *
+     * @param type whether to reserve the Drivers or the Vehicles.
+     * @param column the column of the Trip referring to them.
+     * @return the number of reservations made.
+     */
+    private int reserve(FleetResourceType type, String column) {
+        return this.jdbcTemplate.update(String.format(RESERVE_SQL, column), new MapSqlParameterSource()
+                .addValue("type", type.name())
+                .addValue("today", LocalDate.now())
+                .addValue("finished", TripStatus.FINISHED.name()));
+    }
+}
@@ -0,0 +1,85 @@
+package wms.rest.wms.configuration;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Moves the ID sequences of the entities past the IDs already in the database.
+ * The entities used to get their IDs from AUTO_INCREMENT columns, and the sequences that replace them
+ * start at 1, so on a database with existing rows the first generated IDs would collide. The migration
+ * runs once on every startup after Hibernate has created the sequences, and does nothing once a sequence
+ * is ahead of its table.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class IdSequenceMigration {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(IdSequenceMigration.class);
+
+    /** The allocationSize of every entity SequenceGenerator, the number of IDs Hibernate takes per sequence call */
+    public static final int ALLOCATION_SIZE = 50;
+
+    /** The ID column of each table by the name of the sequence generating its IDs */
+    private static final Map<String, String[]> SEQUENCES = new LinkedHashMap<>();
+
+    static {
+        SEQUENCES.put("customer_seq", new String[]{"customer", "customer_id"});
+        SEQUENCES.put("customer_order_seq", new String[]{"customer_order", "order_id"});
+        SEQUENCES.put("customer_order_quantities_seq", new String[]{"customer_order_quantities", "customer_order_quantities_id"});
+        SEQUENCES.put("inventory_seq", new String[]{"inventory", "inventory_id"});
+        SEQUENCES.put("packaging_seq", new String[]{"packaging", "packaging_id"});
+        SEQUENCES.put("product_seq", new String[]{"product", "product_id"});
+        SEQUENCES.put("shipment_seq", new String[]{"shipment", "shipment_id"});
+        SEQUENCES.put("store_seq", new String[]{"store", "store_id"});
+        SEQUENCES.put("trip_seq", new String[]{"trip", "trip_id"});
+        SEQUENCES.put("work_queue_seq", new String[]{"work_queue", "work_queue_item_id"});
+    }
+
+    /** JdbcTemplate for reading and restarting the sequences */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates the migration.
+     *
+     * @param jdbcTemplate JdbcTemplate for reading and restarting the sequences.
+     */
+    public IdSequenceMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Restarts every sequence whose next block of IDs could overlap the IDs already in its table.
+     * Hibernate's pooled optimizer hands out the IDs from (value - ALLOCATION_SIZE) up to the value returned
+     * by the sequence, so a sequence is restarted at the highest existing ID plus ALLOCATION_SIZE.
+     */
+    @PostConstruct
+    public void migrate() {
+        for (Map.Entry<String, String[]> entry : SEQUENCES.entrySet()) {
+            String sequence = entry.getKey();
+            String table = entry.getValue()[0];
+            String idColumn = entry.getValue()[1];
+            Long maxId = this.jdbcTemplate.queryForObject("SELECT MAX(" + idColumn + ") FROM " + table, Long.class);
+            if (maxId == null) {
+                continue;
+            }
+            Long nextValue = this.jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR " + sequence, Long.class);
+            if (nextValue != null && nextValue - ALLOCATION_SIZE < maxId) {
+                long restartWith = maxId + ALLOCATION_SIZE;
+                this.jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + restartWith);
+                log.info("Restarted sequence {} at {} after the highest ID {} in {}", sequence, restartWith, maxId, table);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package wms.rest.wms.configuration;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import wms.rest.wms.model.OrderStatus;
+
+import java.util.List;
+
+/**
+ * Gives the Orders from before they referred to their Store the Store of their Customer. The ShipmentBuilder groups
+ * the REGISTERED Orders by their Store, so an Order without one would stay REGISTERED forever. Every Customer has a
+ * Store, so only an Order without a Customer is left without one; those are logged, and skipped by the
+ * ShipmentBuilder. The migration runs on every startup, and does nothing once every Order with a Customer has a
+ * Store.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class OrderStoreMigration {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(OrderStoreMigration.class);
+
+    /** Maximum number of orderIds logged for the Orders left without a Store */
+    private static final int LOGGED_ORDERS = 100;
+
+    /** Gives every Order without a Store the Store of its Customer */
+    private static final String BACKFILL_SQL = "UPDATE customer_order SET store_id = " +
+            "(SELECT c.store_id FROM customer c WHERE c.customer_id = customer_order.customer_id) " +
+            "WHERE store_id IS NULL AND customer_id IS NOT NULL";
+
+    /** Reads the REGISTERED Orders still without a Store, which have no Customer either */
+    private static final String WITHOUT_STORE_SQL = "SELECT order_id FROM customer_order " +
+            "WHERE store_id IS NULL AND order_status = :registered ORDER BY order_id";
+
+    /** JDBC template for copying the Stores of the Customers */
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates the migration.
+     *
+     * @param jdbcTemplate JDBC template for copying the Stores of the Customers.
+     */
+    public OrderStoreMigration(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Gives every Order without a Store the Store of its Customer, and logs the REGISTERED Orders left without one.
+     */
+    @PostConstruct
+    public void migrate() {
+        int backfilled = this.jdbcTemplate.getJdbcTemplate().update(BACKFILL_SQL);
+        if (backfilled > 0) {
+            log.info("Gave {} orders without a store the store of their customer", backfilled);
+        }
+        List<Integer> withoutStore = this.jdbcTemplate.queryForList(WITHOUT_STORE_SQL,
+                new MapSqlParameterSource("registered", OrderStatus.REGISTERED.name()), Integer.class);
+        if (!withoutStore.isEmpty()) {
+            log.warn("{} registered orders have neither a customer nor a store and are never shipped: {}",
+                    withoutStore.size(), withoutStore.subList(0, Math.min(LOGGED_ORDERS, withoutStore.size())));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package wms.rest.wms.configuration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the Scheduled jobs of the application, such as the sweep of the OrderPipeline. Scheduling can be
+ * switched off with 'scheduling.enabled=false', which the test profile does to keep the embedded database
+ * deterministic.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
@@ -0,0 +1,63 @@
+package wms.rest.wms.configuration;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import wms.rest.wms.model.StockMovement;
+import wms.rest.wms.model.StockMovementType;
+import wms.rest.wms.repository.InventoryRepository;
+import wms.rest.wms.repository.InventoryRepository.StockLevel;
+import wms.rest.wms.repository.StockMovementRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Opens the stock ledger for Inventories from before it. The stock of a Product is summed from its entries in the
+ * ledger, so every Inventory without any is given an ADJUSTMENT of its current stock as its opening balance. The
+ * migration runs on every startup, and does nothing once every Inventory has entries.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Component
+public class StockLedgerMigration {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(StockLedgerMigration.class);
+
+    /** Repository for reading the stock of the Inventories */
+    private final InventoryRepository inventoryRepository;
+
+    /** Repository for appending the opening balances to the stock ledger */
+    private final StockMovementRepository stockMovementRepository;
+
+    /**
+     * Creates the migration.
+     *
+     * @param inventoryRepository repository for reading the stock of the Inventories.
+     * @param stockMovementRepository repository for appending the opening balances to the stock ledger.
+     */
+    public StockLedgerMigration(InventoryRepository inventoryRepository, StockMovementRepository stockMovementRepository) {
+        this.inventoryRepository = inventoryRepository;
+        this.stockMovementRepository = stockMovementRepository;
+    }
+
+    /**
+     * Records the opening balance of every Inventory without entries in the stock ledger.
+     */
+    @PostConstruct
+    public void migrate() {
+        LocalDateTime now = LocalDateTime.now();
+        List<StockMovement> openingBalances = this.inventoryRepository.findStockLevelsWithoutStockMovements().stream()
+                .map((StockLevel stock) -> new StockMovement(0, stock.getProductId(), StockMovementType.ADJUSTMENT,
+                        stock.getTotalStock(), stock.getReservedStock(), stock.getAvailableStock(), null, now))
+                .toList();
+        if (!openingBalances.isEmpty()) {
+            this.stockMovementRepository.saveAll(openingBalances);
+            log.info("Recorded the opening balances of {} inventories in the stock ledger", openingBalances.size());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package wms.rest.wms.exception;
+
+/**
+ * Custom exception class to handle cases where a scheduler lease was taken over by another instance
+ * while its previous owner was still writing under it. Thrown before commit, so the writes are rolled back.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+public class LeaseLostException extends RuntimeException {
+    public LeaseLostException(String s) {
+        super(s);
+    }
+}
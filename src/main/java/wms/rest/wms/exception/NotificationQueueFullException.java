@@ -0,0 +1,14 @@
+package wms.rest.wms.exception;
+
+/**
+ * Custom exception class to handle cases where the push notification queue
+ * is full and cannot take more notifications for now.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+public class NotificationQueueFullException extends Exception{
+    public NotificationQueueFullException(String s) {
+        super(s);
+    }
+}
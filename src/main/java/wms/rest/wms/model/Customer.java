@@ -7,6 +7,9 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import wms.rest.wms.service.security.CustomerPrincipalCacheListener;
 
 /**
  * Class represents a Customer entity in a warehouse management system. Each customer has
@@ -21,11 +24,15 @@ import lombok.Setter;
 @Getter
 @Setter
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "customer")
+@EntityListeners(CustomerPrincipalCacheListener.class)
 @Table(name = "customer")
 public class Customer {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_seq")
+    @SequenceGenerator(name = "customer_seq", sequenceName = "customer_seq", allocationSize = 50)
     @Column(name = "customer_id", nullable = false)
     private int customerId;
 
@@ -49,4 +56,23 @@ public class Customer {
     @ManyToOne(optional = false)
     @JoinColumn(name = "store_id", nullable = false)
     private Store store;
-}
\ No newline at end of file
+
+    /** Whether the Customer administers the registry of Drivers and Vehicles, only ever set in the database */
+    @JsonIgnore
+    @Column(name = "admin", nullable = false)
+    private boolean admin = false;
+
+    /**
+     * Creates a Customer who is not an administrator.
+     *
+     * @param customerId the customerId of the Customer.
+     * @param email the email of the Customer.
+     * @param firstName the first name of the Customer.
+     * @param lastName the last name of the Customer.
+     * @param password the encrypted password of the Customer.
+     * @param store the Store the Customer orders for.
+     */
+    public Customer(int customerId, String email, String firstName, String lastName, String password, Store store) {
+        this(customerId, email, firstName, lastName, password, store, false);
+    }
+}
@@ -0,0 +1,54 @@
+package wms.rest.wms.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalTime;
+
+/**
+ * Class represents a Driver in the registry the Trips are assigned drivers from. A Driver only takes Trips
+ * departing within their daily shift, and is reserved with a FleetReservation for the dates each Trip keeps them
+ * on the road.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "driver")
+public class Driver {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "driver_seq")
+    @SequenceGenerator(name = "driver_seq", sequenceName = "driver_seq", allocationSize = 50)
+    @Column(name = "driver_id", nullable = false)
+    private int driverId;
+
+    @NotBlank(message = "Driver name is mandatory")
+    @Column(name = "name", nullable = false)
+    private String name;
+
+    @Min(1)
+    @Column(name = "phone", nullable = false)
+    private int phone;
+
+    @NotNull(message = "Shift start is mandatory")
+    @Column(name = "shift_start", nullable = false)
+    private LocalTime shiftStart;
+
+    @NotNull(message = "Shift end is mandatory")
+    @Column(name = "shift_end", nullable = false)
+    private LocalTime shiftEnd;
+
+    @Column(name = "active", nullable = false)
+    private boolean active = true;
+}
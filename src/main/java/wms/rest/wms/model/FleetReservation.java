@@ -0,0 +1,54 @@
+package wms.rest.wms.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+/**
+ * Class represents the dates a Driver or Vehicle is reserved for a Trip, from the date the Trip departs to the last
+ * date its route keeps them on the road, both included. The reservations of one Driver or Vehicle never overlap, so
+ * it is free on every date between them.
+ * <p>
+ * The Driver or Vehicle is referred to by type and ID rather than by a foreign key, so one table holds both.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "fleet_reservation", indexes = {
+        @Index(name = "idx_fleet_reservation_resource", columnList = "resource_type, resource_id, reserved_from"),
+        @Index(name = "idx_fleet_reservation_until", columnList = "reserved_until")
+})
+public class FleetReservation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "fleet_reservation_seq")
+    @SequenceGenerator(name = "fleet_reservation_seq", sequenceName = "fleet_reservation_seq", allocationSize = 50)
+    @Column(name = "reservation_id", nullable = false)
+    private long reservationId;
+
+    @NotNull(message = "Resource type is mandatory")
+    @Column(name = "resource_type", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private FleetResourceType resourceType;
+
+    @Column(name = "resource_id", nullable = false)
+    private int resourceId;
+
+    @NotNull(message = "Reserved from is mandatory")
+    @Column(name = "reserved_from", nullable = false)
+    private LocalDate reservedFrom;
+
+    @NotNull(message = "Reserved until is mandatory")
+    @Column(name = "reserved_until", nullable = false)
+    private LocalDate reservedUntil;
+}
@@ -0,0 +1,16 @@
+package wms.rest.wms.model;
+
+/**
+ * Represents the kinds of resources of the fleet a FleetReservation reserves.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+public enum FleetResourceType {
+
+    /** A Driver of the registry */
+    DRIVER,
+
+    /** A Vehicle of the registry */
+    VEHICLE
+}
@@ -0,0 +1,24 @@
+package wms.rest.wms.model;
+
+/**
+ * Represents the status of a push notification in the notification pipeline.
+ * The notification is QUEUED until a worker sends it. A notification FCM could not
+ * take at the moment is RETRYING until it is SENT or runs out of attempts and FAILED.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+public enum NotificationStatus {
+
+    /** Represents a notification waiting in the queue to be sent */
+    QUEUED,
+
+    /** Represents a notification waiting to be sent again after a temporary failure */
+    RETRYING,
+
+    /** Represents a notification accepted by Firebase Cloud Messaging */
+    SENT,
+
+    /** Represents a notification that was rejected or ran out of attempts */
+    FAILED
+}
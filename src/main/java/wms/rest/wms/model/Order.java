@@ -18,6 +18,8 @@ import java.util.Set;
  * and associations to the user who placed the order and the address for the order. It also includes a set of
  * CustomerOrderQuantities to represent the many-to-many relationship between orders and products, capturing the
  * quantity of each product in the order.
+ * The Customer, Store and Shipment are loaded lazily. The 'Order.tracking' entity graph names everything the
+ * Customer sees when tracking an Order, so the Order is read with one statement.
  *
  * @author Mikkel Stavelie.
  * @version 1.0.
@@ -27,11 +29,26 @@ import java.util.Set;
 @Getter
 @Setter
 @Entity
-@Table(name = "customerOrder")
+@Table(name = "customerOrder", indexes = {
+        @Index(name = "idx_order_status_store_date", columnList = "order_status, store_id, wished_delivery_date")
+})
+@NamedEntityGraph(name = "Order.tracking", attributeNodes = {
+        @NamedAttributeNode(value = "customer", subgraph = "customer"),
+        @NamedAttributeNode(value = "shipment", subgraph = "shipment"),
+        @NamedAttributeNode(value = "quantities", subgraph = "quantities")
+}, subgraphs = {
+        @NamedSubgraph(name = "customer", attributeNodes = @NamedAttributeNode("store")),
+        @NamedSubgraph(name = "shipment", attributeNodes = @NamedAttributeNode("trip")),
+        @NamedSubgraph(name = "quantities", attributeNodes = @NamedAttributeNode(value = "product", subgraph = "product")),
+        @NamedSubgraph(name = "product", attributeNodes = {
+                @NamedAttributeNode("inventory"), @NamedAttributeNode("packaging")
+        })
+})
 public class Order {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_order_seq")
+    @SequenceGenerator(name = "customer_order_seq", sequenceName = "customer_order_seq", allocationSize = 50)
     @Column(name = "order_id", nullable = false)
     private int orderId;
 
@@ -49,12 +66,12 @@ public class Order {
     @Column(name = "progress_in_percent")
     private int progressInPercent;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "customer_id")
     private Customer customer;
 
     @JsonIgnore
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "store_id")
     private Store store;
 
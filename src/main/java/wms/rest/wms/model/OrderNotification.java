@@ -0,0 +1,67 @@
+package wms.rest.wms.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Class represents a row in the order notification outbox. A row is written in the same transaction as the
+ * status change of the Order it describes, so it exists exactly when the change was committed. The
+ * OrderNotificationRelay marks it relayed when it hands the push notification to the notification pipeline, and
+ * removes it only once FCM has accepted the notification. A row whose notification FAILED is put back for the
+ * relay, and a row relayed too long ago without an answer, such as by an instance that stopped, is relayed again.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "order_notification")
+public class OrderNotification {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_notification_seq")
+    @SequenceGenerator(name = "order_notification_seq", sequenceName = "order_notification_seq", allocationSize = 50)
+    @Column(name = "order_notification_id", nullable = false)
+    private long orderNotificationId;
+
+    @Column(name = "order_id", nullable = false)
+    private int orderId;
+
+    @NotNull(message = "Notification type is mandatory")
+    @Column(name = "notification_type", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private OrderNotificationType notificationType;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    /** When the notification was last handed to the notification pipeline, null while it waits to be relayed */
+    @Column(name = "relayed_at")
+    private LocalDateTime relayedAt;
+
+    /** Number of times the notification has been handed to the notification pipeline */
+    @Column(name = "relay_attempts", nullable = false)
+    private int relayAttempts;
+
+    /**
+     * Creates a row that has not been relayed yet.
+     *
+     * @param orderNotificationId the ID of the row, 0 for a new row.
+     * @param orderId the orderId of the Order.
+     * @param notificationType the OrderNotificationType of the status change.
+     * @param createdAt when the status change was recorded.
+     */
+    public OrderNotification(long orderNotificationId, int orderId, OrderNotificationType notificationType,
+                             LocalDateTime createdAt) {
+        this(orderNotificationId, orderId, notificationType, createdAt, null, 0);
+    }
+}
@@ -0,0 +1,59 @@
+package wms.rest.wms.model;
+
+/**
+ * Represents the steps in the lifecycle of an Order the Customer is notified about.
+ * Each type carries the title and body of the push notification sent for it.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+public enum OrderNotificationType {
+
+    /** The Order was added to a Shipment and is being picked */
+    PICKING("Your order is being picked", "We have started picking the products in order %d."),
+
+    /** Every product of the Order is picked */
+    PICKED("Your order is picked", "Order %d is picked and waiting for transport."),
+
+    /** The Trip carrying the Order left the warehouse */
+    IN_TRANSIT("Your order is on its way", "Order %d has left the warehouse and is on its way to you."),
+
+    /** The Order was delivered to the Customer */
+    DELIVERED("Your order is delivered", "Order %d has been delivered.");
+
+    /** Title of the push notification */
+    private final String title;
+
+    /** Body of the push notification, formatted with the orderId */
+    private final String body;
+
+    /**
+     * Creates a notification type.
+     *
+     * @param title the title of the push notification.
+     * @param body the body of the push notification, formatted with the orderId.
+     */
+    OrderNotificationType(String title, String body) {
+        this.title = title;
+        this.body = body;
+    }
+
+    /**
+     * Return the title of the push notification.
+     *
+     * @return the title.
+     */
+    public String getTitle() {
+        return this.title;
+    }
+
+    /**
+     * Return the body of the push notification for an Order.
+     *
+     * @param orderId the orderId of the Order.
+     * @return the body.
+     */
+    public String getBody(int orderId) {
+        return String.format(this.body, orderId);
+    }
+}
@@ -26,7 +26,8 @@ public class OrderQuantities {
 
     @JsonIgnore
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_order_quantities_seq")
+    @SequenceGenerator(name = "customer_order_quantities_seq", sequenceName = "customer_order_quantities_seq", allocationSize = 50)
     @Column(name = "customer_order_quantities_id", nullable = false)
     private int customerOrderQuantitiesId;
 
@@ -0,0 +1,115 @@
+package wms.rest.wms.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.util.Objects;
+
+/**
+ * Class represents the tracking read model of an Order: the OrderStatus, progress and current location the
+ * Customer polls for, denormalized from the Order, its Shipment and its Trip into one narrow row keyed by orderId.
+ * The row is kept up to date by the status transitions through the OrderTrackingService, so a poll is a single
+ * primary key lookup. The revision is increased every time the row changes, and identifies the version of the
+ * row in the ETag of a poll. The customerId of the Customer who placed the Order routes the changes of the row to
+ * the tracking streams of that Customer.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "order_tracking", indexes = {
+        @Index(name = "idx_order_tracking_customer", columnList = "customer_id")
+})
+public class OrderTracking implements Persistable<Integer> {
+
+    @Id
+    @Column(name = "order_id", nullable = false)
+    private int orderId;
+
+    @Column(name = "customer_id")
+    private Integer customerId;
+
+    @Column(name = "order_status", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private OrderStatus orderStatus;
+
+    @Column(name = "progress_in_percent", nullable = false)
+    private int progressInPercent;
+
+    @Column(name = "current_location")
+    private String currentLocation;
+
+    @Column(name = "revision", nullable = false)
+    private long revision;
+
+    /** Whether the row is not in the database yet, so saving it inserts without selecting it first */
+    @Transient
+    private boolean newRow;
+
+    /**
+     * Create the tracking row of an Order that has none yet.
+     *
+     * @param orderId the orderId of the Order.
+     */
+    public OrderTracking(int orderId) {
+        this.orderId = orderId;
+        this.newRow = true;
+    }
+
+    /**
+     * Sets the OrderStatus, progress and current location of the Order, and increases the revision
+     * if any of them changed.
+     *
+     * @param orderStatus the OrderStatus of the Order.
+     * @param progressInPercent the progressInPercent of the Order.
+     * @param currentLocation the current location of the Order, or null if it is not on a Trip yet.
+     * @return true if the row changed, false otherwise.
+     */
+    public boolean update(OrderStatus orderStatus, int progressInPercent, String currentLocation) {
+        if (!this.newRow && this.orderStatus == orderStatus && this.progressInPercent == progressInPercent
+                && Objects.equals(this.currentLocation, currentLocation)) {
+            return false;
+        }
+        this.orderStatus = orderStatus;
+        this.progressInPercent = progressInPercent;
+        this.currentLocation = currentLocation;
+        this.revision++;
+        return true;
+    }
+
+    /**
+     * Return the ETag of the row, which changes whenever the row changes.
+     *
+     * @return the ETag of the row as a quoted String, or null if the row was never stored.
+     */
+    public String getETag() {
+        return this.revision == 0 ? null : "\"" + this.orderId + "-" + this.revision + "\"";
+    }
+
+    @Override
+    public Integer getId() {
+        return this.orderId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return this.newRow;
+    }
+
+    /**
+     * Marks the row as stored once it is inserted or loaded.
+     */
+    @PostPersist
+    @PostLoad
+    void markStored() {
+        this.newRow = false;
+    }
+}
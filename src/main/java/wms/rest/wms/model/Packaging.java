@@ -36,7 +36,8 @@ public class Packaging {
 
     @JsonIgnore
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "packaging_seq")
+    @SequenceGenerator(name = "packaging_seq", sequenceName = "packaging_seq", allocationSize = 50)
     @Column(name = "packaging_id", nullable = false)
     private int packagingId;
 
@@ -0,0 +1,42 @@
+package wms.rest.wms.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Class represents a lease on a scheduled job, or on one partition of a job, shared by every instance of the
+ * application through the database. Only the owner of an unexpired lease runs the job. The fencing token grows
+ * every time the lease is acquired, so writes made under a lease that has since been taken over can be rejected.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "scheduler_lease")
+public class SchedulerLease {
+
+    @Id
+    @Column(name = "lease_name", length = 100, nullable = false)
+    private String leaseName;
+
+    @Column(name = "lease_owner", length = 100, nullable = false)
+    private String owner;
+
+    @Column(name = "fencing_token", nullable = false)
+    private long fencingToken;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
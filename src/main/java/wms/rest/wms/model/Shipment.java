@@ -18,6 +18,9 @@ import java.util.Set;
  * Class represents a Shipping entity within the warehouse management system, detailing the specific attributes of
  * each shipment, including its load and unload points, associated trip and the orders associated
  * with the shipment. One shipment can consist of several orders.
+ * The Trip and the Orders are loaded lazily, and each use case names the associations it needs in an entity graph:
+ * 'Shipment.scheduler' for the scheduled jobs that check the Orders, and 'Shipment.adminList' for the list of
+ * every Shipment.
  *
  * @author Mikkel Stavelie.
  * @version 1.0.
@@ -29,10 +32,15 @@ import java.util.Set;
 @Setter
 @Entity
 @Table(name = "shipment")
+@NamedEntityGraph(name = "Shipment.scheduler", attributeNodes = @NamedAttributeNode("orders"))
+@NamedEntityGraph(name = "Shipment.adminList", attributeNodes = {
+        @NamedAttributeNode("trip"), @NamedAttributeNode("orders")
+})
 public class Shipment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "shipment_seq")
+    @SequenceGenerator(name = "shipment_seq", sequenceName = "shipment_seq", allocationSize = 50)
     @Column(name = "shipment_id", nullable = false)
     private int shipmentId;
 
@@ -51,10 +59,10 @@ public class Shipment {
     private LocalDate shipmentDeliveryDate;
 
     @JsonBackReference
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "trip_id")
     private Trip trip;
 
-    @OneToMany(mappedBy = "shipment", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "shipment", cascade = CascadeType.ALL)
     private Set<Order> orders = new LinkedHashSet<>();
 }
\ No newline at end of file
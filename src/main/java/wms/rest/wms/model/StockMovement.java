@@ -0,0 +1,65 @@
+package wms.rest.wms.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Class represents an entry in the append-only stock ledger. An entry records by how much the total, reserved and
+ * available stock of a Product moved, why and when. Entries are only ever inserted, never updated or deleted, so
+ * the stock of a Product at any time is the sum of its entries up to that time, as long as its Inventory is only
+ * changed through the services recording them.
+ * <p>
+ * The Product is referred to by ID rather than by a foreign key, so the history of a Product outlives it.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Immutable
+@Entity
+@Table(name = "stock_movement", indexes = {
+        @Index(name = "idx_stock_movement_product_created", columnList = "product_id, created_at"),
+        @Index(name = "idx_stock_movement_created", columnList = "created_at")
+})
+public class StockMovement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_movement_seq")
+    @SequenceGenerator(name = "stock_movement_seq", sequenceName = "stock_movement_seq", allocationSize = 50)
+    @Column(name = "stock_movement_id", nullable = false)
+    private long stockMovementId;
+
+    @Column(name = "product_id", nullable = false)
+    private int productId;
+
+    @NotNull(message = "Movement type is mandatory")
+    @Column(name = "movement_type", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private StockMovementType movementType;
+
+    @Column(name = "total_delta", nullable = false)
+    private int totalDelta;
+
+    @Column(name = "reserved_delta", nullable = false)
+    private int reservedDelta;
+
+    @Column(name = "available_delta", nullable = false)
+    private int availableDelta;
+
+    /** The shipmentId of a PICK, null for the other movements */
+    @Column(name = "reference_id")
+    private Integer referenceId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
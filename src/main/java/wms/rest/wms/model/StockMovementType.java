@@ -0,0 +1,26 @@
+package wms.rest.wms.model;
+
+/**
+ * Represents the kinds of entries in the stock ledger. Each names what moved the stock of a Product,
+ * and the StockMovement holds by how much.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+public enum StockMovementType {
+
+    /** Stock was received into the warehouse, such as the initial stock of a new Product */
+    RECEIPT,
+
+    /** Available stock was reserved for an Order */
+    RESERVATION,
+
+    /** Reserved stock was given back to available stock, such as for an Order that could not be created */
+    RELEASE,
+
+    /** Reserved stock was picked for a Shipment and left the warehouse */
+    PICK,
+
+    /** Stock was corrected by hand, or recorded as the opening balance of a Product from before the ledger */
+    ADJUSTMENT
+}
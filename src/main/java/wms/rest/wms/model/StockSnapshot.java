@@ -0,0 +1,53 @@
+package wms.rest.wms.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Class represents the stock of a Product folded from the stock ledger. A snapshot holds the sum of every
+ * StockMovement of the Product created before takenUntil, so the stock at a later time only needs the movements
+ * since. A Product gets a new snapshot every time the ledger is compacted after it moved, and the earlier
+ * snapshots are kept for the stock at earlier times. A snapshot is corrected by a later compaction if a movement
+ * created before takenUntil committed after it was taken.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "stock_snapshot", indexes = {
+        @Index(name = "idx_stock_snapshot_product_taken", columnList = "product_id, taken_until", unique = true),
+        @Index(name = "idx_stock_snapshot_taken", columnList = "taken_until")
+})
+public class StockSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_snapshot_seq")
+    @SequenceGenerator(name = "stock_snapshot_seq", sequenceName = "stock_snapshot_seq", allocationSize = 50)
+    @Column(name = "stock_snapshot_id", nullable = false)
+    private long stockSnapshotId;
+
+    @Column(name = "product_id", nullable = false)
+    private int productId;
+
+    /** Every movement created before this time, and none after, is folded into the snapshot */
+    @Column(name = "taken_until", nullable = false)
+    private LocalDateTime takenUntil;
+
+    @Column(name = "total_stock", nullable = false)
+    private int totalStock;
+
+    @Column(name = "reserved_stock", nullable = false)
+    private int reservedStock;
+
+    @Column(name = "available_stock", nullable = false)
+    private int availableStock;
+}
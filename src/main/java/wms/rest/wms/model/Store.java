@@ -9,6 +9,8 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.LinkedHashSet;
 import java.util.Set;
@@ -27,11 +29,14 @@ import java.util.Set;
 @Getter
 @Setter
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "store")
 @Table(name = "store")
 public class Store {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "store_seq")
+    @SequenceGenerator(name = "store_seq", sequenceName = "store_seq", allocationSize = 50)
     @Column(name = "store_id", nullable = false)
     @JsonProperty
     private int storeId;
@@ -53,6 +58,7 @@ public class Store {
     private int postalCode;
 
     @JsonIgnore
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "store-customers")
     @OneToMany(mappedBy = "store", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<Customer> customers = new LinkedHashSet<>();
 }
\ No newline at end of file
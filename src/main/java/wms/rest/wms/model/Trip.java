@@ -18,7 +18,10 @@ import java.util.*;
 /**
  * Class represents a Trip within the warehouse management system, encapsulating the details about each trip,
  * including status, start and end locations, dates, driver information and associated shipments. One trip
- * can contain many shipments to several locations.
+ * can contain many shipments to several locations. The Driver and Vehicle are reserved for the Trip from its start
+ * date until its end date.
+ * The Shipments are loaded lazily, and each use case names the associations it needs in an entity graph:
+ * 'Trip.adminList' for the list of every Trip, and 'Trip.delivery' for delivering the Shipments to their Stores.
  *
  * @author Mikkel Stavelie.
  * @version 1.0.
@@ -30,10 +33,17 @@ import java.util.*;
 @Setter
 @Entity
 @Table(name = "trip")
+@NamedEntityGraph(name = "Trip.adminList", attributeNodes = @NamedAttributeNode("shipments"))
+@NamedEntityGraph(name = "Trip.delivery", attributeNodes = @NamedAttributeNode(value = "shipments", subgraph = "shipments"),
+        subgraphs = {
+                @NamedSubgraph(name = "shipments", attributeNodes = @NamedAttributeNode(value = "orders", subgraph = "orders")),
+                @NamedSubgraph(name = "orders", attributeNodes = @NamedAttributeNode("store"))
+        })
 public class Trip {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trip_seq")
+    @SequenceGenerator(name = "trip_seq", sequenceName = "trip_seq", allocationSize = 50)
     @Column(name = "trip_id", nullable = false)
     private int tripId;
 
@@ -69,6 +79,24 @@ public class Trip {
     @Column(name = "phone")
     private int tripDriverPhone;
 
+    @Column(name = "temperature_class")
+    @Enumerated(EnumType.STRING)
+    private ProductType tripTemperatureClass;
+
+    @Column(name = "load_weight_in_grams")
+    private double tripLoadWeightInGrams;
+
+    @Column(name = "load_volume_cm_3")
+    private double tripLoadVolumeInCm3;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "driver_id")
+    private Driver driver;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "vehicle_id")
+    private Vehicle vehicle;
+
     @JsonManagedReference
     @OneToMany(mappedBy = "trip")
     private Set<Shipment> shipments = new LinkedHashSet<>();
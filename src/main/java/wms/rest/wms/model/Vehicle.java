@@ -0,0 +1,43 @@
+package wms.rest.wms.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Class represents a Vehicle in the registry the Trips are assigned vehicles from. A Vehicle only carries Trips of
+ * its temperature class, and is reserved with a FleetReservation for the dates each Trip keeps it on the road.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "vehicle")
+public class Vehicle {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "vehicle_seq")
+    @SequenceGenerator(name = "vehicle_seq", sequenceName = "vehicle_seq", allocationSize = 50)
+    @Column(name = "vehicle_id", nullable = false)
+    private int vehicleId;
+
+    @NotBlank(message = "Registration number is mandatory")
+    @Column(name = "registration_number", nullable = false, unique = true)
+    private String registrationNumber;
+
+    @NotNull(message = "Temperature class is mandatory")
+    @Column(name = "temperature_class", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private ProductType temperatureClass;
+
+    @Column(name = "active", nullable = false)
+    private boolean active = true;
+}
@@ -0,0 +1,52 @@
+package wms.rest.wms.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Class represents an item in the persistent scheduler work queue. An item records that the entity with the
+ * given ID went through the status transition named by the topic, and is removed once the scheduler
+ * reacting to the topic has processed it. The scheduler only sees the item once it is available, so work can be
+ * recorded ahead of the time it is due, such as a Trip loaded for a later start date.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "work_queue", indexes = {
+        @Index(name = "idx_work_queue_topic", columnList = "topic, work_queue_item_id"),
+        @Index(name = "idx_work_queue_available", columnList = "topic, available_at")
+})
+public class WorkQueueItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "work_queue_seq")
+    @SequenceGenerator(name = "work_queue_seq", sequenceName = "work_queue_seq", allocationSize = 50)
+    @Column(name = "work_queue_item_id", nullable = false)
+    private long workQueueItemId;
+
+    @NotNull(message = "Topic is mandatory")
+    @Column(name = "topic", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private WorkQueueTopic topic;
+
+    @Column(name = "entity_id", nullable = false)
+    private int entityId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    /** When the item becomes available to the scheduler, items recorded before the column existed are null */
+    @Column(name = "available_at")
+    private LocalDateTime availableAt;
+}
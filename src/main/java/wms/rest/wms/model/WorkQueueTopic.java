@@ -0,0 +1,23 @@
+package wms.rest.wms.model;
+
+/**
+ * Represents the topics of the scheduler work queue. Each topic names a status transition that has happened,
+ * and the scheduler that reacts to it consumes the recorded IDs instead of sweeping the whole table.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+public enum WorkQueueTopic {
+
+    /** A Shipment was created and its Orders are PICKING. Holds shipmentIds */
+    SHIPMENT_PICKING,
+
+    /** All Orders of a Shipment are PICKED and the Shipment is ready for a Trip. Holds shipmentIds */
+    SHIPMENT_PICKED,
+
+    /** A Trip was created with the TripStatus LOADING. Holds tripIds */
+    TRIP_LOADING,
+
+    /** A Trip changed TripStatus to DEPARTED. Holds tripIds */
+    TRIP_DEPARTED
+}
@@ -0,0 +1,28 @@
+package wms.rest.wms.repository;
+
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.stereotype.Repository;
+import wms.rest.wms.model.Driver;
+
+import java.util.List;
+
+/**
+ * Repository interface for managing Driver entities in the database.
+ * Provides CRUD operations for the registry of Drivers the Trips are assigned.
+ * The registry is administered through the FleetAdminController, so it is not exported by Spring Data REST.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Repository
+@RepositoryRestResource(exported = false)
+public interface DriverRepository extends ListCrudRepository<Driver, Integer> {
+
+    /**
+     * Retrieves every Driver that is taking Trips.
+     *
+     * @return a List of the active Drivers.
+     */
+    List<Driver> findByActiveTrue();
+}
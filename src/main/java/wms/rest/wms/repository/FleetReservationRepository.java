@@ -0,0 +1,41 @@
+package wms.rest.wms.repository;
+
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.stereotype.Repository;
+import wms.rest.wms.model.FleetReservation;
+import wms.rest.wms.model.FleetResourceType;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Repository interface for reading the FleetReservations of the Drivers and Vehicles. The reservations are made and
+ * given back by the FleetAllocator with conditional statements, so the repository is not exported by Spring Data
+ * REST.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Repository
+@RepositoryRestResource(exported = false)
+public interface FleetReservationRepository extends ListCrudRepository<FleetReservation, Long> {
+
+    /**
+     * Retrieves every reservation that has not ended before a date.
+     *
+     * @param date the date.
+     * @return a List of the reservations ending on or after the date.
+     */
+    List<FleetReservation> findByReservedUntilGreaterThanEqual(LocalDate date);
+
+    /**
+     * Retrieves the reservations of a Driver or Vehicle, earliest first.
+     *
+     * @param resourceType whether the resource is a Driver or a Vehicle.
+     * @param resourceId the ID of the Driver or Vehicle.
+     * @return a List of the reservations ordered by the date they start.
+     */
+    List<FleetReservation> findByResourceTypeAndResourceIdOrderByReservedFromAsc(FleetResourceType resourceType,
+                                                                                  int resourceId);
+}
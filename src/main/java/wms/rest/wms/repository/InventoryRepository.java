@@ -1,16 +1,95 @@
 package wms.rest.wms.repository;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.stereotype.Repository;
 import wms.rest.wms.model.Inventory;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Repository interface for managing Inventory entities in the database.
- * Provides CRUD operations for retrieving Inventory entities.
+ * Provides CRUD operations and atomic stock updates for Inventory entities. Every change of the stock has to be
+ * recorded in the stock ledger, so the repository is not exported by Spring Data REST, and the stock is only
+ * changed through the services recording it.
  *
  * @author Mikkel Stavelie.
  * @version 1.0.
  */
 @Repository
+@RepositoryRestResource(exported = false)
 public interface InventoryRepository extends ListCrudRepository<Inventory, Integer> {
+
+    /**
+     * Projection of the stock columns of an Inventory.
+     */
+    interface StockLevel {
+
+        /** @return the productId of the Product the Inventory belongs to. */
+        int getProductId();
+
+        /** @return the inventoryId of the Inventory. */
+        int getInventoryId();
+
+        /** @return the total stock. */
+        int getTotalStock();
+
+        /** @return the reserved stock. */
+        int getReservedStock();
+
+        /** @return the available stock. */
+        int getAvailableStock();
+    }
+
+    /**
+     * Retrieves the stock of the Products with the specified productIds, without loading the Inventories.
+     *
+     * @param productIds the productIds of the Products.
+     * @return a List of StockLevel projections, one per Product that has an Inventory.
+     */
+    @Query("SELECT i.product.productId AS productId, i.inventoryId AS inventoryId, i.totalStock AS totalStock, " +
+            "i.reservedStock AS reservedStock, i.availableStock AS availableStock " +
+            "FROM Inventory i WHERE i.product.productId IN :productIds")
+    List<StockLevel> findStockLevelsByProductIdIn(@Param("productIds") Collection<Integer> productIds);
+
+    /**
+     * Retrieves the stock of the Products that have no entry in the stock ledger, such as Products from before
+     * the ledger was introduced, without loading the Inventories.
+     *
+     * @return a List of StockLevel projections, one per Inventory of a Product without StockMovements.
+     */
+    @Query("SELECT i.product.productId AS productId, i.inventoryId AS inventoryId, i.totalStock AS totalStock, " +
+            "i.reservedStock AS reservedStock, i.availableStock AS availableStock FROM Inventory i " +
+            "WHERE NOT EXISTS (SELECT 1 FROM StockMovement m WHERE m.productId = i.product.productId)")
+    List<StockLevel> findStockLevelsWithoutStockMovements();
+
+    /**
+     * Moves a quantity of a Product from available stock to reserved stock in one conditional statement.
+     * The row is only updated if the available stock covers the quantity, so concurrent reservations
+     * can never oversell.
+     *
+     * @param productId the productId of the Product to reserve.
+     * @param quantity the quantity to reserve.
+     * @return 1 if the quantity was reserved, 0 if the Product does not exist or has too little available stock.
+     */
+    @Modifying
+    @Query("UPDATE Inventory i SET i.reservedStock = i.reservedStock + :quantity, i.availableStock = i.availableStock - :quantity " +
+            "WHERE i.product.productId = :productId AND i.availableStock >= :quantity")
+    int reserveStock(@Param("productId") int productId, @Param("quantity") int quantity);
+
+    /**
+     * Moves a quantity of a Product from reserved stock back to available stock in one conditional statement.
+     *
+     * @param productId the productId of the Product to release.
+     * @param quantity the quantity to release.
+     * @return 1 if the quantity was released, 0 if the Product does not exist or has too little reserved stock.
+     */
+    @Modifying
+    @Query("UPDATE Inventory i SET i.reservedStock = i.reservedStock - :quantity, i.availableStock = i.availableStock + :quantity " +
+            "WHERE i.product.productId = :productId AND i.reservedStock >= :quantity")
+    int releaseStock(@Param("productId") int productId, @Param("quantity") int quantity);
 }
@@ -0,0 +1,73 @@
+package wms.rest.wms.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.stereotype.Repository;
+import wms.rest.wms.model.OrderNotification;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository interface for managing OrderNotification entities in the database.
+ * Provides CRUD operations and custom queries for draining the order notification outbox.
+ * The outbox is only written with the Orders and drained by the relay, so it is not exported by Spring Data REST.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Repository
+@RepositoryRestResource(exported = false)
+public interface OrderNotificationRepository extends ListCrudRepository<OrderNotification, Long> {
+
+    /**
+     * Retrieves the oldest OrderNotifications in the outbox waiting to be relayed, which are those never relayed or
+     * put back, and those relayed before a time without an answer, that have attempts left.
+     *
+     * @param relayedBefore rows relayed before this time are relayed again.
+     * @param maxAttempts rows relayed this many times are left in the outbox.
+     * @param pageable the maximum number of rows to retrieve.
+     * @return a List of OrderNotifications in the order they were written.
+     */
+    @Query("SELECT n FROM OrderNotification n WHERE (n.relayedAt IS NULL OR n.relayedAt < :relayedBefore) " +
+            "AND n.relayAttempts < :maxAttempts ORDER BY n.orderNotificationId")
+    List<OrderNotification> findPending(@Param("relayedBefore") LocalDateTime relayedBefore,
+                                        @Param("maxAttempts") int maxAttempts, Pageable pageable);
+
+    /**
+     * Marks the OrderNotifications with the specified IDs relayed at a time, in one statement.
+     *
+     * @param ids the orderNotificationIds of the rows handed to the notification pipeline.
+     * @param relayedAt the time they were handed over.
+     * @return the number of marked rows.
+     */
+    @Modifying
+    @Query("UPDATE OrderNotification n SET n.relayedAt = :relayedAt, n.relayAttempts = n.relayAttempts + 1 " +
+            "WHERE n.orderNotificationId IN :ids")
+    int markRelayed(@Param("ids") Collection<Long> ids, @Param("relayedAt") LocalDateTime relayedAt);
+
+    /**
+     * Puts the OrderNotifications with the specified IDs back to be relayed, in one statement.
+     *
+     * @param ids the orderNotificationIds of the rows whose notifications FAILED.
+     * @return the number of rows put back.
+     */
+    @Modifying
+    @Query("UPDATE OrderNotification n SET n.relayedAt = NULL WHERE n.orderNotificationId IN :ids")
+    int putBack(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Deletes the OrderNotifications with the specified IDs in one statement.
+     *
+     * @param ids the orderNotificationIds of the rows to delete.
+     * @return the number of deleted rows.
+     */
+    @Modifying
+    @Query("DELETE FROM OrderNotification n WHERE n.orderNotificationId IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
@@ -1,10 +1,19 @@
 package wms.rest.wms.repository;
 
+import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import wms.rest.wms.model.Order;
 import wms.rest.wms.model.Customer;
+import wms.rest.wms.model.OrderStatus;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,10 +28,223 @@ import java.util.Optional;
 public interface OrderRepository extends ListCrudRepository<Order, Integer> {
 
     /**
-     * Retrieves a List of Orders associated to a specific Customer.
+     * Projection of a group of Orders sharing the same Store and wished delivery date.
+     */
+    interface StoreDeliveryGroup {
+
+        /** @return the storeId of the Store the Orders belong to. */
+        int getStoreId();
+
+        /** @return the name of the Store the Orders belong to. */
+        String getStoreName();
+
+        /** @return the wished delivery date shared by the Orders. */
+        LocalDate getWishedDeliveryDate();
+
+        /** @return the number of Orders in the group. */
+        long getOrderCount();
+    }
+
+    /**
+     * Projection of an Order and the Customer who placed it.
+     */
+    interface OrderCustomer {
+
+        /** @return the orderId of the Order. */
+        int getOrderId();
+
+        /** @return the customerId of the Customer who placed the Order. */
+        int getCustomerId();
+    }
+
+    /**
+     * Projection of the columns of an Order, its Shipment and its Trip that make up the tracking read model.
+     */
+    interface TrackingSource {
+
+        /** @return the orderId of the Order. */
+        int getOrderId();
+
+        /** @return the customerId of the Customer who placed the Order, or null if it has no Customer. */
+        Integer getCustomerId();
+
+        /** @return the OrderStatus of the Order. */
+        OrderStatus getOrderStatus();
+
+        /** @return the progressInPercent of the Order. */
+        int getProgressInPercent();
+
+        /** @return the tripId of the Trip carrying the Order, or null if it is not on a Trip. */
+        Integer getTripId();
+
+        /** @return the current location of the Trip carrying the Order, or null if it is not on a Trip. */
+        String getTripCurrentLocation();
+
+        /** @return the unload location of the Shipment of the Order, or null if it is not on a Shipment. */
+        String getShipmentUnloadLocation();
+    }
+
+    /**
+     * Retrieves a List of Orders associated to a specific Customer, together with everything the Customer
+     * sees when tracking them, in one statement.
      *
      * @param customer the Customer whose Orders are to be retrieved.
      * @return a List of Orders associated with the specific Customer.
      */
+    @EntityGraph("Order.tracking")
     List<Order> findByCustomer(Customer customer);
+
+    /**
+     * Retrieves an Order together with everything the Customer sees when tracking it, in one statement.
+     *
+     * @param orderId the orderId of the Order to retrieve.
+     * @return an Optional of the Order, empty if there is no such Order.
+     */
+    @EntityGraph("Order.tracking")
+    Optional<Order> findTrackingByOrderId(int orderId);
+
+    /**
+     * Retrieves every (Store, wishedDeliveryDate) group of Orders with the specified OrderStatus that the cutoffs
+     * passed so far have released. Only the grouping keys and the size of each group are loaded, the Orders
+     * themselves are not.
+     *
+     * @param orderStatus the OrderStatus of the Orders to group.
+     * @param deliveryDatesUntil Orders wished delivered on or before this date are released.
+     * @param undatedPlacedUntil Orders without a wished delivery date placed on or before this date are released.
+     * @return a List of groups ordered by storeId and wished delivery date.
+     */
+    @Query("SELECT s.storeId AS storeId, s.name AS storeName, o.wishedDeliveryDate AS wishedDeliveryDate, COUNT(o) AS orderCount " +
+            "FROM Order o JOIN o.store s WHERE o.orderStatus = :orderStatus AND (o.wishedDeliveryDate <= :deliveryDatesUntil " +
+            "OR (o.wishedDeliveryDate IS NULL AND (o.orderDate IS NULL OR o.orderDate <= :undatedPlacedUntil))) " +
+            "GROUP BY s.storeId, s.name, o.wishedDeliveryDate ORDER BY s.storeId, o.wishedDeliveryDate")
+    List<StoreDeliveryGroup> findReleasedGroupsByOrderStatus(@Param("orderStatus") OrderStatus orderStatus,
+                                                             @Param("deliveryDatesUntil") LocalDate deliveryDatesUntil,
+                                                             @Param("undatedPlacedUntil") LocalDate undatedPlacedUntil);
+
+    /**
+     * Retrieves the orderIds of Orders of a Store with the specified OrderStatus that the cutoffs passed so far have
+     * released, without grouping them. Used with a page of one to check cheaply if there are any.
+     *
+     * @param orderStatus the OrderStatus of the Orders.
+     * @param deliveryDatesUntil Orders wished delivered on or before this date are released.
+     * @param undatedPlacedUntil Orders without a wished delivery date placed on or before this date are released.
+     * @param pageable the maximum number of orderIds to retrieve.
+     * @return a List of orderIds.
+     */
+    @Query("SELECT o.orderId FROM Order o WHERE o.orderStatus = :orderStatus AND o.store IS NOT NULL " +
+            "AND (o.wishedDeliveryDate <= :deliveryDatesUntil " +
+            "OR (o.wishedDeliveryDate IS NULL AND (o.orderDate IS NULL OR o.orderDate <= :undatedPlacedUntil)))")
+    List<Integer> findReleasedIdsByOrderStatus(@Param("orderStatus") OrderStatus orderStatus,
+                                               @Param("deliveryDatesUntil") LocalDate deliveryDatesUntil,
+                                               @Param("undatedPlacedUntil") LocalDate undatedPlacedUntil,
+                                               Pageable pageable);
+
+    /**
+     * Retrieves the next chunk of orderIds in a (Store, wishedDeliveryDate) group, ordered by orderId.
+     *
+     * @param orderStatus the OrderStatus of the Orders to retrieve.
+     * @param storeId the storeId of the Store the Orders belong to.
+     * @param wishedDeliveryDate the wished delivery date of the Orders.
+     * @param afterOrderId only orderIds greater than this value are returned.
+     * @param pageable the size of the chunk to retrieve.
+     * @return a List of orderIds in ascending order.
+     */
+    @Query("SELECT o.orderId FROM Order o WHERE o.orderStatus = :orderStatus AND o.store.storeId = :storeId " +
+            "AND o.wishedDeliveryDate = :wishedDeliveryDate AND o.orderId > :afterOrderId ORDER BY o.orderId")
+    List<Integer> findIdsInGroup(@Param("orderStatus") OrderStatus orderStatus, @Param("storeId") int storeId,
+                                 @Param("wishedDeliveryDate") LocalDate wishedDeliveryDate,
+                                 @Param("afterOrderId") int afterOrderId, Pageable pageable);
+
+    /**
+     * Retrieves the next chunk of orderIds in a Store group without a wished delivery date placed on or before a
+     * date, ordered by orderId.
+     *
+     * @param orderStatus the OrderStatus of the Orders to retrieve.
+     * @param storeId the storeId of the Store the Orders belong to.
+     * @param placedUntil only Orders placed on or before this date, or without an order date, are returned.
+     * @param afterOrderId only orderIds greater than this value are returned.
+     * @param pageable the size of the chunk to retrieve.
+     * @return a List of orderIds in ascending order.
+     */
+    @Query("SELECT o.orderId FROM Order o WHERE o.orderStatus = :orderStatus AND o.store.storeId = :storeId " +
+            "AND o.wishedDeliveryDate IS NULL AND (o.orderDate IS NULL OR o.orderDate <= :placedUntil) " +
+            "AND o.orderId > :afterOrderId ORDER BY o.orderId")
+    List<Integer> findIdsInGroupWithoutDeliveryDate(@Param("orderStatus") OrderStatus orderStatus, @Param("storeId") int storeId,
+                                                    @Param("placedUntil") LocalDate placedUntil,
+                                                    @Param("afterOrderId") int afterOrderId, Pageable pageable);
+
+    /**
+     * Retrieves the customerId of the Customer who placed each of the specified Orders.
+     * Orders without a Customer are left out.
+     *
+     * @param orderIds the orderIds of the Orders.
+     * @return a List of OrderCustomer projections.
+     */
+    @Query("SELECT o.orderId AS orderId, c.customerId AS customerId FROM Order o JOIN o.customer c WHERE o.orderId IN :orderIds")
+    List<OrderCustomer> findCustomersByOrderIds(@Param("orderIds") Collection<Integer> orderIds);
+
+    /**
+     * Retrieves the tracking read model columns of the specified Orders.
+     *
+     * @param orderIds the orderIds of the Orders.
+     * @return a List of TrackingSource projections.
+     */
+    @Query("SELECT o.orderId AS orderId, o.customer.customerId AS customerId, o.orderStatus AS orderStatus, " +
+            "o.progressInPercent AS progressInPercent, t.tripId AS tripId, t.tripCurrentLocation AS tripCurrentLocation, " +
+            "s.shipmentUnloadLocation AS shipmentUnloadLocation " +
+            "FROM Order o LEFT JOIN o.shipment s LEFT JOIN s.trip t WHERE o.orderId IN :orderIds")
+    List<TrackingSource> findTrackingSourcesByOrderIds(@Param("orderIds") Collection<Integer> orderIds);
+
+    /**
+     * Retrieves the tracking read model columns of all Orders in Shipments assigned to the specified Trips.
+     *
+     * @param tripIds the tripIds of the Trips.
+     * @return a List of TrackingSource projections.
+     */
+    @Query("SELECT o.orderId AS orderId, o.customer.customerId AS customerId, o.orderStatus AS orderStatus, " +
+            "o.progressInPercent AS progressInPercent, t.tripId AS tripId, t.tripCurrentLocation AS tripCurrentLocation, " +
+            "s.shipmentUnloadLocation AS shipmentUnloadLocation " +
+            "FROM Order o JOIN o.shipment s JOIN s.trip t WHERE t.tripId IN :tripIds")
+    List<TrackingSource> findTrackingSourcesByTripIds(@Param("tripIds") Collection<Integer> tripIds);
+
+    /**
+     * Retrieves the orderIds of all Orders in Shipments assigned to the specified Trips.
+     *
+     * @param tripIds the tripIds of the Trips.
+     * @return a List of orderIds in ascending order.
+     */
+    @Query("SELECT o.orderId FROM Order o WHERE o.shipment.trip.tripId IN :tripIds ORDER BY o.orderId")
+    List<Integer> findIdsByTripIds(@Param("tripIds") Collection<Integer> tripIds);
+
+    /**
+     * Sets the progressInPercent of all Orders in Shipments assigned to the specified Trips in one statement.
+     *
+     * @param tripIds the tripIds of the Trips.
+     * @param progressInPercent the progressInPercent to set.
+     * @return the number of updated Orders.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.progressInPercent = :progressInPercent WHERE o.shipment.shipmentId IN " +
+            "(SELECT s.shipmentId FROM Shipment s WHERE s.trip.tripId IN :tripIds)")
+    int updateProgressByTripIds(@Param("tripIds") Collection<Integer> tripIds, @Param("progressInPercent") int progressInPercent);
+
+    /**
+     * Sets the progressInPercent of all Orders in Shipments assigned to the specified Trips in bulk, and
+     * returns the orderIds that were updated so that the rest of the system can react to the change.
+     *
+     * @param tripIds the tripIds of the Trips.
+     * @param progressInPercent the progressInPercent to set.
+     * @return a List of the orderIds that were updated.
+     */
+    @Transactional
+    default List<Integer> transitionProgressForTrips(Collection<Integer> tripIds, int progressInPercent) {
+        if (tripIds.isEmpty()) {
+            return List.of();
+        }
+        List<Integer> affected = findIdsByTripIds(tripIds);
+        if (!affected.isEmpty()) {
+            updateProgressByTripIds(tripIds, progressInPercent);
+        }
+        return affected;
+    }
 }
@@ -0,0 +1,52 @@
+package wms.rest.wms.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.stereotype.Repository;
+import wms.rest.wms.model.OrderTracking;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository interface for managing OrderTracking entities in the database.
+ * Provides CRUD operations and custom queries for maintaining the order tracking read model.
+ * The read model is only kept up to date by the OrderTrackingService and read through the OrderController, so it is
+ * not exported by Spring Data REST.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Repository
+@RepositoryRestResource(exported = false)
+public interface OrderTrackingRepository extends ListCrudRepository<OrderTracking, Integer> {
+
+    /**
+     * Retrieves the orderIds of Orders that have no tracking row yet, such as Orders placed before the
+     * tracking read model existed.
+     *
+     * @param pageable the maximum number of orderIds to retrieve.
+     * @return a List of orderIds in ascending order.
+     */
+    @Query("SELECT o.orderId FROM Order o WHERE NOT EXISTS " +
+            "(SELECT t.orderId FROM OrderTracking t WHERE t.orderId = o.orderId) ORDER BY o.orderId")
+    List<Integer> findUntrackedOrderIds(Pageable pageable);
+
+    /**
+     * Retrieves the tracking rows of every Order placed by a Customer.
+     *
+     * @param customerId the customerId of the Customer.
+     * @return a List of OrderTracking rows.
+     */
+    List<OrderTracking> findByCustomerId(int customerId);
+
+    /**
+     * Retrieves the tracking rows of every Order of several Customers.
+     *
+     * @param customerIds the customerIds of the Customers.
+     * @return a List of the tracking rows of the Customers.
+     */
+    List<OrderTracking> findByCustomerIdIn(Collection<Integer> customerIds);
+}
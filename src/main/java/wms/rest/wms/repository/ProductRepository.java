@@ -1,22 +1,48 @@
 package wms.rest.wms.repository;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.stereotype.Repository;
 import wms.rest.wms.model.Product;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Repository interface for managing Product entities in the database.
- * Provides CRUD operations and custom queries for retrieving Product entities.
+ * Provides CRUD operations and custom queries for retrieving Product entities. The Products are changed through
+ * ProductService, which keeps the stock ledger, the caches and the search index up to date, so the repository is
+ * not exported by Spring Data REST.
  *
  * @author Mikkel Stavelie.
  * @version 1.0.
  */
 @Repository
+@RepositoryRestResource(exported = false)
 public interface ProductRepository extends ListCrudRepository<Product, Integer> {
 
+    /**
+     * Projection of the fields of a Product the search index is built from.
+     */
+    interface ProductSearchFields {
+
+        /** @return the productId of the Product. */
+        int getProductId();
+
+        /** @return the name of the Product. */
+        String getName();
+
+        /** @return the supplier of the Product. */
+        String getSupplier();
+
+        /** @return the description of the Product. */
+        String getDescription();
+    }
+
     /**
      * Retrieves a List of Products whose name contains the specified String.
      *
@@ -32,4 +58,48 @@ public interface ProductRepository extends ListCrudRepository<Product, Integer>
      * @return an Optional object containing the Product with the specified GTIN, can be present or not.
      */
     Optional<Product> findByGtin(int gtin);
-}
\ No newline at end of file
+
+    /**
+     * Retrieves the next page of Products after a productId, ordered by productId, together with their
+     * Inventory and Packaging in the same statement. The page is found through the primary key index
+     * however deep into the catalog it is, unlike an OFFSET.
+     *
+     * @param afterProductId only Products with a productId greater than this value are returned.
+     * @param pageable the size of the page to retrieve.
+     * @return a List of Products in ascending productId order.
+     */
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.inventory LEFT JOIN FETCH p.packaging " +
+            "WHERE p.productId > :afterProductId ORDER BY p.productId")
+    List<Product> findPageAfter(@Param("afterProductId") int afterProductId, Pageable pageable);
+
+    /**
+     * Retrieves the searchable fields of the next page of Products after a productId, ordered by productId,
+     * without loading the Products themselves.
+     *
+     * @param afterProductId only Products with a productId greater than this value are returned.
+     * @param pageable the size of the page to retrieve.
+     * @return a List of ProductSearchFields projections in ascending productId order.
+     */
+    @Query("SELECT p.productId AS productId, p.name AS name, p.supplier AS supplier, p.description AS description " +
+            "FROM Product p WHERE p.productId > :afterProductId ORDER BY p.productId")
+    List<ProductSearchFields> findSearchFieldsAfter(@Param("afterProductId") int afterProductId, Pageable pageable);
+
+    /**
+     * Retrieves the productId of every Product, ordered by productId, without loading the Products.
+     *
+     * @return a List of every productId in ascending order.
+     */
+    @Query("SELECT p.productId FROM Product p ORDER BY p.productId")
+    List<Integer> findAllProductIds();
+
+    /**
+     * Retrieves the Products with the specified productIds, together with their Inventory and Packaging
+     * in the same statement.
+     *
+     * @param productIds the productIds of the Products to retrieve.
+     * @return a List of the Products found, in no particular order.
+     */
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.inventory LEFT JOIN FETCH p.packaging " +
+            "WHERE p.productId IN :productIds")
+    List<Product> findAllWithDetailsByIdIn(@Param("productIds") Collection<Integer> productIds);
+}
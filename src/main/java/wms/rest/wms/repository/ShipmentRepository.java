@@ -1,9 +1,16 @@
 package wms.rest.wms.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.ListCrudRepository;
 import org.springframework.stereotype.Repository;
+import wms.rest.wms.model.ProductType;
 import wms.rest.wms.model.Shipment;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Repository interface for managing Order entities in the database.
  * Provides CRUD operations for retrieving Order entities.
@@ -13,4 +20,90 @@ import wms.rest.wms.model.Shipment;
  */
 @Repository
 public interface ShipmentRepository extends ListCrudRepository<Shipment, Integer> {
+
+    /**
+     * Projection of the packages of one ProductType on a Shipment.
+     */
+    interface ProductLoad {
+
+        /** @return the shipmentId of the Shipment. */
+        int getShipmentId();
+
+        /** @return the ProductType of the Products. */
+        ProductType getProductType();
+
+        /** @return the weight of the packages in grams, or null if none of the Products has a Packaging. */
+        Double getWeightInGrams();
+
+        /** @return the volume of the packages in cubic centimetres, or null if none of the Products has a Packaging. */
+        Double getVolumeInCm3();
+    }
+
+    /**
+     * Projection of the Store a Shipment is delivered to.
+     */
+    interface ShipmentStop {
+
+        /** @return the shipmentId of the Shipment. */
+        int getShipmentId();
+
+        /** @return the city of the Store. */
+        String getCity();
+
+        /** @return the postal code of the Store. */
+        int getPostalCode();
+    }
+
+    /**
+     * Saves a Shipment and flushes the pending changes at once, so the row exists for statements
+     * that do not go through the persistence context.
+     *
+     * @param shipment the Shipment to save.
+     * @return the saved Shipment.
+     * @param <S> the type of the Shipment.
+     */
+    <S extends Shipment> S saveAndFlush(S shipment);
+
+    /**
+     * Retrieves the Shipments with the specified IDs together with their Orders in one statement,
+     * for the scheduled jobs that check the OrderStatus of every Order on a Shipment.
+     *
+     * @param shipmentIds the shipmentIds of the Shipments to retrieve.
+     * @return a List of the Shipments with their Orders.
+     */
+    @EntityGraph("Shipment.scheduler")
+    List<Shipment> findWithOrdersByShipmentIdIn(Collection<Integer> shipmentIds);
+
+    /**
+     * Retrieves every Shipment together with its Trip and Orders in one statement, ordered by shipmentId.
+     *
+     * @return a List of every Shipment with its Trip and Orders.
+     */
+    @EntityGraph("Shipment.adminList")
+    @Query("SELECT s FROM Shipment s ORDER BY s.shipmentId")
+    List<Shipment> findAllForAdminList();
+
+    /**
+     * Retrieves the weight and volume of the packages on the Shipments with the specified IDs, per Shipment and
+     * ProductType, as the Packaging of each Product times the ordered quantity. Only the sums are loaded.
+     *
+     * @param shipmentIds the shipmentIds of the Shipments.
+     * @return a List of the loads, one for every ProductType on each Shipment that has Orders with quantities.
+     */
+    @Query("SELECT s.shipmentId AS shipmentId, p.productType AS productType, " +
+            "SUM(q.productQuantity * pk.weightInGrams) AS weightInGrams, SUM(q.productQuantity * pk.dimensionInCm3) AS volumeInCm3 " +
+            "FROM Shipment s JOIN s.orders o JOIN o.quantities q JOIN q.product p LEFT JOIN p.packaging pk " +
+            "WHERE s.shipmentId IN :shipmentIds GROUP BY s.shipmentId, p.productType")
+    List<ProductLoad> findProductLoadsByShipmentIdIn(@Param("shipmentIds") Collection<Integer> shipmentIds);
+
+    /**
+     * Retrieves the city and postal code of the Store each of the Shipments with the specified IDs is delivered to.
+     * Only the location is loaded, not the Orders or Stores.
+     *
+     * @param shipmentIds the shipmentIds of the Shipments.
+     * @return a List of the stops, one for every Shipment that has Orders.
+     */
+    @Query("SELECT DISTINCT s.shipmentId AS shipmentId, st.city AS city, st.postalCode AS postalCode " +
+            "FROM Shipment s JOIN s.orders o JOIN o.store st WHERE s.shipmentId IN :shipmentIds")
+    List<ShipmentStop> findStopsByShipmentIdIn(@Param("shipmentIds") Collection<Integer> shipmentIds);
 }
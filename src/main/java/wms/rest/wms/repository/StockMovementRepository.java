@@ -0,0 +1,97 @@
+package wms.rest.wms.repository;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.RepositoryDefinition;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.stereotype.Repository;
+import wms.rest.wms.model.StockMovement;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for the append-only stock ledger. It only inserts and reads StockMovements, and offers no
+ * update or delete, so the ledger cannot be rewritten through it. It is not exported by Spring Data REST for the
+ * same reason.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Repository
+@RepositoryDefinition(domainClass = StockMovement.class, idClass = Long.class)
+@RepositoryRestResource(exported = false)
+public interface StockMovementRepository {
+
+    /**
+     * Projection of the movements of a Product summed over a period.
+     */
+    interface StockDelta {
+
+        /** @return the productId of the Product. */
+        int getProductId();
+
+        /** @return the sum of the total stock deltas. */
+        long getTotalDelta();
+
+        /** @return the sum of the reserved stock deltas. */
+        long getReservedDelta();
+
+        /** @return the sum of the available stock deltas. */
+        long getAvailableDelta();
+    }
+
+    /**
+     * Appends a StockMovement to the ledger.
+     *
+     * @param movement the StockMovement to append.
+     * @return the appended StockMovement.
+     */
+    StockMovement save(StockMovement movement);
+
+    /**
+     * Appends several StockMovements to the ledger.
+     *
+     * @param movements the StockMovements to append.
+     * @return the appended StockMovements.
+     */
+    List<StockMovement> saveAll(Iterable<StockMovement> movements);
+
+    /**
+     * Retrieves the movements of a Product created in a period, oldest first.
+     *
+     * @param productId the productId of the Product.
+     * @param from the start of the period, inclusive.
+     * @param to the end of the period, inclusive.
+     * @return a List of StockMovements in the order they were recorded.
+     */
+    List<StockMovement> findByProductIdAndCreatedAtBetweenOrderByStockMovementIdAsc(int productId, LocalDateTime from,
+                                                                                     LocalDateTime to);
+
+    /**
+     * Sums the movements of every Product that moved in a period, in the database.
+     *
+     * @param from the start of the period, inclusive.
+     * @param until the end of the period, exclusive.
+     * @return a List of StockDelta projections, one per Product with movements in the period.
+     */
+    @Query("SELECT m.productId AS productId, SUM(m.totalDelta) AS totalDelta, SUM(m.reservedDelta) AS reservedDelta, " +
+            "SUM(m.availableDelta) AS availableDelta FROM StockMovement m " +
+            "WHERE m.createdAt >= :from AND m.createdAt < :until GROUP BY m.productId")
+    List<StockDelta> sumByProductBetween(@Param("from") LocalDateTime from, @Param("until") LocalDateTime until);
+
+    /**
+     * Sums the movements of a Product in a period, in the database.
+     *
+     * @param productId the productId of the Product.
+     * @param from the start of the period, inclusive.
+     * @param to the end of the period, inclusive.
+     * @return an Optional of the StockDelta, empty if the Product did not move in the period.
+     */
+    @Query("SELECT m.productId AS productId, SUM(m.totalDelta) AS totalDelta, SUM(m.reservedDelta) AS reservedDelta, " +
+            "SUM(m.availableDelta) AS availableDelta FROM StockMovement m " +
+            "WHERE m.productId = :productId AND m.createdAt >= :from AND m.createdAt <= :to GROUP BY m.productId")
+    Optional<StockDelta> sumForProductBetween(@Param("productId") int productId, @Param("from") LocalDateTime from,
+                                              @Param("to") LocalDateTime to);
+}
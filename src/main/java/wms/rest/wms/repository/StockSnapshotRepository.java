@@ -0,0 +1,82 @@
+package wms.rest.wms.repository;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.stereotype.Repository;
+import wms.rest.wms.model.StockSnapshot;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for managing StockSnapshot entities in the database. The snapshots are written and
+ * corrected by the compactor of the stock ledger only, so the repository is not exported by Spring Data REST.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Repository
+@RepositoryRestResource(exported = false)
+public interface StockSnapshotRepository extends ListCrudRepository<StockSnapshot, Long> {
+
+    /**
+     * Retrieves the latest snapshot of a Product taken no later than a time.
+     *
+     * @param productId the productId of the Product.
+     * @param time the time the snapshot has to be taken by.
+     * @return an Optional of the StockSnapshot, empty if the Product has no snapshot that old.
+     */
+    Optional<StockSnapshot> findFirstByProductIdAndTakenUntilLessThanEqualOrderByTakenUntilDesc(int productId,
+                                                                                               LocalDateTime time);
+
+    /**
+     * Retrieves the latest snapshot taken no later than a time of each of the specified Products.
+     *
+     * @param productIds the productIds of the Products.
+     * @param time the time the snapshots have to be taken by.
+     * @return a List of StockSnapshots, one per Product that has a snapshot that old.
+     */
+    @Query("SELECT s FROM StockSnapshot s WHERE s.productId IN :productIds AND s.takenUntil = " +
+            "(SELECT MAX(l.takenUntil) FROM StockSnapshot l WHERE l.productId = s.productId AND l.takenUntil <= :time)")
+    List<StockSnapshot> findLatestByProductIdInTakenBy(@Param("productIds") Collection<Integer> productIds,
+                                                       @Param("time") LocalDateTime time);
+
+    /**
+     * Retrieves the snapshots of the specified Products taken up to a time.
+     *
+     * @param productIds the productIds of the Products.
+     * @param takenUntil the time the snapshots were taken up to.
+     * @return a List of StockSnapshots, one per Product that has a snapshot taken up to the time.
+     */
+    List<StockSnapshot> findByProductIdInAndTakenUntil(Collection<Integer> productIds, LocalDateTime takenUntil);
+
+    /**
+     * Retrieves the times the ledger was compacted up to after a time, oldest first.
+     *
+     * @param time the time the ledger was compacted up to after.
+     * @return a List of the distinct takenUntil of the snapshots taken after the time.
+     */
+    @Query("SELECT DISTINCT s.takenUntil FROM StockSnapshot s WHERE s.takenUntil > :time ORDER BY s.takenUntil")
+    List<LocalDateTime> findTakenUntilAfter(@Param("time") LocalDateTime time);
+
+    /**
+     * Retrieves the latest time the ledger was compacted up to no later than a time.
+     *
+     * @param time the time the ledger has to be compacted up to by.
+     * @return an Optional of the latest takenUntil no later than the time, empty if there is none.
+     */
+    @Query("SELECT MAX(s.takenUntil) FROM StockSnapshot s WHERE s.takenUntil <= :time")
+    Optional<LocalDateTime> findLatestTakenUntilBy(@Param("time") LocalDateTime time);
+
+    /**
+     * Retrieves the time the ledger was last compacted up to.
+     *
+     * @return an Optional of the latest takenUntil of any snapshot, empty if the ledger was never compacted.
+     */
+    @Query("SELECT MAX(s.takenUntil) FROM StockSnapshot s")
+    Optional<LocalDateTime> findLatestTakenUntil();
+}
@@ -1,9 +1,14 @@
 package wms.rest.wms.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.ListCrudRepository;
 import org.springframework.stereotype.Repository;
 import wms.rest.wms.model.Store;
 
+import java.util.List;
+
 /**
  * Repository interface for managing Store entities in the database.
  * Provides CRUD operations for retrieving Store entities.
@@ -13,4 +18,14 @@ import wms.rest.wms.model.Store;
  */
 @Repository
 public interface StoreRepository extends ListCrudRepository<Store, Integer> {
+
+    /**
+     * Retrieves every Store. The result is kept in the Hibernate query cache until the store table changes,
+     * and the Stores themselves in the second-level cache, so repeated calls need no statement at all.
+     *
+     * @return a List of all Stores.
+     */
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Store> findAll();
 }
@@ -1,8 +1,20 @@
 package wms.rest.wms.repository;
 
+import jakarta.persistence.LockModeType;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import wms.rest.wms.model.Trip;
+import wms.rest.wms.model.TripStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository interface for managing Trip entities in the database.
@@ -13,4 +25,77 @@ import wms.rest.wms.model.Trip;
  */
 @Repository
 public interface TripRepository extends ListCrudRepository<Trip, Integer> {
+
+    /**
+     * Retrieves every Trip together with its Shipments in one statement, ordered by tripId.
+     *
+     * @return a List of every Trip with its Shipments.
+     */
+    @EntityGraph("Trip.adminList")
+    @Query("SELECT t FROM Trip t ORDER BY t.tripId")
+    List<Trip> findAllForAdminList();
+
+    /**
+     * Retrieves a Trip together with its Shipments in one statement.
+     *
+     * @param tripId the tripId of the Trip to retrieve.
+     * @return an Optional of the Trip with its Shipments, empty if there is no such Trip.
+     */
+    @EntityGraph("Trip.adminList")
+    Optional<Trip> findWithShipmentsByTripId(int tripId);
+
+    /**
+     * Retrieves a Trip together with its Shipments, their Orders and the Store of every Order in one statement,
+     * for delivering the Shipments one by one.
+     *
+     * @param tripId the tripId of the Trip to retrieve.
+     * @return an Optional of the Trip with its Shipments, Orders and Stores, empty if there is no such Trip.
+     */
+    @EntityGraph("Trip.delivery")
+    Optional<Trip> findForDeliveryByTripId(int tripId);
+
+    /**
+     * Retrieves and locks the tripIds among the specified IDs that have the specified TripStatus.
+     *
+     * @param tripIds the tripIds of the Trips to check.
+     * @param tripStatus the TripStatus the Trips must have.
+     * @return a List of the tripIds that have the TripStatus.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t.tripId FROM Trip t WHERE t.tripId IN :tripIds AND t.tripStatus = :tripStatus ORDER BY t.tripId")
+    List<Integer> lockIdsByTripStatus(@Param("tripIds") Collection<Integer> tripIds, @Param("tripStatus") TripStatus tripStatus);
+
+    /**
+     * Moves the specified Trips from one TripStatus to another in one statement.
+     * Trips that do not have the from TripStatus are left unchanged.
+     *
+     * @param tripIds the tripIds of the Trips to update.
+     * @param from the TripStatus the Trips must have.
+     * @param to the TripStatus to set.
+     * @return the number of updated Trips.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Trip t SET t.tripStatus = :to WHERE t.tripId IN :tripIds AND t.tripStatus = :from")
+    int updateTripStatus(@Param("tripIds") Collection<Integer> tripIds, @Param("from") TripStatus from, @Param("to") TripStatus to);
+
+    /**
+     * Moves the specified Trips from one TripStatus to another in bulk, and returns the tripIds that
+     * were actually moved so that the rest of the system can react to the transition.
+     *
+     * @param tripIds the tripIds of the Trips to update.
+     * @param from the TripStatus the Trips must have.
+     * @param to the TripStatus to set.
+     * @return a List of the tripIds that were moved from the from TripStatus to the to TripStatus.
+     */
+    @Transactional
+    default List<Integer> transitionTripStatus(Collection<Integer> tripIds, TripStatus from, TripStatus to) {
+        if (tripIds.isEmpty()) {
+            return List.of();
+        }
+        List<Integer> affected = lockIdsByTripStatus(tripIds, from);
+        if (!affected.isEmpty()) {
+            updateTripStatus(affected, from, to);
+        }
+        return affected;
+    }
 }
@@ -0,0 +1,28 @@
+package wms.rest.wms.repository;
+
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.stereotype.Repository;
+import wms.rest.wms.model.Vehicle;
+
+import java.util.List;
+
+/**
+ * Repository interface for managing Vehicle entities in the database.
+ * Provides CRUD operations for the registry of Vehicles the Trips are assigned.
+ * The registry is administered through the FleetAdminController, so it is not exported by Spring Data REST.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Repository
+@RepositoryRestResource(exported = false)
+public interface VehicleRepository extends ListCrudRepository<Vehicle, Integer> {
+
+    /**
+     * Retrieves every Vehicle that is taking Trips.
+     *
+     * @return a List of the active Vehicles.
+     */
+    List<Vehicle> findByActiveTrue();
+}
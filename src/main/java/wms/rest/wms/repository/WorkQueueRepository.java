@@ -0,0 +1,51 @@
+package wms.rest.wms.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.stereotype.Repository;
+import wms.rest.wms.model.WorkQueueItem;
+import wms.rest.wms.model.WorkQueueTopic;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository interface for managing WorkQueueItem entities in the database.
+ * Provides CRUD operations and custom queries for consuming the scheduler work queue.
+ * The queue is only written and consumed by the scheduled jobs, so it is not exported by Spring Data REST.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Repository
+@RepositoryRestResource(exported = false)
+public interface WorkQueueRepository extends ListCrudRepository<WorkQueueItem, Long> {
+
+    /**
+     * Retrieves the oldest WorkQueueItems of a topic that are available at a time.
+     *
+     * @param topic the WorkQueueTopic to retrieve items for.
+     * @param time the time the items have to be available by.
+     * @param pageable the maximum number of items to retrieve.
+     * @return a List of WorkQueueItems in the order they were recorded.
+     */
+    @Query("SELECT w FROM WorkQueueItem w WHERE w.topic = :topic AND (w.availableAt IS NULL OR w.availableAt <= :time) " +
+            "ORDER BY w.workQueueItemId")
+    List<WorkQueueItem> findAvailableByTopic(@Param("topic") WorkQueueTopic topic, @Param("time") LocalDateTime time,
+                                             Pageable pageable);
+
+    /**
+     * Deletes the WorkQueueItems with the specified IDs in one statement.
+     *
+     * @param ids the workQueueItemIds of the items to delete.
+     * @return the number of deleted items.
+     */
+    @Modifying
+    @Query("DELETE FROM WorkQueueItem w WHERE w.workQueueItemId IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
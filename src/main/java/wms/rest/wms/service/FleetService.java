@@ -0,0 +1,107 @@
+package wms.rest.wms.service;
+
+import jakarta.transaction.Transactional;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+import wms.rest.wms.model.Driver;
+import wms.rest.wms.model.Vehicle;
+import wms.rest.wms.repository.DriverRepository;
+import wms.rest.wms.repository.VehicleRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service class for the API FleetAdmin controller, administering the registry of Drivers and Vehicles the Trips are
+ * assigned. Drivers and Vehicles are never deleted, since Trips refer to them, but deactivated. Deactivated ones are
+ * not given new Trips, and keep the Trips they already have.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+@AllArgsConstructor
+public class FleetService {
+
+    /** Repository for handling Driver persistence operations */
+    private DriverRepository driverRepository;
+
+    /** Repository for handling Vehicle persistence operations */
+    private VehicleRepository vehicleRepository;
+
+    /**
+     * Return a List of all Drivers, active or not.
+     *
+     * @return a List of all Drivers.
+     */
+    public List<Driver> getDrivers() {
+        return this.driverRepository.findAll();
+    }
+
+    /**
+     * Registers a new Driver.
+     *
+     * @param driver the Driver to register.
+     * @return the registered Driver.
+     */
+    public Driver createDriver(Driver driver) {
+        driver.setDriverId(0);
+        return this.driverRepository.save(driver);
+    }
+
+    /**
+     * Updates the details of a Driver, such as their shift or whether they take Trips.
+     *
+     * @param driverId the driverId of the Driver to update.
+     * @param driverDetails the new details of the Driver.
+     * @return an Optional of the updated Driver, empty if it does not exist.
+     */
+    @Transactional
+    public Optional<Driver> updateDriver(int driverId, Driver driverDetails) {
+        return this.driverRepository.findById(driverId).map(driver -> {
+            driver.setName(driverDetails.getName());
+            driver.setPhone(driverDetails.getPhone());
+            driver.setShiftStart(driverDetails.getShiftStart());
+            driver.setShiftEnd(driverDetails.getShiftEnd());
+            driver.setActive(driverDetails.isActive());
+            return this.driverRepository.save(driver);
+        });
+    }
+
+    /**
+     * Return a List of all Vehicles, active or not.
+     *
+     * @return a List of all Vehicles.
+     */
+    public List<Vehicle> getVehicles() {
+        return this.vehicleRepository.findAll();
+    }
+
+    /**
+     * Registers a new Vehicle.
+     *
+     * @param vehicle the Vehicle to register.
+     * @return the registered Vehicle.
+     */
+    public Vehicle createVehicle(Vehicle vehicle) {
+        vehicle.setVehicleId(0);
+        return this.vehicleRepository.save(vehicle);
+    }
+
+    /**
+     * Updates the details of a Vehicle, such as its temperature class or whether it takes Trips.
+     *
+     * @param vehicleId the vehicleId of the Vehicle to update.
+     * @param vehicleDetails the new details of the Vehicle.
+     * @return an Optional of the updated Vehicle, empty if it does not exist.
+     */
+    @Transactional
+    public Optional<Vehicle> updateVehicle(int vehicleId, Vehicle vehicleDetails) {
+        return this.vehicleRepository.findById(vehicleId).map(vehicle -> {
+            vehicle.setRegistrationNumber(vehicleDetails.getRegistrationNumber());
+            vehicle.setTemperatureClass(vehicleDetails.getTemperatureClass());
+            vehicle.setActive(vehicleDetails.isActive());
+            return this.vehicleRepository.save(vehicle);
+        });
+    }
+}
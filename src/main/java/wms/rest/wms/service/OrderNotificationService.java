@@ -0,0 +1,93 @@
+package wms.rest.wms.service;
+
+import jakarta.transaction.Transactional;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import wms.rest.wms.model.OrderNotification;
+import wms.rest.wms.model.OrderNotificationType;
+import wms.rest.wms.repository.OrderNotificationRepository;
+import wms.rest.wms.service.fcm.OrderNotificationRelay;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Service class for the order notification outbox. Status transitions record the push notifications they cause
+ * here, in the transaction of the caller, instead of sending them. The rows are only visible once the status change
+ * commits, and a rolled back change leaves no notification behind. After the commit the OrderNotificationRelay is
+ * woken up to send them on its own thread, so the schedulers never wait for Firebase Cloud Messaging.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+@AllArgsConstructor
+public class OrderNotificationService {
+
+    /** Transaction resource key marking that the relay is already woken up when the transaction commits */
+    private static final Object WAKE_UP_REGISTERED = new Object();
+
+    /** Repository for handling OrderNotification persistence operations */
+    private OrderNotificationRepository orderNotificationRepository;
+
+    /** Relay sending the recorded notifications after commit */
+    private OrderNotificationRelay orderNotificationRelay;
+
+    /**
+     * Records that the Customer of an Order should be notified about a step in its lifecycle.
+     *
+     * @param type the OrderNotificationType of the step.
+     * @param orderId the orderId of the Order.
+     */
+    @Transactional
+    public void record(OrderNotificationType type, int orderId) {
+        this.orderNotificationRepository.save(new OrderNotification(0, orderId, type, LocalDateTime.now()));
+        wakeRelayAfterCommit();
+    }
+
+    /**
+     * Records that the Customers of several Orders should be notified about the same step in their lifecycle.
+     *
+     * @param type the OrderNotificationType of the step.
+     * @param orderIds the orderIds of the Orders.
+     */
+    @Transactional
+    public void recordAll(OrderNotificationType type, Collection<Integer> orderIds) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        this.orderNotificationRepository.saveAll(orderIds.stream()
+                .map(orderId -> new OrderNotification(0, orderId, type, now))
+                .toList());
+        wakeRelayAfterCommit();
+    }
+
+    /**
+     * Wakes the relay once the current transaction has committed. A scheduler run recording one notification
+     * per Order registers a single wake-up for the whole transaction.
+     */
+    private void wakeRelayAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.orderNotificationRelay.wakeUp();
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(WAKE_UP_REGISTERED)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(WAKE_UP_REGISTERED, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                orderNotificationRelay.wakeUp();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(WAKE_UP_REGISTERED);
+            }
+        });
+    }
+}
@@ -1,18 +1,20 @@
 package wms.rest.wms.service;
 
-import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import wms.rest.wms.api.model.OrderIntakeResult;
 import wms.rest.wms.exception.NotEnoughStockException;
 import wms.rest.wms.model.*;
 import wms.rest.wms.repository.*;
+import wms.rest.wms.service.pipeline.PipelineEvent;
+import wms.rest.wms.service.pipeline.PipelineStage;
 
 import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Service class for Order API controller.
@@ -34,8 +36,17 @@ public class OrderService {
     /** Repository for handling Order persistence operations */
     private OrderRepository orderRepository;
 
-    /** Repository for handling Inventory persistence operations */
-    private InventoryRepository inventoryRepository;
+    /** Service for reserving Inventory stock */
+    private StockReservationService stockReservationService;
+
+    /** Service for recording push notifications about Order status changes in the outbox */
+    private OrderNotificationService orderNotificationService;
+
+    /** Service for keeping the order tracking read model up to date */
+    private OrderTrackingService orderTrackingService;
+
+    /** Publisher handing the registered Orders over to the order pipeline */
+    private ApplicationEventPublisher eventPublisher;
 
     /**
      * Return a List of all Orders placed by a Customer.
@@ -54,12 +65,13 @@ public class OrderService {
      * @return an Optional object of Order, can be present or not.
      */
     public Optional<Order> getOrderById(int orderId){
-        return this.orderRepository.findById(orderId);
+        return this.orderRepository.findTrackingByOrderId(orderId);
     }
 
     /**
      * Checks if an order has the orderStatus as REGISTERED, which is the only
-     * status an Order can have for the Customer to cancel the order.
+     * status an Order can have for the Customer to cancel the order. An Order stays REGISTERED until the cutoff of
+     * its delivery date.
      *
      * @param order the order to check if it has the OrderStatus REGISTERED.
      * @return returns true if OrderStatus is REGISTERED, false otherwise.
@@ -68,6 +80,7 @@ public class OrderService {
     public boolean cancelOrder(Order order){
         if(order.getOrderStatus() == OrderStatus.REGISTERED){
             order.setOrderStatus(OrderStatus.CANCELLED);
+            this.orderTrackingService.markChanged(order.getOrderId());
             return true;
         }
         return false;
@@ -94,136 +107,224 @@ public class OrderService {
 
     /**
      * Creates a new order associated to a Customer. Reserves the quantity of each product
-     * in inventory under reserved stock.
+     * in inventory under reserved stock, in ascending productId order. The Order is handed over to the order
+     * pipeline, which puts it on a Shipment once the cutoff of its delivery date has passed. Until then it stays
+     * REGISTERED and can be cancelled.
      *
      * @param order the Order HTTP request required JSON payload of order.
      * @param customer the authenticated customer.
      * @return saves the order with the orderRepository.
+     * @throws NotEnoughStockException if there is not enough available stock of a product. No stock
+     *         is reserved for the Order in that case.
+     * @throws IllegalArgumentException if an OrderQuantities line has no Product or a quantity that is not
+     *         positive, before anything is reserved.
+     * @see StockReservationService#reserveAll(Map)
      */
-    @Transactional
+    @Transactional(rollbackOn = NotEnoughStockException.class)
     public Order createOrder(Order order, Customer customer) throws NotEnoughStockException {
+        String invalid = validateQuantities(order);
+        if (invalid != null) {
+            throw new IllegalArgumentException(invalid);
+        }
+        registerOrder(order, customer);
+        Map<Integer, Integer> quantitiesByProductId = getQuantitiesByProductId(order);
+        // Need to reserve product quantity in stock
+        this.stockReservationService.reserveAll(quantitiesByProductId);
+        attachProducts(order, findProductsById(quantitiesByProductId.keySet()));
+        Order saved = this.orderRepository.save(order);
+        this.orderTrackingService.markChanged(saved.getOrderId());
+        this.eventPublisher.publishEvent(new PipelineEvent(PipelineStage.CREATE_SHIPMENTS));
+        return saved;
+    }
+
+    /**
+     * Creates several Orders associated to a Customer in one transaction. All Products of all Orders are
+     * resolved with one query, and stock is reserved for every line of every Order in ascending productId order,
+     * so concurrent batches lock the Inventory rows in the same order and cannot deadlock. An Order that references
+     * an unknown Product or lacks stock is not created and its reservations are released, while the other Orders
+     * in the batch are still created. The created Orders are handed over to the order pipeline.
+     *
+     * @param orders the Orders HTTP request required JSON payload of orders.
+     * @param customer the authenticated customer.
+     * @return the outcome of each Order, in the same order as the request.
+     */
+    @Transactional
+    public List<OrderIntakeResult> createOrders(List<Order> orders, Customer customer) {
+        String[] failures = new String[orders.size()];
+        List<ReservationLine> lines = new ArrayList<>();
+        Set<Integer> productIds = new HashSet<>();
+        for (int i = 0; i < orders.size(); i++) {
+            failures[i] = validateQuantities(orders.get(i));
+            if (failures[i] == null) {
+                for (Map.Entry<Integer, Integer> entry : getQuantitiesByProductId(orders.get(i)).entrySet()) {
+                    lines.add(new ReservationLine(entry.getKey(), i, entry.getValue()));
+                    productIds.add(entry.getKey());
+                }
+            }
+        }
+        Map<Integer, Product> products = findProductsById(productIds);
+
+        // Reserve every line in ascending productId order, skipping Orders that have already failed
+        lines.sort(Comparator.comparingInt(ReservationLine::productId).thenComparingInt(ReservationLine::orderIndex));
+        List<ReservationLine> reserved = new ArrayList<>();
+        for (ReservationLine line : lines) {
+            if (failures[line.orderIndex()] != null) {
+                continue;
+            }
+            if (!products.containsKey(line.productId())) {
+                failures[line.orderIndex()] = "Product not found with ID: " + line.productId();
+            } else if (this.stockReservationService.tryReserve(line.productId(), line.quantity())) {
+                reserved.add(line);
+            } else {
+                failures[line.orderIndex()] = "There is not enough stock of product with ID: " + line.productId();
+            }
+        }
+        // Release what was reserved for Orders that failed on a later line
+        for (ReservationLine line : reserved) {
+            if (failures[line.orderIndex()] != null) {
+                this.stockReservationService.release(line.productId(), line.quantity());
+            }
+        }
+
+        List<Order> created = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            if (failures[i] == null) {
+                Order order = orders.get(i);
+                registerOrder(order, customer);
+                attachProducts(order, products);
+                created.add(order);
+            }
+        }
+        this.orderRepository.saveAll(created);
+        this.orderTrackingService.markChanged(created.stream().map(Order::getOrderId).toList());
+        if (!created.isEmpty()) {
+            this.eventPublisher.publishEvent(new PipelineEvent(PipelineStage.CREATE_SHIPMENTS));
+        }
+
+        List<OrderIntakeResult> results = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            if (failures[i] == null) {
+                results.add(new OrderIntakeResult(i, orders.get(i).getOrderId(), true, "Order was created"));
+            } else {
+                results.add(new OrderIntakeResult(i, null, false, failures[i]));
+            }
+        }
+        log.info("Created {} of {} orders in batch for customer with ID: {}", created.size(), orders.size(), customer.getCustomerId());
+        return results;
+    }
+
+    /**
+     * Sets the Customer, Store, OrderStatus REGISTERED and order date of a new Order.
+     *
+     * @param order the new Order.
+     * @param customer the Customer placing the Order.
+     */
+    private void registerOrder(Order order, Customer customer) {
         order.setCustomer(customer);
         order.setOrderStatus(OrderStatus.REGISTERED);
         order.setOrderDate(LocalDate.now());
         order.setStore(customer.getStore());
+    }
 
+    /**
+     * Return the total ordered quantity for each productId in an Order, ordered by productId.
+     *
+     * @param order the Order to sum the OrderQuantities of.
+     * @return a Map from productId to total ordered quantity.
+     */
+    private Map<Integer, Integer> getQuantitiesByProductId(Order order) {
+        Map<Integer, Integer> quantitiesByProductId = new TreeMap<>();
         for (OrderQuantities quantity : order.getQuantities()) {
-            Product product = productRepository.findById(quantity.getProduct().getProductId())
-                    .orElseThrow(() -> new EntityNotFoundException("Product not found with ID: " + quantity.getProduct().getProductId()));
-
-            // Need to reserve product quantity in stock
-            Inventory inventory = product.getInventory();
-            int orderedQuantity = quantity.getProductQuantity();
-            int availableStock = inventory.getAvailableStock();
-
-            if(orderedQuantity <= availableStock){
-                // Reserve stock
-                inventory.setReservedStock(inventory.getReservedStock() + orderedQuantity);
-                // Subtract reserved from available
-                inventory.setAvailableStock(inventory.getAvailableStock() - orderedQuantity);
-                inventoryRepository.save(inventory);
-            } else {
-                throw new NotEnoughStockException("There is not enough stock of product with ID: " + product.getProductId());
-            }
-            quantity.setProduct(product);
-            quantity.setOrder(order);
+            quantitiesByProductId.merge(quantity.getProduct().getProductId(), quantity.getProductQuantity(), Integer::sum);
         }
-        return this.orderRepository.save(order);
+        return quantitiesByProductId;
     }
 
     /**
-     * Return the current location of an Order.
+     * Checks that every OrderQuantities line of an Order names a Product and a positive quantity.
      *
-     * @param orderId the orderId of the Order to get its current location.
-     * @return the current location of the Order as a String.
+     * @param order the Order to check.
+     * @return a description of the first invalid line, or null if every line is valid.
      */
-    public String getCurrentLocation(int orderId) {
-        Optional<Order> orderOptional = orderRepository.findById(orderId);
-
-        if (!orderOptional.isPresent()) {
-            return "Order not found";
-        }
-        Order order = orderOptional.get();
-        Shipment shipment = order.getShipment();
-        if (shipment == null || shipment.getTrip() == null) {
-            return "Location information not available";
-        }
-        if (order.getOrderStatus() == OrderStatus.DELIVERED) {
-            return shipment.getShipmentUnloadLocation();
+    private String validateQuantities(Order order) {
+        for (OrderQuantities quantity : order.getQuantities()) {
+            if (quantity.getProduct() == null) {
+                return "Order line without product";
+            }
+            if (quantity.getProductQuantity() <= 0) {
+                return "Quantity must be positive for product with ID: " + quantity.getProduct().getProductId();
+            }
         }
-        return shipment.getTrip().getTripCurrentLocation();
+        return null;
     }
 
     /**
-     * Return all orders that has the OrderStatus as REGISTERED.
+     * Return the Products with the specified productIds, resolved with one query.
      *
-     * @return a List of all Orders with OrderStatus REGISTERED.
+     * @param productIds the productIds of the Products to return.
+     * @return a Map from productId to Product, without entries for unknown productIds.
      */
-    private List<Order> getRegisteredOrders() {
-        return this.orderRepository.findAll().stream()
-                .filter((order -> order.getOrderStatus() == OrderStatus.REGISTERED))
-                .toList();
+    private Map<Integer, Product> findProductsById(Collection<Integer> productIds) {
+        Map<Integer, Product> products = new HashMap<>();
+        for (Product product : this.productRepository.findAllById(productIds)) {
+            products.put(product.getProductId(), product);
+        }
+        return products;
     }
 
     /**
-     * Returns all registered Orders from getRegisteredOrders and sorts them into a Map of key-value pairs
-     * grouped by both Store and wishedDeliveryDate.
+     * Replaces the Product references in the OrderQuantities of an Order with the resolved Products,
+     * and links every OrderQuantities line to the Order.
      *
-     * @return a Map where each key is a SimpleEntry of Store and wishedDeliveryDate, and each value is a list of Orders.
-     * Example output:
-     * [Store 1, 2024-04-15] -> [Order 1, Order 2]
-     * [Store 1, 2024-04-16] -> [Order 3, Order 4]
-     * [Store 2, 2024-04-16] -> [Order 5, Order 6, Order 7]
+     * @param order the Order to attach the Products to.
+     * @param products the resolved Products by productId.
      */
-    public Map<AbstractMap.SimpleEntry<Store, LocalDate>, List<Order>> groupByStoreAndDeliveryDate() {
-        List<Order> registeredOrders = this.getRegisteredOrders();
-        return registeredOrders.stream()
-                .filter(order -> order.getCustomer() != null && order.getCustomer().getStore() != null)
-                .collect(Collectors.groupingBy(order ->
-                        new AbstractMap.SimpleEntry<>(order.getCustomer().getStore(), order.getWishedDeliveryDate())));
+    private void attachProducts(Order order, Map<Integer, Product> products) {
+        for (OrderQuantities quantity : order.getQuantities()) {
+            quantity.setProduct(products.get(quantity.getProduct().getProductId()));
+            quantity.setOrder(order);
+        }
     }
 
-
     /**
      * Updates an Order from OrderStatus REGISTERED to PICKING. Also setting the
-     * progressInPercent to 10.
+     * progressInPercent to 10, and recording a push notification to the Customer in the outbox.
      *
      * @param order the Order to update the OrderStatus and progressInPercent.
      */
     @Transactional
     public void updateFromRegisteredToPicking(Order order) {
         order.setProgressInPercent(10);
-        order.setOrderStatus(OrderStatus.PICKING); //TODO: SEND PUSH NOTIFICATION
+        order.setOrderStatus(OrderStatus.PICKING);
         log.info("Updated Order with ID: {} from REGISTERED to PICKING", order.getOrderId());
         this.orderRepository.save(order);
+        this.orderNotificationService.record(OrderNotificationType.PICKING, order.getOrderId());
+        this.orderTrackingService.markChanged(order.getOrderId());
     }
 
     /**
      * Updates an Order from OrderStatus PICKING to PICKED. Also setting the
-     * progressInPercent to 20.
+     * progressInPercent to 20, and recording a push notification to the Customer in the outbox.
      *
      * @param order the Order to update the OrderStatus and progressInPercent.
      */
     @Transactional
     public void updateFromPickingToPicked(Order order) {
         order.setProgressInPercent(20);
-        order.setOrderStatus(OrderStatus.PICKED); //TODO: SEND PUSH NOTIFICATION
+        order.setOrderStatus(OrderStatus.PICKED);
         log.info("Updated Order with ID: {} from PICKING to PICKED", order.getOrderId());
         this.orderRepository.save(order);
+        this.orderNotificationService.record(OrderNotificationType.PICKED, order.getOrderId());
+        this.orderTrackingService.markChanged(order.getOrderId());
     }
 
     /**
-     * Return the progressInPercent of an Order.
+     * A quantity of a Product to reserve for the Order at a position in a batch.
      *
-     * @param orderId the OrderId of the Order to return the progressInPercent.
-     * @return the progressInPercent of an Order as an int.
+     * @param productId the productId of the Product to reserve.
+     * @param orderIndex the position of the Order in the batch.
+     * @param quantity the quantity to reserve.
      */
-    public int getProgressInPercent(int orderId) {
-        return orderRepository.findById(orderId)
-                .map(Order::getProgressInPercent)
-                .orElseGet(() -> {
-                    log.warn("Order not found with ID: {}", orderId);
-                    return 0; // Return 0 if the order is not found
-                });
+    private record ReservationLine(int productId, int orderIndex, int quantity) {
     }
 }
\ No newline at end of file
@@ -0,0 +1,439 @@
+package wms.rest.wms.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import wms.rest.wms.api.model.OrderTrackingEvent;
+import wms.rest.wms.model.OrderTracking;
+import wms.rest.wms.repository.OrderTrackingRepository;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Pushes the changes of the order tracking read model to the Customers who have a tracking stream open, as
+ * server-sent events. Every stream of a Customer receives the changes of the Customer's Orders, after the
+ * transaction changing them commits.
+ * <p>
+ * An open stream is an asynchronous request holding no thread while it is idle, so the number of streams is
+ * bounded by the connections the server accepts rather than by its threads. Each stream has a bounded queue of
+ * pending deliveries of its own, written by a sender thread only while the queue is not empty, on a virtual thread
+ * if they are enabled. A slow client only holds up its own stream, never the others or the transaction that
+ * changed its Orders. A stream whose queue is full is closed, and so is a stream whose client has not accepted a
+ * delivery within the send timeout by the next heartbeat. The client reconnects and receives the current state of
+ * every Order again.
+ * <p>
+ * The changes committed on this instance are pushed at once. Changes committed on other instances are found by a
+ * poll, which reads the tracking rows of the Customers with a stream open on this instance and pushes every row
+ * whose revision is higher than the last one sent, so every change reaches every instance within a poll interval
+ * and none is sent twice.
+ * <p>
+ * The current state sent when a stream opens is read on the sender thread too. Read on the request thread, it
+ * would go through the EntityManager kept open for the request, which holds its JDBC connection for as long as
+ * the stream is open.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+public class OrderTrackingBroadcaster {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(OrderTrackingBroadcaster.class);
+
+    /** Name of the server-sent events carrying an OrderTrackingEvent */
+    public static final String EVENT_NAME = "order-tracking";
+
+    /** Maximum number of Customers whose tracking rows are read per statement of the poll */
+    private static final int POLL_CHUNK_SIZE = 500;
+
+    /** Repository reading the tracking rows changed on other instances */
+    private final OrderTrackingRepository orderTrackingRepository;
+
+    /** Open streams by customerId */
+    private final Map<Integer, Set<Stream>> streamsByCustomerId = new ConcurrentHashMap<>();
+
+    /** The highest revision sent of each Order, by the customerId of its Customer, while the Customer has streams */
+    private final Map<Integer, Map<Integer, Long>> sentRevisionsByCustomerId = new ConcurrentHashMap<>();
+
+    /** Threads writing the pending deliveries of the streams, one at a time per stream */
+    private final ExecutorService senders;
+
+    /** Maximum number of pending deliveries of a stream */
+    private final int queueCapacity;
+
+    /** How long a stream stays open before the client has to reconnect */
+    private final long timeoutMillis;
+
+    /** How long a client may take to accept a delivery before its stream is closed */
+    private final long sendTimeoutMillis;
+
+    /**
+     * Creates the broadcaster, with the sender threads virtual if the Environment enables them and the runtime
+     * supports them.
+     *
+     * @param orderTrackingRepository repository reading the tracking rows changed on other instances.
+     * @param meterRegistry the MeterRegistry to publish the number of open streams to.
+     * @param queueCapacity the maximum number of pending deliveries of a stream.
+     * @param timeoutMillis how long a stream stays open before the client has to reconnect.
+     * @param sendTimeoutMillis how long a client may take to accept a delivery before its stream is closed.
+     * @param environment the Environment deciding whether the sender threads are virtual.
+     */
+    @Autowired
+    public OrderTrackingBroadcaster(OrderTrackingRepository orderTrackingRepository, MeterRegistry meterRegistry,
+                                    @Value("${tracking.stream.queue-capacity:100}") int queueCapacity,
+                                    @Value("${tracking.stream.timeout-millis:1800000}") long timeoutMillis,
+                                    @Value("${tracking.stream.send-timeout-millis:10000}") long sendTimeoutMillis,
+                                    Environment environment) {
+        this(orderTrackingRepository, meterRegistry, queueCapacity, timeoutMillis, sendTimeoutMillis,
+                Threading.VIRTUAL.isActive(environment));
+    }
+
+    /**
+     * Creates the broadcaster and publishes the number of open streams to the MeterRegistry.
+     *
+     * @param orderTrackingRepository repository reading the tracking rows changed on other instances.
+     * @param meterRegistry the MeterRegistry to publish the number of open streams to.
+     * @param queueCapacity the maximum number of pending deliveries of a stream.
+     * @param timeoutMillis how long a stream stays open before the client has to reconnect.
+     * @param sendTimeoutMillis how long a client may take to accept a delivery before its stream is closed.
+     * @param virtualThreads whether the sender threads are virtual, which needs Java 21 or later.
+     */
+    public OrderTrackingBroadcaster(OrderTrackingRepository orderTrackingRepository, MeterRegistry meterRegistry,
+                                    int queueCapacity, long timeoutMillis, long sendTimeoutMillis,
+                                    boolean virtualThreads) {
+        this.orderTrackingRepository = orderTrackingRepository;
+        this.queueCapacity = queueCapacity;
+        this.timeoutMillis = timeoutMillis;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+        AtomicInteger count = new AtomicInteger();
+        this.senders = Executors.newCachedThreadPool(virtualThreads
+                ? new VirtualThreadTaskExecutor("order-tracking-stream-").getVirtualThreadFactory()
+                : runnable -> {
+                    Thread thread = new Thread(runnable, "order-tracking-stream-" + count.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Gauge.builder("order.tracking.streams", this, OrderTrackingBroadcaster::getStreamCount)
+                .description("Number of open order tracking streams")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a tracking stream for a Customer, starting with the current state of every Order of the Customer.
+     * A change committed while the stream is opened may be sent before the current state, so clients keep the
+     * event with the highest revision of each Order.
+     *
+     * @param customerId the customerId of the Customer.
+     * @param current supplies the tracking rows of every Order of the Customer, called on the sender thread once
+     *                the stream is registered.
+     * @return the stream.
+     */
+    public SseEmitter subscribe(int customerId, Supplier<List<OrderTracking>> current) {
+        SseEmitter emitter = new SseEmitter(this.timeoutMillis);
+        Stream stream = new Stream(customerId, emitter);
+        this.streamsByCustomerId.compute(customerId, (id, streams) -> {
+            Set<Stream> open = streams != null ? streams : ConcurrentHashMap.newKeySet();
+            open.add(stream);
+            this.sentRevisionsByCustomerId.putIfAbsent(customerId, new ConcurrentHashMap<>());
+            return open;
+        });
+        emitter.onCompletion(() -> unsubscribe(stream));
+        emitter.onTimeout(() -> unsubscribe(stream));
+        emitter.onError(error -> unsubscribe(stream));
+        try {
+            // Written when the request thread starts the stream, so the response is committed there
+            emitter.send(SseEmitter.event().comment("connected"));
+        } catch (IOException e) {
+            drop(stream, e);
+            return emitter;
+        }
+        stream.offer(target -> {
+            List<OrderTracking> rows = current.get();
+            Map<Integer, Long> sent = this.sentRevisionsByCustomerId.get(customerId);
+            if (sent != null) {
+                rows.forEach(row -> sent.merge(row.getOrderId(), row.getRevision(), Math::max));
+            }
+            send(target, rows.stream().map(OrderTrackingEvent::of).toList());
+        });
+        return emitter;
+    }
+
+    /**
+     * Queues the changed tracking rows to be sent to the open streams of the Customers who placed the Orders.
+     * Rows of Customers without an open stream, and rows whose revision was already sent, are skipped.
+     *
+     * @param changed the changed tracking rows.
+     */
+    public void publish(Collection<OrderTracking> changed) {
+        Map<Integer, List<OrderTrackingEvent>> eventsByCustomerId = new HashMap<>();
+        for (OrderTracking tracking : changed) {
+            if (tracking.getCustomerId() != null && isUnsent(tracking)) {
+                // The rows are entities that change again, so the events are taken now
+                eventsByCustomerId.computeIfAbsent(tracking.getCustomerId(), id -> new ArrayList<>())
+                        .add(OrderTrackingEvent.of(tracking));
+            }
+        }
+        eventsByCustomerId.forEach((customerId, events) -> {
+            Set<Stream> streams = this.streamsByCustomerId.get(customerId);
+            if (streams != null) {
+                streams.forEach(stream -> stream.offer(target -> send(target, events)));
+            }
+        });
+    }
+
+    /**
+     * Pushes the changes committed on other instances to the streams open on this one, by reading the tracking
+     * rows of the Customers with a stream open and publishing those with a revision not sent yet.
+     * Scheduled with a fixed delay.
+     */
+    @Scheduled(fixedDelayString = "${tracking.stream.poll-millis:2000}")
+    public void poll() {
+        List<Integer> customerIds = new ArrayList<>(this.streamsByCustomerId.keySet());
+        for (int start = 0; start < customerIds.size(); start += POLL_CHUNK_SIZE) {
+            publish(this.orderTrackingRepository.findByCustomerIdIn(
+                    customerIds.subList(start, Math.min(start + POLL_CHUNK_SIZE, customerIds.size()))));
+        }
+    }
+
+    /**
+     * Sends a comment to every open stream, so proxies and load balancers do not close idle streams and
+     * streams whose client is gone are noticed, and closes the streams whose client has not accepted a delivery
+     * within the send timeout.
+     */
+    @Scheduled(fixedRateString = "${tracking.stream.heartbeat-millis:30000}")
+    public void heartbeat() {
+        long now = System.nanoTime();
+        this.streamsByCustomerId.values().forEach(streams -> streams.forEach(stream -> {
+            long sendingSince = stream.sendingSince;
+            if (sendingSince != 0 && now - sendingSince > TimeUnit.MILLISECONDS.toNanos(this.sendTimeoutMillis)) {
+                log.warn("Order tracking stream of Customer {} did not accept a delivery within {} ms, closing it",
+                        stream.customerId, this.sendTimeoutMillis);
+                close(stream);
+            } else {
+                stream.offer(target -> target.send(SseEmitter.event().comment("heartbeat")));
+            }
+        }));
+    }
+
+    /**
+     * Return the number of open tracking streams.
+     *
+     * @return the number of open tracking streams.
+     */
+    public int getStreamCount() {
+        return this.streamsByCustomerId.values().stream().mapToInt(Set::size).sum();
+    }
+
+    /**
+     * Closes every open stream and stops the sender threads.
+     *
+     * @throws InterruptedException if interrupted while waiting for the sender threads to stop.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        this.senders.shutdown();
+        this.senders.awaitTermination(10, TimeUnit.SECONDS);
+        this.streamsByCustomerId.values().forEach(streams -> streams.forEach(stream -> stream.emitter.complete()));
+        this.streamsByCustomerId.clear();
+        this.sentRevisionsByCustomerId.clear();
+    }
+
+    /**
+     * Return whether a tracking row is of a Customer with an open stream and has a revision not sent yet, and
+     * record its revision as sent if so.
+     *
+     * @param tracking the tracking row.
+     * @return true if the row is to be sent.
+     */
+    private boolean isUnsent(OrderTracking tracking) {
+        Map<Integer, Long> sent = this.sentRevisionsByCustomerId.get(tracking.getCustomerId());
+        if (sent == null) {
+            return false;
+        }
+        long revision = tracking.getRevision();
+        boolean[] unsent = new boolean[1];
+        sent.compute(tracking.getOrderId(), (orderId, last) -> {
+            unsent[0] = last == null || revision > last;
+            return unsent[0] ? revision : last;
+        });
+        return unsent[0];
+    }
+
+    /**
+     * Sends events to a stream. Runs on a sender thread.
+     *
+     * @param emitter the stream.
+     * @param events the events to send.
+     * @throws IOException if the client is gone.
+     */
+    private static void send(SseEmitter emitter, List<OrderTrackingEvent> events) throws IOException {
+        for (OrderTrackingEvent event : events) {
+            emitter.send(SseEmitter.event()
+                    .name(EVENT_NAME)
+                    .id(event.getOrderId() + "-" + event.getRevision())
+                    .data(event, MediaType.APPLICATION_JSON));
+        }
+    }
+
+    /**
+     * Removes a stream whose client is gone and completes it.
+     *
+     * @param stream the stream.
+     * @param cause why the stream is dropped.
+     */
+    private void drop(Stream stream, Exception cause) {
+        log.debug("Dropped an order tracking stream of Customer {}: {}", stream.customerId, cause.getMessage());
+        unsubscribe(stream);
+        stream.emitter.completeWithError(cause);
+    }
+
+    /**
+     * Removes a stream that fell behind and completes it, so the client reconnects. The stream is completed on a
+     * sender thread, since completing waits for a delivery the client has not accepted yet.
+     *
+     * @param stream the stream.
+     */
+    private void close(Stream stream) {
+        unsubscribe(stream);
+        try {
+            this.senders.execute(stream.emitter::complete);
+        } catch (RejectedExecutionException e) {
+            log.debug("Could not complete an order tracking stream of Customer {}, shutting down", stream.customerId);
+        }
+    }
+
+    /**
+     * Removes a stream of a Customer, and the Customer once it has no open streams left.
+     *
+     * @param stream the stream.
+     */
+    private void unsubscribe(Stream stream) {
+        this.streamsByCustomerId.computeIfPresent(stream.customerId, (id, streams) -> {
+            streams.remove(stream);
+            if (!streams.isEmpty()) {
+                return streams;
+            }
+            this.sentRevisionsByCustomerId.remove(id);
+            return null;
+        });
+    }
+
+    /**
+     * A delivery written to a stream, such as events or a comment.
+     */
+    @FunctionalInterface
+    private interface Delivery {
+
+        /**
+         * Writes the delivery to a stream.
+         *
+         * @param emitter the stream.
+         * @throws IOException if the client is gone.
+         */
+        void send(SseEmitter emitter) throws IOException;
+    }
+
+    /**
+     * An open stream with its queue of pending deliveries. The deliveries are written in order by at most one
+     * sender thread at a time, started when the first delivery is queued and ended when the queue is empty.
+     */
+    private final class Stream {
+
+        /** The customerId of the Customer of the stream */
+        private final int customerId;
+
+        /** The stream */
+        private final SseEmitter emitter;
+
+        /** The pending deliveries */
+        private final Queue<Delivery> pending = new ConcurrentLinkedQueue<>();
+
+        /** The number of pending deliveries */
+        private final AtomicInteger size = new AtomicInteger();
+
+        /** Whether a sender thread is writing the pending deliveries */
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        /** When the delivery being written was started, by System.nanoTime(), 0 if none is */
+        private volatile long sendingSince;
+
+        /**
+         * Creates the stream.
+         *
+         * @param customerId the customerId of the Customer of the stream.
+         * @param emitter the stream.
+         */
+        private Stream(int customerId, SseEmitter emitter) {
+            this.customerId = customerId;
+            this.emitter = emitter;
+        }
+
+        /**
+         * Queues a delivery, and starts a sender thread if none is writing. Closes the stream if its queue is full.
+         *
+         * @param delivery the delivery.
+         */
+        private void offer(Delivery delivery) {
+            if (this.size.incrementAndGet() > queueCapacity) {
+                log.warn("Order tracking stream of Customer {} fell behind, closing it so it resynchronizes",
+                        this.customerId);
+                close(this);
+                return;
+            }
+            this.pending.add(delivery);
+            if (this.sending.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    log.debug("Could not send to an order tracking stream of Customer {}, shutting down", this.customerId);
+                }
+            }
+        }
+
+        /**
+         * Writes the pending deliveries until the queue is empty. Runs on a sender thread.
+         */
+        private void drain() {
+            while (true) {
+                Delivery delivery = this.pending.poll();
+                if (delivery == null) {
+                    this.sending.set(false);
+                    // A delivery queued after the poll and before the flag was cleared started no thread
+                    if (this.pending.isEmpty() || !this.sending.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                this.sendingSince = System.nanoTime();
+                try {
+                    delivery.send(this.emitter);
+                } catch (IOException | RuntimeException e) {
+                    this.pending.clear();
+                    this.sending.set(false);
+                    drop(this, e);
+                    return;
+                } finally {
+                    this.sendingSince = 0;
+                    this.size.decrementAndGet();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package wms.rest.wms.service;
+
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import wms.rest.wms.model.OrderStatus;
+import wms.rest.wms.model.OrderTracking;
+import wms.rest.wms.repository.OrderRepository;
+import wms.rest.wms.repository.OrderRepository.TrackingSource;
+import wms.rest.wms.repository.OrderTrackingRepository;
+
+import java.util.*;
+
+/**
+ * Service class for the order tracking read model. Status transitions mark the Orders and Trips they changed here,
+ * and the OrderTracking rows of those Orders are refreshed from the Order, Shipment and Trip just before the
+ * transaction commits. However many Orders a scheduler run changes, the refresh reads the source columns and the
+ * tracking rows with one statement each per batch of 1000, and writes the changed rows in JDBC batches.
+ * A rolled back transition leaves the tracking rows untouched, and the rows it changed are pushed to the tracking
+ * streams of their Customers once it commits.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+@AllArgsConstructor
+public class OrderTrackingService {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(OrderTrackingService.class);
+
+    /** Maximum number of IDs in one IN list */
+    private static final int BATCH_SIZE = 1000;
+
+    /** Transaction resource key of the changes to refresh when the transaction commits */
+    private static final Object PENDING_CHANGES = new Object();
+
+    /** Repository for handling OrderTracking persistence operations */
+    private OrderTrackingRepository orderTrackingRepository;
+
+    /** Repository for reading the source columns of the tracking rows */
+    private OrderRepository orderRepository;
+
+    /** Broadcaster pushing the changed tracking rows to the tracking streams of their Customers */
+    private OrderTrackingBroadcaster orderTrackingBroadcaster;
+
+    /**
+     * Return the tracking row of an Order with a single primary key lookup. An Order without a tracking row yet
+     * is read from the Order itself, and returned as a row that is not stored and has no ETag.
+     *
+     * @param orderId the orderId of the Order.
+     * @return an Optional of the OrderTracking, empty if there is no such Order.
+     */
+    public Optional<OrderTracking> getTracking(int orderId) {
+        Optional<OrderTracking> tracking = this.orderTrackingRepository.findById(orderId);
+        if (tracking.isPresent()) {
+            return tracking;
+        }
+        return this.orderRepository.findTrackingSourcesByOrderIds(List.of(orderId)).stream()
+                .findFirst()
+                .map(source -> new OrderTracking(orderId, source.getCustomerId(), source.getOrderStatus(),
+                        source.getProgressInPercent(), getCurrentLocation(source), 0, false));
+    }
+
+    /**
+     * Return the tracking rows of every Order placed by a Customer.
+     *
+     * @param customerId the customerId of the Customer.
+     * @return a List of OrderTracking rows.
+     */
+    public List<OrderTracking> getTrackingOfCustomer(int customerId) {
+        return this.orderTrackingRepository.findByCustomerId(customerId);
+    }
+
+    /**
+     * Marks that an Order changed in the current transaction.
+     *
+     * @param orderId the orderId of the Order.
+     */
+    public void markChanged(int orderId) {
+        markChanged(List.of(orderId));
+    }
+
+    /**
+     * Marks that Orders changed in the current transaction. Their tracking rows are refreshed when the transaction
+     * commits, or at once if there is no transaction.
+     *
+     * @param orderIds the orderIds of the Orders.
+     */
+    public void markChanged(Collection<Integer> orderIds) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh(orderIds, List.of());
+            return;
+        }
+        pendingChanges().orderIds.addAll(orderIds);
+    }
+
+    /**
+     * Marks that Trips changed in the current transaction, such as their current location. The tracking rows of
+     * every Order on the Trips are refreshed when the transaction commits, or at once if there is no transaction.
+     *
+     * @param tripIds the tripIds of the Trips.
+     */
+    public void markTripsChanged(Collection<Integer> tripIds) {
+        if (tripIds.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh(List.of(), tripIds);
+            return;
+        }
+        pendingChanges().tripIds.addAll(tripIds);
+    }
+
+    /**
+     * Refreshes the tracking rows of the specified Orders and of every Order on the specified Trips, and pushes
+     * the changed rows to the tracking streams at once. Called outside of a transaction.
+     *
+     * @param orderIds the orderIds of the Orders.
+     * @param tripIds the tripIds of the Trips.
+     * @return the number of rows written.
+     */
+    public int refresh(Collection<Integer> orderIds, Collection<Integer> tripIds) {
+        List<OrderTracking> changed = refreshRows(orderIds, tripIds);
+        this.orderTrackingBroadcaster.publish(changed);
+        return changed.size();
+    }
+
+    /**
+     * Refreshes the tracking rows of the specified Orders and of every Order on the specified Trips from the
+     * Order, Shipment and Trip, creating the rows that do not exist yet. Rows that did not change are not written.
+     *
+     * @param orderIds the orderIds of the Orders.
+     * @param tripIds the tripIds of the Trips.
+     * @return the rows written.
+     */
+    private List<OrderTracking> refreshRows(Collection<Integer> orderIds, Collection<Integer> tripIds) {
+        Map<Integer, TrackingSource> sources = new LinkedHashMap<>();
+        for (List<Integer> batch : batches(orderIds)) {
+            this.orderRepository.findTrackingSourcesByOrderIds(batch).forEach(source -> sources.put(source.getOrderId(), source));
+        }
+        for (List<Integer> batch : batches(tripIds)) {
+            this.orderRepository.findTrackingSourcesByTripIds(batch).forEach(source -> sources.put(source.getOrderId(), source));
+        }
+        if (sources.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, OrderTracking> rows = new HashMap<>();
+        for (List<Integer> batch : batches(sources.keySet())) {
+            this.orderTrackingRepository.findAllById(batch).forEach(row -> rows.put(row.getOrderId(), row));
+        }
+        List<OrderTracking> changed = new ArrayList<>();
+        for (TrackingSource source : sources.values()) {
+            OrderTracking row = rows.computeIfAbsent(source.getOrderId(), OrderTracking::new);
+            boolean customerChanged = !Objects.equals(row.getCustomerId(), source.getCustomerId());
+            row.setCustomerId(source.getCustomerId());
+            if (row.update(source.getOrderStatus(), source.getProgressInPercent(), getCurrentLocation(source))
+                    || customerChanged) {
+                changed.add(row);
+            }
+        }
+        this.orderTrackingRepository.saveAll(changed);
+        return changed;
+    }
+
+    /**
+     * Creates the tracking rows of Orders placed before the tracking read model existed, once the
+     * application is ready. Runs in batches, so it does nothing but one query once every Order is tracked.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        int backfilled = 0;
+        List<Integer> orderIds = this.orderTrackingRepository.findUntrackedOrderIds(PageRequest.ofSize(BATCH_SIZE));
+        while (!orderIds.isEmpty()) {
+            backfilled += refresh(orderIds, List.of());
+            orderIds = this.orderTrackingRepository.findUntrackedOrderIds(PageRequest.ofSize(BATCH_SIZE));
+        }
+        if (backfilled > 0) {
+            log.info("Backfilled the tracking rows of {} orders", backfilled);
+        }
+    }
+
+    /**
+     * Return the current location of an Order: the unload location of its Shipment once it is DELIVERED,
+     * the current location of its Trip before that, and null while it is not on a Trip.
+     *
+     * @param source the source columns of the tracking row.
+     * @return the current location, or null if it is not on a Trip.
+     */
+    private static String getCurrentLocation(TrackingSource source) {
+        if (source.getTripId() == null) {
+            return null;
+        }
+        if (source.getOrderStatus() == OrderStatus.DELIVERED) {
+            return source.getShipmentUnloadLocation();
+        }
+        return source.getTripCurrentLocation();
+    }
+
+    /**
+     * Return the changes pending in the current transaction, registering them to be refreshed before commit
+     * the first time.
+     *
+     * @return the changes pending in the current transaction.
+     */
+    private PendingChanges pendingChanges() {
+        PendingChanges pending = (PendingChanges) TransactionSynchronizationManager.getResource(PENDING_CHANGES);
+        if (pending == null) {
+            pending = new PendingChanges();
+            TransactionSynchronizationManager.bindResource(PENDING_CHANGES, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        return pending;
+    }
+
+    /**
+     * Return the IDs split into batches of at most BATCH_SIZE.
+     *
+     * @param ids the IDs to split.
+     * @return the batches.
+     */
+    private static List<List<Integer>> batches(Collection<Integer> ids) {
+        List<List<Integer>> batches = new ArrayList<>();
+        List<Integer> batch = new ArrayList<>();
+        for (Integer id : ids) {
+            batch.add(id);
+            if (batch.size() == BATCH_SIZE) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * The Orders and Trips changed in a transaction, refreshed just before it commits and pushed to the tracking
+     * streams after it commits.
+     */
+    private final class PendingChanges implements TransactionSynchronization {
+
+        /** The orderIds of the changed Orders */
+        private final Set<Integer> orderIds = new LinkedHashSet<>();
+
+        /** The tripIds of the changed Trips */
+        private final Set<Integer> tripIds = new LinkedHashSet<>();
+
+        /** The tracking rows written before commit */
+        private List<OrderTracking> changed = List.of();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            this.changed = refreshRows(this.orderIds, this.tripIds);
+        }
+
+        @Override
+        public void afterCommit() {
+            orderTrackingBroadcaster.publish(this.changed);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(PENDING_CHANGES);
+        }
+    }
+}
@@ -1,18 +1,26 @@
 package wms.rest.wms.service;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.rest.webmvc.ResourceNotFoundException;
 import org.springframework.stereotype.Service;
 import wms.rest.wms.model.Inventory;
 import wms.rest.wms.model.Packaging;
 import wms.rest.wms.model.Product;
 import wms.rest.wms.repository.InventoryRepository;
+import wms.rest.wms.repository.InventoryRepository.StockLevel;
 import wms.rest.wms.repository.PackagingRepository;
 import wms.rest.wms.repository.ProductRepository;
+import wms.rest.wms.service.cache.ProductCatalogCache;
+import wms.rest.wms.service.ledger.StockLedgerService;
+import wms.rest.wms.service.search.ProductSearchIndex;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Service class for product api controller.
@@ -33,45 +41,134 @@ public class ProductService {
 
     private PackagingRepository packagingRepository;
 
+    /** EntityManager for detaching streamed Products, so the persistence context does not grow with the catalog */
+    private EntityManager entityManager;
+
+    /** In-memory search index over the name, supplier and description of every Product */
+    private ProductSearchIndex productSearchIndex;
+
+    /** Read-through cache of the Products, with the stock kept in a short lived tier */
+    private ProductCatalogCache productCatalogCache;
+
+    /** Service appending the received and corrected stock to the stock ledger */
+    private StockLedgerService stockLedgerService;
+
     /**
      * Creates a Product and saves it to the repository.
      *
      * @param product the Product to create and save to the repository.
      * @return saves the Product to the repository. If the Product does not exist in the repository,
      * save and persist the new Product. If the incoming JSON payload of the Product already exist
-     * in the repository, merge the new Product with the old.
+     * in the repository, merge the new Product with the old. The change of the stock of its Inventory is
+     * recorded in the stock ledger as received, which for a merged Product is the difference from the stock it had.
      */
+    @Transactional
     public Product createProduct(Product product) {
-        return this.productRepository.save(product);
+        Optional<StockLevel> previous = product.getProductId() == 0 ? Optional.empty() : this.inventoryRepository
+                .findStockLevelsByProductIdIn(List.of(product.getProductId())).stream().findFirst();
+        Product savedProduct = this.productRepository.save(product);
+        Inventory inventory = savedProduct.getInventory();
+        this.stockLedgerService.recordReceipt(savedProduct.getProductId(),
+                (inventory == null ? 0 : inventory.getTotalStock()) - previous.map(StockLevel::getTotalStock).orElse(0),
+                (inventory == null ? 0 : inventory.getReservedStock()) - previous.map(StockLevel::getReservedStock).orElse(0),
+                (inventory == null ? 0 : inventory.getAvailableStock()) - previous.map(StockLevel::getAvailableStock).orElse(0));
+        this.productSearchIndex.indexAfterCommit(savedProduct);
+        this.productCatalogCache.evictAfterCommit(savedProduct.getProductId());
+        return savedProduct;
     }
 
     /**
-     * Return a List of all Products.
+     * Return a List of all Products, read through the ProductCatalogCache.
      *
      * @return a List of all Products
      */
     public List<Product> getProducts() {
-        return this.productRepository.findAll();
+        return this.productCatalogCache.getProducts();
+    }
+
+    /**
+     * Return a page of Products after a productId in ascending productId order, with their Inventory and Packaging.
+     *
+     * @param afterProductId only Products with a productId greater than this value are returned.
+     * @param size the maximum number of Products in the page.
+     * @return a List of at most size Products.
+     */
+    public List<Product> getProductsAfter(int afterProductId, int size) {
+        return this.productRepository.findPageAfter(afterProductId, PageRequest.ofSize(size));
+    }
+
+    /**
+     * Return a lazy Stream of all Products in ascending productId order. The Products are fetched in pages of
+     * batchSize by keyset on productId, and every page is detached once it is loaded, so no more than one page
+     * is held at a time however big the catalog is. No connection is held between pages.
+     *
+     * @param batchSize the number of Products fetched per statement.
+     * @return a Stream of all Products.
+     */
+    public Stream<Product> streamProducts(int batchSize) {
+        Iterator<Product> iterator = new Iterator<>() {
+
+            /** The page being streamed */
+            private Iterator<Product> page = List.<Product>of().iterator();
+
+            /** The productId of the last streamed Product */
+            private int lastProductId = 0;
+
+            /** Whether the last page fetched was the final one */
+            private boolean exhausted = false;
+
+            @Override
+            public boolean hasNext() {
+                if (!this.page.hasNext() && !this.exhausted) {
+                    List<Product> products = getProductsAfter(this.lastProductId, batchSize);
+                    products.forEach(entityManager::detach);
+                    this.exhausted = products.size() < batchSize;
+                    this.page = products.iterator();
+                }
+                return this.page.hasNext();
+            }
+
+            @Override
+            public Product next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Product product = this.page.next();
+                this.lastProductId = product.getProductId();
+                return product;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
     }
 
     /**
-     * Search the repository for a Product or Products containing the name search query.
+     * Search for Products matching the search query by name, supplier and description, best match first.
+     * The query is answered by the ProductSearchIndex, which also finds word prefixes and words with typos.
+     * Until the index is built, Products whose name contains the query are read from the repository instead.
      *
-     * @param name the name of the Product or Products to get.
-     * @return a List of Products that contains the name search query.
+     * @param name the search query.
+     * @return a List of Products matching the search query.
      */
     public List<Product> findByNameContaining(String name) {
-        return this.productRepository.findByNameContainingIgnoreCase(name);
+        if (!this.productSearchIndex.isReady()) {
+            return this.productRepository.findByNameContainingIgnoreCase(name);
+        }
+        List<Integer> productIds = this.productSearchIndex.search(name);
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+        return this.productCatalogCache.getAll(productIds);
     }
 
     /**
-     * Search the repository for a Product containing the GTIN search query.
+     * Search for a Product with the GTIN, read through the ProductCatalogCache.
      *
      * @param gtin the GTIN of the Product to get.
      * @return an Optional object of the Product, can be present or not.
      */
     public Optional<Product> findByGtin(int gtin) {
-        return this.productRepository.findByGtin(gtin);
+        return this.productCatalogCache.getByGtin(gtin);
     }
 
     /**
@@ -85,26 +182,36 @@ public class ProductService {
     }
 
     /**
-     * Delete a Product by productId.
+     * Delete a Product by productId. The stock its Inventory is deleted with is recorded in the stock ledger as an
+     * ADJUSTMENT, so the ledger of the Product sums to no stock.
      *
      * @param productId the productId of the Product to delete.
      */
+    @Transactional
     public void deleteById(int productId) {
+        for (StockLevel stock : this.inventoryRepository.findStockLevelsByProductIdIn(List.of(productId))) {
+            this.stockLedgerService.recordAdjustment(productId, -stock.getTotalStock(), -stock.getReservedStock(),
+                    -stock.getAvailableStock());
+        }
         this.productRepository.deleteById(productId);
+        this.productSearchIndex.removeAfterCommit(productId);
+        this.productCatalogCache.evictAfterCommit(productId);
     }
 
     /**
-     * Return an Optional of Product.
+     * Return an Optional of Product, read through the ProductCatalogCache.
      *
      * @param productId the productId of the Product to return.
      * @return an Optional object of Product, can be present or not.
      */
     public Optional<Product> findById(int productId) {
-        return this.productRepository.findById(productId);
+        return this.productCatalogCache.get(productId);
     }
 
     /**
-     * Updates a Product by specified properties.
+     * Updates a Product by specified properties. The stock of its Inventory is read again under a row lock before it
+     * is changed, so a concurrent reservation is neither overwritten nor left out of the change, which is recorded
+     * in the stock ledger as an ADJUSTMENT.
      *
      * @param productId the productId of the Product to update.
      * @param updatedProduct the incoming Product with new properties.
@@ -143,6 +250,11 @@ public class ProductService {
         if (updatedProduct.getInventory() != null) {
             Inventory updatedInventory = updatedProduct.getInventory();
             Inventory existingInventory = existingProduct.getInventory();
+            // Reads the stock again under a row lock, so no reservation commits between the read and the write
+            this.entityManager.refresh(existingInventory, LockModeType.PESSIMISTIC_WRITE);
+            int totalStock = existingInventory.getTotalStock();
+            int reservedStock = existingInventory.getReservedStock();
+            int availableStock = existingInventory.getAvailableStock();
             if (updatedInventory.getTotalStock() != 0) {
                 existingInventory.setTotalStock(updatedInventory.getTotalStock());
             }
@@ -153,6 +265,9 @@ public class ProductService {
                 existingInventory.setAvailableStock(updatedInventory.getAvailableStock());
             }
             inventoryRepository.save(existingInventory);
+            this.stockLedgerService.recordAdjustment(productId, existingInventory.getTotalStock() - totalStock,
+                    existingInventory.getReservedStock() - reservedStock,
+                    existingInventory.getAvailableStock() - availableStock);
         }
 
         if (updatedProduct.getPackaging() != null) {
@@ -173,6 +288,9 @@ public class ProductService {
             packagingRepository.save(existingPackaging);
         }
 
-        return productRepository.save(existingProduct);
+        Product savedProduct = productRepository.save(existingProduct);
+        this.productSearchIndex.indexAfterCommit(savedProduct);
+        this.productCatalogCache.evictAfterCommit(productId);
+        return savedProduct;
     }
 }
\ No newline at end of file
@@ -0,0 +1,358 @@
+package wms.rest.wms.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import wms.rest.wms.exception.LeaseLostException;
+import wms.rest.wms.model.SchedulerLease;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Service class for the scheduler leases, which keep the Scheduled jobs from running on every instance of the
+ * application at once. A job either runs on the one instance leading it, or is split into partitions by the hash
+ * of a key, such as the storeId, that the instances take from each other as they get to them.
+ * <p>
+ * A lease is acquired with one conditional statement in a transaction of its own, so at most one instance holds it
+ * at a time. While a run is in progress its lease is extended by a heartbeat every third of its time to live, so the
+ * time to live can be short: an instance that crashes in the middle of a run blocks the job for no longer than that.
+ * The lease of a job run under lead() is released as soon as the run's transaction completes, so the next wake-up
+ * on any instance runs the job. The lease of a partition is kept until it expires after the run, so instances
+ * running the job at the same time still split the partitions between them. Expiry is decided by the clock of the
+ * database, which every instance shares. Every acquisition raises the fencing token of the lease, and a transaction
+ * writing under a lease is fenced: it checks the token before it starts and again under a row lock just before it
+ * commits, so an instance that lost its lease while it was running cannot commit anything.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+public class SchedulerLeaseService {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(SchedulerLeaseService.class);
+
+    /** Takes over a lease that has expired, or renews one this instance owns, raising its fencing token */
+    private static final String RENEW_SQL =
+            "UPDATE scheduler_lease SET lease_owner = :owner, fencing_token = fencing_token + 1, " +
+            "expires_at = TIMESTAMPADD(MICROSECOND, :ttlMicros, LOCALTIMESTAMP(6)) " +
+            "WHERE lease_name = :leaseName AND (lease_owner = :owner OR expires_at <= LOCALTIMESTAMP(6))";
+
+    /** Creates a lease the first time any instance asks for it */
+    private static final String INSERT_SQL =
+            "INSERT INTO scheduler_lease (lease_name, lease_owner, fencing_token, expires_at) " +
+            "VALUES (:leaseName, :owner, 1, TIMESTAMPADD(MICROSECOND, :ttlMicros, LOCALTIMESTAMP(6)))";
+
+    /** Reads a lease this instance owns */
+    private static final String OWNED_SQL =
+            "SELECT lease_name, lease_owner, fencing_token, expires_at FROM scheduler_lease " +
+            "WHERE lease_name = :leaseName AND lease_owner = :owner";
+
+    /** Reads the current owner and fencing token of a lease */
+    private static final String CURRENT_SQL =
+            "SELECT lease_owner, fencing_token FROM scheduler_lease WHERE lease_name = :leaseName";
+
+    /** Extends a lease this instance still owns without raising its fencing token, for the heartbeat of a run */
+    private static final String EXTEND_SQL =
+            "UPDATE scheduler_lease SET expires_at = TIMESTAMPADD(MICROSECOND, :ttlMicros, LOCALTIMESTAMP(6)) " +
+            "WHERE lease_name = :leaseName AND lease_owner = :owner AND fencing_token = :token";
+
+    /** Lets the other instances take over a lease this instance still owns at once */
+    private static final String RELEASE_SQL =
+            "UPDATE scheduler_lease SET expires_at = LOCALTIMESTAMP(6) " +
+            "WHERE lease_name = :leaseName AND lease_owner = :owner AND fencing_token = :token " +
+            "AND expires_at > LOCALTIMESTAMP(6)";
+
+    /** Lets the other instances take over every lease this instance holds */
+    private static final String RELEASE_ALL_SQL =
+            "UPDATE scheduler_lease SET expires_at = LOCALTIMESTAMP(6) " +
+            "WHERE lease_owner = :owner AND expires_at > LOCALTIMESTAMP(6)";
+
+    /** JDBC template for the conditional lease statements */
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /** Template acquiring leases in a transaction of their own, committed before the job starts */
+    private final TransactionTemplate acquireTemplate;
+
+    /** Identifies this instance as the owner of its leases */
+    private final String instanceId;
+
+    /** How long a lease is held after it is acquired */
+    private final long ttlMillis;
+
+    /** Number of partitions a partitioned job is split into */
+    private final int partitions;
+
+    /** The leases of the runs in progress on this instance, extended by the heartbeat */
+    private final Set<SchedulerLease> running = ConcurrentHashMap.newKeySet();
+
+    /** Extends the leases of the runs in progress every third of the time to live */
+    private final ScheduledExecutorService heartbeat;
+
+    /**
+     * Creates the service.
+     *
+     * @param jdbcTemplate JDBC template for the conditional lease statements.
+     * @param transactionManager the transaction manager the leases are acquired with.
+     * @param instanceId identifies this instance as the owner of its leases, unique among the running instances.
+     * @param ttlMillis how long a lease is held after it is acquired or extended by the heartbeat.
+     * @param partitions number of partitions a partitioned job is split into.
+     */
+    public SchedulerLeaseService(NamedParameterJdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                 @Value("${scheduler.instance-id:${random.uuid}}") String instanceId,
+                                 @Value("${scheduler.lease.ttl-millis:30000}") long ttlMillis,
+                                 @Value("${scheduler.lease.partitions:8}") int partitions) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.acquireTemplate = new TransactionTemplate(transactionManager);
+        this.acquireTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.instanceId = instanceId;
+        this.ttlMillis = ttlMillis;
+        this.partitions = partitions;
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "scheduler-lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, ttlMillis / 3);
+        this.heartbeat.scheduleAtFixedRate(this::extendRunning, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Return the lease if this instance could acquire it, because nobody held it, it expired or this instance
+     * already owned it. The lease is committed before this method returns, whatever transaction the caller is in.
+     *
+     * @param leaseName the name of the lease.
+     * @return an Optional of the acquired lease with its new fencing token, empty if another instance holds it.
+     */
+    public Optional<SchedulerLease> tryAcquire(String leaseName) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("leaseName", leaseName)
+                .addValue("owner", this.instanceId)
+                .addValue("ttlMicros", this.ttlMillis * 1_000);
+        return this.acquireTemplate.execute(status -> {
+            if (this.jdbcTemplate.update(RENEW_SQL, parameters) == 0) {
+                try {
+                    this.jdbcTemplate.update(INSERT_SQL, parameters);
+                } catch (DuplicateKeyException e) {
+                    return Optional.<SchedulerLease>empty();
+                }
+            }
+            return this.jdbcTemplate.query(OWNED_SQL, parameters, (rs, rowNum) -> new SchedulerLease(
+                    rs.getString("lease_name"), rs.getString("lease_owner"), rs.getLong("fencing_token"),
+                    rs.getTimestamp("expires_at").toLocalDateTime())).stream().findFirst();
+        });
+    }
+
+    /**
+     * Acquires the lease of a job and fences the transaction of the caller with it. The lease is kept alive by the
+     * heartbeat until the transaction completes, and then released, so the next run can start on any instance.
+     * Without a transaction the lease is held until it expires.
+     *
+     * @param jobName the name of the job.
+     * @return true if this instance leads the job and should run it, false if another instance does.
+     */
+    public boolean lead(String jobName) {
+        Optional<SchedulerLease> lease = tryAcquire(jobName);
+        if (lease.isEmpty()) {
+            log.debug("Skipping {}, another instance holds its lease", jobName);
+            return false;
+        }
+        fence(lease.get());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.running.add(lease.get());
+            TransactionSynchronizationManager.registerSynchronization(new Release(lease.get()));
+        }
+        return true;
+    }
+
+    /**
+     * Lets the other instances take over a lease this instance owns at once, unless it has been taken over already.
+     * The lease is released in a transaction of its own.
+     *
+     * @param lease the lease to release.
+     */
+    public void release(SchedulerLease lease) {
+        this.running.remove(lease);
+        try {
+            this.acquireTemplate.executeWithoutResult(status -> this.jdbcTemplate.update(RELEASE_SQL, parameters(lease)));
+        } catch (DataAccessException e) {
+            log.warn("Could not release lease {}, it expires on its own: {}", lease.getLeaseName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Runs every partition of a job whose lease this instance can acquire, one after another. Each instance starts
+     * at a partition of its own and skips the partitions other instances hold, so instances running the job at the
+     * same time split the partitions between them. The lease of a partition is kept alive by the heartbeat while it
+     * runs, and expires one time to live after.
+     *
+     * @param jobName the name of the job.
+     * @param work runs a partition, given its number and the lease to fence its transactions with.
+     * @return the number of partitions this instance ran.
+     */
+    public int runPartitions(String jobName, BiConsumer<Integer, SchedulerLease> work) {
+        int first = Math.floorMod(this.instanceId.hashCode(), this.partitions);
+        int ran = 0;
+        for (int i = 0; i < this.partitions; i++) {
+            int partition = (first + i) % this.partitions;
+            Optional<SchedulerLease> lease = tryAcquire(jobName + "#" + partition);
+            if (lease.isPresent()) {
+                this.running.add(lease.get());
+                try {
+                    work.accept(partition, lease.get());
+                } finally {
+                    this.running.remove(lease.get());
+                }
+                ran++;
+            }
+        }
+        return ran;
+    }
+
+    /**
+     * Return the partition a key belongs to.
+     *
+     * @param key the key the work is partitioned by, such as a storeId.
+     * @return the partition of the key, from 0 up to the number of partitions.
+     */
+    public int partitionOf(int key) {
+        return Math.floorMod(Integer.hashCode(key), this.partitions);
+    }
+
+    /**
+     * Fences the current transaction with a lease. The fencing token is checked at once, so a run that already
+     * lost its lease stops before writing anything, and again under a row lock just before the transaction
+     * commits. Without a transaction the token is only checked at once.
+     *
+     * @param lease the lease the transaction writes under.
+     * @throws LeaseLostException if another instance has taken over the lease.
+     */
+    public void fence(SchedulerLease lease) {
+        verify(lease, false);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new Fence(lease));
+        }
+    }
+
+    /**
+     * Lets the other instances take over every lease this instance holds at once, rather than when they expire.
+     */
+    @PreDestroy
+    public void releaseAll() {
+        this.heartbeat.shutdownNow();
+        this.running.clear();
+        try {
+            int released = this.jdbcTemplate.update(RELEASE_ALL_SQL, new MapSqlParameterSource("owner", this.instanceId));
+            log.info("Released {} scheduler leases held by instance {}", released, this.instanceId);
+        } catch (DataAccessException e) {
+            log.warn("Could not release the scheduler leases of instance {}: {}", this.instanceId, e.getMessage());
+        }
+    }
+
+    /**
+     * Extends the leases of the runs in progress. A lease that was taken over meanwhile is no longer extended, and
+     * the fence of its run rejects the commit.
+     */
+    private void extendRunning() {
+        for (SchedulerLease lease : this.running) {
+            try {
+                if (this.jdbcTemplate.update(EXTEND_SQL, parameters(lease)) == 0) {
+                    this.running.remove(lease);
+                    log.warn("Lease {} with fencing token {} was taken over during its run",
+                            lease.getLeaseName(), lease.getFencingToken());
+                }
+            } catch (DataAccessException e) {
+                log.warn("Could not extend lease {}: {}", lease.getLeaseName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Return the parameters naming a lease this instance owns.
+     *
+     * @param lease the lease.
+     * @return the parameters of the lease statements.
+     */
+    private MapSqlParameterSource parameters(SchedulerLease lease) {
+        return new MapSqlParameterSource()
+                .addValue("leaseName", lease.getLeaseName())
+                .addValue("owner", this.instanceId)
+                .addValue("token", lease.getFencingToken())
+                .addValue("ttlMicros", this.ttlMillis * 1_000);
+    }
+
+    /**
+     * Checks that this instance still owns a lease with the same fencing token.
+     *
+     * @param lease the lease to check.
+     * @param lock whether to lock the lease row until the current transaction completes.
+     * @throws LeaseLostException if another instance has taken over the lease.
+     */
+    private void verify(SchedulerLease lease, boolean lock) {
+        List<SchedulerLease> current = this.jdbcTemplate.query(lock ? CURRENT_SQL + " FOR UPDATE" : CURRENT_SQL,
+                new MapSqlParameterSource("leaseName", lease.getLeaseName()),
+                (rs, rowNum) -> new SchedulerLease(lease.getLeaseName(), rs.getString("lease_owner"),
+                        rs.getLong("fencing_token"), null));
+        if (current.isEmpty() || current.get(0).getFencingToken() != lease.getFencingToken()
+                || !current.get(0).getOwner().equals(lease.getOwner())) {
+            throw new LeaseLostException("Lease " + lease.getLeaseName() + " with fencing token "
+                    + lease.getFencingToken() + " was taken over by another instance");
+        }
+    }
+
+    /**
+     * Checks the fencing token of a lease under a row lock just before the transaction writing under it commits.
+     * The lock keeps another instance from taking over the lease until the transaction has completed.
+     */
+    private final class Fence implements TransactionSynchronization {
+
+        /** The lease the transaction writes under */
+        private final SchedulerLease lease;
+
+        private Fence(SchedulerLease lease) {
+            this.lease = lease;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            verify(this.lease, true);
+        }
+    }
+
+    /**
+     * Releases the lease of a job once the transaction of its run has completed, committed or not.
+     */
+    private final class Release implements TransactionSynchronization {
+
+        /** The lease of the run */
+        private final SchedulerLease lease;
+
+        private Release(SchedulerLease lease) {
+            this.lease = lease;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            release(this.lease);
+        }
+    }
+}
@@ -4,12 +4,17 @@ import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import wms.rest.wms.api.model.ShipmentSummary;
 import wms.rest.wms.model.*;
 import wms.rest.wms.repository.*;
+import wms.rest.wms.service.pipeline.OrderRelease;
+import wms.rest.wms.service.pipeline.PlanningWindow;
+import wms.rest.wms.service.shipment.ShipmentBuildReport;
+import wms.rest.wms.service.shipment.ShipmentBuilder;
 
-import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
 
 /**
@@ -26,76 +31,71 @@ public class ShipmentService {
     * @see LoggerFactory#getLogger(Class) */
     private static final Logger log = LoggerFactory.getLogger(ShipmentService.class);
 
+    /** Name of the partitioned job creating Shipments, its partitions split the Stores by storeId */
+    public static final String CREATE_SHIPMENT_JOB = "shipment.create";
+
+    /** Name of the job moving the Orders of Shipments to PICKED */
+    public static final String PICK_SHIPMENT_JOB = "shipment.pick";
+
     /** Repository for handling Shipment persistence operations */
     private ShipmentRepository shipmentRepository;
 
     /** Service for handling Order persistence operations */
     private OrderService orderService;
 
-    /** Repository for handling Inventory persistence operations */
-    private InventoryRepository inventoryRepository;
+    /** Builder for creating Shipments from registered Orders */
+    private ShipmentBuilder shipmentBuilder;
+
+    /** Service for consuming and recording status transitions in the scheduler work queue */
+    private WorkQueueService workQueueService;
+
+    /** Service for the leases keeping the Scheduled jobs from running on every instance at once */
+    private SchedulerLeaseService schedulerLeaseService;
+
+    /** Repository for checking if any REGISTERED Orders have been released */
+    private OrderRepository orderRepository;
+
+    /** Window deciding when the Orders of a delivery date are released and their Shipments planned into Trips */
+    private PlanningWindow planningWindow;
 
     /**
-     * Return a list of all Shipments
+     * Return a list of all Shipments, each summarized with the IDs of its Trip and Orders.
+     * Every Shipment is read with its Trip and Orders in one statement.
      *
      * @return return a List of all Shipments.
      */
-    public List<Shipment> getShipments(){
-        return this.shipmentRepository.findAll();
+    public List<ShipmentSummary> getShipments(){
+        return this.shipmentRepository.findAllForAdminList().stream().map(ShipmentSummary::of).toList();
     }
 
     /**
      * Schedules and creates Shipments based on grouped Orders from different Stores by delivery date.
-     * This method is executed periodically according to a Scheduled configuration starting after an initial delay.
+     * Only the Orders whose cutoff has passed are put on Shipments, the others stay REGISTERED until it.
+     * It is run by the OrderPipeline as soon as Orders are registered, and when its poll finds released Orders.
+     * It runs outside a transaction, so every group is built in a transaction of its own and a failing group
+     * does not roll back the others. The Stores are split into partitions by storeId, and this instance only builds
+     * the partitions whose lease it acquires, so instances running at the same time never build the same Store.
      *
-     * @see OrderService#groupByStoreAndDeliveryDate() for details on how Orders are grouped.
+     * @see ShipmentBuilder#buildShipments() for details on how Orders are grouped and moved onto Shipments.
      */
-    @Transactional //100k opprinneig
-    @Scheduled(initialDelay = 20000, fixedRate = 360000)
     public void createShipment() {
         try {
-            // Group orders by both Store and LocalDate
-            Map<AbstractMap.SimpleEntry<Store, LocalDate>, List<Order>> ordersByStoreDate = this.orderService.groupByStoreAndDeliveryDate();
-
-            if (!ordersByStoreDate.isEmpty()) {
-                for (Map.Entry<AbstractMap.SimpleEntry<Store, LocalDate>, List<Order>> entry : ordersByStoreDate.entrySet()) {
-                    Store store = entry.getKey().getKey();
-                    LocalDate deliveryDate = entry.getKey().getValue();
-                    List<Order> orders = entry.getValue();
-
-                    // Create a new Shipment for each Store and delivery date if there are registered Orders
-                    Shipment shipment = new Shipment();
-                    shipment.setShipmentLoadLocation("Trondheim");
-                    shipment.setShipmentUnloadLocation(store.getName());
-                    shipment.setShipmentDeliveryDate(deliveryDate);
-                    shipment = shipmentRepository.save(shipment);
-                    log.info("Shipment created for store {} for delivery date {}. Shipment ID: {}", store.getName(), deliveryDate, shipment.getShipmentId());
-
-                    // Associate Orders with the new Shipment
-                    for (Order order : orders) {
-                        this.orderService.updateFromRegisteredToPicking(order);
-                        order.setShipment(shipment);
-                        shipment.getOrders().add(order);
-                        log.info("Associating Order ID: {} with Shipment ID: {}", order.getOrderId(), shipment.getShipmentId());
-
-                        for (OrderQuantities quantity : order.getQuantities()) {
-                            Product product = quantity.getProduct();
-                            Inventory inventory = product.getInventory();
-
-                            // Calculate the new inventory values
-                            int newReservedStock = inventory.getReservedStock() - quantity.getProductQuantity();
-                            int newTotalStock = inventory.getTotalStock() - quantity.getProductQuantity();
-                            int newAvailableStock = newTotalStock - newReservedStock;
-
-                            inventory.setReservedStock(newReservedStock);
-                            inventory.setTotalStock(newTotalStock);
-                            inventory.setAvailableStock(newAvailableStock);
-                            inventoryRepository.save(inventory);
-                        }
-                    }
-                }
-            } else {
-                log.info("No registered orders found to add to a new shipment.");
+            OrderRelease release = this.planningWindow.releasedAt(LocalDateTime.now());
+            List<ShipmentBuildReport> reports = new ArrayList<>();
+            int partitions = this.schedulerLeaseService.runPartitions(CREATE_SHIPMENT_JOB, (partition, lease) ->
+                    reports.add(this.shipmentBuilder.buildShipments(
+                            storeId -> this.schedulerLeaseService.partitionOf(storeId) == partition,
+                            release, () -> this.schedulerLeaseService.fence(lease))));
+            int shipments = reports.stream().mapToInt(ShipmentBuildReport::getShipments).sum();
+            int failedGroups = reports.stream().mapToInt(ShipmentBuildReport::getFailedGroups).sum();
+            if (partitions == 0) {
+                log.info("Every shipment partition is held by another instance.");
+            } else if (shipments == 0 && failedGroups == 0) {
+                log.info("No released orders found to add to a new shipment.");
+            }
+            if (failedGroups > 0) {
+                log.error("Shipments of {} of {} groups could not be created, their orders are retried on the next run.",
+                        failedGroups, reports.stream().mapToInt(ShipmentBuildReport::getGroups).sum());
             }
         } catch (Exception e) {
             log.error("An error occurred while creating shipments: {}", e.getMessage(), e);
@@ -103,22 +103,51 @@ public class ShipmentService {
     }
 
 
+    /**
+     * Checks if any REGISTERED Order of a Store has been released by the cutoffs passed so far, which the
+     * OrderPipeline polls to know when to create Shipments.
+     *
+     * @return true if there is a released REGISTERED Order, false otherwise.
+     */
+    public boolean hasReleasedOrders() {
+        OrderRelease release = this.planningWindow.releasedAt(LocalDateTime.now());
+        return !this.orderRepository.findReleasedIdsByOrderStatus(OrderStatus.REGISTERED, release.deliveryDatesUntil(),
+                release.undatedPlacedUntil(), PageRequest.ofSize(1)).isEmpty();
+    }
+
     /**
      * Update all Orders inside a Shipment from OrderStatus PICKING to PICKED.
-     * This method is executed periodically according to a Scheduled configuration starting after an initial delay.
+     * Only Shipments recorded under SHIPMENT_PICKING in the work queue are loaded. Once every Order
+     * of a Shipment is PICKED, the Shipment is recorded under SHIPMENT_PICKED for the Trip scheduler, available at
+     * the planning time of its delivery date, so the Shipments of every Store for a date are planned together.
+     * Only the instance leading the job runs it.
+     * It is run by the OrderPipeline as soon as Shipments are recorded under SHIPMENT_PICKING.
      */
     @Transactional
-    @Scheduled(initialDelay = 110000, fixedRate = 360000)
     public void updateShipmentOrdersToPicked() {
-        List<Shipment> shipments = this.shipmentRepository.findAll();
-        for (Shipment shipment : shipments) {
-            List<Order> ordersToUpdate = shipment.getOrders().stream()
-                    .filter(order -> order.getOrderStatus() == OrderStatus.PICKING)
-                    .toList();
-            for (Order order : ordersToUpdate) {
-                this.orderService.updateFromPickingToPicked(order);
+        if (!this.schedulerLeaseService.lead(PICK_SHIPMENT_JOB)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Integer> shipmentIds = this.workQueueService.poll(WorkQueueTopic.SHIPMENT_PICKING, WorkQueueService.BATCH_SIZE);
+        while (!shipmentIds.isEmpty()) {
+            Map<LocalDateTime, List<Integer>> pickedShipmentIds = new TreeMap<>();
+            for (Shipment shipment : this.shipmentRepository.findWithOrdersByShipmentIdIn(shipmentIds)) {
+                List<Order> ordersToUpdate = shipment.getOrders().stream()
+                        .filter(order -> order.getOrderStatus() == OrderStatus.PICKING)
+                        .toList();
+                for (Order order : ordersToUpdate) {
+                    this.orderService.updateFromPickingToPicked(order);
+                }
+                if (shipment.getOrders().stream().allMatch(order -> order.getOrderStatus() == OrderStatus.PICKED)) {
+                    pickedShipmentIds.computeIfAbsent(
+                            this.planningWindow.planningTime(shipment.getShipmentDeliveryDate(), now),
+                            planningTime -> new ArrayList<>()).add(shipment.getShipmentId());
+                }
             }
-            this.shipmentRepository.save(shipment);
+            pickedShipmentIds.forEach((planningTime, picked) ->
+                    this.workQueueService.enqueueAll(WorkQueueTopic.SHIPMENT_PICKED, picked, planningTime));
+            shipmentIds = this.workQueueService.poll(WorkQueueTopic.SHIPMENT_PICKING, WorkQueueService.BATCH_SIZE);
         }
     }
-}
\ No newline at end of file
+}
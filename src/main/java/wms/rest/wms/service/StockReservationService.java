@@ -0,0 +1,115 @@
+package wms.rest.wms.service;
+
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.transaction.Transactional;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+import wms.rest.wms.exception.NotEnoughStockException;
+import wms.rest.wms.repository.InventoryRepository;
+import wms.rest.wms.repository.ProductRepository;
+import wms.rest.wms.service.ledger.StockLedgerService;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Service class for reserving Inventory stock. Every reservation is a single conditional UPDATE
+ * (available_stock >= quantity), so the check and the write happen atomically in the database
+ * and concurrent reservations can neither oversell nor lose updates.
+ * <p>
+ * When several Products are reserved together they are always updated in ascending productId order,
+ * so two transactions reserving overlapping Products lock the rows in the same order and cannot deadlock.
+ * <p>
+ * Every reservation and release is also appended to the stock ledger in the same transaction. The Inventory row
+ * stays the one place the availability check happens, since a reservation has to see every earlier one.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+@AllArgsConstructor
+public class StockReservationService {
+
+    /** Repository for handling Inventory persistence operations */
+    private InventoryRepository inventoryRepository;
+
+    /** Repository for handling Product persistence operations */
+    private ProductRepository productRepository;
+
+    /** Service appending the reservations and releases to the stock ledger */
+    private StockLedgerService stockLedgerService;
+
+    /**
+     * Reserves a quantity of a single Product.
+     *
+     * @param productId the productId of the Product to reserve.
+     * @param quantity the quantity to reserve, must be positive.
+     * @throws NotEnoughStockException if the available stock does not cover the quantity.
+     * @throws EntityNotFoundException if there is no Product with the productId.
+     */
+    @Transactional(rollbackOn = NotEnoughStockException.class)
+    public void reserve(int productId, int quantity) throws NotEnoughStockException {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive, was " + quantity + " for product with ID: " + productId);
+        }
+        if (this.inventoryRepository.reserveStock(productId, quantity) == 0) {
+            if (!this.productRepository.existsById(productId)) {
+                throw new EntityNotFoundException("Product not found with ID: " + productId);
+            }
+            throw new NotEnoughStockException("There is not enough stock of product with ID: " + productId);
+        }
+        this.stockLedgerService.recordReservation(productId, quantity);
+    }
+
+    /**
+     * Tries to reserve a quantity of a single Product without throwing when the stock does not cover it.
+     * Unlike reserve, a failed attempt does not mark a surrounding transaction for rollback, which lets
+     * callers reserve for several independent Orders in one transaction.
+     *
+     * @param productId the productId of the Product to reserve.
+     * @param quantity the quantity to reserve, must be positive.
+     * @return true if the quantity was reserved, false if the Product does not exist or has too little available stock.
+     */
+    @Transactional
+    public boolean tryReserve(int productId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive, was " + quantity + " for product with ID: " + productId);
+        }
+        if (this.inventoryRepository.reserveStock(productId, quantity) == 0) {
+            return false;
+        }
+        this.stockLedgerService.recordReservation(productId, quantity);
+        return true;
+    }
+
+    /**
+     * Reserves the quantities of several Products in ascending productId order. Either every quantity is
+     * reserved, or the transaction is rolled back.
+     *
+     * @param quantitiesByProductId the quantity to reserve for each productId.
+     * @throws NotEnoughStockException if the available stock of any Product does not cover its quantity.
+     * @throws EntityNotFoundException if any of the Products does not exist.
+     */
+    @Transactional(rollbackOn = NotEnoughStockException.class)
+    public void reserveAll(Map<Integer, Integer> quantitiesByProductId) throws NotEnoughStockException {
+        for (Map.Entry<Integer, Integer> entry : new TreeMap<>(quantitiesByProductId).entrySet()) {
+            reserve(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Releases a previously reserved quantity of a Product back to available stock.
+     *
+     * @param productId the productId of the Product to release.
+     * @param quantity the quantity to release.
+     * @return true if the quantity was released, false if the Product has less reserved stock than the quantity.
+     */
+    @Transactional
+    public boolean release(int productId, int quantity) {
+        if (this.inventoryRepository.releaseStock(productId, quantity) == 0) {
+            return false;
+        }
+        this.stockLedgerService.recordRelease(productId, quantity);
+        return true;
+    }
+}
@@ -4,14 +4,17 @@ import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import wms.rest.wms.api.model.TripSummary;
 import wms.rest.wms.model.*;
 import wms.rest.wms.repository.OrderRepository;
 import wms.rest.wms.repository.ShipmentRepository;
 import wms.rest.wms.repository.TripRepository;
+import wms.rest.wms.service.pipeline.PlanningWindow;
+import wms.rest.wms.service.trip.*;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
 
 /**
@@ -28,6 +31,15 @@ public class TripService {
      * @see LoggerFactory#getLogger(Class) */
     private static final Logger log = LoggerFactory.getLogger(TripService.class);
 
+    /** Name of the job creating Trips */
+    public static final String CREATE_TRIP_JOB = "trip.create";
+
+    /** Name of the job moving Trips from LOADING to DEPARTED */
+    public static final String DEPART_TRIP_JOB = "trip.depart";
+
+    /** Name of the job moving Trips from DEPARTED to IN_TRANSIT */
+    public static final String TRANSIT_TRIP_JOB = "trip.transit";
+
     /** Repository for handling Trip persistence operations */
     private TripRepository tripRepository;
 
@@ -37,23 +49,48 @@ public class TripService {
     /** Repository for handling Order persistence operations */
     private OrderRepository orderRepository;
 
+    /** Service for consuming and recording status transitions in the scheduler work queue */
+    private WorkQueueService workQueueService;
+
+    /** Service for recording push notifications about Order status changes in the outbox */
+    private OrderNotificationService orderNotificationService;
+
+    /** Service for keeping the order tracking read model up to date */
+    private OrderTrackingService orderTrackingService;
+
+    /** Service for the leases keeping the Scheduled jobs from running on every instance at once */
+    private SchedulerLeaseService schedulerLeaseService;
+
+    /** Planner packing the Shipments into Trips by the capacity of the vehicles */
+    private TripPlanner tripPlanner;
+
+    /** Planner sequencing the Shipments of each Trip by the road distances between their Stores */
+    private RoutePlanner routePlanner;
+
+    /** Allocator reserving a Driver and Vehicle from the registry for each Trip */
+    private FleetAllocator fleetAllocator;
+
+    /** Window deciding when Shipments that found no Driver are planned again and when Trips depart */
+    private PlanningWindow planningWindow;
+
     /**
-     * Return a List of all Trips.
+     * Return a List of all Trips, each summarized with the IDs of its Shipments.
+     * Every Trip is read with its Shipments in one statement.
      *
      * @return a List of all Trips.
      */
-    public List<Trip> getAll() {
-        return this.tripRepository.findAll();
+    public List<TripSummary> getAll() {
+        return this.tripRepository.findAllForAdminList().stream().map(TripSummary::of).toList();
     }
 
     /**
-     * Return an Optional object of Trip by tripId.
+     * Return an Optional object of Trip by tripId, summarized with the IDs of its Shipments.
      *
      * @param id the tripId of the Trip to return.
      * @return an Optional object of the Trip, can be present or not.
      */
-    public Optional<Trip> findTripById(int id) {
-        return this.tripRepository.findById(id);
+    public Optional<TripSummary> findTripById(int id) {
+        return this.tripRepository.findWithShipmentsByTripId(id).map(TripSummary::of);
     }
 
     /**
@@ -67,125 +104,186 @@ public class TripService {
     }
 
     /**
-     * Delete a Trip by tripId.
+     * Delete a Trip by tripId, giving back the dates its Driver and Vehicle were reserved for.
      *
      * @param tripId the tripId of the Trip to delete.
      */
+    @Transactional
     public void deleteById(int tripId) {
+        this.tripRepository.findById(tripId).ifPresent(trip -> {
+            if (trip.getTripStartDate() != null) {
+                this.fleetAllocator.release(trip, trip.getTripStartDate().minusDays(1));
+            }
+        });
         this.tripRepository.deleteById(tripId);
     }
 
     /**
-     * Creates a Trip and adds all Shipments with the same wishedDeliveryDate to the trip.
-     * All orders inside a Shipment has to have the OrderStatus as PICKED.
-     * Retrieves a random Driver from 'getRandomDriver' and assigns it to the trip.
-     * This method is executed periodically according to a Scheduled configuration starting after an initial delay.
+     * Creates Trips for the Shipments whose Orders are all PICKED, packing them into vehicles with the TripPlanner.
+     * Shipments only share a Trip if they are loaded at the same location, delivered on the same date and travel in
+     * the same temperature class, and no Trip carries more than its vehicle can take by weight or volume.
+     * The Shipments of each Trip are sequenced with the RoutePlanner, so the Trip drives the shortest route it finds
+     * from its load location through the Stores and back, and the Trips are sequenced in parallel.
+     * Only Shipments recorded under SHIPMENT_PICKED in the work queue and available by their planning time are
+     * loaded, and every created Trip is recorded under TRIP_LOADING, available on its start date.
+     * Each Trip departs on its delivery date, or today if that has passed, and is given the Driver and the Vehicle of
+     * its temperature class that have been free the longest, reserved for the days its route takes. The Shipments
+     * of a Trip no Driver or Vehicle is free for are put back under SHIPMENT_PICKED, and planned again a planning
+     * delay later.
+     * Only the instance leading the job runs it.
+     * It is run by the OrderPipeline as soon as Shipments are recorded under SHIPMENT_PICKED after their planning
+     * time, and when its poll finds Shipments recorded before it available.
      */
     @Transactional
-    @Scheduled(initialDelay = 120000, fixedRate = 300000)
     public void createTrip() {
-        List<Shipment> shipments = this.shipmentRepository.findAll();
-        Map<LocalDate, List<Shipment>> shipmentsByDeliveryDate = new HashMap<>();
-        // Group shipments by wished delivery date if they are ready to be picked
-        for (Shipment shipment : shipments) {
-            if (shipment.getTrip() == null && shipment.getOrders().stream()
-                    .allMatch(order -> order.getOrderStatus() == OrderStatus.PICKED)) {
-                LocalDate deliveryDate = shipment.getShipmentDeliveryDate();
-                shipmentsByDeliveryDate.computeIfAbsent(deliveryDate, k -> new ArrayList<>()).add(shipment);
-            }
+        if (!this.schedulerLeaseService.lead(CREATE_TRIP_JOB)) {
+            return;
         }
-        // Create a trip for each delivery date with the corresponding shipments
-        for (Map.Entry<LocalDate, List<Shipment>> entry : shipmentsByDeliveryDate.entrySet()) {
-            LocalDate deliveryDate = entry.getKey();
-            List<Shipment> shipmentsForDate = entry.getValue();
-            if (!shipmentsForDate.isEmpty()) {
-                int i = 0;
-                Trip trip = new Trip();
-                trip.setTripStartDate(LocalDate.now());
-                trip.setTripStatus(TripStatus.LOADING);
-                trip.setTripDriver(getRandomDriver().getKey());
-                trip.setTripDriverPhone(getRandomDriver().getValue());
-                trip.setTripStartLocation(shipmentsForDate.get(0).getShipmentLoadLocation());
-                trip.setTripCurrentLocation(trip.getTripStartLocation());
-                // Set other details for the trip as necessary
-                for (Shipment shipment : shipmentsForDate) {
-                    trip.getShipments().add(shipment);
-                    shipment.setSequenceAtTrip(i);
-                    shipment.setTrip(trip);
-                    log.info("Shipment with ID: {} added to Trip for delivery date {}.", shipment.getShipmentId(), deliveryDate);
-                    i++;
+        Map<Integer, Shipment> readyShipments = new LinkedHashMap<>();
+        Map<Integer, ShipmentLoad> loads = new LinkedHashMap<>();
+        Map<Integer, RouteStop> stops = new HashMap<>();
+        List<Integer> shipmentIds = this.workQueueService.poll(WorkQueueTopic.SHIPMENT_PICKED, WorkQueueService.BATCH_SIZE);
+        while (!shipmentIds.isEmpty()) {
+            List<Integer> readyIds = new ArrayList<>();
+            for (Shipment shipment : this.shipmentRepository.findWithOrdersByShipmentIdIn(shipmentIds)) {
+                if (shipment.getTrip() == null && shipment.getOrders().stream()
+                        .allMatch(order -> order.getOrderStatus() == OrderStatus.PICKED)) {
+                    readyShipments.put(shipment.getShipmentId(), shipment);
+                    loads.put(shipment.getShipmentId(), new ShipmentLoad(shipment.getShipmentId(),
+                            shipment.getShipmentLoadLocation(), shipment.getShipmentDeliveryDate()));
+                    readyIds.add(shipment.getShipmentId());
+                }
+            }
+            if (!readyIds.isEmpty()) {
+                for (ShipmentRepository.ProductLoad load : this.shipmentRepository.findProductLoadsByShipmentIdIn(readyIds)) {
+                    loads.get(load.getShipmentId()).add(load.getProductType(),
+                            load.getWeightInGrams() == null ? 0 : load.getWeightInGrams(),
+                            load.getVolumeInCm3() == null ? 0 : load.getVolumeInCm3());
+                }
+                for (ShipmentRepository.ShipmentStop stop : this.shipmentRepository.findStopsByShipmentIdIn(readyIds)) {
+                    stops.putIfAbsent(stop.getShipmentId(), new RouteStop(stop.getCity(), stop.getPostalCode()));
                 }
-                tripRepository.save(trip);
-                log.info("Trip created with ID: {} for delivery date {} with {} shipments.", trip.getTripId(), deliveryDate, shipmentsForDate.size());
             }
+            shipmentIds = this.workQueueService.poll(WorkQueueTopic.SHIPMENT_PICKED, WorkQueueService.BATCH_SIZE);
         }
-        if (shipmentsByDeliveryDate.isEmpty()) {
+        if (loads.isEmpty()) {
             log.info("No shipments were ready to be added to a trip based on the wished delivery date.");
+            return;
         }
+        List<TripPlan> plans = this.tripPlanner.plan(loads.values());
+        List<Route> routes = new ArrayList<>(plans.size());
+        for (TripPlan plan : plans) {
+            routes.add(new Route(new RouteStop(plan.getLoadLocation(), 0), plan.getShipments().stream()
+                    .map(load -> stops.getOrDefault(load.getShipmentId(),
+                            new RouteStop(readyShipments.get(load.getShipmentId()).getShipmentUnloadLocation(), 0)))
+                    .toList()));
+        }
+        List<List<Integer>> sequences = this.routePlanner.sequenceAll(routes);
+        FleetAvailability fleet = this.fleetAllocator.availability();
+        LocalDate today = LocalDate.now();
+        int created = 0;
+        for (int p = 0; p < plans.size(); p++) {
+            TripPlan plan = plans.get(p);
+            List<Integer> sequence = sequences.get(p);
+            double routeKm = this.routePlanner.length(routes.get(p), sequence);
+            LocalDate departure = plan.getDeliveryDate() == null || plan.getDeliveryDate().isBefore(today)
+                    ? today : plan.getDeliveryDate();
+            Optional<FleetAssignment> assignment = this.fleetAllocator.allocate(fleet, plan.getTemperatureClass(),
+                    departure, routeKm, plan.getShipments().size());
+            if (assignment.isEmpty()) {
+                LocalDateTime retryAt = this.planningWindow.retryTime(LocalDateTime.now());
+                this.workQueueService.requeueAll(WorkQueueTopic.SHIPMENT_PICKED,
+                        plan.getShipments().stream().map(ShipmentLoad::getShipmentId).toList(), retryAt);
+                log.warn("No driver and {} vehicle free on {} for a trip with {} shipments, they are planned again at {}.",
+                        plan.getTemperatureClass(), departure, plan.getShipments().size(), retryAt);
+                continue;
+            }
+            Driver driver = assignment.get().getDriver();
+            Trip trip = new Trip();
+            trip.setTripStartDate(assignment.get().getFrom());
+            trip.setTripEndDate(assignment.get().getUntil());
+            trip.setTripStatus(TripStatus.LOADING);
+            trip.setDriver(driver);
+            trip.setVehicle(assignment.get().getVehicle());
+            trip.setTripDriver(driver.getName());
+            trip.setTripDriverPhone(driver.getPhone());
+            trip.setTripStartLocation(plan.getLoadLocation());
+            trip.setTripCurrentLocation(trip.getTripStartLocation());
+            trip.setTripTemperatureClass(plan.getTemperatureClass());
+            trip.setTripLoadWeightInGrams(plan.getWeightInGrams());
+            trip.setTripLoadVolumeInCm3(plan.getVolumeInCm3());
+            for (int i = 0; i < sequence.size(); i++) {
+                Shipment shipment = readyShipments.get(plan.getShipments().get(sequence.get(i)).getShipmentId());
+                trip.getShipments().add(shipment);
+                shipment.setSequenceAtTrip(i);
+                shipment.setTrip(trip);
+            }
+            tripRepository.save(trip);
+            this.workQueueService.enqueue(WorkQueueTopic.TRIP_LOADING, trip.getTripId(),
+                    this.planningWindow.departureTime(trip.getTripStartDate()));
+            this.orderTrackingService.markTripsChanged(List.of(trip.getTripId()));
+            created++;
+            log.info("Trip created with ID: {} for delivery date {} with {} {} shipments, {} kg and {} m3 on a route of {} km, "
+                            + "driven by {} in {} until {}.",
+                    trip.getTripId(), plan.getDeliveryDate(), plan.getShipments().size(), plan.getTemperatureClass(),
+                    Math.round(plan.getWeightInGrams() / 1_000), Math.round(plan.getVolumeInCm3() / 1_000_000),
+                    Math.round(routeKm), driver.getName(), assignment.get().getVehicle().getRegistrationNumber(),
+                    trip.getTripEndDate());
+        }
+        log.info("Created {} of {} planned trips for {} shipments.", created, plans.size(), loads.size());
     }
 
     /**
      * Updates a Trip from TripStatus LOADING to DEPARTED.
-     * This method is executed periodically according to a Scheduled configuration starting after an initial delay.
+     * Only Trips recorded under TRIP_LOADING in the work queue are considered, once their start date has come. They are moved with one bulk
+     * statement per batch without loading the Trip entities, and every departed Trip is recorded under TRIP_DEPARTED.
+     * Only the instance leading the job runs it.
+     * It is run by the OrderPipeline as soon as Trips are recorded under TRIP_LOADING for today, and when its poll
+     * finds the Trips of a later start date available.
      */
     @Transactional
-    @Scheduled(initialDelay = 130000, fixedRate = 300000 )
     public void updateTripStatusFromLoadingToDeparted() {
-        List<Trip> trips = this.tripRepository.findAll().stream().filter(trip ->
-                trip.getTripStatus() == TripStatus.LOADING).toList();
-        for(Trip trip : trips) {
-            trip.setTripStatus(TripStatus.DEPARTED);
-            this.tripRepository.save(trip);
+        if (!this.schedulerLeaseService.lead(DEPART_TRIP_JOB)) {
+            return;
+        }
+        int updated = 0;
+        List<Integer> tripIds = this.workQueueService.poll(WorkQueueTopic.TRIP_LOADING, WorkQueueService.BATCH_SIZE);
+        while (!tripIds.isEmpty()) {
+            List<Integer> departed = this.tripRepository.transitionTripStatus(tripIds, TripStatus.LOADING, TripStatus.DEPARTED);
+            this.workQueueService.enqueueAll(WorkQueueTopic.TRIP_DEPARTED, departed);
+            updated += departed.size();
+            tripIds = this.workQueueService.poll(WorkQueueTopic.TRIP_LOADING, WorkQueueService.BATCH_SIZE);
         }
-        log.info("Updated {} trips from LOADING to DEPARTED", trips.size());
+        log.info("Updated {} trips from LOADING to DEPARTED", updated);
     }
 
     /**
      * Updates an Trip from TripStatus DEPARTED to IN_TRANSIT. Also setting the
      * progressInPercent to 50.
-     * This method is executed periodically according to a Scheduled configuration starting after an initial delay.
-     * TODO: SEND PUSH NOTIFICATION
+     * Only Trips recorded under TRIP_DEPARTED in the work queue are considered. The Trips and the progress of
+     * their Orders are updated with one bulk statement each per batch, without loading Trips, Shipments or Orders.
+     * A push notification to the Customer of every affected Order is recorded in the outbox, and sent after commit.
+     * Only the instance leading the job runs it.
+     * It is run by the OrderPipeline as soon as Trips are recorded under TRIP_DEPARTED.
      */
     @Transactional
-    @Scheduled(initialDelay = 150000, fixedRate = 300000 )
     public void updateTripStatusFromDepartedToInTransit() {
-        List<Trip> trips = this.tripRepository.findAll().stream().filter(trip ->
-                trip.getTripStatus() == TripStatus.DEPARTED).toList();
-        for(Trip trip : trips) {
-            trip.setTripStatus(TripStatus.IN_TRANSIT);
-            for(Shipment shipment : trip.getShipments()) {
-                for(Order order : shipment.getOrders()) {
-                    order.setProgressInPercent(50);
-                }
-            }
-            this.tripRepository.save(trip);
+        if (!this.schedulerLeaseService.lead(TRANSIT_TRIP_JOB)) {
+            return;
         }
-        log.info("Updated {} trips from DEPARTED to IN TRANSIT", trips.size());
-    }
-
-    /**
-     * Return a random tripDriver from 'getTripDriverInformation'.
-     *
-     * @return a random tripDriver from 'getTripDriverInformation'.
-     */
-    private Map.Entry<String, Integer> getRandomDriver() {
-        HashMap<String, Integer> driverInformation = getTripDriverInformation();
-        List<Map.Entry<String, Integer>> entries = new ArrayList<>(driverInformation.entrySet());
-        Random random = new Random();
-        return entries.get(random.nextInt(entries.size()));
-    }
-
-    /**
-     * Create a HashMap with driver name and driver phone.
-     *
-     * @return a HashMap of driver name and driver phone.
-     */
-    private HashMap<String, Integer> getTripDriverInformation(){
-        HashMap<String, Integer> driverInformation = new HashMap<>();
-        driverInformation.put("Pietr Didrik", 48056693);
-        driverInformation.put("Hans Pettersen", 49285943);
-        driverInformation.put("Lus Hoston", 94682497);
-        return driverInformation;
+        int updated = 0;
+        int updatedOrders = 0;
+        List<Integer> tripIds = this.workQueueService.poll(WorkQueueTopic.TRIP_DEPARTED, WorkQueueService.BATCH_SIZE);
+        while (!tripIds.isEmpty()) {
+            List<Integer> inTransit = this.tripRepository.transitionTripStatus(tripIds, TripStatus.DEPARTED, TripStatus.IN_TRANSIT);
+            List<Integer> orderIds = this.orderRepository.transitionProgressForTrips(inTransit, 50);
+            this.orderNotificationService.recordAll(OrderNotificationType.IN_TRANSIT, orderIds);
+            this.orderTrackingService.markChanged(orderIds);
+            updated += inTransit.size();
+            updatedOrders += orderIds.size();
+            tripIds = this.workQueueService.poll(WorkQueueTopic.TRIP_DEPARTED, WorkQueueService.BATCH_SIZE);
+        }
+        log.info("Updated {} trips with {} orders from DEPARTED to IN TRANSIT", updated, updatedOrders);
     }
 
     /**
@@ -197,7 +295,7 @@ public class TripService {
      */
     @Transactional
     public String deliverNextShipment(int tripId) {
-        Trip trip = tripRepository.findById(tripId).orElse(null);
+        Trip trip = tripRepository.findForDeliveryByTripId(tripId).orElse(null);
         if (trip == null) {
             throw new IllegalArgumentException("Trip not found");
         }
@@ -212,20 +310,23 @@ public class TripService {
             Shipment shipment = sortedShipments.get(i);
             if (!isDelivered(shipment)) {
                 deliverShipment(shipment);
+                // The delivered Orders and the location of every other Order on the Trip change
+                this.orderTrackingService.markTripsChanged(List.of(tripId));
                 log.info("Shipment with sequence {} has been delivered for trip ID: {}", shipment.getSequenceAtTrip(), tripId);
 
-                // Set current location to the last delivered shipment's customer store name
-                String currentLocation = shipment.getOrders().iterator().next().getCustomer().getStore().getCity();
+                // Set current location to the city of the last delivered shipment's store
+                String currentLocation = shipment.getOrders().iterator().next().getStore().getCity();
                 trip.setTripCurrentLocation(currentLocation);
 
                 // Set next location if there is a next shipment
                 if (i < sortedShipments.size() - 1) {
                     Shipment nextShipment = sortedShipments.get(i + 1);
-                    String nextLocation = nextShipment.getOrders().iterator().next().getCustomer().getStore().getCity();
+                    String nextLocation = nextShipment.getOrders().iterator().next().getStore().getCity();
                     trip.setTripNextLocation(nextLocation);
                 } else {
                     trip.setTripNextLocation("Trip finished");
                     trip.setTripStatus(TripStatus.FINISHED);
+                    this.fleetAllocator.release(trip, LocalDate.now());
                     tripRepository.save(trip);
                     log.info("Trip ID: {} has been marked as FINISHED.", tripId);
                     return "Shipment with sequence " + shipment.getSequenceAtTrip() + " has been delivered, and the trip is now FINISHED.";
@@ -240,7 +341,7 @@ public class TripService {
 
     /**
      * Sets the OrderStatus of an Order inside a Shipment to DELIVERED. Also setting the
-     * progressInPercent to 100.
+     * progressInPercent to 100, and recording a push notification to the Customer in the outbox.
      *
      * @param shipment the Shipment to update the OrderStatus and progressInPercent.
      */
@@ -251,6 +352,8 @@ public class TripService {
             order.setOrderStatus(OrderStatus.DELIVERED);
             orderRepository.save(order);
         }
+        this.orderNotificationService.recordAll(OrderNotificationType.DELIVERED,
+                orders.stream().map(Order::getOrderId).toList());
         log.debug("Orders updated to DELIVERED status for shipment ID: {}", shipment.getShipmentId());
     }
 
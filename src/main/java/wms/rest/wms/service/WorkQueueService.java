@@ -0,0 +1,150 @@
+package wms.rest.wms.service;
+
+import jakarta.transaction.Transactional;
+import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import wms.rest.wms.model.WorkQueueItem;
+import wms.rest.wms.model.WorkQueueTopic;
+import wms.rest.wms.repository.WorkQueueRepository;
+import wms.rest.wms.service.pipeline.PipelineEvent;
+import wms.rest.wms.service.pipeline.PipelineStage;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Service class for the persistent scheduler work queue. Status transitions record the IDs of the affected
+ * entities here, and the schedulers consume only those IDs, so the cost of a scheduler run grows with the number
+ * of changes rather than with the size of the tables.
+ * <p>
+ * Both recording and consuming join the transaction of the caller. Consumed items are only gone once the
+ * consuming transaction commits, so a failed scheduler run leaves its work in the queue for the next run.
+ * Recording publishes a PipelineEvent, so the OrderPipeline runs the stage consuming the topic after the commit.
+ * Work can also be recorded ahead of the time it is due, and is only consumed once it is available. Nothing is
+ * published for it, and the OrderPipeline runs the stage when its poll finds the work available.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+@AllArgsConstructor
+public class WorkQueueService {
+
+    /** Default number of items a scheduler consumes per poll */
+    public static final int BATCH_SIZE = 500;
+
+    /** Repository for handling WorkQueueItem persistence operations */
+    private WorkQueueRepository workQueueRepository;
+
+    /** Publisher handing the recorded work over to the stage of the order pipeline consuming it */
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Records that an entity went through the transition named by the topic.
+     *
+     * @param topic the WorkQueueTopic of the transition.
+     * @param entityId the ID of the affected entity.
+     */
+    @Transactional
+    public void enqueue(WorkQueueTopic topic, int entityId) {
+        LocalDateTime now = LocalDateTime.now();
+        this.workQueueRepository.save(new WorkQueueItem(0, topic, entityId, now, now));
+        this.eventPublisher.publishEvent(new PipelineEvent(PipelineStage.consuming(topic)));
+    }
+
+    /**
+     * Records that an entity went through the transition named by the topic, for the scheduler to handle once it is
+     * available.
+     *
+     * @param topic the WorkQueueTopic of the transition.
+     * @param entityId the ID of the affected entity.
+     * @param availableAt when the scheduler may handle the entity.
+     */
+    @Transactional
+    public void enqueue(WorkQueueTopic topic, int entityId, LocalDateTime availableAt) {
+        enqueueAll(topic, List.of(entityId), availableAt);
+    }
+
+    /**
+     * Records that several entities went through the transition named by the topic.
+     *
+     * @param topic the WorkQueueTopic of the transition.
+     * @param entityIds the IDs of the affected entities.
+     */
+    @Transactional
+    public void enqueueAll(WorkQueueTopic topic, Collection<Integer> entityIds) {
+        enqueueAll(topic, entityIds, LocalDateTime.now());
+    }
+
+    /**
+     * Records that several entities went through the transition named by the topic, for the scheduler to handle
+     * once they are available. The consuming stage is only run after the commit if they are available by then.
+     *
+     * @param topic the WorkQueueTopic of the transition.
+     * @param entityIds the IDs of the affected entities.
+     * @param availableAt when the scheduler may handle the entities.
+     */
+    @Transactional
+    public void enqueueAll(WorkQueueTopic topic, Collection<Integer> entityIds, LocalDateTime availableAt) {
+        if (entityIds.isEmpty()) {
+            return;
+        }
+        requeueAll(topic, entityIds, availableAt);
+        if (!availableAt.isAfter(LocalDateTime.now())) {
+            this.eventPublisher.publishEvent(new PipelineEvent(PipelineStage.consuming(topic)));
+        }
+    }
+
+    /**
+     * Puts back entities a scheduler could not handle yet, such as Shipments no Driver is free for, until a later
+     * time. Nothing is published, since running the consuming stage at once would only put them back.
+     *
+     * @param topic the WorkQueueTopic of the transition.
+     * @param entityIds the IDs of the affected entities.
+     * @param availableAt when the scheduler may handle the entities again.
+     */
+    @Transactional
+    public void requeueAll(WorkQueueTopic topic, Collection<Integer> entityIds, LocalDateTime availableAt) {
+        LocalDateTime now = LocalDateTime.now();
+        this.workQueueRepository.saveAll(entityIds.stream()
+                .map(entityId -> new WorkQueueItem(0, topic, entityId, now, availableAt))
+                .toList());
+    }
+
+    /**
+     * Checks if a topic has any item available now, without consuming it.
+     *
+     * @param topic the WorkQueueTopic to check.
+     * @return true if an item of the topic is available, false otherwise.
+     */
+    public boolean hasAvailable(WorkQueueTopic topic) {
+        return !this.workQueueRepository.findAvailableByTopic(topic, LocalDateTime.now(), PageRequest.ofSize(1)).isEmpty();
+    }
+
+    /**
+     * Removes up to limit of the oldest available items of a topic from the queue and returns their entity IDs.
+     *
+     * @param topic the WorkQueueTopic to consume.
+     * @param limit the maximum number of items to consume.
+     * @return the distinct entity IDs of the consumed items, in the order they were recorded.
+     */
+    @Transactional
+    public List<Integer> poll(WorkQueueTopic topic, int limit) {
+        List<WorkQueueItem> items = this.workQueueRepository.findAvailableByTopic(topic, LocalDateTime.now(),
+                PageRequest.ofSize(limit));
+        if (items.isEmpty()) {
+            return List.of();
+        }
+        Set<Integer> entityIds = new LinkedHashSet<>();
+        for (WorkQueueItem item : items) {
+            entityIds.add(item.getEntityId());
+        }
+        this.workQueueRepository.deleteByIds(items.stream().map(WorkQueueItem::getWorkQueueItemId).toList());
+        return List.copyOf(entityIds);
+    }
+}
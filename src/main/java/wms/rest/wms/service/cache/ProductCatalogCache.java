@@ -0,0 +1,394 @@
+package wms.rest.wms.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import wms.rest.wms.model.Inventory;
+import wms.rest.wms.model.Packaging;
+import wms.rest.wms.model.Product;
+import wms.rest.wms.repository.InventoryRepository;
+import wms.rest.wms.repository.InventoryRepository.StockLevel;
+import wms.rest.wms.repository.ProductRepository;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Read-through cache of the Product catalog in two tiers with their own expiry.
+ * <p>
+ * The catalog tier holds the Product with its Packaging, which only change through ProductService, for a long
+ * time. The stock tier holds the Inventory stock, which changes with every Order, for a few seconds, so a read
+ * is never more than that behind the reservations. Both tiers are bounded, and the entries of a Product are
+ * evicted as soon as it is created, updated or deleted through ProductService. Every read returns new Product,
+ * Packaging and Inventory objects assembled from the two tiers, so callers can never change a cached entry.
+ * <p>
+ * Hits, misses, evictions and load times are published to Micrometer as the caches named 'product.catalog',
+ * 'product.stock' and 'product.gtin', together with the gauge 'cache.hit.ratio' of each.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+public class ProductCatalogCache {
+
+    /** Name of the catalog tier in the published metrics */
+    public static final String CATALOG_CACHE_NAME = "product.catalog";
+
+    /** Name of the stock tier in the published metrics */
+    public static final String STOCK_CACHE_NAME = "product.stock";
+
+    /** Name of the GTIN lookup in the published metrics */
+    public static final String GTIN_CACHE_NAME = "product.gtin";
+
+    /** Maximum number of productIds in one IN list when loading missing entries */
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    /** Repository for loading Products with their Inventory and Packaging */
+    private final ProductRepository productRepository;
+
+    /** Repository for loading the stock of Products */
+    private final InventoryRepository inventoryRepository;
+
+    /** Products with their Packaging by productId, without their Inventory */
+    private final LoadingCache<Integer, Product> catalog;
+
+    /** Stock by productId */
+    private final LoadingCache<Integer, Stock> stock;
+
+    /** productId by GTIN */
+    private final Cache<Long, Integer> productIdsByGtin;
+
+    /**
+     * Creates the cache and binds its statistics to the MeterRegistry.
+     *
+     * @param productRepository repository for loading Products with their Inventory and Packaging.
+     * @param inventoryRepository repository for loading the stock of Products.
+     * @param meterRegistry the MeterRegistry to publish the cache metrics to.
+     * @param maximumSize the maximum number of cached Products, and of cached stock entries.
+     * @param expiryInSeconds the number of seconds a Product stays cached after it was loaded.
+     * @param stockExpiryInSeconds the number of seconds the stock of a Product stays cached after it was loaded.
+     */
+    @Autowired
+    public ProductCatalogCache(ProductRepository productRepository, InventoryRepository inventoryRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${product.cache.maximum-size:10000}") long maximumSize,
+                               @Value("${product.cache.expiry-in-seconds:600}") long expiryInSeconds,
+                               @Value("${product.cache.stock-expiry-in-seconds:5}") long stockExpiryInSeconds) {
+        this(productRepository, inventoryRepository, meterRegistry, maximumSize, Duration.ofSeconds(expiryInSeconds),
+                Duration.ofSeconds(stockExpiryInSeconds), Ticker.systemTicker());
+    }
+
+    /**
+     * Creates the cache with a Ticker as the source of time, so tests can move time forward.
+     *
+     * @param productRepository repository for loading Products with their Inventory and Packaging.
+     * @param inventoryRepository repository for loading the stock of Products.
+     * @param meterRegistry the MeterRegistry to publish the cache metrics to.
+     * @param maximumSize the maximum number of cached Products, and of cached stock entries.
+     * @param expiry the time a Product stays cached after it was loaded.
+     * @param stockExpiry the time the stock of a Product stays cached after it was loaded.
+     * @param ticker the source of time for the expiry.
+     */
+    public ProductCatalogCache(ProductRepository productRepository, InventoryRepository inventoryRepository,
+                               MeterRegistry meterRegistry, long maximumSize, Duration expiry, Duration stockExpiry,
+                               Ticker ticker) {
+        this.productRepository = productRepository;
+        this.inventoryRepository = inventoryRepository;
+        this.catalog = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expiry)
+                .ticker(ticker)
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public Product load(Integer productId) {
+                        return loadProducts(List.of(productId)).get(productId);
+                    }
+
+                    @Override
+                    public Map<Integer, Product> loadAll(Set<? extends Integer> productIds) {
+                        return loadProducts(productIds);
+                    }
+                });
+        this.stock = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(stockExpiry)
+                .ticker(ticker)
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public Stock load(Integer productId) {
+                        return loadStock(List.of(productId)).get(productId);
+                    }
+
+                    @Override
+                    public Map<Integer, Stock> loadAll(Set<? extends Integer> productIds) {
+                        return loadStock(productIds);
+                    }
+                });
+        this.productIdsByGtin = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expiry)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        monitor(meterRegistry, this.catalog, CATALOG_CACHE_NAME);
+        monitor(meterRegistry, this.stock, STOCK_CACHE_NAME);
+        monitor(meterRegistry, this.productIdsByGtin, GTIN_CACHE_NAME);
+    }
+
+    /**
+     * Return the Product with the specified productId, loading it only if it is not cached.
+     *
+     * @param productId the productId of the Product.
+     * @return an Optional containing the Product if found, otherwise an empty Optional.
+     */
+    public Optional<Product> get(int productId) {
+        Product product = this.catalog.get(productId);
+        if (product == null) {
+            return Optional.empty();
+        }
+        return Optional.of(copy(product, this.stock.get(productId)));
+    }
+
+    /**
+     * Return the Products with the specified productIds in the same order, loading those that are not cached
+     * in as few statements as possible. productIds of Products that do not exist are skipped.
+     *
+     * @param productIds the productIds of the Products.
+     * @return a List of the Products found.
+     */
+    public List<Product> getAll(List<Integer> productIds) {
+        Map<Integer, Product> products = this.catalog.getAll(productIds);
+        Map<Integer, Stock> stocks = this.stock.getAll(products.keySet());
+        List<Product> result = new ArrayList<>(products.size());
+        for (Integer productId : productIds) {
+            Product product = products.get(productId);
+            if (product != null) {
+                result.add(copy(product, stocks.get(productId)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return every Product in ascending productId order. Only the productIds are read from the database,
+     * so created and deleted Products show up at once.
+     *
+     * @return a List of all Products.
+     */
+    public List<Product> getProducts() {
+        return getAll(this.productRepository.findAllProductIds());
+    }
+
+    /**
+     * Return the Product with the specified GTIN, looking it up only if the GTIN is not cached.
+     * A GTIN that could not be found is not cached, so it is looked up again on the next request.
+     *
+     * @param gtin the GTIN of the Product.
+     * @return an Optional containing the Product if found, otherwise an empty Optional.
+     */
+    public Optional<Product> getByGtin(int gtin) {
+        Integer productId = this.productIdsByGtin.get((long) gtin, key -> this.productRepository.findByGtin(gtin)
+                .map(product -> {
+                    this.catalog.put(product.getProductId(), toCatalogEntry(product));
+                    return product.getProductId();
+                })
+                .orElse(null));
+        return productId == null ? Optional.empty() : get(productId);
+    }
+
+    /**
+     * Evicts the entries of a Product after the current transaction commits, or at once outside a transaction,
+     * so a read in between can not put the old state back in the cache.
+     *
+     * @param productId the productId of the Product to evict.
+     */
+    public void evictAfterCommit(int productId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(productId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(productId);
+            }
+        });
+    }
+
+    /**
+     * Evicts the entries of a Product. GTINs are matched on productId, so a changed GTIN is evicted as well.
+     *
+     * @param productId the productId of the Product to evict.
+     */
+    public void evict(int productId) {
+        this.catalog.invalidate(productId);
+        this.stock.invalidate(productId);
+        this.productIdsByGtin.asMap().values().removeIf(cached -> cached == productId);
+    }
+
+    /**
+     * Evicts every cached entry.
+     */
+    public void evictAll() {
+        this.catalog.invalidateAll();
+        this.stock.invalidateAll();
+        this.productIdsByGtin.invalidateAll();
+    }
+
+    /**
+     * Return the hit and miss statistics of the catalog tier.
+     *
+     * @return a snapshot of the catalog tier statistics.
+     */
+    public CacheStats getCatalogStats() {
+        return this.catalog.stats();
+    }
+
+    /**
+     * Return the hit and miss statistics of the stock tier.
+     *
+     * @return a snapshot of the stock tier statistics.
+     */
+    public CacheStats getStockStats() {
+        return this.stock.stats();
+    }
+
+    /**
+     * Loads Products with their Inventory and Packaging in batches.
+     *
+     * @param productIds the productIds of the Products to load.
+     * @return the Products found by productId, without their Inventory.
+     */
+    private Map<Integer, Product> loadProducts(Collection<? extends Integer> productIds) {
+        Map<Integer, Product> products = new HashMap<>();
+        for (List<Integer> batch : batches(productIds)) {
+            for (Product product : this.productRepository.findAllWithDetailsByIdIn(batch)) {
+                products.put(product.getProductId(), toCatalogEntry(product));
+            }
+        }
+        return products;
+    }
+
+    /**
+     * Return the catalog tier entry of a loaded Product, and put its stock in the stock tier
+     * so it is not loaded again right after.
+     *
+     * @param product the loaded Product with its Inventory and Packaging.
+     * @return a copy of the Product without its Inventory.
+     */
+    private Product toCatalogEntry(Product product) {
+        Inventory inventory = product.getInventory();
+        this.stock.put(product.getProductId(), inventory == null ? Stock.NONE
+                : new Stock(inventory.getInventoryId(), inventory.getTotalStock(),
+                inventory.getReservedStock(), inventory.getAvailableStock()));
+        return copy(product, null);
+    }
+
+    /**
+     * Loads the stock of Products in batches. Products without an Inventory get Stock.NONE, so they are not
+     * looked up again until the entry expires.
+     *
+     * @param productIds the productIds of the Products.
+     * @return the stock by productId.
+     */
+    private Map<Integer, Stock> loadStock(Collection<? extends Integer> productIds) {
+        Map<Integer, Stock> stocks = new HashMap<>();
+        for (List<Integer> batch : batches(productIds)) {
+            for (StockLevel level : this.inventoryRepository.findStockLevelsByProductIdIn(batch)) {
+                stocks.put(level.getProductId(), new Stock(level.getInventoryId(), level.getTotalStock(),
+                        level.getReservedStock(), level.getAvailableStock()));
+            }
+        }
+        for (Integer productId : productIds) {
+            stocks.putIfAbsent(productId, Stock.NONE);
+        }
+        return stocks;
+    }
+
+    /**
+     * Return the productIds split into batches of at most LOAD_BATCH_SIZE.
+     *
+     * @param productIds the productIds to split.
+     * @return the batches.
+     */
+    private static List<List<Integer>> batches(Collection<? extends Integer> productIds) {
+        List<List<Integer>> batches = new ArrayList<>();
+        List<Integer> batch = new ArrayList<>();
+        for (Integer productId : productIds) {
+            batch.add(productId);
+            if (batch.size() == LOAD_BATCH_SIZE) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Return a new Product with a copy of the Packaging of a Product and an Inventory with the given stock.
+     *
+     * @param product the Product to copy.
+     * @param stock the stock of the Product, or null or Stock.NONE for no Inventory.
+     * @return the new Product.
+     */
+    private static Product copy(Product product, Stock stock) {
+        Product copy = new Product(product.getProductId(), product.getName(), product.getDescription(),
+                product.getSupplier(), product.getBestBeforeDate() == null ? null : new Date(product.getBestBeforeDate().getTime()),
+                product.getProductType(), product.getPrice(), product.getGtin(), product.getBatch(), null, null);
+        Packaging packaging = product.getPackaging();
+        if (packaging != null) {
+            copy.setPackaging(new Packaging(packaging.getPackagingId(), packaging.getPackageType(),
+                    packaging.getQuantityPrPackage(), packaging.getWeightInGrams(), packaging.getDimensionInCm3(), copy));
+        }
+        if (stock != null && stock != Stock.NONE) {
+            copy.setInventory(new Inventory(stock.inventoryId(), stock.totalStock(), stock.reservedStock(),
+                    stock.availableStock(), copy));
+        }
+        return copy;
+    }
+
+    /**
+     * Publishes the statistics of a cache to the MeterRegistry, together with its hit ratio.
+     *
+     * @param meterRegistry the MeterRegistry to publish to.
+     * @param cache the cache.
+     * @param name the name of the cache in the metrics.
+     */
+    private static void monitor(MeterRegistry meterRegistry, Cache<?, ?> cache, String name) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+        Gauge.builder("cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .tag("cache", name)
+                .description("The ratio of cache requests that were hits")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The stock of a Product.
+     *
+     * @param inventoryId the inventoryId of the Inventory.
+     * @param totalStock the total stock.
+     * @param reservedStock the reserved stock.
+     * @param availableStock the available stock.
+     */
+    private record Stock(int inventoryId, int totalStock, int reservedStock, int availableStock) {
+
+        /** Stock of a Product without an Inventory */
+        private static final Stock NONE = new Stock(-1, 0, 0, 0);
+    }
+}
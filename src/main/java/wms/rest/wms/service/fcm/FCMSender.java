@@ -0,0 +1,38 @@
+package wms.rest.wms.service.fcm;
+
+import com.google.firebase.messaging.Message;
+
+import java.util.List;
+
+/**
+ * Sends batches of push notification Messages to Firebase Cloud Messaging (FCM).
+ * Kept behind an interface so the NotificationDispatcher can be run against a local sender in tests.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+public interface FCMSender {
+
+    /** Maximum number of Messages FCM accepts in one batch send */
+    int MAX_BATCH_SIZE = 500;
+
+    /**
+     * Sends a batch of Messages and reports the outcome of each one.
+     *
+     * @param messages the Messages to send, at most MAX_BATCH_SIZE.
+     * @return the outcome of each Message, in the same order as the Messages.
+     */
+    List<SendOutcome> send(List<Message> messages);
+
+    /**
+     * Outcome of sending one Message.
+     */
+    enum SendOutcome {
+        /** FCM accepted the Message */
+        SENT,
+        /** FCM was unavailable or throttled, and the Message can be sent again later */
+        RETRYABLE,
+        /** FCM rejected the Message, and sending it again would not help */
+        FAILED
+    }
+}
@@ -1,32 +1,78 @@
 package wms.rest.wms.service.fcm;
 
 import com.google.firebase.messaging.*;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import wms.rest.wms.api.model.NotificationRequest;
+import wms.rest.wms.exception.NotificationQueueFullException;
+import wms.rest.wms.model.NotificationStatus;
 
 import java.time.Duration;
-import java.util.concurrent.ExecutionException;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
+@AllArgsConstructor
 public class FCMService {
 
     private static final Logger log = LoggerFactory.getLogger(FCMService.class);
 
-    public void sendMessageToToken(NotificationRequest request)
-            throws InterruptedException, ExecutionException {
-        Message message = getPreconfiguredMessageToToken(request);
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        String jsonOutput = gson.toJson(message);
-        String response = sendAndGetResponse(message);
-        log.info("Sent message to token. Device token: " + request.getToken() + ", " + response+ " msg "+jsonOutput);
+    /** Pipeline queueing and sending the notifications */
+    private NotificationDispatcher notificationDispatcher;
+
+    /**
+     * Queues a notification to a device token and returns without waiting for FCM.
+     *
+     * @param request the notification to send.
+     * @return the tracking ID of the notification.
+     * @throws NotificationQueueFullException if the notification queue is full.
+     */
+    public String sendMessageToToken(NotificationRequest request) throws NotificationQueueFullException {
+        String trackingId = this.notificationDispatcher.submit(getPreconfiguredMessageToToken(request));
+        log.debug("Queued notification {} to device token {}", trackingId, request.getToken());
+        return trackingId;
+    }
+
+    /**
+     * Queues a notification to every device subscribed to an FCM topic and returns without waiting for FCM.
+     * The topic of the request is also used as collapse key, so a device that was offline only shows the latest one.
+     *
+     * @param request the notification to send, with the FCM topic as topic.
+     * @return the tracking ID of the notification.
+     * @throws NotificationQueueFullException if the notification queue is full.
+     */
+    public String sendMessageToTopic(NotificationRequest request) throws NotificationQueueFullException {
+        return sendMessageToTopic(request, null);
+    }
+
+    /**
+     * Queues a notification to every device subscribed to an FCM topic and returns without waiting for FCM, and
+     * tells a callback once the notification is SENT or FAILED.
+     *
+     * @param request the notification to send, with the FCM topic as topic.
+     * @param onCompletion called with SENT or FAILED once the notification is done, can be null.
+     * @return the tracking ID of the notification.
+     * @throws NotificationQueueFullException if the notification queue is full.
+     */
+    public String sendMessageToTopic(NotificationRequest request, Consumer<NotificationStatus> onCompletion)
+            throws NotificationQueueFullException {
+        String trackingId = this.notificationDispatcher.submit(getPreconfiguredMessageBuilder(request)
+                .setTopic(request.getTopic())
+                .build(), onCompletion);
+        log.debug("Queued notification {} to topic {}", trackingId, request.getTopic());
+        return trackingId;
     }
 
-    private String sendAndGetResponse(Message message) throws InterruptedException, ExecutionException {
-        return FirebaseMessaging.getInstance().sendAsync(message).get();
+    /**
+     * Return the status of a queued notification.
+     *
+     * @param trackingId the tracking ID returned when the notification was queued.
+     * @return an Optional containing the status if the notification is known, otherwise an empty Optional.
+     */
+    public Optional<NotificationStatus> getStatus(String trackingId) {
+        return this.notificationDispatcher.getStatus(trackingId);
     }
 
 
@@ -0,0 +1,74 @@
+package wms.rest.wms.service.fcm;
+
+import com.google.firebase.ErrorCode;
+import com.google.firebase.messaging.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * FCMSender sending each batch with one FirebaseMessaging.sendEach call.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Component
+public class FirebaseFCMSender implements FCMSender {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(FirebaseFCMSender.class);
+
+    /** FCM error codes that mean the Message may go through if sent again later */
+    private static final Set<MessagingErrorCode> RETRYABLE_MESSAGING_ERRORS =
+            EnumSet.of(MessagingErrorCode.UNAVAILABLE, MessagingErrorCode.INTERNAL, MessagingErrorCode.QUOTA_EXCEEDED);
+
+    /** Platform error codes that mean the request may go through if sent again later */
+    private static final Set<ErrorCode> RETRYABLE_ERRORS =
+            EnumSet.of(ErrorCode.UNAVAILABLE, ErrorCode.INTERNAL, ErrorCode.DEADLINE_EXCEEDED, ErrorCode.RESOURCE_EXHAUSTED);
+
+    @Override
+    public List<SendOutcome> send(List<Message> messages) {
+        BatchResponse batchResponse;
+        try {
+            batchResponse = FirebaseMessaging.getInstance().sendEach(messages);
+        } catch (FirebaseMessagingException e) {
+            SendOutcome outcome = isRetryable(e) ? SendOutcome.RETRYABLE : SendOutcome.FAILED;
+            log.warn("Batch of {} messages was not sent: {} ({})", messages.size(), e.getMessage(), outcome);
+            return Collections.nCopies(messages.size(), outcome);
+        } catch (IllegalStateException e) {
+            log.error("Batch of {} messages was not sent, Firebase is not initialized: {}", messages.size(), e.getMessage());
+            return Collections.nCopies(messages.size(), SendOutcome.FAILED);
+        }
+
+        List<SendOutcome> outcomes = new ArrayList<>(messages.size());
+        for (SendResponse response : batchResponse.getResponses()) {
+            if (response.isSuccessful()) {
+                outcomes.add(SendOutcome.SENT);
+            } else {
+                outcomes.add(isRetryable(response.getException()) ? SendOutcome.RETRYABLE : SendOutcome.FAILED);
+            }
+        }
+        log.info("Sent batch of {} messages, {} succeeded", messages.size(), batchResponse.getSuccessCount());
+        return outcomes;
+    }
+
+    /**
+     * Return whether a failed send may succeed if tried again.
+     *
+     * @param e the exception FCM failed with.
+     * @return true if the failure is temporary, otherwise false.
+     */
+    private boolean isRetryable(FirebaseMessagingException e) {
+        if (e == null) {
+            return false;
+        }
+        return RETRYABLE_MESSAGING_ERRORS.contains(e.getMessagingErrorCode()) || RETRYABLE_ERRORS.contains(e.getErrorCode());
+    }
+}
@@ -0,0 +1,437 @@
+package wms.rest.wms.service.fcm;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.firebase.messaging.Message;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Service;
+import wms.rest.wms.exception.NotificationQueueFullException;
+import wms.rest.wms.model.NotificationStatus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * In-process pipeline for push notifications. Notifications are submitted to a bounded queue and the caller
+ * gets a tracking ID back at once. Worker threads drain the queue into batch sends through the FCMSender,
+ * and notifications FCM could not take at the moment are sent again with exponential backoff.
+ * <p>
+ * When the queue is full, submit waits a short while for room and then refuses the notification, so a burst
+ * of notifications slows its producers down instead of growing without bound.
+ * <p>
+ * The workers run on virtual threads when 'spring.threads.virtual.enabled' is set on Java 21 or later, like
+ * the Tomcat request threads, so a worker blocked on a send to FCM does not hold a platform thread.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+public class NotificationDispatcher {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    /** How long an idle worker waits for a notification before checking whether it should stop */
+    private static final long POLL_TIMEOUT_MILLIS = 200;
+
+    /** Sender the batches are handed to */
+    private final FCMSender sender;
+
+    /** Notifications waiting to be sent */
+    private final BlockingQueue<NotificationJob> queue;
+
+    /** Number of worker threads draining the queue */
+    private final int workers;
+
+    /** Maximum number of notifications in one batch send */
+    private final int batchSize;
+
+    /** Maximum number of times a notification is sent before it is FAILED */
+    private final int maxAttempts;
+
+    /** Delay before the first retry, doubled for every following retry */
+    private final long initialBackoffMillis;
+
+    /** Upper limit of the delay between retries */
+    private final long maxBackoffMillis;
+
+    /** How long submit waits for room in a full queue */
+    private final long offerTimeoutMillis;
+
+    /** Whether the workers run on virtual threads */
+    private final boolean virtualThreads;
+
+    /** Status of recent notifications by tracking ID */
+    private final Cache<String, NotificationStatus> statuses;
+
+    /** Number of notifications FCM accepted */
+    private final AtomicLong sent = new AtomicLong();
+
+    /** Number of notifications that FAILED */
+    private final AtomicLong failed = new AtomicLong();
+
+    /** Number of retries scheduled */
+    private final AtomicLong retries = new AtomicLong();
+
+    /** Threads draining the queue */
+    private ExecutorService workerPool;
+
+    /** Thread putting notifications back in the queue when their backoff has passed */
+    private ScheduledExecutorService retryScheduler;
+
+    /** Whether the workers should keep draining the queue */
+    private volatile boolean running;
+
+    /**
+     * Creates the dispatcher, with the workers on virtual threads if the Environment enables them and the runtime
+     * supports them. The worker threads are started by start().
+     *
+     * @param sender the sender the batches are handed to.
+     * @param capacity the maximum number of notifications waiting in the queue.
+     * @param workers the number of worker threads draining the queue.
+     * @param batchSize the maximum number of notifications in one batch send.
+     * @param maxAttempts the maximum number of times a notification is sent before it is FAILED.
+     * @param initialBackoffMillis the delay before the first retry, doubled for every following retry.
+     * @param maxBackoffMillis the upper limit of the delay between retries.
+     * @param offerTimeoutMillis how long submit waits for room in a full queue.
+     * @param environment the Environment deciding whether the workers run on virtual threads.
+     */
+    @Autowired
+    public NotificationDispatcher(FCMSender sender,
+                                  @Value("${notification.queue.capacity:10000}") int capacity,
+                                  @Value("${notification.workers:2}") int workers,
+                                  @Value("${notification.batch-size:500}") int batchSize,
+                                  @Value("${notification.max-attempts:5}") int maxAttempts,
+                                  @Value("${notification.initial-backoff-millis:500}") long initialBackoffMillis,
+                                  @Value("${notification.max-backoff-millis:30000}") long maxBackoffMillis,
+                                  @Value("${notification.offer-timeout-millis:100}") long offerTimeoutMillis,
+                                  Environment environment) {
+        this(sender, capacity, workers, batchSize, maxAttempts, initialBackoffMillis, maxBackoffMillis,
+                offerTimeoutMillis, Threading.VIRTUAL.isActive(environment));
+    }
+
+    /**
+     * Creates the dispatcher. The worker threads are started by start().
+     *
+     * @param sender the sender the batches are handed to.
+     * @param capacity the maximum number of notifications waiting in the queue.
+     * @param workers the number of worker threads draining the queue.
+     * @param batchSize the maximum number of notifications in one batch send.
+     * @param maxAttempts the maximum number of times a notification is sent before it is FAILED.
+     * @param initialBackoffMillis the delay before the first retry, doubled for every following retry.
+     * @param maxBackoffMillis the upper limit of the delay between retries.
+     * @param offerTimeoutMillis how long submit waits for room in a full queue.
+     * @param virtualThreads whether the workers run on virtual threads, which needs Java 21 or later.
+     */
+    public NotificationDispatcher(FCMSender sender, int capacity, int workers, int batchSize, int maxAttempts,
+                                  long initialBackoffMillis, long maxBackoffMillis, long offerTimeoutMillis,
+                                  boolean virtualThreads) {
+        this.sender = sender;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.workers = workers;
+        this.batchSize = Math.min(batchSize, FCMSender.MAX_BATCH_SIZE);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.virtualThreads = virtualThreads;
+        this.statuses = Caffeine.newBuilder()
+                .maximumSize(Math.max(100_000, capacity))
+                .expireAfterWrite(Duration.ofHours(1))
+                .build();
+    }
+
+    /**
+     * Starts the worker threads and the retry scheduler.
+     */
+    @PostConstruct
+    public void start() {
+        this.running = true;
+        ThreadFactory workerThreads = this.virtualThreads
+                ? new VirtualThreadTaskExecutor("notification-worker-").getVirtualThreadFactory()
+                : namedThreads("notification-worker-");
+        this.workerPool = Executors.newFixedThreadPool(this.workers, workerThreads);
+        for (int i = 0; i < this.workers; i++) {
+            this.workerPool.submit(this::drainQueue);
+        }
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(namedThreads("notification-retry-"));
+    }
+
+    /**
+     * Stops the workers after the batches they are sending, and drops the retries that are still waiting.
+     *
+     * @throws InterruptedException if interrupted while waiting for the workers to stop.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        this.running = false;
+        this.retryScheduler.shutdownNow();
+        this.workerPool.shutdown();
+        if (!this.workerPool.awaitTermination(10, TimeUnit.SECONDS)) {
+            this.workerPool.shutdownNow();
+        }
+        if (!this.queue.isEmpty()) {
+            log.warn("Notification dispatcher stopped with {} notifications still queued", this.queue.size());
+        }
+    }
+
+    /**
+     * Queues a Message to be sent and returns its tracking ID at once.
+     *
+     * @param message the Message to send.
+     * @return the tracking ID of the notification.
+     * @throws NotificationQueueFullException if the queue stayed full for the offer timeout.
+     */
+    public String submit(Message message) throws NotificationQueueFullException {
+        return submit(message, null);
+    }
+
+    /**
+     * Queues a Message to be sent and returns its tracking ID at once. A callback is told when the notification is
+     * SENT or FAILED, on the worker thread that sent it. It is never told if the dispatcher stops first.
+     *
+     * @param message the Message to send.
+     * @param onCompletion called with SENT or FAILED once the notification is done, can be null.
+     * @return the tracking ID of the notification.
+     * @throws NotificationQueueFullException if the queue stayed full for the offer timeout.
+     */
+    public String submit(Message message, Consumer<NotificationStatus> onCompletion) throws NotificationQueueFullException {
+        String trackingId = UUID.randomUUID().toString();
+        // Recorded before the offer, so a worker can never mark the notification SENT before it is QUEUED
+        this.statuses.put(trackingId, NotificationStatus.QUEUED);
+        boolean accepted;
+        try {
+            accepted = this.queue.offer(new NotificationJob(trackingId, message, onCompletion), this.offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            this.statuses.invalidate(trackingId);
+            throw new NotificationQueueFullException("Notification queue is full, try again later.");
+        }
+        return trackingId;
+    }
+
+    /**
+     * Return the status of a notification.
+     *
+     * @param trackingId the tracking ID returned by submit.
+     * @return an Optional containing the status if the notification is known, otherwise an empty Optional.
+     */
+    public Optional<NotificationStatus> getStatus(String trackingId) {
+        return Optional.ofNullable(this.statuses.getIfPresent(trackingId));
+    }
+
+    /**
+     * Return the number of notifications waiting in the queue.
+     *
+     * @return the number of queued notifications.
+     */
+    public int getQueueSize() {
+        return this.queue.size();
+    }
+
+    /**
+     * Return the number of notifications FCM accepted.
+     *
+     * @return the number of sent notifications.
+     */
+    public long getSentCount() {
+        return this.sent.get();
+    }
+
+    /**
+     * Return the number of notifications that were rejected or ran out of attempts.
+     *
+     * @return the number of failed notifications.
+     */
+    public long getFailedCount() {
+        return this.failed.get();
+    }
+
+    /**
+     * Return the number of retries that were scheduled.
+     *
+     * @return the number of retries.
+     */
+    public long getRetryCount() {
+        return this.retries.get();
+    }
+
+    /**
+     * Worker loop, taking up to batchSize notifications at a time from the queue and sending them as one batch.
+     */
+    private void drainQueue() {
+        List<NotificationJob> batch = new ArrayList<>(this.batchSize);
+        while (this.running) {
+            try {
+                NotificationJob first = this.queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                this.queue.drainTo(batch, this.batchSize - 1);
+                sendBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Notification worker failed to send a batch of {} notifications", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Sends a batch and records the outcome of every notification in it.
+     *
+     * @param batch the notifications to send.
+     */
+    private void sendBatch(List<NotificationJob> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (NotificationJob job : batch) {
+            job.attempts++;
+            messages.add(job.message);
+        }
+        List<FCMSender.SendOutcome> outcomes;
+        try {
+            outcomes = this.sender.send(messages);
+        } catch (RuntimeException e) {
+            log.warn("Sending a batch of {} notifications failed, retrying: {}", batch.size(), e.getMessage());
+            outcomes = Collections.nCopies(batch.size(), FCMSender.SendOutcome.RETRYABLE);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            NotificationJob job = batch.get(i);
+            FCMSender.SendOutcome outcome = i < outcomes.size() ? outcomes.get(i) : FCMSender.SendOutcome.RETRYABLE;
+            if (outcome == FCMSender.SendOutcome.SENT) {
+                this.statuses.put(job.trackingId, NotificationStatus.SENT);
+                this.sent.incrementAndGet();
+                complete(job, NotificationStatus.SENT);
+            } else if (outcome == FCMSender.SendOutcome.RETRYABLE && job.attempts < this.maxAttempts) {
+                this.statuses.put(job.trackingId, NotificationStatus.RETRYING);
+                this.retries.incrementAndGet();
+                scheduleRetry(job, backoffMillis(job.attempts));
+            } else {
+                this.statuses.put(job.trackingId, NotificationStatus.FAILED);
+                this.failed.incrementAndGet();
+                log.warn("Notification {} failed after {} attempts", job.trackingId, job.attempts);
+                complete(job, NotificationStatus.FAILED);
+            }
+        }
+    }
+
+    /**
+     * Tells the callback of a notification that it is done.
+     *
+     * @param job the notification.
+     * @param status SENT or FAILED.
+     */
+    private void complete(NotificationJob job, NotificationStatus status) {
+        if (job.onCompletion == null) {
+            return;
+        }
+        try {
+            job.onCompletion.accept(status);
+        } catch (RuntimeException e) {
+            log.error("Completion callback of notification {} failed", job.trackingId, e);
+        }
+    }
+
+    /**
+     * Puts a notification back in the queue after a delay. If the queue is full by then,
+     * the notification waits another delay rather than being dropped.
+     *
+     * @param job the notification to send again.
+     * @param delayMillis the delay before it is put back in the queue.
+     */
+    private void scheduleRetry(NotificationJob job, long delayMillis) {
+        try {
+            this.retryScheduler.schedule(() -> {
+                if (!this.queue.offer(job)) {
+                    scheduleRetry(job, delayMillis);
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.warn("Notification {} was not retried, the dispatcher is shutting down", job.trackingId);
+        }
+    }
+
+    /**
+     * Return the delay before the next retry of a notification that has been sent a number of times.
+     * The delay doubles with every attempt up to maxBackoffMillis, and a random half of it is jitter so
+     * notifications that failed together are not all sent again at the same moment.
+     *
+     * @param attempts the number of times the notification has been sent.
+     * @return the delay in milliseconds.
+     */
+    private long backoffMillis(int attempts) {
+        long delay = Math.min(this.maxBackoffMillis, this.initialBackoffMillis << Math.min(attempts - 1, 30));
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    /**
+     * Return a ThreadFactory creating daemon threads with a name prefix.
+     *
+     * @param prefix the prefix of the thread names.
+     * @return the ThreadFactory.
+     */
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A queued notification.
+     */
+    private static class NotificationJob {
+
+        /** Tracking ID returned to the submitter */
+        private final String trackingId;
+
+        /** Message to send */
+        private final Message message;
+
+        /** Called with SENT or FAILED once the notification is done, can be null */
+        private final Consumer<NotificationStatus> onCompletion;
+
+        /** Number of times the Message has been sent, only touched by the worker sending it */
+        private int attempts;
+
+        /**
+         * Creates a notification that has not been sent yet.
+         *
+         * @param trackingId the tracking ID returned to the submitter.
+         * @param message the Message to send.
+         * @param onCompletion called with SENT or FAILED once the notification is done, can be null.
+         */
+        private NotificationJob(String trackingId, Message message, Consumer<NotificationStatus> onCompletion) {
+            this.trackingId = trackingId;
+            this.message = message;
+            this.onCompletion = onCompletion;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package wms.rest.wms.service.fcm;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import wms.rest.wms.api.model.NotificationRequest;
+import wms.rest.wms.exception.NotificationQueueFullException;
+import wms.rest.wms.model.NotificationStatus;
+import wms.rest.wms.model.OrderNotification;
+import wms.rest.wms.repository.OrderNotificationRepository;
+import wms.rest.wms.repository.OrderRepository;
+import wms.rest.wms.repository.OrderRepository.OrderCustomer;
+import wms.rest.wms.service.SchedulerLeaseService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the order notification outbox into the notification pipeline. A single relay thread reads the oldest
+ * rows waiting to be relayed in batches, queues one push notification per row on the FCM topic of the Customer, and
+ * marks the rows it queued relayed in the same transaction. It is woken up when a transaction recording
+ * notifications commits or a relayed notification is done, and also polls the outbox at a fixed interval so rows
+ * left behind by a restart are sent as well.
+ * <p>
+ * A row is deleted only once the notification pipeline reports its notification SENT, which is when FCM accepted
+ * it. A notification that FAILED puts its row back to be relayed again, until it has been relayed max-attempts
+ * times, after which the row is left in the outbox for an operator. The answers are collected from the pipeline
+ * threads and applied by the relay thread in one transaction. A row relayed longer than the in-flight timeout ago
+ * without an answer, because the instance that relayed it stopped or lost the notification, is relayed again, so a
+ * notification is sent at least once, and twice only if an answer is lost. When the notification queue is full the
+ * rest of the batch stays in the outbox until the next poll.
+ * <p>
+ * Every instance runs a relay thread, but each batch is relayed under the scheduler lease of the relay job, so only
+ * one instance reads and marks rows at a time and no row is relayed by two instances at once. An instance that finds
+ * the lease held leaves the outbox to the instance holding it, and rows recorded meanwhile are relayed by the next
+ * wake-up or poll of any instance. The answers are applied by the instance that relayed the rows, without the lease.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+public class OrderNotificationRelay {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(OrderNotificationRelay.class);
+
+    /** Prefix of the FCM topic every Customer's devices subscribe to */
+    public static final String CUSTOMER_TOPIC_PREFIX = "customer_";
+
+    /** Name of the job relaying the order notification outbox */
+    public static final String RELAY_NOTIFICATIONS_JOB = "order-notification.relay";
+
+    /** Repository for handling OrderNotification persistence operations */
+    private final OrderNotificationRepository orderNotificationRepository;
+
+    /** Repository for looking up the Customer of each Order */
+    private final OrderRepository orderRepository;
+
+    /** Service queueing the push notifications */
+    private final FCMService fcmService;
+
+    /** Service for the scheduler lease that keeps the relay on one instance at a time */
+    private final SchedulerLeaseService schedulerLeaseService;
+
+    /** Template running each batch in its own transaction */
+    private final TransactionTemplate transactionTemplate;
+
+    /** Maximum number of rows read from the outbox per transaction */
+    private final int batchSize;
+
+    /** How long the relay thread sleeps when it is not woken up */
+    private final long pollIntervalMillis;
+
+    /** How long a relayed row waits for the answer of the notification pipeline before it is relayed again */
+    private final long inFlightTimeoutMillis;
+
+    /** Number of times a row is relayed before it is left in the outbox */
+    private final int maxAttempts;
+
+    /** IDs of the relayed rows whose notifications were SENT, waiting to be deleted */
+    private final Queue<Long> sentIds = new ConcurrentLinkedQueue<>();
+
+    /** IDs of the relayed rows whose notifications FAILED, waiting to be put back */
+    private final Queue<Long> failedIds = new ConcurrentLinkedQueue<>();
+
+    /** Wake-up signals from committed transactions */
+    private final Semaphore wakeUps = new Semaphore(0);
+
+    /** Thread draining the outbox */
+    private Thread relayThread;
+
+    /** Whether the relay thread should keep running */
+    private volatile boolean running;
+
+    /**
+     * Creates the relay. The relay thread is started by start().
+     *
+     * @param orderNotificationRepository repository for handling OrderNotification persistence operations.
+     * @param orderRepository repository for looking up the Customer of each Order.
+     * @param fcmService service queueing the push notifications.
+     * @param schedulerLeaseService service for the scheduler lease that keeps the relay on one instance at a time.
+     * @param transactionTemplate template running each batch in its own transaction.
+     * @param batchSize maximum number of rows read from the outbox per transaction.
+     * @param pollIntervalMillis how long the relay thread sleeps when it is not woken up.
+     * @param inFlightTimeoutMillis how long a relayed row waits for an answer before it is relayed again.
+     * @param maxAttempts number of times a row is relayed before it is left in the outbox.
+     */
+    public OrderNotificationRelay(OrderNotificationRepository orderNotificationRepository, OrderRepository orderRepository,
+                                  FCMService fcmService, SchedulerLeaseService schedulerLeaseService,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${notification.outbox.batch-size:500}") int batchSize,
+                                  @Value("${notification.outbox.poll-interval-millis:5000}") long pollIntervalMillis,
+                                  @Value("${notification.outbox.in-flight-timeout-millis:600000}") long inFlightTimeoutMillis,
+                                  @Value("${notification.outbox.max-attempts:5}") int maxAttempts) {
+        this.orderNotificationRepository = orderNotificationRepository;
+        this.orderRepository = orderRepository;
+        this.fcmService = fcmService;
+        this.schedulerLeaseService = schedulerLeaseService;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.inFlightTimeoutMillis = inFlightTimeoutMillis;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Starts the relay thread.
+     */
+    @PostConstruct
+    public void start() {
+        this.running = true;
+        this.relayThread = new Thread(this::run, "order-notification-relay");
+        this.relayThread.setDaemon(true);
+        this.relayThread.start();
+    }
+
+    /**
+     * Stops the relay thread after the batch it is relaying.
+     *
+     * @throws InterruptedException if interrupted while waiting for the thread to stop.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        this.running = false;
+        this.wakeUps.release();
+        this.relayThread.join(10_000);
+    }
+
+    /**
+     * Wakes the relay thread up to drain the outbox. Called after a transaction recording notifications commits.
+     */
+    public void wakeUp() {
+        this.wakeUps.release();
+    }
+
+    /**
+     * Applies the answers of the notification pipeline, then relays every row waiting in the outbox, batch by batch,
+     * until none is left, the notification queue is full or another instance holds the lease of the relay job.
+     *
+     * @return the number of rows relayed.
+     */
+    public synchronized int relayPending() {
+        applyAnswers();
+        int relayed = 0;
+        int batch;
+        do {
+            Integer result = this.transactionTemplate.execute(status -> relayBatch());
+            batch = result == null ? 0 : result;
+            relayed += batch;
+        } while (batch == this.batchSize);
+        return relayed;
+    }
+
+    /**
+     * Relay thread loop, draining the outbox whenever it is woken up or the poll interval has passed.
+     */
+    private void run() {
+        while (this.running) {
+            try {
+                this.wakeUps.tryAcquire(this.pollIntervalMillis, TimeUnit.MILLISECONDS);
+                // Several commits in a row are served by the same drain
+                this.wakeUps.drainPermits();
+                if (this.running) {
+                    relayPending();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Failed to relay order notifications: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Deletes the rows whose notifications were SENT and puts back the rows whose notifications FAILED, in one
+     * transaction.
+     */
+    private void applyAnswers() {
+        List<Long> sent = drain(this.sentIds);
+        List<Long> failed = drain(this.failedIds);
+        if (sent.isEmpty() && failed.isEmpty()) {
+            return;
+        }
+        this.transactionTemplate.executeWithoutResult(status -> {
+            if (!sent.isEmpty()) {
+                this.orderNotificationRepository.deleteByIds(sent);
+            }
+            if (!failed.isEmpty()) {
+                this.orderNotificationRepository.putBack(failed);
+            }
+        });
+        if (!failed.isEmpty()) {
+            log.warn("{} order notifications failed and were put back in the outbox, " +
+                    "rows relayed {} times are left there", failed.size(), this.maxAttempts);
+        }
+    }
+
+    /**
+     * Records the answer of the notification pipeline for a relayed row, and wakes the relay thread up to apply it.
+     * Called on the pipeline thread that sent the notification.
+     *
+     * @param orderNotificationId the orderNotificationId of the row.
+     * @param status SENT or FAILED.
+     */
+    private void answer(long orderNotificationId, NotificationStatus status) {
+        (status == NotificationStatus.SENT ? this.sentIds : this.failedIds).add(orderNotificationId);
+        wakeUp();
+    }
+
+    /**
+     * Return the IDs taken from a queue of answers.
+     *
+     * @param ids the queue of answers.
+     * @return a List of the IDs that were in the queue.
+     */
+    private static List<Long> drain(Queue<Long> ids) {
+        List<Long> drained = new ArrayList<>();
+        for (Long id = ids.poll(); id != null; id = ids.poll()) {
+            drained.add(id);
+        }
+        return drained;
+    }
+
+    /**
+     * Queues a notification for each of the oldest rows waiting in the outbox and marks the rows that were queued
+     * relayed, if this instance leads the relay job. Rows of Orders without a Customer are deleted, since there is
+     * no one to notify. Runs inside a transaction, which releases the lease when it completes.
+     *
+     * @return the number of rows relayed or deleted, 0 if another instance holds the lease.
+     */
+    private int relayBatch() {
+        if (!this.schedulerLeaseService.lead(RELAY_NOTIFICATIONS_JOB)) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<OrderNotification> rows = this.orderNotificationRepository.findPending(
+                now.minusNanos(this.inFlightTimeoutMillis * 1_000_000), this.maxAttempts, PageRequest.of(0, this.batchSize));
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        Map<Integer, Integer> customerIdByOrderId = new HashMap<>();
+        for (OrderCustomer orderCustomer : this.orderRepository.findCustomersByOrderIds(
+                rows.stream().map(OrderNotification::getOrderId).distinct().toList())) {
+            customerIdByOrderId.put(orderCustomer.getOrderId(), orderCustomer.getCustomerId());
+        }
+
+        List<Long> relayedIds = new ArrayList<>(rows.size());
+        List<Long> droppedIds = new ArrayList<>();
+        for (OrderNotification row : rows) {
+            Integer customerId = customerIdByOrderId.get(row.getOrderId());
+            if (customerId == null) {
+                log.debug("Dropped order notification {}, Order {} has no Customer", row.getOrderNotificationId(), row.getOrderId());
+                droppedIds.add(row.getOrderNotificationId());
+                continue;
+            }
+            long orderNotificationId = row.getOrderNotificationId();
+            try {
+                this.fcmService.sendMessageToTopic(new NotificationRequest(row.getNotificationType().getTitle(),
+                        row.getNotificationType().getBody(row.getOrderId()), CUSTOMER_TOPIC_PREFIX + customerId, null),
+                        status -> answer(orderNotificationId, status));
+            } catch (NotificationQueueFullException e) {
+                log.warn("Notification queue is full, {} order notifications left in the outbox",
+                        rows.size() - relayedIds.size() - droppedIds.size());
+                break;
+            }
+            relayedIds.add(orderNotificationId);
+        }
+        if (!relayedIds.isEmpty()) {
+            this.orderNotificationRepository.markRelayed(relayedIds, now);
+        }
+        if (!droppedIds.isEmpty()) {
+            this.orderNotificationRepository.deleteByIds(droppedIds);
+        }
+        log.debug("Relayed {} order notifications", relayedIds.size());
+        return relayedIds.size() + droppedIds.size();
+    }
+}
@@ -0,0 +1,178 @@
+package wms.rest.wms.service.ledger;
+
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import wms.rest.wms.model.StockSnapshot;
+import wms.rest.wms.repository.StockMovementRepository;
+import wms.rest.wms.repository.StockMovementRepository.StockDelta;
+import wms.rest.wms.repository.StockSnapshotRepository;
+import wms.rest.wms.service.SchedulerLeaseService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Folds the stock ledger into StockSnapshots in the background, so reading the stock of a Product at a time sums
+ * the movements since its last snapshot rather than its whole history. Each run takes a new snapshot, up to a time
+ * a settle period ago, of every Product that moved since the previous run, from its snapshot of that run and the
+ * movements in between summed in the database. Products that did not move keep their last snapshot.
+ * <p>
+ * The movements are stamped when they are recorded, before their transaction commits, so a movement can become
+ * visible after a run already folded the period it is stamped in. The runs stay a settle period behind to make
+ * that rare, and each run also folds again every period of the runs within a recheck period before the last one,
+ * oldest first, and corrects the snapshots that differ from the movements now visible, or adds them for Products
+ * whose only movements in a period were late. A movement committed later than the recheck period after it was
+ * stamped is never folded, so the recheck period has to be longer than any transaction recording movements.
+ * Only the instance leading the job runs it. The movements themselves are never changed or removed.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+public class StockLedgerCompactor {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(StockLedgerCompactor.class);
+
+    /** Name of the job compacting the stock ledger */
+    public static final String COMPACT_LEDGER_JOB = "stock-ledger.compact";
+
+    /** Maximum number of Products whose previous snapshots are read per statement */
+    private static final int CHUNK_SIZE = 500;
+
+    /** Repository summing the StockMovements */
+    private final StockMovementRepository stockMovementRepository;
+
+    /** Repository reading and writing the StockSnapshots */
+    private final StockSnapshotRepository stockSnapshotRepository;
+
+    /** Service for the scheduler lease that keeps the job on one instance */
+    private final SchedulerLeaseService schedulerLeaseService;
+
+    /** How far behind the current time a run folds the ledger */
+    private final long settleMillis;
+
+    /** How far before the last run the periods of the earlier runs are folded again, longer than any transaction */
+    private final long recheckMillis;
+
+    /**
+     * Creates the compactor.
+     *
+     * @param stockMovementRepository repository summing the StockMovements.
+     * @param stockSnapshotRepository repository reading and writing the StockSnapshots.
+     * @param schedulerLeaseService service for the scheduler lease that keeps the job on one instance.
+     * @param settleMillis how far behind the current time a run folds the ledger.
+     * @param recheckMillis how far before the last run the periods of the earlier runs are folded again.
+     */
+    public StockLedgerCompactor(StockMovementRepository stockMovementRepository,
+                                StockSnapshotRepository stockSnapshotRepository,
+                                SchedulerLeaseService schedulerLeaseService,
+                                @Value("${inventory.ledger.settle-millis:60000}") long settleMillis,
+                                @Value("${inventory.ledger.recheck-millis:3600000}") long recheckMillis) {
+        this.stockMovementRepository = stockMovementRepository;
+        this.stockSnapshotRepository = stockSnapshotRepository;
+        this.schedulerLeaseService = schedulerLeaseService;
+        this.settleMillis = settleMillis;
+        this.recheckMillis = recheckMillis;
+    }
+
+    /**
+     * Takes snapshots up to a settle period ago, on the instance leading the job.
+     * Scheduled at a fixed rate.
+     */
+    @Scheduled(initialDelayString = "${inventory.ledger.compaction-interval-millis:600000}",
+            fixedRateString = "${inventory.ledger.compaction-interval-millis:600000}")
+    @Transactional
+    public void compact() {
+        if (!this.schedulerLeaseService.lead(COMPACT_LEDGER_JOB)) {
+            return;
+        }
+        compactUntil(LocalDateTime.now().minusNanos(this.settleMillis * 1_000_000));
+    }
+
+    /**
+     * Corrects the snapshots of the runs within the recheck period before the last one, and takes a snapshot up to
+     * a time of every Product that moved since the last run.
+     *
+     * @param until the time to take the snapshots up to, every movement created before it is folded in.
+     * @return the number of snapshots taken or corrected, 0 if the ledger is already compacted up to the time.
+     */
+    @Transactional
+    public int compactUntil(LocalDateTime until) {
+        Optional<LocalDateTime> latest = this.stockSnapshotRepository.findLatestTakenUntil();
+        List<LocalDateTime> runs = new ArrayList<>();
+        runs.add(StockLedgerService.BEGINNING);
+        if (latest.isPresent()) {
+            LocalDateTime recheckFrom = latest.get().minusNanos(this.recheckMillis * 1_000_000);
+            this.stockSnapshotRepository.findLatestTakenUntilBy(recheckFrom).ifPresent(runs::add);
+            runs.addAll(this.stockSnapshotRepository.findTakenUntilAfter(runs.get(runs.size() - 1)));
+        }
+        int corrected = 0;
+        for (int run = 1; run < runs.size(); run++) {
+            corrected += fold(runs.get(run - 1), runs.get(run));
+        }
+        if (corrected > 0) {
+            log.warn("Corrected {} stock snapshots for movements committed after they were taken", corrected);
+        }
+        LocalDateTime from = runs.get(runs.size() - 1);
+        if (!until.isAfter(from)) {
+            return corrected;
+        }
+        int taken = fold(from, until);
+        if (taken > 0) {
+            log.info("Compacted the stock ledger from {} until {} into {} snapshots", from, until, taken);
+        }
+        return corrected + taken;
+    }
+
+    /**
+     * Makes the snapshots of a run hold the snapshots of the previous run plus the movements in between, for every
+     * Product that moved in between. Snapshots already holding that are left as they are.
+     *
+     * @param from the time the previous run took its snapshots up to.
+     * @param until the time the run takes its snapshots up to.
+     * @return the number of snapshots taken or changed.
+     */
+    private int fold(LocalDateTime from, LocalDateTime until) {
+        List<StockDelta> deltas = this.stockMovementRepository.sumByProductBetween(from, until);
+        List<StockSnapshot> snapshots = new ArrayList<>();
+        for (int start = 0; start < deltas.size(); start += CHUNK_SIZE) {
+            List<StockDelta> chunk = deltas.subList(start, Math.min(start + CHUNK_SIZE, deltas.size()));
+            List<Integer> productIds = chunk.stream().map(StockDelta::getProductId).toList();
+            Map<Integer, StockSnapshot> previous = new HashMap<>();
+            for (StockSnapshot snapshot : this.stockSnapshotRepository.findLatestByProductIdInTakenBy(productIds, from)) {
+                previous.put(snapshot.getProductId(), snapshot);
+            }
+            Map<Integer, StockSnapshot> existing = new HashMap<>();
+            for (StockSnapshot snapshot : this.stockSnapshotRepository.findByProductIdInAndTakenUntil(productIds, until)) {
+                existing.put(snapshot.getProductId(), snapshot);
+            }
+            for (StockDelta delta : chunk) {
+                StockSnapshot last = previous.get(delta.getProductId());
+                int total = Math.toIntExact((last == null ? 0 : last.getTotalStock()) + delta.getTotalDelta());
+                int reserved = Math.toIntExact((last == null ? 0 : last.getReservedStock()) + delta.getReservedDelta());
+                int available = Math.toIntExact((last == null ? 0 : last.getAvailableStock()) + delta.getAvailableDelta());
+                StockSnapshot snapshot = existing.getOrDefault(delta.getProductId(),
+                        new StockSnapshot(0, delta.getProductId(), until, 0, 0, 0));
+                if (snapshot.getStockSnapshotId() == 0 || snapshot.getTotalStock() != total
+                        || snapshot.getReservedStock() != reserved || snapshot.getAvailableStock() != available) {
+                    snapshot.setTotalStock(total);
+                    snapshot.setReservedStock(reserved);
+                    snapshot.setAvailableStock(available);
+                    snapshots.add(snapshot);
+                }
+            }
+        }
+        this.stockSnapshotRepository.saveAll(snapshots);
+        return snapshots.size();
+    }
+}
@@ -0,0 +1,173 @@
+package wms.rest.wms.service.ledger;
+
+import jakarta.transaction.Transactional;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+import wms.rest.wms.api.model.StockBalance;
+import wms.rest.wms.model.StockMovement;
+import wms.rest.wms.model.StockMovementType;
+import wms.rest.wms.model.StockSnapshot;
+import wms.rest.wms.repository.StockMovementRepository;
+import wms.rest.wms.repository.StockMovementRepository.StockDelta;
+import wms.rest.wms.repository.StockSnapshotRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Service class for the append-only stock ledger. The services changing the stock of an Inventory, the
+ * ProductService, StockReservationService and ShipmentBuilder, append a StockMovement in the transaction making the
+ * change, so the ledger commits or rolls back together with the Inventory row. The ledger sums to the Inventory as
+ * long as the stock is only changed through them, which is why the InventoryRepository is not exported by Spring
+ * Data REST; a change made directly in the database is not recorded. Appending inserts a new row and never updates
+ * one, so writers do not contend on the ledger itself, but the insert runs in the transaction holding the row lock
+ * on the Inventory and commits only once that transaction does.
+ * <p>
+ * The stock of a Product at any time is read from the latest StockSnapshot taken by then plus the movements since,
+ * and the StockLedgerCompactor keeps the number of those movements small by taking snapshots in the background.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+@AllArgsConstructor
+public class StockLedgerService {
+
+    /** Time before every movement, which a Product without snapshots sums its movements from */
+    static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    /** Repository appending and reading the StockMovements */
+    private StockMovementRepository stockMovementRepository;
+
+    /** Repository reading the StockSnapshots */
+    private StockSnapshotRepository stockSnapshotRepository;
+
+    /**
+     * Records that a quantity of a Product was moved from available stock to reserved stock.
+     *
+     * @param productId the productId of the Product.
+     * @param quantity the quantity reserved.
+     */
+    @Transactional
+    public void recordReservation(int productId, int quantity) {
+        record(productId, StockMovementType.RESERVATION, 0, quantity, -quantity, null);
+    }
+
+    /**
+     * Records that a quantity of a Product was moved from reserved stock back to available stock.
+     *
+     * @param productId the productId of the Product.
+     * @param quantity the quantity released.
+     */
+    @Transactional
+    public void recordRelease(int productId, int quantity) {
+        record(productId, StockMovementType.RELEASE, 0, -quantity, quantity, null);
+    }
+
+    /**
+     * Records that the quantities of several Products were picked for a Shipment, leaving both reserved and total
+     * stock. The movements are appended together, in one batch.
+     *
+     * @param quantityByProductId the quantities picked by productId.
+     * @param shipmentId the shipmentId of the Shipment they were picked for.
+     */
+    @Transactional
+    public void recordPicks(Map<Integer, Integer> quantityByProductId, int shipmentId) {
+        if (quantityByProductId.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<StockMovement> movements = new ArrayList<>(quantityByProductId.size());
+        quantityByProductId.forEach((productId, quantity) -> movements.add(new StockMovement(0, productId,
+                StockMovementType.PICK, -quantity, -quantity, 0, shipmentId, now)));
+        this.stockMovementRepository.saveAll(movements);
+    }
+
+    /**
+     * Records the stock a Product was received with, as the difference between the stock before and after it.
+     * Nothing is recorded if the stock did not change.
+     *
+     * @param productId the productId of the Product.
+     * @param totalDelta the change of the total stock.
+     * @param reservedDelta the change of the reserved stock.
+     * @param availableDelta the change of the available stock.
+     */
+    @Transactional
+    public void recordReceipt(int productId, int totalDelta, int reservedDelta, int availableDelta) {
+        if (totalDelta != 0 || reservedDelta != 0 || availableDelta != 0) {
+            record(productId, StockMovementType.RECEIPT, totalDelta, reservedDelta, availableDelta, null);
+        }
+    }
+
+    /**
+     * Records a correction of the stock of a Product, as the difference between the stock before and after it.
+     * Nothing is recorded if the stock did not change.
+     *
+     * @param productId the productId of the Product.
+     * @param totalDelta the change of the total stock.
+     * @param reservedDelta the change of the reserved stock.
+     * @param availableDelta the change of the available stock.
+     */
+    @Transactional
+    public void recordAdjustment(int productId, int totalDelta, int reservedDelta, int availableDelta) {
+        if (totalDelta != 0 || reservedDelta != 0 || availableDelta != 0) {
+            record(productId, StockMovementType.ADJUSTMENT, totalDelta, reservedDelta, availableDelta, null);
+        }
+    }
+
+    /**
+     * Return the stock of a Product at a point in time, from the latest StockSnapshot taken by then and the
+     * movements recorded after it up to the time. A Product with no movements by then has no stock.
+     *
+     * @param productId the productId of the Product.
+     * @param asOf the time to give the stock at.
+     * @return the StockBalance of the Product at the time.
+     */
+    public StockBalance getBalanceAsOf(int productId, LocalDateTime asOf) {
+        Optional<StockSnapshot> snapshot = this.stockSnapshotRepository
+                .findFirstByProductIdAndTakenUntilLessThanEqualOrderByTakenUntilDesc(productId, asOf);
+        long total = snapshot.map(StockSnapshot::getTotalStock).orElse(0);
+        long reserved = snapshot.map(StockSnapshot::getReservedStock).orElse(0);
+        long available = snapshot.map(StockSnapshot::getAvailableStock).orElse(0);
+        LocalDateTime from = snapshot.map(StockSnapshot::getTakenUntil).orElse(BEGINNING);
+        Optional<StockDelta> delta = this.stockMovementRepository.sumForProductBetween(productId, from, asOf);
+        if (delta.isPresent()) {
+            total += delta.get().getTotalDelta();
+            reserved += delta.get().getReservedDelta();
+            available += delta.get().getAvailableDelta();
+        }
+        return new StockBalance(productId, asOf, Math.toIntExact(total), Math.toIntExact(reserved),
+                Math.toIntExact(available));
+    }
+
+    /**
+     * Return the movements of a Product recorded in a period, oldest first.
+     *
+     * @param productId the productId of the Product.
+     * @param from the start of the period, inclusive.
+     * @param to the end of the period, inclusive.
+     * @return a List of StockMovements in the order they were recorded.
+     */
+    public List<StockMovement> getMovements(int productId, LocalDateTime from, LocalDateTime to) {
+        return this.stockMovementRepository.findByProductIdAndCreatedAtBetweenOrderByStockMovementIdAsc(productId, from, to);
+    }
+
+    /**
+     * Appends a StockMovement to the ledger.
+     *
+     * @param productId the productId of the Product.
+     * @param type the StockMovementType of the movement.
+     * @param totalDelta the change of the total stock.
+     * @param reservedDelta the change of the reserved stock.
+     * @param availableDelta the change of the available stock.
+     * @param referenceId the shipmentId of a PICK, null for the other movements.
+     */
+    private void record(int productId, StockMovementType type, int totalDelta, int reservedDelta, int availableDelta,
+                        Integer referenceId) {
+        this.stockMovementRepository.save(new StockMovement(0, productId, type, totalDelta, reservedDelta,
+                availableDelta, referenceId, LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,212 @@
+package wms.rest.wms.service.pipeline;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import wms.rest.wms.service.ShipmentService;
+import wms.rest.wms.service.TripService;
+import wms.rest.wms.service.WorkQueueService;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives Orders through the pipeline from REGISTERED to IN_TRANSIT as soon as each stage has work, instead of
+ * waiting for fixed-rate schedulers. A transaction handing work over to a stage, by registering Orders or by
+ * recording IDs in the work queue, publishes a PipelineEvent, and the stage is run once the transaction commits.
+ * Its run hands the work over to the next stage the same way, so an Order reaches IN_TRANSIT within the time the
+ * stages take to run rather than minutes later.
+ * <p>
+ * Work is not always due when it is handed over. The Orders of a delivery date wait for its cutoff, their picked
+ * Shipments for the planning time of the date and their Trips for the start date, as decided by the PlanningWindow,
+ * so each stage handles the work of a date in one batch. Every instance polls at a short fixed delay whether any
+ * stage has work due, with one cheap query per stage that reads at most one row, and runs the stages that have.
+ * <p>
+ * Every stage has one worker, since each run consumes the work of its stage in batches and two runs at once would
+ * consume the same work. A stage holds at most one run waiting behind the one in progress, and further events are
+ * dropped, because the waiting run starts after their transactions committed and handles their work as well. Under
+ * load the runs grow into larger batches instead of piling up.
+ * <p>
+ * The PipelineEvents only reach the pipeline of the instance whose transaction published them, and the stage they
+ * wake may be led by another instance, whose run is then skipped. Work handed over on one instance is still picked
+ * up by every other instance within one poll, since the poll reads the Orders and the work queue shared through the
+ * database, and the instance holding the lease of the stage runs it. The leases of the stages are released when a
+ * run finishes, so the next run can start on any instance.
+ * <p>
+ * The workers run on virtual threads when 'spring.threads.virtual.enabled' is set on Java 21 or later, so a stage
+ * blocked on the database does not hold a platform thread.
+ * <p>
+ * The work is never held in memory: the stages read it from the Orders and the persistent work queue, and consume
+ * it in their own transactions. Work left behind by a crash or a failed run is picked up by the poll, and by running
+ * every stage when the application is ready and again at a slow fixed rate.
+ * The pipeline can be switched off with 'pipeline.enabled=false', which the test profile does to run the stages by
+ * hand.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+@ConditionalOnProperty(name = "pipeline.enabled", havingValue = "true", matchIfMissing = true)
+public class OrderPipeline {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(OrderPipeline.class);
+
+    /** The job run by each stage */
+    private final Map<PipelineStage, Runnable> jobs = new EnumMap<>(PipelineStage.class);
+
+    /** The worker of each stage, with room for one waiting run */
+    private final Map<PipelineStage, ThreadPoolExecutor> workers = new EnumMap<>(PipelineStage.class);
+
+    /** Service running the Shipment stages and checking for released Orders */
+    private final ShipmentService shipmentService;
+
+    /** Service checking the work queue for work due */
+    private final WorkQueueService workQueueService;
+
+    /**
+     * Creates the pipeline and the workers of its stages, on virtual threads if they are enabled.
+     *
+     * @param shipmentService service running the Shipment stages.
+     * @param tripService service running the Trip stages.
+     * @param workQueueService service checking the work queue for work due.
+     * @param environment the Environment deciding whether the workers run on virtual threads.
+     */
+    @Autowired
+    public OrderPipeline(ShipmentService shipmentService, TripService tripService, WorkQueueService workQueueService,
+                         Environment environment) {
+        this(shipmentService, tripService, workQueueService, Threading.VIRTUAL.isActive(environment));
+    }
+
+    /**
+     * Creates the pipeline and the workers of its stages.
+     *
+     * @param shipmentService service running the Shipment stages.
+     * @param tripService service running the Trip stages.
+     * @param workQueueService service checking the work queue for work due.
+     * @param virtualThreads whether the workers run on virtual threads, which needs Java 21 or later.
+     */
+    public OrderPipeline(ShipmentService shipmentService, TripService tripService, WorkQueueService workQueueService,
+                         boolean virtualThreads) {
+        this.shipmentService = shipmentService;
+        this.workQueueService = workQueueService;
+        this.jobs.put(PipelineStage.CREATE_SHIPMENTS, shipmentService::createShipment);
+        this.jobs.put(PipelineStage.PICK_SHIPMENTS, shipmentService::updateShipmentOrdersToPicked);
+        this.jobs.put(PipelineStage.CREATE_TRIPS, tripService::createTrip);
+        this.jobs.put(PipelineStage.DEPART_TRIPS, tripService::updateTripStatusFromLoadingToDeparted);
+        this.jobs.put(PipelineStage.TRANSIT_TRIPS, tripService::updateTripStatusFromDepartedToInTransit);
+        for (PipelineStage stage : PipelineStage.values()) {
+            String name = "order-pipeline-" + stage.name().toLowerCase().replace('_', '-');
+            ThreadFactory threads = virtualThreads ? new VirtualThreadTaskExecutor(name + "-").getVirtualThreadFactory()
+                    : runnable -> {
+                        Thread thread = new Thread(runnable, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    };
+            ThreadPoolExecutor worker = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(1), threads, new ThreadPoolExecutor.DiscardPolicy());
+            worker.allowCoreThreadTimeOut(true);
+            this.workers.put(stage, worker);
+        }
+    }
+
+    /**
+     * Stops the workers when the application shuts down, letting the runs in progress finish.
+     * The work of the dropped waiting runs stays in the database for the next start.
+     *
+     * @throws InterruptedException if interrupted while waiting for the workers to finish.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor worker : this.workers.values()) {
+            worker.shutdown();
+        }
+        for (ThreadPoolExecutor worker : this.workers.values()) {
+            if (!worker.awaitTermination(30, TimeUnit.SECONDS)) {
+                worker.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Runs the stage work was handed over to, once the transaction handing it over has committed.
+     * Work handed over outside a transaction is run at once.
+     *
+     * @param event the PipelineEvent naming the stage.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHandOver(PipelineEvent event) {
+        trigger(event.stage());
+    }
+
+    /**
+     * Runs every stage, picking up the work left behind by a crash, a failed run or another instance.
+     * Runs when the application is ready, and then at a fixed rate.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${pipeline.sweep-interval-millis:300000}",
+            fixedRateString = "${pipeline.sweep-interval-millis:300000}")
+    public void sweep() {
+        for (PipelineStage stage : PipelineStage.values()) {
+            trigger(stage);
+        }
+    }
+
+    /**
+     * Runs every stage that has work due: the Shipment stage if any Orders have been released, and every other stage
+     * if its topic has an item available. Scheduled at a fixed delay.
+     */
+    @Scheduled(initialDelayString = "${pipeline.poll-interval-millis:2000}",
+            fixedDelayString = "${pipeline.poll-interval-millis:2000}")
+    public void poll() {
+        for (PipelineStage stage : PipelineStage.values()) {
+            try {
+                if (stage.getTopic() == null ? this.shipmentService.hasReleasedOrders()
+                        : this.workQueueService.hasAvailable(stage.getTopic())) {
+                    trigger(stage);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not check pipeline stage {} for work: {}", stage, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs a stage on its worker, unless a run of the stage is already waiting.
+     *
+     * @param stage the stage to run.
+     */
+    public void trigger(PipelineStage stage) {
+        this.workers.get(stage).execute(() -> run(stage));
+    }
+
+    /**
+     * Runs the job of a stage. A failed run is logged, and its work is left in the database for a later run.
+     *
+     * @param stage the stage to run.
+     */
+    private void run(PipelineStage stage) {
+        try {
+            long start = System.nanoTime();
+            this.jobs.get(stage).run();
+            log.debug("Pipeline stage {} ran in {} ms", stage, (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.error("Pipeline stage {} failed, its work is retried on the next run: {}", stage, e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package wms.rest.wms.service.pipeline;
+
+import java.time.LocalDate;
+
+/**
+ * The REGISTERED Orders released to the Shipment stage by the cutoffs passed so far.
+ *
+ * @param deliveryDatesUntil Orders wished delivered on or before this date are released.
+ * @param undatedPlacedUntil Orders without a wished delivery date placed on or before this date are released.
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+public record OrderRelease(LocalDate deliveryDatesUntil, LocalDate undatedPlacedUntil) {
+
+    /** Releases every REGISTERED Order, whatever its cutoff */
+    public static final OrderRelease ALL = new OrderRelease(LocalDate.of(9999, 12, 31), LocalDate.of(9999, 12, 31));
+}
@@ -0,0 +1,12 @@
+package wms.rest.wms.service.pipeline;
+
+/**
+ * Published when a transaction hands work over to a stage of the order pipeline. The OrderPipeline runs the stage
+ * once the transaction has committed, so the stage always sees the work.
+ *
+ * @param stage the stage the work was handed over to.
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+public record PipelineEvent(PipelineStage stage) {
+}
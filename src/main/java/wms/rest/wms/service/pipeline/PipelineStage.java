@@ -0,0 +1,64 @@
+package wms.rest.wms.service.pipeline;
+
+import wms.rest.wms.model.WorkQueueTopic;
+
+/**
+ * Represents the stages of the order pipeline, in the order an Order goes through them. Every stage after the first
+ * consumes one topic of the work queue, which the stage before it records the IDs it is handed over under.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+public enum PipelineStage {
+
+    /** Groups released REGISTERED Orders into Shipments and moves them to PICKING. Woken when Orders are registered */
+    CREATE_SHIPMENTS(null),
+
+    /** Moves the Orders of the Shipments to PICKED */
+    PICK_SHIPMENTS(WorkQueueTopic.SHIPMENT_PICKING),
+
+    /** Packs the picked Shipments into Trips with the TripStatus LOADING */
+    CREATE_TRIPS(WorkQueueTopic.SHIPMENT_PICKED),
+
+    /** Moves the Trips from LOADING to DEPARTED */
+    DEPART_TRIPS(WorkQueueTopic.TRIP_LOADING),
+
+    /** Moves the Trips from DEPARTED to IN_TRANSIT */
+    TRANSIT_TRIPS(WorkQueueTopic.TRIP_DEPARTED);
+
+    /** The topic of the work queue the stage consumes, null if it reads its work from the Orders */
+    private final WorkQueueTopic topic;
+
+    /**
+     * Creates a stage.
+     *
+     * @param topic the topic of the work queue the stage consumes, null if it reads its work from the Orders.
+     */
+    PipelineStage(WorkQueueTopic topic) {
+        this.topic = topic;
+    }
+
+    /**
+     * Return the topic of the work queue the stage consumes.
+     *
+     * @return the WorkQueueTopic, null if the stage reads its work from the Orders.
+     */
+    public WorkQueueTopic getTopic() {
+        return this.topic;
+    }
+
+    /**
+     * Return the stage consuming a topic of the work queue.
+     *
+     * @param topic the WorkQueueTopic.
+     * @return the stage consuming the topic.
+     */
+    public static PipelineStage consuming(WorkQueueTopic topic) {
+        for (PipelineStage stage : values()) {
+            if (stage.topic == topic) {
+                return stage;
+            }
+        }
+        throw new IllegalArgumentException("No pipeline stage consumes " + topic);
+    }
+}
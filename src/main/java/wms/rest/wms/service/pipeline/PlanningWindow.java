@@ -0,0 +1,119 @@
+package wms.rest.wms.service.pipeline;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Decides when the order pipeline plans the Orders of a delivery date, so the Orders of a date are batched into as
+ * few Shipments and Trips as possible instead of being planned one registration at a time.
+ * <p>
+ * Every delivery date has a cutoff, a number of days before it at a time of day. Until the cutoff of their date
+ * Orders stay REGISTERED, and can still be cancelled. Once it has passed they are released to the Shipment stage,
+ * which builds one Shipment per Store for all of them. Orders without a wished delivery date are released at the
+ * first cutoff after the day they were placed. The picked Shipments of a date are planned into Trips a planning
+ * delay after the cutoff, when the Shipments of every Store are picked, so the TripPlanner packs and routes them
+ * together. A Trip is loaded until its start date and departs on it.
+ * <p>
+ * Orders registered after the cutoff of their date are released at once, and planned into Trips of their own.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Component
+public class PlanningWindow {
+
+    /** How many days before its delivery date the Orders of a date are released */
+    private final int cutoffDaysBeforeDelivery;
+
+    /** The time of day the Orders of a date are released at */
+    private final LocalTime cutoffTime;
+
+    /** How long after the cutoff the picked Shipments of a date are planned into Trips */
+    private final long planningDelayMinutes;
+
+    /**
+     * Creates the planning window.
+     *
+     * @param cutoffDaysBeforeDelivery how many days before its delivery date the Orders of a date are released.
+     * @param cutoffTime the time of day the Orders of a date are released at, as HH:mm.
+     * @param planningDelayMinutes how long after the cutoff the picked Shipments of a date are planned into Trips.
+     */
+    public PlanningWindow(@Value("${pipeline.cutoff-days-before-delivery:1}") int cutoffDaysBeforeDelivery,
+                          @Value("${pipeline.cutoff-time:18:00}") String cutoffTime,
+                          @Value("${pipeline.planning-delay-minutes:30}") long planningDelayMinutes) {
+        this.cutoffDaysBeforeDelivery = cutoffDaysBeforeDelivery;
+        this.cutoffTime = LocalTime.parse(cutoffTime);
+        this.planningDelayMinutes = planningDelayMinutes;
+    }
+
+    /**
+     * Return the Orders released to the Shipment stage at a time.
+     *
+     * @param now the time.
+     * @return the OrderRelease of every cutoff passed by the time.
+     */
+    public OrderRelease releasedAt(LocalDateTime now) {
+        LocalDate lastCutoffDay = lastCutoff(now).toLocalDate();
+        return new OrderRelease(lastCutoffDay.plusDays(this.cutoffDaysBeforeDelivery), lastCutoffDay);
+    }
+
+    /**
+     * Return the cutoff of a delivery date, after which its Orders are released.
+     *
+     * @param deliveryDate the delivery date.
+     * @return the time the Orders of the date are released at.
+     */
+    public LocalDateTime cutoff(LocalDate deliveryDate) {
+        return deliveryDate.minusDays(this.cutoffDaysBeforeDelivery).atTime(this.cutoffTime);
+    }
+
+    /**
+     * Return when the picked Shipments of a delivery date are planned into Trips. Shipments without a delivery
+     * date were released at the last cutoff, and are planned a planning delay after it.
+     *
+     * @param deliveryDate the delivery date of the Shipments, or null.
+     * @param now the current time.
+     * @return the time to plan the Shipments at, which may have passed.
+     */
+    public LocalDateTime planningTime(LocalDate deliveryDate, LocalDateTime now) {
+        LocalDateTime cutoff = deliveryDate == null ? lastCutoff(now) : cutoff(deliveryDate);
+        return cutoff.plusMinutes(this.planningDelayMinutes);
+    }
+
+    /**
+     * Return when Shipments that could not be planned into a Trip, such as when no Driver was free, are planned
+     * again.
+     *
+     * @param now the current time.
+     * @return the time to plan the Shipments again at.
+     */
+    public LocalDateTime retryTime(LocalDateTime now) {
+        return now.plusMinutes(this.planningDelayMinutes);
+    }
+
+    /**
+     * Return when a Trip loaded for a start date departs.
+     *
+     * @param tripStartDate the start date of the Trip.
+     * @return the start of the day the Trip departs on.
+     */
+    public LocalDateTime departureTime(LocalDate tripStartDate) {
+        return tripStartDate.atStartOfDay();
+    }
+
+    /**
+     * Return the last cutoff time of day passed by a time.
+     *
+     * @param now the time.
+     * @return the time of the last cutoff.
+     */
+    private LocalDateTime lastCutoff(LocalDateTime now) {
+        LocalDate today = now.toLocalDate();
+        return now.toLocalTime().isBefore(this.cutoffTime) ? today.minusDays(1).atTime(this.cutoffTime)
+                : today.atTime(this.cutoffTime);
+    }
+}
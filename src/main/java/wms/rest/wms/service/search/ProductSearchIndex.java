@@ -0,0 +1,742 @@
+package wms.rest.wms.service.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import wms.rest.wms.model.Product;
+import wms.rest.wms.repository.ProductRepository;
+import wms.rest.wms.repository.ProductRepository.ProductSearchFields;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory search index over the name, supplier and description of every Product.
+ * <p>
+ * Every word is split into trigrams, and each trigram maps to the sorted list of documents containing it.
+ * The start of a word is marked with '^', so "^ma" only occurs where a word starts with "ma", which answers
+ * one and two letter queries as word prefixes. Longer query words are looked up by their trigrams anywhere
+ * in a word, which finds substrings such as "makrell" in "tomatmakrell". One typo changes at most three
+ * trigrams, so a document only needs all but three trigrams per allowed typo to be a candidate.
+ * Candidates are then verified and ranked: exact words before word prefixes before substrings before
+ * typo matches, and matches in the name before the supplier before the description. Every query word has
+ * to match.
+ * <p>
+ * The index is built from the database once the application is ready and is kept up to date by
+ * ProductService after each create, update and delete commits. Until the first build has finished,
+ * isReady returns false. Changes this instance does not see, those committed through ProductService on another
+ * instance or written to the database directly, are picked up by a rebuild at a fixed interval, so every
+ * instance's index is at most one interval behind the database.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+public class ProductSearchIndex {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    /** Marks the start of a word in a trigram */
+    private static final char WORD_START = '^';
+
+    /** Weight of a match in the name, the supplier and the description */
+    private static final double[] FIELD_WEIGHTS = {3.0, 1.5, 1.0};
+
+    /** Score of a query word equal to a word of the field */
+    private static final double EXACT_SCORE = 10;
+
+    /** Score of a query word a word of the field starts with */
+    private static final double PREFIX_SCORE = 8;
+
+    /** Score of a query word found inside a word of the field */
+    private static final double SUBSTRING_SCORE = 5;
+
+    /** Score of a query word within the allowed typos of a word of the field, less 1 per typo */
+    private static final double TYPO_SCORE = 4;
+
+    /** Number of Products read per statement when the index is built */
+    private static final int BUILD_BATCH_SIZE = 1000;
+
+    /** Combining marks left after decomposing accented letters */
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    /** Characters that separate words */
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /** Repository for reading every Product when the index is built */
+    private final ProductRepository productRepository;
+
+    /** Maximum number of results returned by search */
+    private final int maxResults;
+
+    /** Guards the documents and the postings, many searches can run at once with one writer */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Indexed documents by document number, null for removed documents */
+    private final List<Document> documents = new ArrayList<>();
+
+    /** Document number of every indexed Product by productId */
+    private final Map<Integer, Integer> documentsByProductId = new HashMap<>();
+
+    /** Document numbers free for reuse after removals */
+    private final Deque<Integer> freeDocuments = new ArrayDeque<>();
+
+    /** Sorted document numbers containing each trigram */
+    private final Map<String, PostingList> postings = new HashMap<>();
+
+    /** Changes made while a rebuild reads the database, replayed on the rebuilt content, null outside a rebuild */
+    private List<Consumer<ProductSearchIndex>> changesDuringRebuild;
+
+    /** Whether the index has been built */
+    private volatile boolean ready;
+
+    /**
+     * Creates an empty index. It is filled by rebuild().
+     *
+     * @param productRepository repository for reading every Product when the index is built.
+     * @param maxResults maximum number of results returned by search.
+     */
+    public ProductSearchIndex(ProductRepository productRepository,
+                              @Value("${product.search.max-results:100}") int maxResults) {
+        this.productRepository = productRepository;
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * Builds the index in the background once the application is ready, so startup does not wait for it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        Thread builder = new Thread(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.error("Failed to build the product search index: {}", e.getMessage(), e);
+            }
+        }, "product-search-index");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * Rebuilds the index from the database to pick up the changes made by other instances.
+     * Scheduled with a fixed delay, and skipped until the first build has finished.
+     */
+    @Scheduled(initialDelayString = "${product.search.rebuild-interval-millis:300000}",
+            fixedDelayString = "${product.search.rebuild-interval-millis:300000}")
+    public void rebuildPeriodically() {
+        if (this.ready) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Replaces the content of the index with every Product in the database, read in keyset batches.
+     * Searches keep using the old content until the new one is complete. Only one rebuild runs at a time.
+     */
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        ProductSearchIndex fresh = new ProductSearchIndex(this.productRepository, this.maxResults);
+        this.lock.writeLock().lock();
+        try {
+            this.changesDuringRebuild = new ArrayList<>();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        try {
+            int after = 0;
+            List<ProductSearchFields> batch;
+            do {
+                batch = this.productRepository.findSearchFieldsAfter(after, PageRequest.ofSize(BUILD_BATCH_SIZE));
+                for (ProductSearchFields fields : batch) {
+                    fresh.add(fields.getProductId(), fields.getName(), fields.getSupplier(), fields.getDescription());
+                    after = fields.getProductId();
+                }
+            } while (batch.size() == BUILD_BATCH_SIZE);
+        } catch (RuntimeException e) {
+            this.lock.writeLock().lock();
+            try {
+                this.changesDuringRebuild = null;
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        this.lock.writeLock().lock();
+        try {
+            // Changes committed while the database was read may be missing from it
+            this.changesDuringRebuild.forEach(change -> change.accept(fresh));
+            this.changesDuringRebuild = null;
+            this.documents.clear();
+            this.documents.addAll(fresh.documents);
+            this.documentsByProductId.clear();
+            this.documentsByProductId.putAll(fresh.documentsByProductId);
+            this.freeDocuments.clear();
+            this.freeDocuments.addAll(fresh.freeDocuments);
+            this.postings.clear();
+            this.postings.putAll(fresh.postings);
+            this.ready = true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        log.info("Product search index built with {} products and {} trigrams in {} ms",
+                fresh.documentsByProductId.size(), fresh.postings.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Return whether the index has been built and can answer searches.
+     *
+     * @return true if the index is built, otherwise false.
+     */
+    public boolean isReady() {
+        return this.ready;
+    }
+
+    /**
+     * Return the number of indexed Products.
+     *
+     * @return the number of indexed Products.
+     */
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.documentsByProductId.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or replaces a Product in the index once the current transaction commits, or at once outside a transaction.
+     *
+     * @param product the Product to index.
+     */
+    public void indexAfterCommit(Product product) {
+        int productId = product.getProductId();
+        String name = product.getName();
+        String supplier = product.getSupplier();
+        String description = product.getDescription();
+        afterCommit(() -> index(productId, name, supplier, description));
+    }
+
+    /**
+     * Removes a Product from the index once the current transaction commits, or at once outside a transaction.
+     *
+     * @param productId the productId of the Product to remove.
+     */
+    public void removeAfterCommit(int productId) {
+        afterCommit(() -> remove(productId));
+    }
+
+    /**
+     * Adds or replaces a Product in the index.
+     *
+     * @param productId the productId of the Product.
+     * @param name the name of the Product.
+     * @param supplier the supplier of the Product.
+     * @param description the description of the Product.
+     */
+    public void index(int productId, String name, String supplier, String description) {
+        this.lock.writeLock().lock();
+        try {
+            removeDocument(productId);
+            add(productId, name, supplier, description);
+            if (this.changesDuringRebuild != null) {
+                this.changesDuringRebuild.add(fresh -> {
+                    fresh.removeDocument(productId);
+                    fresh.add(productId, name, supplier, description);
+                });
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a Product from the index.
+     *
+     * @param productId the productId of the Product to remove.
+     */
+    public void remove(int productId) {
+        this.lock.writeLock().lock();
+        try {
+            removeDocument(productId);
+            if (this.changesDuringRebuild != null) {
+                this.changesDuringRebuild.add(fresh -> fresh.removeDocument(productId));
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Return the productIds of the best matching Products, best match first, limited to maxResults.
+     *
+     * @param query the search query.
+     * @return a List of productIds ordered by rank.
+     */
+    public List<Integer> search(String query) {
+        return search(query, this.maxResults);
+    }
+
+    /**
+     * Return the productIds of the best matching Products, best match first.
+     *
+     * @param query the search query.
+     * @param limit the maximum number of productIds to return.
+     * @return a List of productIds ordered by rank.
+     */
+    public List<Integer> search(String query, int limit) {
+        String[] terms = words(query);
+        if (terms.length == 0 || limit < 1) {
+            return List.of();
+        }
+        this.lock.readLock().lock();
+        try {
+            BitSet candidates = null;
+            for (String term : terms) {
+                BitSet termCandidates = candidates(term);
+                if (candidates == null) {
+                    candidates = termCandidates;
+                } else {
+                    candidates.and(termCandidates);
+                }
+                if (candidates.isEmpty()) {
+                    return List.of();
+                }
+            }
+            PriorityQueue<Hit> best = new PriorityQueue<>(Comparator.reverseOrder());
+            // Words repeat across Products, so each typo distance is only computed once per search
+            List<Map<String, Integer>> distances = new ArrayList<>();
+            for (String ignored : terms) {
+                distances.add(new HashMap<>());
+            }
+            for (int doc = candidates.nextSetBit(0); doc >= 0; doc = candidates.nextSetBit(doc + 1)) {
+                Document document = this.documents.get(doc);
+                double score = score(document, terms, distances);
+                if (score > 0) {
+                    best.add(new Hit(document, score));
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+            List<Hit> hits = new ArrayList<>(best);
+            Collections.sort(hits);
+            return hits.stream().map(hit -> hit.document.productId).toList();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a change to the index after the current transaction commits, or at once outside a transaction,
+     * so the index never shows a change that was rolled back.
+     *
+     * @param change the change to run.
+     */
+    private void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+
+    /**
+     * Adds a Product that is not in the index. The caller holds the write lock or owns the index alone.
+     *
+     * @param productId the productId of the Product.
+     * @param name the name of the Product.
+     * @param supplier the supplier of the Product.
+     * @param description the description of the Product.
+     */
+    private void add(int productId, String name, String supplier, String description) {
+        Integer free = this.freeDocuments.poll();
+        int doc = free != null ? free : this.documents.size();
+        Document document = new Document(productId, new String[][]{words(name), words(supplier), words(description)});
+        if (free != null) {
+            this.documents.set(doc, document);
+        } else {
+            this.documents.add(document);
+        }
+        this.documentsByProductId.put(productId, doc);
+        for (String gram : document.grams()) {
+            this.postings.computeIfAbsent(gram, g -> new PostingList()).add(doc);
+        }
+    }
+
+    /**
+     * Removes a Product if it is in the index. The caller holds the write lock.
+     *
+     * @param productId the productId of the Product.
+     */
+    private void removeDocument(int productId) {
+        Integer doc = this.documentsByProductId.remove(productId);
+        if (doc == null) {
+            return;
+        }
+        for (String gram : this.documents.get(doc).grams()) {
+            PostingList list = this.postings.get(gram);
+            if (list != null && list.remove(doc) && list.isEmpty()) {
+                this.postings.remove(gram);
+            }
+        }
+        this.documents.set(doc, null);
+        this.freeDocuments.push(doc);
+    }
+
+    /**
+     * Return the documents that may match a query word, before verification.
+     * One and two letter words match word prefixes. Longer words match documents sharing enough of their
+     * trigrams, all but three per allowed typo.
+     *
+     * @param term the normalized query word.
+     * @return the candidate document numbers.
+     */
+    private BitSet candidates(String term) {
+        BitSet candidates = new BitSet(this.documents.size());
+        if (term.length() < 3) {
+            PostingList list = this.postings.get(WORD_START + term);
+            if (list != null) {
+                list.addTo(candidates);
+            }
+            return candidates;
+        }
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= term.length(); i++) {
+            grams.add(term.substring(i, i + 3));
+        }
+        int required = Math.max(1, grams.size() - 3 * allowedTypos(term));
+        if (required == 1) {
+            for (String gram : grams) {
+                PostingList list = this.postings.get(gram);
+                if (list != null) {
+                    list.addTo(candidates);
+                }
+            }
+            return candidates;
+        }
+        int[] counts = new int[this.documents.size()];
+        for (String gram : grams) {
+            PostingList list = this.postings.get(gram);
+            if (list == null) {
+                continue;
+            }
+            for (int i = 0; i < list.size; i++) {
+                if (++counts[list.docs[i]] == required) {
+                    candidates.set(list.docs[i]);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Return the score of a document for a query, or 0 if a query word does not match it.
+     *
+     * @param document the document to score.
+     * @param terms the normalized query words.
+     * @param distances the typo distances computed so far, per query word.
+     * @return the score of the document.
+     */
+    private static double score(Document document, String[] terms, List<Map<String, Integer>> distances) {
+        double total = 0;
+        for (int t = 0; t < terms.length; t++) {
+            double best = 0;
+            for (int field = 0; field < FIELD_WEIGHTS.length; field++) {
+                best = Math.max(best, FIELD_WEIGHTS[field] * match(terms[t], document.fields[field], distances.get(t)));
+            }
+            if (best == 0) {
+                return 0;
+            }
+            total += best;
+        }
+        return total;
+    }
+
+    /**
+     * Return how well a query word matches the words of a field.
+     *
+     * @param term the normalized query word.
+     * @param words the normalized words of the field.
+     * @param distances the typo distances of the query word computed so far.
+     * @return the score of the best matching word, or 0 if none matches.
+     */
+    private static double match(String term, String[] words, Map<String, Integer> distances) {
+        double best = 0;
+        int typos = allowedTypos(term);
+        for (String word : words) {
+            if (word.equals(term)) {
+                return EXACT_SCORE;
+            } else if (word.startsWith(term)) {
+                best = Math.max(best, PREFIX_SCORE);
+            } else if (term.length() >= 3 && word.contains(term)) {
+                best = Math.max(best, SUBSTRING_SCORE);
+            } else if (typos > 0 && best < TYPO_SCORE) {
+                int distance = distances.computeIfAbsent(word, w -> typoDistance(term, w, typos));
+                if (distance <= typos) {
+                    best = Math.max(best, TYPO_SCORE - distance);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Return the number of typos allowed in a query word, more for longer words.
+     *
+     * @param term the normalized query word.
+     * @return the number of allowed typos.
+     */
+    private static int allowedTypos(String term) {
+        if (term.length() < 4) {
+            return 0;
+        }
+        return term.length() < 8 ? 1 : 2;
+    }
+
+    /**
+     * Return the smallest number of edits, counting a swap of two neighbouring letters as one, between a query
+     * word and either a word or the start of a word, so a half typed word with a typo still matches.
+     * Stops early once the distance is known to be above the limit.
+     *
+     * @param term the normalized query word.
+     * @param word the normalized word of the field.
+     * @param limit the largest distance of interest.
+     * @return the distance, or limit + 1 if it is above the limit.
+     */
+    private static int typoDistance(String term, String word, int limit) {
+        int m = term.length();
+        int n = word.length();
+        if (n < m - limit) {
+            return limit + 1;
+        }
+        // Only the last three rows of the edit distance table are kept
+        int[] previous2 = new int[n + 1];
+        int[] previous = new int[n + 1];
+        int[] current = new int[n + 1];
+        for (int j = 0; j <= n; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= m; i++) {
+            current[0] = i;
+            int rowMin = i;
+            char t = term.charAt(i - 1);
+            for (int j = 1; j <= n; j++) {
+                char w = word.charAt(j - 1);
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + (t == w ? 0 : 1));
+                if (i > 1 && j > 1 && t == word.charAt(j - 2) && term.charAt(i - 2) == w) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        // The whole query word against the whole word, or against the start of the word
+        int distance = limit + 1;
+        for (int j = Math.max(0, m - limit); j <= n; j++) {
+            distance = Math.min(distance, previous[j]);
+        }
+        return distance;
+    }
+
+    /**
+     * Return the normalized words of a text: lowercase, without accents, split on anything but letters and digits.
+     *
+     * @param text the text to split, can be null.
+     * @return the words of the text.
+     */
+    static String[] words(String text) {
+        if (text == null || text.isBlank()) {
+            return new String[0];
+        }
+        String normalized = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        return Arrays.stream(SEPARATORS.split(normalized)).filter(word -> !word.isEmpty()).toArray(String[]::new);
+    }
+
+    /**
+     * An indexed Product.
+     */
+    private static class Document {
+
+        /** The productId of the Product */
+        private final int productId;
+
+        /** The normalized words of the name, the supplier and the description */
+        private final String[][] fields;
+
+        /**
+         * Creates a document.
+         *
+         * @param productId the productId of the Product.
+         * @param fields the normalized words of the name, the supplier and the description.
+         */
+        private Document(int productId, String[][] fields) {
+            this.productId = productId;
+            this.fields = fields;
+        }
+
+        /**
+         * Return every distinct trigram of the document, including the word start trigrams
+         * and the two letter word start "^x".
+         *
+         * @return the trigrams of the document.
+         */
+        private Set<String> grams() {
+            Set<String> grams = new HashSet<>();
+            for (String[] field : this.fields) {
+                for (String word : field) {
+                    String marked = WORD_START + word;
+                    grams.add(marked.substring(0, 2));
+                    for (int i = 0; i + 3 <= marked.length(); i++) {
+                        grams.add(marked.substring(i, i + 3));
+                    }
+                }
+            }
+            return grams;
+        }
+
+        /**
+         * Return the length of the name, used to rank shorter names first among equal scores.
+         *
+         * @return the number of letters in the name.
+         */
+        private int nameLength() {
+            int length = 0;
+            for (String word : this.fields[0]) {
+                length += word.length();
+            }
+            return length;
+        }
+    }
+
+    /**
+     * A scored document. Ordered best first: highest score, then shortest name, then lowest productId.
+     */
+    private static class Hit implements Comparable<Hit> {
+
+        /** The matching document */
+        private final Document document;
+
+        /** The score of the document */
+        private final double score;
+
+        /**
+         * Creates a hit.
+         *
+         * @param document the matching document.
+         * @param score the score of the document.
+         */
+        private Hit(Document document, double score) {
+            this.document = document;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Hit other) {
+            int compare = Double.compare(other.score, this.score);
+            if (compare == 0) {
+                compare = Integer.compare(this.document.nameLength(), other.document.nameLength());
+            }
+            if (compare == 0) {
+                compare = Integer.compare(this.document.productId, other.document.productId);
+            }
+            return compare;
+        }
+    }
+
+    /**
+     * A sorted, growable list of document numbers.
+     */
+    private static class PostingList {
+
+        /** The document numbers, sorted, valid up to size */
+        private int[] docs = new int[4];
+
+        /** The number of document numbers in the list */
+        private int size;
+
+        /**
+         * Adds a document number, in constant time when it is larger than every number in the list.
+         *
+         * @param doc the document number to add.
+         */
+        private void add(int doc) {
+            int position = this.size == 0 || this.docs[this.size - 1] < doc ? this.size : Arrays.binarySearch(this.docs, 0, this.size, doc);
+            if (position >= 0 && position < this.size) {
+                return;
+            }
+            position = position < 0 ? -position - 1 : position;
+            if (this.size == this.docs.length) {
+                this.docs = Arrays.copyOf(this.docs, this.size * 2);
+            }
+            System.arraycopy(this.docs, position, this.docs, position + 1, this.size - position);
+            this.docs[position] = doc;
+            this.size++;
+        }
+
+        /**
+         * Removes a document number.
+         *
+         * @param doc the document number to remove.
+         * @return true if the number was in the list, otherwise false.
+         */
+        private boolean remove(int doc) {
+            int position = Arrays.binarySearch(this.docs, 0, this.size, doc);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(this.docs, position + 1, this.docs, position, this.size - position - 1);
+            this.size--;
+            return true;
+        }
+
+        /**
+         * Return whether the list is empty.
+         *
+         * @return true if the list is empty, otherwise false.
+         */
+        private boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        /**
+         * Sets the bit of every document number in the list.
+         *
+         * @param bits the BitSet to set the bits in.
+         */
+        private void addTo(BitSet bits) {
+            for (int i = 0; i < this.size; i++) {
+                bits.set(this.docs[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package wms.rest.wms.service.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import wms.rest.wms.model.Customer;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of the authenticated Customer principals by email, so JWTRequestFilter can resolve the
+ * Customer of a request without a database query. Entries expire a fixed time after they were loaded,
+ * and are evicted as soon as the Customer changes.
+ * <p>
+ * Hits, misses and evictions are published to Micrometer as the cache named 'customer.principals'.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+public class CustomerPrincipalCache {
+
+    /** Name of the cache in the published metrics */
+    public static final String CACHE_NAME = "customer.principals";
+
+    /** Customers by email */
+    private final Cache<String, Customer> customers;
+
+    /**
+     * Creates the cache and binds its statistics to the MeterRegistry.
+     *
+     * @param meterRegistry the MeterRegistry to publish the cache metrics to.
+     * @param maximumSize the maximum number of cached Customers.
+     * @param expiryInSeconds the number of seconds a Customer stays cached after it was loaded.
+     */
+    public CustomerPrincipalCache(MeterRegistry meterRegistry,
+                                  @Value("${security.principal-cache.maximum-size:10000}") long maximumSize,
+                                  @Value("${security.principal-cache.expiry-in-seconds:300}") long expiryInSeconds) {
+        this.customers = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(expiryInSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, this.customers, CACHE_NAME);
+    }
+
+    /**
+     * Return the Customer with the specified email, loading it only if it is not cached.
+     * A Customer that could not be found is not cached, so it is looked up again on the next request.
+     *
+     * @param email the email of the Customer.
+     * @param loader the lookup used when the Customer is not cached.
+     * @return an Optional containing the Customer if found, otherwise an empty Optional.
+     */
+    public Optional<Customer> get(String email, Function<String, Optional<Customer>> loader) {
+        return Optional.ofNullable(this.customers.get(email, key -> loader.apply(key).orElse(null)));
+    }
+
+    /**
+     * Evicts the Customer with the specified customerId. Entries are matched on customerId rather than email,
+     * so a Customer who changed email is evicted under the old email as well.
+     *
+     * @param customerId the customerId of the Customer to evict.
+     */
+    public void evict(int customerId) {
+        this.customers.asMap().values().removeIf(customer -> customer.getCustomerId() == customerId);
+    }
+
+    /**
+     * Evicts every cached Customer.
+     */
+    public void evictAll() {
+        this.customers.invalidateAll();
+    }
+
+    /**
+     * Return the hit and miss statistics of the cache.
+     *
+     * @return a snapshot of the cache statistics.
+     */
+    public CacheStats getStats() {
+        return this.customers.stats();
+    }
+}
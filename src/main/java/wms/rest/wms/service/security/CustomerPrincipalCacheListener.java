@@ -0,0 +1,58 @@
+package wms.rest.wms.service.security;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import wms.rest.wms.model.Customer;
+
+/**
+ * Entity listener evicting a Customer from the CustomerPrincipalCache whenever the Customer is updated
+ * or removed, whichever service or repository made the change. The cache is looked up lazily, since
+ * Hibernate creates the listener while the EntityManagerFactory is built, and JPA test slices have no cache.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Component
+public class CustomerPrincipalCacheListener {
+
+    /** Provider of the cache to evict changed Customers from */
+    private final ObjectProvider<CustomerPrincipalCache> customerPrincipalCache;
+
+    /**
+     * Creates the listener.
+     *
+     * @param customerPrincipalCache provider of the cache to evict changed Customers from.
+     */
+    public CustomerPrincipalCacheListener(ObjectProvider<CustomerPrincipalCache> customerPrincipalCache) {
+        this.customerPrincipalCache = customerPrincipalCache;
+    }
+
+    /**
+     * Evicts the changed Customer at once, and again when the transaction completes, so a request that
+     * reloaded the Customer before the change was committed does not leave the old state cached.
+     *
+     * @param customer the Customer that was updated or removed.
+     */
+    @PostUpdate
+    @PostRemove
+    public void customerChanged(Customer customer) {
+        CustomerPrincipalCache cache = this.customerPrincipalCache.getIfAvailable();
+        if (cache == null) {
+            return;
+        }
+        int customerId = customer.getCustomerId();
+        cache.evict(customerId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.evict(customerId);
+                }
+            });
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package wms.rest.wms.service.security;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.RegisteredClaims;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import jakarta.annotation.PostConstruct;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Value;
 import wms.rest.wms.model.Customer;
 
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service class for JSON web token (JWT) creation
@@ -30,18 +39,54 @@ public class JwtService {
     @Value("${jwt.expiryInSeconds}")
     private int expiryInSeconds;
 
+    /** Maximum number of verified tokens kept in the verified token cache */
+    @Value("${jwt.verified-cache.maximum-size:10000}")
+    private long verifiedCacheMaximumSize;
+
     /** Algorithm used for JWT generation */
     private Algorithm algorithm;
 
+    /** Verifier checking the signature, issuer and expiry of a JWT */
+    private JWTVerifier verifier;
+
+    /** Verified tokens by their signature, each expiring when the token itself expires */
+    private Cache<String, DecodedJWT> verifiedTokens;
+
     /** Key used for identifying email claims in JWT tokens */
     private static final String EMAIL_KEY = "EMAIL";
 
     /**
-     * Initializes the cryptographic algorithm used for JWT signing after all necessary dependencies are injected.
+     * Initializes the cryptographic algorithm used for JWT signing, the verifier and the verified token cache
+     * after all necessary dependencies are injected.
      */
     @PostConstruct
     public void postConstruct() {
         algorithm = Algorithm.HMAC256(algorithmKey);
+        verifier = JWT.require(algorithm)
+                .withIssuer(issuer)
+                .withClaimPresence(RegisteredClaims.EXPIRES_AT)
+                .build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheMaximumSize)
+                .expireAfter(new Expiry<String, DecodedJWT>() {
+                    @Override
+                    public long expireAfterCreate(String signature, DecodedJWT jwt, long currentTime) {
+                        long millisLeft = jwt.getExpiresAt().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millisLeft));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String signature, DecodedJWT jwt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String signature, DecodedJWT jwt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
     }
 
     /**
@@ -62,12 +107,45 @@ public class JwtService {
     }
 
     /**
-     * Extracts and returns the email address from a given JSON web token.
+     * Verifies the signature, issuer and expiry of a JSON web token, and returns the decoded token.
+     *
+     * A token is verified once, and later calls with the same token are served from a cache until the token expires.
+     * The cache is keyed by the signature part of the token, which already is an HMAC digest of its header and payload,
+     * and a hit only counts when the whole token matches, so a token with a reused signature is verified on its own.
+     *
+     * @param token the JWT String to verify.
+     * @return the verified and decoded JWT.
+     * @throws JWTVerificationException if the token is malformed, not signed by this service, or expired.
+     */
+    public DecodedJWT verify(String token) throws JWTVerificationException {
+        int signatureStart = token.lastIndexOf('.') + 1;
+        String signature = token.substring(signatureStart);
+        DecodedJWT cached = verifiedTokens.getIfPresent(signature);
+        if (cached != null && cached.getToken().equals(token)) {
+            return cached;
+        }
+        DecodedJWT verified = verifier.verify(token);
+        verifiedTokens.put(signature, verified);
+        return verified;
+    }
+
+    /**
+     * Verifies a given JSON web token and returns the email address it was issued to.
      *
      * @param token the JWT String from which the email is to be extracted.
      * @return the email address as a String if present, otherwise null.
+     * @throws JWTVerificationException if the token is malformed, not signed by this service, or expired.
+     */
+    public String getEmail(String token) throws JWTVerificationException {
+        return verify(token).getClaim(EMAIL_KEY).asString();
+    }
+
+    /**
+     * Return the hit and miss statistics of the verified token cache.
+     *
+     * @return a snapshot of the verified token cache statistics.
      */
-    public String getEmail(String token){
-        return JWT.decode(token).getClaim(EMAIL_KEY).asString();
+    public CacheStats getVerifiedTokenStats() {
+        return verifiedTokens.stats();
     }
 }
@@ -0,0 +1,107 @@
+package wms.rest.wms.service.shipment;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Summary of a single run of the ShipmentBuilder. Counts the rows written by the run, the partitions it retried
+ * or gave up on, and the time it took, so the throughput of each run can be reported. Each partition counts into
+ * its own report, which the run adds to its report once the partition is done.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Getter
+public class ShipmentBuildReport {
+
+    /** Number of (Store, delivery date) groups processed */
+    private int groups;
+
+    /** Number of Shipments created */
+    private int shipments;
+
+    /** Number of Orders moved from REGISTERED to PICKING */
+    private int orders;
+
+    /** Number of Inventory rows updated */
+    private int inventoryRows;
+
+    /** Number of groups given up on after every attempt at building them failed */
+    private int failedGroups;
+
+    /** Number of times a partition was retried after a failed attempt */
+    private int retries;
+
+    /** Time spent on the run in nanoseconds */
+    private long elapsedNanos;
+
+    void addGroup() {
+        this.groups++;
+    }
+
+    void addShipment() {
+        this.shipments++;
+    }
+
+    void addOrders(int orders) {
+        this.orders += orders;
+    }
+
+    void addInventoryRows(int inventoryRows) {
+        this.inventoryRows += inventoryRows;
+    }
+
+    void addFailedGroup() {
+        this.failedGroups++;
+    }
+
+    void addRetry() {
+        this.retries++;
+    }
+
+    /**
+     * Adds the rows written, the retries and the failures counted by a partition to this report.
+     *
+     * @param partition the report of the partition.
+     */
+    void add(ShipmentBuildReport partition) {
+        this.shipments += partition.shipments;
+        this.orders += partition.orders;
+        this.inventoryRows += partition.inventoryRows;
+        this.failedGroups += partition.failedGroups;
+        this.retries += partition.retries;
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Return the total number of rows written by the run.
+     *
+     * @return the number of Shipment, Order and Inventory rows written.
+     */
+    public int getRowsWritten() {
+        return this.shipments + this.orders + this.inventoryRows;
+    }
+
+    /**
+     * Return the number of rows written per second during the run.
+     *
+     * @return rows written per second, or 0 if nothing was written.
+     */
+    public double getRowsPerSecond() {
+        if (this.elapsedNanos <= 0 || getRowsWritten() == 0) {
+            return 0;
+        }
+        return getRowsWritten() / (this.elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("groups=%d, shipments=%d, orders=%d, inventoryRows=%d, failedGroups=%d, retries=%d, " +
+                        "elapsed=%d ms, rows/s=%.1f",
+                groups, shipments, orders, inventoryRows, failedGroups, retries, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getRowsPerSecond());
+    }
+}
@@ -0,0 +1,455 @@
+package wms.rest.wms.service.shipment;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import wms.rest.wms.exception.LeaseLostException;
+import wms.rest.wms.model.OrderNotificationType;
+import wms.rest.wms.model.OrderStatus;
+import wms.rest.wms.model.Shipment;
+import wms.rest.wms.model.WorkQueueTopic;
+import wms.rest.wms.repository.OrderRepository;
+import wms.rest.wms.repository.OrderRepository.StoreDeliveryGroup;
+import wms.rest.wms.repository.ShipmentRepository;
+import wms.rest.wms.service.OrderNotificationService;
+import wms.rest.wms.service.OrderTrackingService;
+import wms.rest.wms.service.WorkQueueService;
+import wms.rest.wms.service.ledger.StockLedgerService;
+import wms.rest.wms.service.pipeline.OrderRelease;
+
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+/**
+ * Builds Shipments from REGISTERED Orders in a set-based way. Orders are pulled as (Store, wishedDeliveryDate)
+ * groups from an indexed query, and each group is processed in bounded chunks of orderIds. For every chunk the
+ * Orders are moved to PICKING and attached to the Shipment in one statement, and their ordered quantities are
+ * summed per Product. Once the whole group is claimed, the quantities are withdrawn from Inventory with one JDBC
+ * batch in ascending productId order, and appended to the stock ledger as picks in another batch. No Order,
+ * OrderQuantities or Inventory entities are loaded.
+ * Every new Shipment is recorded under SHIPMENT_PICKING in the scheduler work queue, and every claimed Order gets a
+ * PICKING push notification in the order notification outbox and has its tracking row refreshed before commit.
+ * <p>
+ * Called outside a transaction, every group is a partition built in its own transaction on a bounded pool of
+ * workers, sized from the processors and the database connection pool rather than from the number of Stores.
+ * A partition that fails is rolled back and retried with backoff, and one that keeps failing is reported without
+ * holding up the other groups. Building a partition is idempotent: Orders are claimed before anything else is
+ * written, only while they are still REGISTERED, so a retry or a concurrent run only picks up Orders nobody has
+ * claimed, withdraws stock only for those, and drops its Shipment when it claimed none.
+ * <p>
+ * Called inside a transaction, the builder joins it and builds the groups one after another on the calling thread.
+ * <p>
+ * A run can be limited to the groups of some Stores and fenced with a scheduler lease, so instances running the
+ * builder at the same time split the Stores between them and a run that lost its lease cannot commit a group.
+ * It can also be limited to the Orders whose cutoff has passed, so the Orders of a delivery date are batched into
+ * one Shipment per Store and stay REGISTERED, and cancellable, until then.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+public class ShipmentBuilder {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(ShipmentBuilder.class);
+
+    /** Location every Shipment is loaded at */
+    private static final String LOAD_LOCATION = "Trondheim";
+
+    /** Progress in percent of an Order once it is PICKING */
+    private static final int PICKING_PROGRESS = 10;
+
+    /** Sums the ordered quantity per Product for a chunk of Orders */
+    private static final String SUM_QUANTITIES_SQL =
+            "SELECT product_id, SUM(product_quantity) AS quantity FROM customer_order_quantities " +
+            "WHERE order_id IN (:orderIds) GROUP BY product_id ORDER BY product_id";
+
+    /** Moves a chunk of Orders from REGISTERED to PICKING and attaches them to a Shipment */
+    private static final String CLAIM_ORDERS_SQL =
+            "UPDATE customer_order SET order_status = :picking, progress_in_percent = :progress, shipment_id = :shipmentId " +
+            "WHERE order_id IN (:orderIds) AND order_status = :registered";
+
+    /** Reads which Orders of a chunk ended up on a Shipment, used when a claim did not take every Order */
+    private static final String CLAIMED_ORDERS_SQL =
+            "SELECT order_id FROM customer_order WHERE order_id IN (:orderIds) AND shipment_id = :shipmentId";
+
+    /**
+     * Withdraws picked quantity from both reserved and total stock. The available stock is assigned first so that it
+     * is computed from the old values on both MariaDB (left-to-right assignment) and H2.
+     */
+    private static final String WITHDRAW_STOCK_SQL =
+            "UPDATE inventory SET available_stock = total_stock - reserved_stock, " +
+            "total_stock = total_stock - :quantity, reserved_stock = reserved_stock - :quantity " +
+            "WHERE product_id = :productId";
+
+    /** Repository for handling Order persistence operations */
+    private final OrderRepository orderRepository;
+
+    /** Repository for handling Shipment persistence operations */
+    private final ShipmentRepository shipmentRepository;
+
+    /** JDBC template for the set-based and batched statements */
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /** Service for recording the created Shipments in the scheduler work queue */
+    private final WorkQueueService workQueueService;
+
+    /** Service for recording the PICKING push notifications of the claimed Orders */
+    private final OrderNotificationService orderNotificationService;
+
+    /** Service for keeping the tracking rows of the claimed Orders up to date */
+    private final OrderTrackingService orderTrackingService;
+
+    /** Service appending the withdrawn quantities to the stock ledger */
+    private final StockLedgerService stockLedgerService;
+
+    /** Template running each partition in its own transaction */
+    private final TransactionTemplate transactionTemplate;
+
+    /** Maximum number of Orders processed per chunk */
+    private final int chunkSize;
+
+    /** Number of attempts at building a partition before it is reported as failed */
+    private final int maxAttempts;
+
+    /** The delay before the first retry of a partition, doubled for every following retry */
+    private final long retryBackoffMillis;
+
+    /** Workers building the partitions, which stop when they have been idle for a minute */
+    private final ThreadPoolExecutor workerPool;
+
+    /**
+     * Creates a new ShipmentBuilder. Unless set, the number of workers is the number of processors, limited to half
+     * of the database connection pool so the partitions leave connections for the requests served meanwhile.
+     *
+     * @param orderRepository repository for handling Order persistence operations.
+     * @param shipmentRepository repository for handling Shipment persistence operations.
+     * @param jdbcTemplate JDBC template for the set-based and batched statements.
+     * @param workQueueService service for recording the created Shipments in the scheduler work queue.
+     * @param orderNotificationService service for recording the PICKING push notifications of the claimed Orders.
+     * @param orderTrackingService service for keeping the tracking rows of the claimed Orders up to date.
+     * @param stockLedgerService service appending the withdrawn quantities to the stock ledger.
+     * @param transactionTemplate template running each partition in its own transaction.
+     * @param chunkSize maximum number of Orders processed per chunk.
+     * @param workers the number of workers building the partitions, or 0 to size them from the processors and the
+     *                database connection pool.
+     * @param connectionPoolSize the maximum size of the database connection pool.
+     * @param maxAttempts number of attempts at building a partition before it is reported as failed.
+     * @param retryBackoffMillis the delay before the first retry of a partition, doubled for every following retry.
+     */
+    @Autowired
+    public ShipmentBuilder(OrderRepository orderRepository, ShipmentRepository shipmentRepository,
+                           NamedParameterJdbcTemplate jdbcTemplate, WorkQueueService workQueueService,
+                           OrderNotificationService orderNotificationService, OrderTrackingService orderTrackingService,
+                           StockLedgerService stockLedgerService, TransactionTemplate transactionTemplate,
+                           @Value("${shipment.builder.chunk-size:500}") int chunkSize,
+                           @Value("${shipment.builder.workers:0}") int workers,
+                           @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connectionPoolSize,
+                           @Value("${shipment.builder.max-attempts:3}") int maxAttempts,
+                           @Value("${shipment.builder.retry-backoff-millis:1000}") long retryBackoffMillis) {
+        this(orderRepository, shipmentRepository, jdbcTemplate, workQueueService, orderNotificationService,
+                orderTrackingService, stockLedgerService, transactionTemplate, chunkSize,
+                workers > 0 ? workers : Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), connectionPoolSize / 2)),
+                maxAttempts, retryBackoffMillis);
+    }
+
+    /**
+     * Creates a new ShipmentBuilder with a fixed number of workers.
+     *
+     * @param orderRepository repository for handling Order persistence operations.
+     * @param shipmentRepository repository for handling Shipment persistence operations.
+     * @param jdbcTemplate JDBC template for the set-based and batched statements.
+     * @param workQueueService service for recording the created Shipments in the scheduler work queue.
+     * @param orderNotificationService service for recording the PICKING push notifications of the claimed Orders.
+     * @param orderTrackingService service for keeping the tracking rows of the claimed Orders up to date.
+     * @param stockLedgerService service appending the withdrawn quantities to the stock ledger.
+     * @param transactionTemplate template running each partition in its own transaction.
+     * @param chunkSize maximum number of Orders processed per chunk.
+     * @param workers the number of workers building the partitions.
+     * @param maxAttempts number of attempts at building a partition before it is reported as failed.
+     * @param retryBackoffMillis the delay before the first retry of a partition, doubled for every following retry.
+     */
+    public ShipmentBuilder(OrderRepository orderRepository, ShipmentRepository shipmentRepository,
+                           NamedParameterJdbcTemplate jdbcTemplate, WorkQueueService workQueueService,
+                           OrderNotificationService orderNotificationService, OrderTrackingService orderTrackingService,
+                           StockLedgerService stockLedgerService, TransactionTemplate transactionTemplate, int chunkSize,
+                           int workers, int maxAttempts, long retryBackoffMillis) {
+        this.orderRepository = orderRepository;
+        this.shipmentRepository = shipmentRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.workQueueService = workQueueService;
+        this.orderNotificationService = orderNotificationService;
+        this.orderTrackingService = orderTrackingService;
+        this.stockLedgerService = stockLedgerService;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMillis = retryBackoffMillis;
+        AtomicInteger count = new AtomicInteger();
+        this.workerPool = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "shipment-builder-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.workerPool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Stops the workers after the partitions they are building.
+     *
+     * @throws InterruptedException if interrupted while waiting for the workers to stop.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        this.workerPool.shutdown();
+        if (!this.workerPool.awaitTermination(30, TimeUnit.SECONDS)) {
+            this.workerPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates one Shipment for each (Store, wishedDeliveryDate) group of REGISTERED Orders, whatever their cutoff,
+     * in parallel partitions with a transaction each, or in the transaction of the caller if there is one.
+     *
+     * @return a report of the rows written, the partitions retried or failed and the throughput of the run.
+     */
+    public ShipmentBuildReport buildShipments() {
+        return buildShipments(storeId -> true, OrderRelease.ALL, () -> {});
+    }
+
+    /**
+     * Creates one Shipment for each (Store, wishedDeliveryDate) group of released REGISTERED Orders of the selected
+     * Stores, fencing the transaction of every group.
+     *
+     * @param storeIds selects the storeIds of the Stores whose groups this run builds.
+     * @param release the Orders released by the cutoffs passed so far, the others are left REGISTERED.
+     * @param fence runs at the start of the transaction of every group, and throws a LeaseLostException if the
+     *              run may no longer write.
+     * @return a report of the rows written, the partitions retried or failed and the throughput of the run.
+     */
+    public ShipmentBuildReport buildShipments(IntPredicate storeIds, OrderRelease release, Runnable fence) {
+        long start = System.nanoTime();
+        ShipmentBuildReport report = new ShipmentBuildReport();
+        List<StoreDeliveryGroup> groups = this.orderRepository.findReleasedGroupsByOrderStatus(OrderStatus.REGISTERED,
+                        release.deliveryDatesUntil(), release.undatedPlacedUntil()).stream()
+                .filter(group -> storeIds.test(group.getStoreId()))
+                .toList();
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            if (!groups.isEmpty()) {
+                fence.run();
+            }
+            for (StoreDeliveryGroup group : groups) {
+                report.addGroup();
+                buildShipment(group, release, report);
+            }
+        } else {
+            List<Future<ShipmentBuildReport>> partitions = new ArrayList<>(groups.size());
+            for (StoreDeliveryGroup group : groups) {
+                report.addGroup();
+                partitions.add(this.workerPool.submit(() -> buildPartition(group, release, fence)));
+            }
+            for (Future<ShipmentBuildReport> partition : partitions) {
+                try {
+                    report.add(partition.get());
+                } catch (ExecutionException e) {
+                    report.addFailedGroup();
+                    log.error("A shipment partition failed: {}", e.getCause().getMessage(), e.getCause());
+                } catch (InterruptedException e) {
+                    partitions.forEach(pending -> pending.cancel(true));
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while building shipments", e);
+                }
+            }
+        }
+        report.setElapsedNanos(System.nanoTime() - start);
+        log.info("Shipment build finished: {}", report);
+        return report;
+    }
+
+    /**
+     * Builds the Shipment of a single group in its own transaction on a worker, retrying with backoff until it
+     * succeeds or maxAttempts is reached. The rows written by a failed attempt are rolled back, so they are left
+     * out of the returned report.
+     *
+     * A partition whose lease was lost is not retried.
+     *
+     * @param group the (Store, wishedDeliveryDate) group to create a Shipment for.
+     * @param release the Orders released by the cutoffs passed so far.
+     * @param fence runs at the start of the transaction.
+     * @return a report of the rows written by the successful attempt and of the retries.
+     * @throws InterruptedException if interrupted while waiting to retry.
+     */
+    private ShipmentBuildReport buildPartition(StoreDeliveryGroup group, OrderRelease release, Runnable fence)
+            throws InterruptedException {
+        ShipmentBuildReport partition = new ShipmentBuildReport();
+        for (int attempt = 1; ; attempt++) {
+            ShipmentBuildReport written = new ShipmentBuildReport();
+            try {
+                this.transactionTemplate.executeWithoutResult(status -> {
+                    fence.run();
+                    buildShipment(group, release, written);
+                });
+                partition.add(written);
+                return partition;
+            } catch (LeaseLostException e) {
+                log.warn("Stopped building the shipment for store {} for delivery date {}: {}",
+                        group.getStoreName(), group.getWishedDeliveryDate(), e.getMessage());
+                partition.addFailedGroup();
+                return partition;
+            } catch (RuntimeException e) {
+                if (attempt >= this.maxAttempts) {
+                    log.error("Giving up on the shipment for store {} for delivery date {} after {} attempts: {}",
+                            group.getStoreName(), group.getWishedDeliveryDate(), attempt, e.getMessage(), e);
+                    partition.addFailedGroup();
+                    return partition;
+                }
+                long backoffMillis = this.retryBackoffMillis << (attempt - 1);
+                log.warn("Attempt {} at the shipment for store {} for delivery date {} failed, retrying in {} ms: {}",
+                        attempt, group.getStoreName(), group.getWishedDeliveryDate(), backoffMillis, e.getMessage());
+                partition.addRetry();
+                Thread.sleep(backoffMillis);
+            }
+        }
+    }
+
+    /**
+     * Creates a Shipment for a single group and moves the Orders of the group onto it chunk by chunk, then
+     * withdraws the quantities of every claimed Order from Inventory. The Shipment is removed again if every
+     * Order of the group was claimed by someone else meanwhile.
+     *
+     * @param group the (Store, wishedDeliveryDate) group to create a Shipment for.
+     * @param release the Orders released by the cutoffs passed so far.
+     * @param report the report to add the written rows to.
+     */
+    private void buildShipment(StoreDeliveryGroup group, OrderRelease release, ShipmentBuildReport report) {
+        List<Integer> orderIds = nextChunk(group, release, 0);
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        Shipment shipment = new Shipment();
+        shipment.setShipmentLoadLocation(LOAD_LOCATION);
+        shipment.setShipmentUnloadLocation(group.getStoreName());
+        shipment.setShipmentDeliveryDate(group.getWishedDeliveryDate());
+        // Flushed at once, since the Orders are claimed with plain JDBC that references the new row
+        shipment = this.shipmentRepository.saveAndFlush(shipment);
+
+        Map<Integer, Integer> quantityByProductId = new TreeMap<>();
+        int claimed = 0;
+        while (!orderIds.isEmpty()) {
+            List<Integer> claimedIds = claimOrders(orderIds, shipment.getShipmentId());
+            sumQuantities(claimedIds, quantityByProductId);
+            claimed += claimedIds.size();
+            log.debug("Associated {} Orders with Shipment ID: {}", claimedIds.size(), shipment.getShipmentId());
+            orderIds = nextChunk(group, release, orderIds.get(orderIds.size() - 1));
+        }
+        if (claimed == 0) {
+            this.shipmentRepository.delete(shipment);
+            log.info("Orders of store {} for delivery date {} were claimed by another run",
+                    group.getStoreName(), group.getWishedDeliveryDate());
+            return;
+        }
+        report.addShipment();
+        report.addOrders(claimed);
+        report.addInventoryRows(withdrawStock(quantityByProductId));
+        this.stockLedgerService.recordPicks(quantityByProductId, shipment.getShipmentId());
+        this.workQueueService.enqueue(WorkQueueTopic.SHIPMENT_PICKING, shipment.getShipmentId());
+        log.info("Shipment created for store {} for delivery date {}. Shipment ID: {}",
+                group.getStoreName(), group.getWishedDeliveryDate(), shipment.getShipmentId());
+    }
+
+    /**
+     * Return the next chunk of REGISTERED orderIds in a group.
+     *
+     * @param group the group to read from.
+     * @param release the Orders released by the cutoffs passed so far, which a group without a wished delivery
+     *                date is limited to.
+     * @param afterOrderId only orderIds greater than this value are returned.
+     * @return a List of at most chunkSize orderIds in ascending order.
+     */
+    private List<Integer> nextChunk(StoreDeliveryGroup group, OrderRelease release, int afterOrderId) {
+        Pageable chunk = PageRequest.ofSize(this.chunkSize);
+        if (group.getWishedDeliveryDate() == null) {
+            return this.orderRepository.findIdsInGroupWithoutDeliveryDate(OrderStatus.REGISTERED, group.getStoreId(),
+                    release.undatedPlacedUntil(), afterOrderId, chunk);
+        }
+        return this.orderRepository.findIdsInGroup(OrderStatus.REGISTERED, group.getStoreId(),
+                group.getWishedDeliveryDate(), afterOrderId, chunk);
+    }
+
+    /**
+     * Adds the quantities ordered in a chunk of Orders to the quantities summed per Product so far.
+     *
+     * @param orderIds the orderIds of the chunk.
+     * @param quantityByProductId the quantities summed per productId so far.
+     */
+    private void sumQuantities(List<Integer> orderIds, Map<Integer, Integer> quantityByProductId) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        this.jdbcTemplate.query(SUM_QUANTITIES_SQL, new MapSqlParameterSource("orderIds", orderIds),
+                rs -> {
+                    quantityByProductId.merge(rs.getInt("product_id"), rs.getInt("quantity"), Integer::sum);
+                });
+    }
+
+    /**
+     * Withdraws the summed quantities from Inventory with one JDBC batch, one statement per distinct Product in
+     * ascending productId order. Since every partition locks the Inventory rows in the same order, partitions
+     * withdrawing stock of the same Products wait for each other instead of deadlocking.
+     *
+     * @param quantityByProductId the quantities to withdraw by productId, in ascending productId order.
+     * @return the number of Inventory rows updated.
+     */
+    private int withdrawStock(Map<Integer, Integer> quantityByProductId) {
+        if (quantityByProductId.isEmpty()) {
+            return 0;
+        }
+        SqlParameterSource[] withdrawals = quantityByProductId.entrySet().stream()
+                .map(withdrawal -> new MapSqlParameterSource()
+                        .addValue("productId", withdrawal.getKey())
+                        .addValue("quantity", withdrawal.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        int updated = 0;
+        for (int rows : this.jdbcTemplate.batchUpdate(WITHDRAW_STOCK_SQL, withdrawals)) {
+            updated += rows == Statement.SUCCESS_NO_INFO ? 1 : Math.max(rows, 0);
+        }
+        return updated;
+    }
+
+    /**
+     * Moves a chunk of Orders from REGISTERED to PICKING and attaches them to a Shipment, and records
+     * a PICKING push notification for each claimed Order.
+     *
+     * @param orderIds the orderIds of the chunk.
+     * @param shipmentId the shipmentId of the Shipment to attach the Orders to.
+     * @return the orderIds of the Orders claimed.
+     */
+    private List<Integer> claimOrders(List<Integer> orderIds, int shipmentId) {
+        int claimed = this.jdbcTemplate.update(CLAIM_ORDERS_SQL, new MapSqlParameterSource()
+                .addValue("picking", OrderStatus.PICKING.name())
+                .addValue("progress", PICKING_PROGRESS)
+                .addValue("shipmentId", shipmentId)
+                .addValue("orderIds", orderIds)
+                .addValue("registered", OrderStatus.REGISTERED.name()));
+        List<Integer> claimedIds = claimed == orderIds.size() ? orderIds : this.jdbcTemplate.queryForList(CLAIMED_ORDERS_SQL,
+                new MapSqlParameterSource().addValue("orderIds", orderIds).addValue("shipmentId", shipmentId), Integer.class);
+        this.orderNotificationService.recordAll(OrderNotificationType.PICKING, claimedIds);
+        this.orderTrackingService.markChanged(claimedIds);
+        return claimedIds;
+    }
+}
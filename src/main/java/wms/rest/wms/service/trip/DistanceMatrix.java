@@ -0,0 +1,130 @@
+package wms.rest.wms.service.trip;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The road distances between the stops of the Trips, read from a distance matrix file when the application starts.
+ * <p>
+ * Each line of the file holds the distance in kilometres between two cities as 'from,to,km', and applies both
+ * ways. Lines starting with '#' are comments. Cities are matched regardless of case. Two stops in the same city
+ * are a fixed local distance apart unless they share a postal code, and two cities missing from the file are taken
+ * to be far apart, so the Trip visits the cities it knows the distances between together.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+public class DistanceMatrix {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(DistanceMatrix.class);
+
+    /** The distance in kilometres between each pair of cities in the file, by lower case city */
+    private final Map<String, Map<String, Double>> kilometres = new HashMap<>();
+
+    /** Distance between two stops in the same city with different postal codes, in kilometres */
+    private final double sameCityKm;
+
+    /** Distance between two cities missing from the file, in kilometres */
+    private final double unknownKm;
+
+    /**
+     * Creates the matrix from a distance matrix file.
+     *
+     * @param file the distance matrix file.
+     * @param sameCityKm distance between two stops in the same city with different postal codes, in kilometres.
+     * @param unknownKm distance between two cities missing from the file, in kilometres.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if a line of the file is not a distance between two cities.
+     */
+    public DistanceMatrix(@Value("${trip.route.distance-matrix:classpath:trip/distance-matrix.csv}") Resource file,
+                          @Value("${trip.route.same-city-km:5}") double sameCityKm,
+                          @Value("${trip.route.unknown-distance-km:500}") double unknownKm) throws IOException {
+        this.sameCityKm = sameCityKm;
+        this.unknownKm = unknownKm;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                if (fields.length != 3) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " of " + file.getDescription()
+                            + " is not 'from,to,km': " + line);
+                }
+                try {
+                    double km = Double.parseDouble(fields[2].trim());
+                    this.kilometres.computeIfAbsent(key(fields[0]), city -> new HashMap<>()).put(key(fields[1]), km);
+                    this.kilometres.computeIfAbsent(key(fields[1]), city -> new HashMap<>()).put(key(fields[0]), km);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " of " + file.getDescription()
+                            + " has no distance in kilometres: " + line, e);
+                }
+            }
+        }
+        log.info("Read distances between {} cities from {}", this.kilometres.size(), file.getDescription());
+    }
+
+    /**
+     * Return the distance between two stops.
+     *
+     * @param from the stop to leave from.
+     * @param to the stop to arrive at.
+     * @return the distance in kilometres.
+     */
+    public double distance(RouteStop from, RouteStop to) {
+        String fromCity = key(from.getCity());
+        String toCity = key(to.getCity());
+        if (fromCity.equals(toCity)) {
+            return from.getPostalCode() == to.getPostalCode() ? 0 : this.sameCityKm;
+        }
+        Double km = this.kilometres.getOrDefault(fromCity, Map.of()).get(toCity);
+        return km != null ? km : this.unknownKm;
+    }
+
+    /**
+     * Return the distance from each of the stops to each other.
+     *
+     * @param stops the stops.
+     * @return the distance in kilometres from the stop at each index to the stop at each other index.
+     */
+    public double[][] between(List<RouteStop> stops) {
+        int size = stops.size();
+        double[][] distances = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {
+                distances[i][j] = distance(stops.get(i), stops.get(j));
+                distances[j][i] = distances[i][j];
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Return the key a city is looked up by.
+     *
+     * @param city the city.
+     * @return the city trimmed and in lower case, empty if it is null.
+     */
+    private static String key(String city) {
+        return city == null ? "" : city.trim().toLowerCase(Locale.ROOT);
+    }
+}
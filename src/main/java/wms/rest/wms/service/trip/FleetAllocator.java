@@ -0,0 +1,288 @@
+package wms.rest.wms.service.trip;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import wms.rest.wms.model.Driver;
+import wms.rest.wms.model.FleetResourceType;
+import wms.rest.wms.model.ProductType;
+import wms.rest.wms.model.Trip;
+import wms.rest.wms.model.Vehicle;
+import wms.rest.wms.repository.DriverRepository;
+import wms.rest.wms.repository.FleetReservationRepository;
+import wms.rest.wms.repository.VehicleRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Optional;
+
+/**
+ * Allocates a Driver and a Vehicle of the right temperature class to each Trip from the registry.
+ * <p>
+ * Trips depart at the departure time on their date, and only Drivers whose daily shift has started by then and
+ * has not ended are given Trips. A Trip keeps its Driver and Vehicle on the road for as many days as its route
+ * takes, driving at the average speed and stopping at each Store, with no more driving per day than the rest of
+ * the shift of the Driver and the legal limit allow. The Driver and Vehicle are each reserved for those days with a
+ * FleetReservation, so they stay free on every other date, before, between and after their other Trips. Every Trip
+ * departs at the departure time, so a Driver or Vehicle takes at most one Trip a day.
+ * <p>
+ * A reservation locks the row of the Driver or Vehicle, and is inserted with one conditional statement that only
+ * succeeds if it is still active and none of its reservations overlap the days, so planner runs overlapping on
+ * several instances never give one of them two Trips at once. The lock is held until the transaction of the
+ * planner run ends, and a reservation made outside of one commits at once.
+ * Shifts are taken to start and end on the same day.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+public class FleetAllocator {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(FleetAllocator.class);
+
+    /** Locks an active Driver until the transaction ends */
+    private static final String LOCK_DRIVER_SQL = "SELECT driver_id FROM driver " +
+            "WHERE driver_id = :id AND active = TRUE FOR UPDATE";
+
+    /** Locks an active Vehicle until the transaction ends */
+    private static final String LOCK_VEHICLE_SQL = "SELECT vehicle_id FROM vehicle " +
+            "WHERE vehicle_id = :id AND active = TRUE FOR UPDATE";
+
+    /** Reserves an active Driver for some days if none of its reservations overlap them */
+    private static final String RESERVE_DRIVER_SQL = "INSERT INTO fleet_reservation " +
+            "(reservation_id, resource_type, resource_id, reserved_from, reserved_until) " +
+            "SELECT NEXT VALUE FOR fleet_reservation_seq, :type, driver_id, :from, :until FROM driver " +
+            "WHERE driver_id = :id AND active = TRUE AND NOT EXISTS (SELECT 1 FROM fleet_reservation r " +
+            "WHERE r.resource_type = :type AND r.resource_id = :id AND r.reserved_from <= :until AND r.reserved_until >= :from)";
+
+    /** Reserves an active Vehicle for some days if none of its reservations overlap them */
+    private static final String RESERVE_VEHICLE_SQL = "INSERT INTO fleet_reservation " +
+            "(reservation_id, resource_type, resource_id, reserved_from, reserved_until) " +
+            "SELECT NEXT VALUE FOR fleet_reservation_seq, :type, vehicle_id, :from, :until FROM vehicle " +
+            "WHERE vehicle_id = :id AND active = TRUE AND NOT EXISTS (SELECT 1 FROM fleet_reservation r " +
+            "WHERE r.resource_type = :type AND r.resource_id = :id AND r.reserved_from <= :until AND r.reserved_until >= :from)";
+
+    /** Gives back the dates of a reservation after a date, shortening it */
+    private static final String SHORTEN_SQL = "UPDATE fleet_reservation SET reserved_until = :releasedUntil " +
+            "WHERE resource_type = :type AND resource_id = :id AND reserved_from = :from AND reserved_until = :until " +
+            "AND reserved_from <= :releasedUntil";
+
+    /** Gives back every date of a reservation, removing it */
+    private static final String CANCEL_SQL = "DELETE FROM fleet_reservation " +
+            "WHERE resource_type = :type AND resource_id = :id AND reserved_from = :from AND reserved_until = :until " +
+            "AND reserved_from > :releasedUntil";
+
+    /** JDBC template for the conditional reservation statements */
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /** Template running the lock and the insert of a reservation in one transaction, or in the one of the caller */
+    private final TransactionTemplate transactionTemplate;
+
+    /** Repository for reading the Drivers of the registry */
+    private final DriverRepository driverRepository;
+
+    /** Repository for reading the Vehicles of the registry */
+    private final VehicleRepository vehicleRepository;
+
+    /** Repository for reading the reservations of the Drivers and Vehicles */
+    private final FleetReservationRepository fleetReservationRepository;
+
+    /** The time of day the Trips depart */
+    private final LocalTime departureTime;
+
+    /** Average speed of the Vehicles on the road, in kilometres per hour */
+    private final double averageSpeedKmh;
+
+    /** Time spent unloading at each Store, in hours */
+    private final double stopHours;
+
+    /** The most a Driver drives in a day, in hours */
+    private final double maxDrivingHoursPerDay;
+
+    /**
+     * Creates the allocator.
+     *
+     * @param jdbcTemplate JDBC template for the conditional reservation statements.
+     * @param transactionTemplate template running the lock and the insert of a reservation in one transaction.
+     * @param driverRepository repository for reading the Drivers of the registry.
+     * @param vehicleRepository repository for reading the Vehicles of the registry.
+     * @param fleetReservationRepository repository for reading the reservations of the Drivers and Vehicles.
+     * @param departureTime the time of day the Trips depart, as HH:mm.
+     * @param averageSpeedKmh average speed of the Vehicles on the road, in kilometres per hour.
+     * @param stopMinutes time spent unloading at each Store, in minutes.
+     * @param maxDrivingHoursPerDay the most a Driver drives in a day, in hours.
+     */
+    public FleetAllocator(NamedParameterJdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                          DriverRepository driverRepository, VehicleRepository vehicleRepository,
+                          FleetReservationRepository fleetReservationRepository,
+                          @Value("${trip.departure-time:06:00}") String departureTime,
+                          @Value("${trip.average-speed-kmh:70}") double averageSpeedKmh,
+                          @Value("${trip.stop-minutes:20}") double stopMinutes,
+                          @Value("${trip.max-driving-hours-per-day:9}") double maxDrivingHoursPerDay) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.driverRepository = driverRepository;
+        this.vehicleRepository = vehicleRepository;
+        this.fleetReservationRepository = fleetReservationRepository;
+        this.departureTime = LocalTime.parse(departureTime);
+        this.averageSpeedKmh = averageSpeedKmh;
+        this.stopHours = stopMinutes / 60;
+        this.maxDrivingHoursPerDay = maxDrivingHoursPerDay;
+    }
+
+    /**
+     * Return the index of the active Drivers on shift at the departure time and the active Vehicles, with their
+     * reservations that have not ended, read from the registry for one planner run. The Trips depart today or later.
+     *
+     * @return the index of the Drivers and Vehicles.
+     */
+    public FleetAvailability availability() {
+        return new FleetAvailability(this.driverRepository.findByActiveTrue().stream().filter(this::isOnShift).toList(),
+                this.vehicleRepository.findByActiveTrue(),
+                this.fleetReservationRepository.findByReservedUntilGreaterThanEqual(LocalDate.now()));
+    }
+
+    /**
+     * Reserves the Driver and the Vehicle of a temperature class that have been free the longest of those free for
+     * every day of a Trip.
+     *
+     * @param availability the index of the Drivers and Vehicles of the planner run.
+     * @param temperatureClass the temperature class of the Trip.
+     * @param from the date the Trip departs.
+     * @param routeKm the length of the route of the Trip, in kilometres.
+     * @param stops the number of Stores the Trip delivers to.
+     * @return an Optional of the reserved Driver and Vehicle, empty if either is not free on the days.
+     */
+    public Optional<FleetAssignment> allocate(FleetAvailability availability, ProductType temperatureClass,
+                                              LocalDate from, double routeKm, int stops) {
+        if (!availability.hasVehicle(temperatureClass, from)) {
+            return Optional.empty();
+        }
+        double drivingHours = routeKm / this.averageSpeedKmh + stops * this.stopHours;
+        FleetAvailability.Candidate<Driver> driver;
+        LocalDate until;
+        do {
+            driver = availability.takeDriver(from, candidate -> from.plusDays(days(candidate, drivingHours) - 1))
+                    .orElse(null);
+            if (driver == null) {
+                return Optional.empty();
+            }
+            until = from.plusDays(days(driver.resource(), drivingHours) - 1);
+        } while (!reserve(LOCK_DRIVER_SQL, RESERVE_DRIVER_SQL, FleetResourceType.DRIVER, driver.id(), from, until));
+
+        FleetAvailability.Candidate<Vehicle> vehicle;
+        do {
+            vehicle = availability.takeVehicle(temperatureClass, from, until).orElse(null);
+            if (vehicle == null) {
+                release(FleetResourceType.DRIVER, driver.id(), from, until, from.minusDays(1));
+                availability.putDriver(driver.resource());
+                return Optional.empty();
+            }
+        } while (!reserve(LOCK_VEHICLE_SQL, RESERVE_VEHICLE_SQL, FleetResourceType.VEHICLE, vehicle.id(), from, until));
+
+        availability.putDriver(driver.resource(), from, until);
+        availability.putVehicle(vehicle.resource(), from, until);
+        return Optional.of(new FleetAssignment(driver.resource(), vehicle.resource(), from, until));
+    }
+
+    /**
+     * Gives back the dates the Driver and Vehicle of a Trip were reserved for after a date, when the Trip is
+     * finished early or removed. The reservation is removed if the date is before the Trip departs. Reservations
+     * of their other Trips are left as they are.
+     *
+     * @param trip the Trip, with the Driver, Vehicle, start date and end date it was planned with.
+     * @param releasedUntil the last date the Driver and Vehicle stay reserved for the Trip.
+     */
+    public void release(Trip trip, LocalDate releasedUntil) {
+        if (trip.getTripStartDate() == null || trip.getTripEndDate() == null
+                || !releasedUntil.isBefore(trip.getTripEndDate())) {
+            return;
+        }
+        if (trip.getDriver() != null) {
+            release(FleetResourceType.DRIVER, trip.getDriver().getDriverId(), trip.getTripStartDate(),
+                    trip.getTripEndDate(), releasedUntil);
+        }
+        if (trip.getVehicle() != null) {
+            release(FleetResourceType.VEHICLE, trip.getVehicle().getVehicleId(), trip.getTripStartDate(),
+                    trip.getTripEndDate(), releasedUntil);
+        }
+    }
+
+    /**
+     * Return whether a Driver is on shift at the departure time.
+     *
+     * @param driver the Driver.
+     * @return true if the shift of the Driver has started at the departure time and has not ended.
+     */
+    private boolean isOnShift(Driver driver) {
+        return !this.departureTime.isBefore(driver.getShiftStart()) && this.departureTime.isBefore(driver.getShiftEnd());
+    }
+
+    /**
+     * Return the number of days a route keeps a Driver on the road.
+     *
+     * @param driver the Driver.
+     * @param drivingHours the hours the route takes.
+     * @return the number of days, at least 1.
+     */
+    private int days(Driver driver, double drivingHours) {
+        double hoursPerDay = Math.min(this.maxDrivingHoursPerDay,
+                Duration.between(this.departureTime, driver.getShiftEnd()).toMinutes() / 60.0);
+        return Math.max(1, (int) Math.ceil(drivingHours / hoursPerDay));
+    }
+
+    /**
+     * Reserves a Driver or Vehicle if it is free on every day from the departure date to the last date.
+     *
+     * @param lockSql the statement locking the Driver or Vehicle.
+     * @param reserveSql the reservation statement.
+     * @param type whether the resource is a Driver or a Vehicle.
+     * @param id the ID of the Driver or Vehicle.
+     * @param from the departure date.
+     * @param until the last date of the reservation.
+     * @return true if it was reserved, false if another planner run reserved it first or it is no longer active.
+     */
+    private boolean reserve(String lockSql, String reserveSql, FleetResourceType type, int id, LocalDate from,
+                            LocalDate until) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("type", type.name())
+                .addValue("id", id)
+                .addValue("from", from)
+                .addValue("until", until);
+        boolean reserved = Boolean.TRUE.equals(this.transactionTemplate.execute(status ->
+                !this.jdbcTemplate.queryForList(lockSql, parameters, Integer.class).isEmpty()
+                        && this.jdbcTemplate.update(reserveSql, parameters) == 1));
+        if (!reserved) {
+            log.debug("Resource {} was reserved by another planner run", id);
+        }
+        return reserved;
+    }
+
+    /**
+     * Gives back the dates of a reservation of a Driver or Vehicle after a date, removing it if the date is before
+     * it starts.
+     *
+     * @param type whether the resource is a Driver or a Vehicle.
+     * @param id the ID of the Driver or Vehicle.
+     * @param from the first date of the reservation.
+     * @param until the last date of the reservation.
+     * @param releasedUntil the last date it stays reserved for.
+     */
+    private void release(FleetResourceType type, int id, LocalDate from, LocalDate until, LocalDate releasedUntil) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("type", type.name())
+                .addValue("id", id)
+                .addValue("from", from)
+                .addValue("until", until)
+                .addValue("releasedUntil", releasedUntil);
+        this.jdbcTemplate.update(SHORTEN_SQL, parameters);
+        this.jdbcTemplate.update(CANCEL_SQL, parameters);
+    }
+}
@@ -0,0 +1,31 @@
+package wms.rest.wms.service.trip;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import wms.rest.wms.model.Driver;
+import wms.rest.wms.model.Vehicle;
+
+import java.time.LocalDate;
+
+/**
+ * The Driver and Vehicle reserved for a Trip, and the dates they are reserved for.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Getter
+@AllArgsConstructor
+public class FleetAssignment {
+
+    /** The Driver of the Trip */
+    private final Driver driver;
+
+    /** The Vehicle of the Trip */
+    private final Vehicle vehicle;
+
+    /** The date the Trip departs */
+    private final LocalDate from;
+
+    /** The last date the Trip keeps the Driver and Vehicle on the road */
+    private final LocalDate until;
+}
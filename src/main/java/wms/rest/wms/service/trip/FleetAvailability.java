@@ -0,0 +1,204 @@
+package wms.rest.wms.service.trip;
+
+import wms.rest.wms.model.Driver;
+import wms.rest.wms.model.FleetReservation;
+import wms.rest.wms.model.FleetResourceType;
+import wms.rest.wms.model.ProductType;
+import wms.rest.wms.model.Vehicle;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Index of the Drivers and Vehicles that may be given Trips in one planner run, with the dates each is reserved
+ * for. The resources are ordered by the date their last reservation ends, with those never reserved first, so the
+ * resource that has been free the longest is given the next Trip and the Trips are spread evenly over the fleet.
+ * A resource is given a Trip on any dates none of its reservations overlap, also between two of them, so a Trip
+ * planned for a later date never keeps it from an earlier one. Taking a resource walks the candidates in order
+ * until one is free, and checks each with a lookup in its reservations ordered by start date.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+public class FleetAvailability {
+
+    /** Orders the resources from the one free the longest, with those never reserved first */
+    private static final Comparator<Candidate<?>> ORDER = Comparator
+            .<Candidate<?>, LocalDate>comparing(Candidate::busyUntil, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingInt(Candidate::id);
+
+    /** The Drivers on shift at the departure time */
+    private final NavigableSet<Candidate<Driver>> drivers = new TreeSet<>(ORDER);
+
+    /** The Vehicles of each temperature class */
+    private final Map<ProductType, NavigableSet<Candidate<Vehicle>>> vehicles = new EnumMap<>(ProductType.class);
+
+    /** The last date of each reservation of each Driver, by the date it starts */
+    private final Map<Integer, NavigableMap<LocalDate, LocalDate>> driverReservations = new HashMap<>();
+
+    /** The last date of each reservation of each Vehicle, by the date it starts */
+    private final Map<Integer, NavigableMap<LocalDate, LocalDate>> vehicleReservations = new HashMap<>();
+
+    /**
+     * Creates the index.
+     *
+     * @param drivers the Drivers that may be given Trips.
+     * @param vehicles the Vehicles that may be given Trips.
+     * @param reservations the reservations of the Drivers and Vehicles that have not ended.
+     */
+    public FleetAvailability(Collection<Driver> drivers, Collection<Vehicle> vehicles,
+                             Collection<FleetReservation> reservations) {
+        for (ProductType temperatureClass : ProductType.values()) {
+            this.vehicles.put(temperatureClass, new TreeSet<>(ORDER));
+        }
+        for (FleetReservation reservation : reservations) {
+            (reservation.getResourceType() == FleetResourceType.DRIVER ? this.driverReservations : this.vehicleReservations)
+                    .computeIfAbsent(reservation.getResourceId(), id -> new TreeMap<>())
+                    .put(reservation.getReservedFrom(), reservation.getReservedUntil());
+        }
+        drivers.forEach(this::putDriver);
+        vehicles.forEach(this::putVehicle);
+    }
+
+    /**
+     * Return the Driver free the longest of those free for a Trip departing on a date, and remove it from the index.
+     *
+     * @param from the date the Trip departs.
+     * @param until the last date the Trip keeps each Driver on the road, which depends on their shift.
+     * @return an Optional of the Driver, empty if no Driver is free.
+     */
+    public Optional<Candidate<Driver>> takeDriver(LocalDate from, Function<Driver, LocalDate> until) {
+        return take(this.drivers, this.driverReservations, from, until);
+    }
+
+    /**
+     * Return the Vehicle of a temperature class free the longest of those free for some dates, and remove it from
+     * the index.
+     *
+     * @param temperatureClass the temperature class of the Vehicle.
+     * @param from the first date the Vehicle must be free on.
+     * @param until the last date the Vehicle must be free on.
+     * @return an Optional of the Vehicle, empty if no Vehicle is free.
+     */
+    public Optional<Candidate<Vehicle>> takeVehicle(ProductType temperatureClass, LocalDate from, LocalDate until) {
+        return take(this.vehicles.get(temperatureClass), this.vehicleReservations, from, vehicle -> until);
+    }
+
+    /**
+     * Return whether a Vehicle of a temperature class is free on a date.
+     *
+     * @param temperatureClass the temperature class of the Vehicle.
+     * @param date the date the Vehicle must be free on.
+     * @return true if a Vehicle is free.
+     */
+    public boolean hasVehicle(ProductType temperatureClass, LocalDate date) {
+        return this.vehicles.get(temperatureClass).stream()
+                .anyMatch(vehicle -> isFree(this.vehicleReservations.get(vehicle.id()), date, date));
+    }
+
+    /**
+     * Puts a Driver into the index, with the reservations it is known to have.
+     *
+     * @param driver the Driver.
+     */
+    public void putDriver(Driver driver) {
+        this.drivers.add(new Candidate<>(driver, driver.getDriverId(),
+                lastDate(this.driverReservations.get(driver.getDriverId()))));
+    }
+
+    /**
+     * Puts a Driver back into the index reserved for some dates.
+     *
+     * @param driver the Driver.
+     * @param from the first date it is reserved for.
+     * @param until the last date it is reserved for.
+     */
+    public void putDriver(Driver driver, LocalDate from, LocalDate until) {
+        this.driverReservations.computeIfAbsent(driver.getDriverId(), id -> new TreeMap<>()).put(from, until);
+        putDriver(driver);
+    }
+
+    /**
+     * Puts a Vehicle into the index, with the reservations it is known to have.
+     *
+     * @param vehicle the Vehicle.
+     */
+    public void putVehicle(Vehicle vehicle) {
+        if (vehicle.getTemperatureClass() != null) {
+            this.vehicles.get(vehicle.getTemperatureClass()).add(new Candidate<>(vehicle, vehicle.getVehicleId(),
+                    lastDate(this.vehicleReservations.get(vehicle.getVehicleId()))));
+        }
+    }
+
+    /**
+     * Puts a Vehicle back into the index reserved for some dates.
+     *
+     * @param vehicle the Vehicle.
+     * @param from the first date it is reserved for.
+     * @param until the last date it is reserved for.
+     */
+    public void putVehicle(Vehicle vehicle, LocalDate from, LocalDate until) {
+        this.vehicleReservations.computeIfAbsent(vehicle.getVehicleId(), id -> new TreeMap<>()).put(from, until);
+        putVehicle(vehicle);
+    }
+
+    /**
+     * Return the first candidate of a set free for some dates, and remove it.
+     *
+     * @param candidates the candidates ordered by the date their last reservation ends.
+     * @param reservations the reservations of the candidates by their ID.
+     * @param from the first date the candidate must be free on.
+     * @param until the last date the candidate must be free on, which may depend on the candidate.
+     * @return an Optional of the candidate, empty if none is free.
+     * @param <T> the type of the resource.
+     */
+    private static <T> Optional<Candidate<T>> take(NavigableSet<Candidate<T>> candidates,
+                                                   Map<Integer, NavigableMap<LocalDate, LocalDate>> reservations,
+                                                   LocalDate from, Function<T, LocalDate> until) {
+        Iterator<Candidate<T>> iterator = candidates.iterator();
+        while (iterator.hasNext()) {
+            Candidate<T> candidate = iterator.next();
+            if (isFree(reservations.get(candidate.id()), from, until.apply(candidate.resource()))) {
+                iterator.remove();
+                return Optional.of(candidate);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Return whether none of the reservations of a resource overlap some dates. The reservations never overlap
+     * each other, so the one starting last on or before the last date is the only one that can.
+     *
+     * @param reservations the last date of each reservation by the date it starts, null if none.
+     * @param from the first date.
+     * @param until the last date.
+     * @return true if the resource is free on every date from the first to the last.
+     */
+    private static boolean isFree(NavigableMap<LocalDate, LocalDate> reservations, LocalDate from, LocalDate until) {
+        Map.Entry<LocalDate, LocalDate> latest = reservations == null ? null : reservations.floorEntry(until);
+        return latest == null || latest.getValue().isBefore(from);
+    }
+
+    /**
+     * Return the date the last of the reservations of a resource ends.
+     *
+     * @param reservations the last date of each reservation by the date it starts, null if none.
+     * @return the date, null if the resource has no reservations.
+     */
+    private static LocalDate lastDate(NavigableMap<LocalDate, LocalDate> reservations) {
+        return reservations == null || reservations.isEmpty() ? null : reservations.lastEntry().getValue();
+    }
+
+    /**
+     * A Driver or Vehicle in the index.
+     *
+     * @param resource the Driver or Vehicle.
+     * @param id the ID of the Driver or Vehicle.
+     * @param busyUntil the date its last reservation ends, null if it has none.
+     * @param <T> the type of the resource.
+     */
+    public record Candidate<T>(T resource, int id, LocalDate busyUntil) {
+    }
+}
@@ -0,0 +1,199 @@
+package wms.rest.wms.service.trip;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+
+/**
+ * Sequences the stops of a route by starting from the nearest-neighbour tour and improving it with 2-opt and
+ * Or-opt moves until no move shortens it or the time limit is reached, whichever comes first.
+ * <p>
+ * A 2-opt move replaces two edges of the tour by reversing the stops between them, which undoes every crossing.
+ * An Or-opt move takes a run of up to three consecutive stops, such as the Stores of one city, and puts it back
+ * forwards or backwards between two other stops where it adds the least. The distances are taken to be the same in
+ * both directions. The sequence only depends on the distances, so the same route is always sequenced the same way.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+public class LocalSearchRouteSequencer implements RouteSequencer {
+
+    /** Longest run of stops an Or-opt move takes */
+    private static final int OR_OPT_MAX_LENGTH = 3;
+
+    /** Least shortening counted as an improvement, so rounding never makes the search go in circles */
+    private static final double EPSILON = 1e-9;
+
+    /** Longest time spent improving one route, in nanoseconds */
+    private final long timeLimitNanos;
+
+    /**
+     * Creates the sequencer.
+     *
+     * @param timeLimitMillis longest time spent improving one route, 0 to use the nearest-neighbour tour as it is.
+     */
+    public LocalSearchRouteSequencer(@Value("${trip.route.time-limit-millis:200}") long timeLimitMillis) {
+        this.timeLimitNanos = timeLimitMillis * 1_000_000;
+    }
+
+    @Override
+    public int[] sequence(double[][] distances) {
+        long deadline = System.nanoTime() + this.timeLimitNanos;
+        int[] tour = nearestNeighbour(distances);
+        // A route of up to two stops has only one tour, either way round
+        if (tour.length > 3) {
+            boolean improved = true;
+            while (improved && System.nanoTime() < deadline) {
+                improved = twoOpt(distances, tour, deadline);
+                improved |= orOpt(distances, tour, deadline);
+            }
+        }
+        return Arrays.copyOfRange(tour, 1, tour.length);
+    }
+
+    /**
+     * Return the tour going from the depot to the nearest stop not yet visited until every stop is visited.
+     *
+     * @param distances the distance from each stop to each other stop, with the depot at index 0.
+     * @return the tour, starting with the depot.
+     */
+    private static int[] nearestNeighbour(double[][] distances) {
+        int size = distances.length;
+        int[] tour = new int[size];
+        boolean[] visited = new boolean[size];
+        visited[0] = true;
+        for (int position = 1; position < size; position++) {
+            int current = tour[position - 1];
+            int nearest = -1;
+            for (int stop = 1; stop < size; stop++) {
+                if (!visited[stop] && (nearest < 0 || distances[current][stop] < distances[current][nearest])) {
+                    nearest = stop;
+                }
+            }
+            tour[position] = nearest;
+            visited[nearest] = true;
+        }
+        return tour;
+    }
+
+    /**
+     * Makes every 2-opt move that shortens the tour in one pass over it.
+     *
+     * @param distances the distance from each stop to each other stop.
+     * @param tour the tour to improve, starting with the depot, changed in place.
+     * @param deadline the value of System.nanoTime() at which to stop.
+     * @return true if the tour was shortened.
+     */
+    private static boolean twoOpt(double[][] distances, int[] tour, long deadline) {
+        int size = tour.length;
+        boolean improved = false;
+        for (int i = 0; i < size - 2; i++) {
+            if (System.nanoTime() >= deadline) {
+                return improved;
+            }
+            for (int j = i + 2; j < size; j++) {
+                // The edge back to the depot shares the depot with the first edge
+                if (i == 0 && j == size - 1) {
+                    continue;
+                }
+                int a = tour[i];
+                int b = tour[i + 1];
+                int c = tour[j];
+                int d = tour[(j + 1) % size];
+                if (distances[a][c] + distances[b][d] - distances[a][b] - distances[c][d] < -EPSILON) {
+                    reverse(tour, i + 1, j);
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * Makes the best Or-opt move of every run of stops that shortens the tour in one pass over it.
+     *
+     * @param distances the distance from each stop to each other stop.
+     * @param tour the tour to improve, starting with the depot, changed in place.
+     * @param deadline the value of System.nanoTime() at which to stop.
+     * @return true if the tour was shortened.
+     */
+    private static boolean orOpt(double[][] distances, int[] tour, long deadline) {
+        int size = tour.length;
+        boolean improved = false;
+        for (int length = 1; length <= OR_OPT_MAX_LENGTH && length < size - 1; length++) {
+            for (int i = 1; i + length <= size; i++) {
+                if (System.nanoTime() >= deadline) {
+                    return improved;
+                }
+                int previous = tour[i - 1];
+                int first = tour[i];
+                int last = tour[i + length - 1];
+                int next = tour[(i + length) % size];
+                double removed = distances[previous][first] + distances[last][next] - distances[previous][next];
+                double bestAdded = removed - EPSILON;
+                int bestEdge = -1;
+                boolean bestReversed = false;
+                for (int j = 0; j < size; j++) {
+                    // Edges touching the run cannot take it
+                    if (j >= i - 1 && j <= i + length - 1) {
+                        continue;
+                    }
+                    int a = tour[j];
+                    int b = tour[(j + 1) % size];
+                    double forwards = distances[a][first] + distances[last][b] - distances[a][b];
+                    double backwards = distances[a][last] + distances[first][b] - distances[a][b];
+                    if (Math.min(forwards, backwards) < bestAdded) {
+                        bestAdded = Math.min(forwards, backwards);
+                        bestEdge = j;
+                        bestReversed = backwards < forwards;
+                    }
+                }
+                if (bestEdge >= 0) {
+                    move(tour, i, length, bestEdge, bestReversed);
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * Moves a run of stops to between two other stops of the tour.
+     *
+     * @param tour the tour, changed in place.
+     * @param start the position of the first stop of the run.
+     * @param length the number of stops in the run.
+     * @param edge the position of the stop the run is put after, outside the run.
+     * @param reversed whether the run is put back backwards.
+     */
+    private static void move(int[] tour, int start, int length, int edge, boolean reversed) {
+        int[] run = Arrays.copyOfRange(tour, start, start + length);
+        if (reversed) {
+            reverse(run, 0, length - 1);
+        }
+        int[] rest = new int[tour.length - length];
+        System.arraycopy(tour, 0, rest, 0, start);
+        System.arraycopy(tour, start + length, rest, start, tour.length - start - length);
+        int after = edge < start ? edge : edge - length;
+        System.arraycopy(rest, 0, tour, 0, after + 1);
+        System.arraycopy(run, 0, tour, after + 1, length);
+        System.arraycopy(rest, after + 1, tour, after + 1 + length, rest.length - after - 1);
+    }
+
+    /**
+     * Reverses the stops between two positions of a tour.
+     *
+     * @param tour the tour, changed in place.
+     * @param from the first position, inclusive.
+     * @param to the last position, inclusive.
+     */
+    private static void reverse(int[] tour, int from, int to) {
+        while (from < to) {
+            int stop = tour[from];
+            tour[from++] = tour[to];
+            tour[to--] = stop;
+        }
+    }
+}
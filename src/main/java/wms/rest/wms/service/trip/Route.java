@@ -0,0 +1,23 @@
+package wms.rest.wms.service.trip;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * The stops of one Trip to be sequenced, leaving from and returning to its depot.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Getter
+@AllArgsConstructor
+public class Route {
+
+    /** Where the Trip is loaded, and returns to */
+    private final RouteStop depot;
+
+    /** The stops of the Trip, in no particular order */
+    private final List<RouteStop> stops;
+}
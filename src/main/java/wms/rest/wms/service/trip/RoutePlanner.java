@@ -0,0 +1,135 @@
+package wms.rest.wms.service.trip;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sequences the stops of Trips over the road distances of the DistanceMatrix with the RouteSequencer, so a Trip
+ * delivers its Shipments in the order that drives the least rather than zig-zagging between cities.
+ * Several Trips are sequenced in parallel, one per worker, since each is sequenced on its own.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+public class RoutePlanner {
+
+    /** The road distances between the stops */
+    private final DistanceMatrix distanceMatrix;
+
+    /** Decides the order each Trip visits its stops in */
+    private final RouteSequencer routeSequencer;
+
+    /** Workers sequencing the Trips in parallel */
+    private final ThreadPoolExecutor workerPool;
+
+    /**
+     * Creates the planner. Unless set, the number of workers is the number of processors.
+     *
+     * @param distanceMatrix the road distances between the stops.
+     * @param routeSequencer decides the order each Trip visits its stops in.
+     * @param workers the number of workers sequencing Trips in parallel, 0 to use one per processor.
+     */
+    @Autowired
+    public RoutePlanner(DistanceMatrix distanceMatrix, RouteSequencer routeSequencer,
+                        @Value("${trip.route.workers:0}") int workers) {
+        this.distanceMatrix = distanceMatrix;
+        this.routeSequencer = routeSequencer;
+        int size = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        this.workerPool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "route-planner-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.workerPool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Stops the workers when the application shuts down, letting the Trips being sequenced finish.
+     *
+     * @throws InterruptedException if interrupted while waiting for the workers to finish.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        this.workerPool.shutdown();
+        if (!this.workerPool.awaitTermination(30, TimeUnit.SECONDS)) {
+            this.workerPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Return the order a Trip visits its stops in.
+     *
+     * @param route the depot and stops of the Trip.
+     * @return the indexes of the stops in the List of stops of the route, in the order they are visited.
+     */
+    public List<Integer> sequence(Route route) {
+        List<RouteStop> stops = new ArrayList<>(route.getStops().size() + 1);
+        stops.add(route.getDepot());
+        stops.addAll(route.getStops());
+        List<Integer> order = new ArrayList<>(route.getStops().size());
+        for (int stop : this.routeSequencer.sequence(this.distanceMatrix.between(stops))) {
+            order.add(stop - 1);
+        }
+        return order;
+    }
+
+    /**
+     * Return the order each of several Trips visits its stops in, sequencing the Trips in parallel.
+     *
+     * @param routes the depot and stops of each Trip.
+     * @return for each route, the indexes of its stops in the order they are visited.
+     */
+    public List<List<Integer>> sequenceAll(List<Route> routes) {
+        if (routes.size() <= 1) {
+            return routes.stream().map(this::sequence).toList();
+        }
+        List<Future<List<Integer>>> futures = new ArrayList<>(routes.size());
+        for (Route route : routes) {
+            futures.add(this.workerPool.submit(() -> sequence(route)));
+        }
+        List<List<Integer>> orders = new ArrayList<>(routes.size());
+        try {
+            for (Future<List<Integer>> future : futures) {
+                orders.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sequencing the trips", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Could not sequence the trips", e.getCause());
+        }
+        return orders;
+    }
+
+    /**
+     * Return the distance a Trip drives, from its depot through its stops in order and back.
+     *
+     * @param route the depot and stops of the Trip.
+     * @param order the indexes of the stops in the order they are visited.
+     * @return the distance in kilometres.
+     */
+    public double length(Route route, List<Integer> order) {
+        double km = 0;
+        RouteStop previous = route.getDepot();
+        for (int stop : order) {
+            km += this.distanceMatrix.distance(previous, route.getStops().get(stop));
+            previous = route.getStops().get(stop);
+        }
+        return km + this.distanceMatrix.distance(previous, route.getDepot());
+    }
+}
@@ -0,0 +1,20 @@
+package wms.rest.wms.service.trip;
+
+/**
+ * Decides the order a Trip visits its stops in. The RoutePlanner uses whichever implementation is the bean
+ * of this type, so another engine can be plugged in by declaring it as the primary RouteSequencer.
+ * Implementations are called from several threads at once.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+public interface RouteSequencer {
+
+    /**
+     * Return the order to visit the stops of a route in, leaving from and returning to the depot.
+     *
+     * @param distances the distance from each stop to each other stop, with the depot at index 0.
+     * @return the indexes of the stops from 1 up to the number of stops, in the order they are visited.
+     */
+    int[] sequence(double[][] distances);
+}
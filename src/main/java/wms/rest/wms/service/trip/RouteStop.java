@@ -0,0 +1,21 @@
+package wms.rest.wms.service.trip;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A place a Trip leaves from or stops at, such as the depot it is loaded at or a Store it delivers to.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Getter
+@AllArgsConstructor
+public class RouteStop {
+
+    /** The city of the stop */
+    private final String city;
+
+    /** The postal code of the stop, 0 if it is not known */
+    private final int postalCode;
+}
@@ -0,0 +1,66 @@
+package wms.rest.wms.service.trip;
+
+import lombok.Getter;
+import wms.rest.wms.model.ProductType;
+
+import java.time.LocalDate;
+
+/**
+ * The load of a Shipment as the TripPlanner sees it: where it is loaded, when it is delivered, the coldest
+ * temperature class of its Products, and the weight and volume of the packages of every Order on it.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Getter
+public class ShipmentLoad {
+
+    /** The shipmentId of the Shipment */
+    private final int shipmentId;
+
+    /** Where the Shipment is loaded */
+    private final String loadLocation;
+
+    /** The date the Shipment is delivered */
+    private final LocalDate deliveryDate;
+
+    /** The coldest temperature class of the Products on the Shipment, DRY_GOODS if it has none */
+    private ProductType temperatureClass = ProductType.DRY_GOODS;
+
+    /** The weight of the packages on the Shipment, in grams */
+    private double weightInGrams;
+
+    /** The volume of the packages on the Shipment, in cubic centimetres */
+    private double volumeInCm3;
+
+    /**
+     * Creates the load of a Shipment with nothing on it yet.
+     *
+     * @param shipmentId the shipmentId of the Shipment.
+     * @param loadLocation where the Shipment is loaded.
+     * @param deliveryDate the date the Shipment is delivered.
+     */
+    public ShipmentLoad(int shipmentId, String loadLocation, LocalDate deliveryDate) {
+        this.shipmentId = shipmentId;
+        this.loadLocation = loadLocation;
+        this.deliveryDate = deliveryDate;
+    }
+
+    /**
+     * Adds the packages of the Products of one ProductType to the load. The Shipment travels in the temperature
+     * class of its coldest Product, since ProductType is declared from the warmest to the coldest class.
+     *
+     * @param productType the ProductType of the Products.
+     * @param weightInGrams the weight of their packages in grams.
+     * @param volumeInCm3 the volume of their packages in cubic centimetres.
+     * @return this load.
+     */
+    public ShipmentLoad add(ProductType productType, double weightInGrams, double volumeInCm3) {
+        if (productType != null && productType.compareTo(this.temperatureClass) > 0) {
+            this.temperatureClass = productType;
+        }
+        this.weightInGrams += weightInGrams;
+        this.volumeInCm3 += volumeInCm3;
+        return this;
+    }
+}
@@ -0,0 +1,73 @@
+package wms.rest.wms.service.trip;
+
+import lombok.Getter;
+import wms.rest.wms.model.ProductType;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Trip planned by the TripPlanner: the Shipments one vehicle of a temperature class carries from one load
+ * location on one delivery date, and their total weight and volume.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Getter
+public class TripPlan {
+
+    /** The temperature class of the vehicle */
+    private final ProductType temperatureClass;
+
+    /** Where the Shipments are loaded */
+    private final String loadLocation;
+
+    /** The date the Shipments are delivered */
+    private final LocalDate deliveryDate;
+
+    /** The Shipments on the Trip, in the order they were planned */
+    private final List<ShipmentLoad> shipments = new ArrayList<>();
+
+    /** The weight of the Shipments on the Trip, in grams */
+    private double weightInGrams;
+
+    /** The volume of the Shipments on the Trip, in cubic centimetres */
+    private double volumeInCm3;
+
+    /**
+     * Creates an empty plan.
+     *
+     * @param temperatureClass the temperature class of the vehicle.
+     * @param loadLocation where the Shipments are loaded.
+     * @param deliveryDate the date the Shipments are delivered.
+     */
+    public TripPlan(ProductType temperatureClass, String loadLocation, LocalDate deliveryDate) {
+        this.temperatureClass = temperatureClass;
+        this.loadLocation = loadLocation;
+        this.deliveryDate = deliveryDate;
+    }
+
+    /**
+     * Return whether a Shipment fits on the Trip besides the Shipments already on it.
+     *
+     * @param shipment the load of the Shipment.
+     * @param capacity the capacity of the vehicle.
+     * @return true if the Shipment fits, false otherwise.
+     */
+    boolean fits(ShipmentLoad shipment, VehicleCapacity capacity) {
+        return this.weightInGrams + shipment.getWeightInGrams() <= capacity.getMaxWeightInGrams()
+                && this.volumeInCm3 + shipment.getVolumeInCm3() <= capacity.getMaxVolumeInCm3();
+    }
+
+    /**
+     * Puts a Shipment on the Trip.
+     *
+     * @param shipment the load of the Shipment.
+     */
+    void add(ShipmentLoad shipment) {
+        this.shipments.add(shipment);
+        this.weightInGrams += shipment.getWeightInGrams();
+        this.volumeInCm3 += shipment.getVolumeInCm3();
+    }
+}
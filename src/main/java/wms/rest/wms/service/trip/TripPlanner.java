@@ -0,0 +1,164 @@
+package wms.rest.wms.service.trip;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import wms.rest.wms.model.ProductType;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Plans Trips by packing Shipments into vehicles. Shipments only share a Trip if they are loaded at the same
+ * location, delivered on the same date and travel in the same temperature class, and a Trip carries no more than
+ * the weight and volume its vehicle class can take.
+ * <p>
+ * Each such group is packed with first-fit decreasing: the Shipments are taken from the one filling most of a
+ * vehicle to the one filling least, and each goes on the first Trip it still fits on, or on a new Trip. The fill of
+ * a Shipment is whichever of its weight and volume uses the larger share of the vehicle. A Shipment that is too
+ * big for a vehicle on its own cannot be split, so it is planned on a Trip of its own and logged.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Service
+public class TripPlanner {
+
+    /** Logger for this class used to log messages and errors,
+     * @see LoggerFactory#getLogger(Class) */
+    private static final Logger log = LoggerFactory.getLogger(TripPlanner.class);
+
+    /** Grams in a kilogram */
+    private static final double GRAMS_PER_KG = 1_000;
+
+    /** Cubic centimetres in a cubic metre */
+    private static final double CM3_PER_M3 = 1_000_000;
+
+    /** Orders the groups of Shipments, so the Trips are planned in the same order every time */
+    private static final Comparator<GroupKey> GROUP_ORDER = Comparator
+            .comparing(GroupKey::deliveryDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(GroupKey::loadLocation, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(GroupKey::temperatureClass);
+
+    /** The capacity of a vehicle of each temperature class */
+    private final Map<ProductType, VehicleCapacity> capacities;
+
+    /**
+     * Creates the planner with the vehicle capacities of the configuration.
+     *
+     * @param dryWeightKg the most weight a vehicle for dry goods carries, in kilograms.
+     * @param dryVolumeM3 the most volume a vehicle for dry goods carries, in cubic metres.
+     * @param refrigeratedWeightKg the most weight a refrigerated vehicle carries, in kilograms.
+     * @param refrigeratedVolumeM3 the most volume a refrigerated vehicle carries, in cubic metres.
+     * @param frozenWeightKg the most weight a freezer vehicle carries, in kilograms.
+     * @param frozenVolumeM3 the most volume a freezer vehicle carries, in cubic metres.
+     */
+    @Autowired
+    public TripPlanner(@Value("${trip.vehicle.dry-goods.max-weight-kg:9000}") double dryWeightKg,
+                       @Value("${trip.vehicle.dry-goods.max-volume-m3:40}") double dryVolumeM3,
+                       @Value("${trip.vehicle.refrigerated-goods.max-weight-kg:8000}") double refrigeratedWeightKg,
+                       @Value("${trip.vehicle.refrigerated-goods.max-volume-m3:35}") double refrigeratedVolumeM3,
+                       @Value("${trip.vehicle.frozen-goods.max-weight-kg:7500}") double frozenWeightKg,
+                       @Value("${trip.vehicle.frozen-goods.max-volume-m3:30}") double frozenVolumeM3) {
+        this(Map.of(
+                ProductType.DRY_GOODS, new VehicleCapacity(dryWeightKg * GRAMS_PER_KG, dryVolumeM3 * CM3_PER_M3),
+                ProductType.REFRIGERATED_GOODS, new VehicleCapacity(refrigeratedWeightKg * GRAMS_PER_KG, refrigeratedVolumeM3 * CM3_PER_M3),
+                ProductType.FROZEN_GOODS, new VehicleCapacity(frozenWeightKg * GRAMS_PER_KG, frozenVolumeM3 * CM3_PER_M3)));
+    }
+
+    /**
+     * Creates the planner.
+     *
+     * @param capacities the capacity of a vehicle of each temperature class, one for every ProductType.
+     */
+    public TripPlanner(Map<ProductType, VehicleCapacity> capacities) {
+        this.capacities = new EnumMap<>(capacities);
+    }
+
+    /**
+     * Return the Trips carrying the specified Shipments, each Shipment on exactly one Trip.
+     *
+     * @param shipments the loads of the Shipments to plan.
+     * @return the planned Trips, ordered by delivery date, load location and temperature class.
+     */
+    public List<TripPlan> plan(Collection<ShipmentLoad> shipments) {
+        Map<GroupKey, List<ShipmentLoad>> groups = new TreeMap<>(GROUP_ORDER);
+        for (ShipmentLoad shipment : shipments) {
+            groups.computeIfAbsent(new GroupKey(shipment.getDeliveryDate(), shipment.getLoadLocation(),
+                    shipment.getTemperatureClass()), key -> new ArrayList<>()).add(shipment);
+        }
+        List<TripPlan> trips = new ArrayList<>();
+        groups.forEach((key, group) -> trips.addAll(pack(key, group)));
+        return trips;
+    }
+
+    /**
+     * Return the capacity of a vehicle of a temperature class.
+     *
+     * @param temperatureClass the temperature class.
+     * @return the capacity of the vehicle.
+     */
+    public VehicleCapacity getCapacity(ProductType temperatureClass) {
+        return this.capacities.get(temperatureClass);
+    }
+
+    /**
+     * Packs a group of Shipments sharing load location, delivery date and temperature class with first-fit decreasing.
+     *
+     * @param key the load location, delivery date and temperature class of the group.
+     * @param group the loads of the Shipments in the group.
+     * @return the Trips carrying the group.
+     */
+    private List<TripPlan> pack(GroupKey key, List<ShipmentLoad> group) {
+        VehicleCapacity capacity = this.capacities.get(key.temperatureClass());
+        int size = group.size();
+        double[] fill = new double[size];
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            ShipmentLoad shipment = group.get(i);
+            fill[i] = capacity.fill(shipment.getWeightInGrams(), shipment.getVolumeInCm3());
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingDouble(i -> fill[i]).reversed()
+                .thenComparingInt(i -> group.get(i).getShipmentId()));
+
+        List<TripPlan> trips = new ArrayList<>();
+        for (Integer i : order) {
+            ShipmentLoad shipment = group.get(i);
+            if (fill[i] > 1) {
+                log.warn("Shipment {} of {} kg and {} m3 is larger than a {} vehicle and gets a trip of its own",
+                        shipment.getShipmentId(), shipment.getWeightInGrams() / GRAMS_PER_KG,
+                        shipment.getVolumeInCm3() / CM3_PER_M3, key.temperatureClass());
+                TripPlan trip = new TripPlan(key.temperatureClass(), key.loadLocation(), key.deliveryDate());
+                trip.add(shipment);
+                trips.add(trip);
+                continue;
+            }
+            TripPlan target = null;
+            for (TripPlan trip : trips) {
+                if (trip.fits(shipment, capacity)) {
+                    target = trip;
+                    break;
+                }
+            }
+            if (target == null) {
+                target = new TripPlan(key.temperatureClass(), key.loadLocation(), key.deliveryDate());
+                trips.add(target);
+            }
+            target.add(shipment);
+        }
+        return trips;
+    }
+
+    /**
+     * The Shipments that may share a Trip.
+     *
+     * @param deliveryDate the date the Shipments are delivered.
+     * @param loadLocation where the Shipments are loaded.
+     * @param temperatureClass the temperature class the Shipments travel in.
+     */
+    private record GroupKey(LocalDate deliveryDate, String loadLocation, ProductType temperatureClass) {
+    }
+}
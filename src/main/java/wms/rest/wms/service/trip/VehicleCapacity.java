@@ -0,0 +1,32 @@
+package wms.rest.wms.service.trip;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The most a vehicle of one temperature class can carry on a Trip, by weight and by volume.
+ *
+ * @author Mikkel Stavelie.
+ * @version 1.0.
+ */
+@Getter
+@AllArgsConstructor
+public class VehicleCapacity {
+
+    /** The most weight the vehicle carries, in grams */
+    private final double maxWeightInGrams;
+
+    /** The most volume the vehicle carries, in cubic centimetres */
+    private final double maxVolumeInCm3;
+
+    /**
+     * Return how much of the vehicle a load fills, by whichever of weight and volume it fills most.
+     *
+     * @param weightInGrams the weight of the load in grams.
+     * @param volumeInCm3 the volume of the load in cubic centimetres.
+     * @return the share of the vehicle the load fills, above 1 if it does not fit.
+     */
+    public double fill(double weightInGrams, double volumeInCm3) {
+        return Math.max(weightInGrams / this.maxWeightInGrams, volumeInCm3 / this.maxVolumeInCm3);
+    }
+}
@@ -0,0 +1,109 @@
+package wms.rest.wms.performance;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import wms.rest.wms.model.Customer;
+import wms.rest.wms.service.security.JwtService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the JWT handling done by JWTRequestFilter on every authenticated request:
+ * <ul>
+ *     <li>decodeOnly - the old JWT.decode without any verification, for reference.</li>
+ *     <li>coldVerification - full HMAC256 signature, issuer and expiry verification of the token.</li>
+ *     <li>cachedVerification - JwtService.verify, which verifies the token once and then serves it from its cache.</li>
+ * </ul>
+ * The benchmark is skipped in the normal build. Run it with:
+ * <pre>mvn test -Dtest=JwtVerificationBenchmarkTest -Dbenchmark=true</pre>
+ *
+ * @author Mikkel Stavelie.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerificationBenchmarkTest {
+
+    /** JwtService holding the verified token cache */
+    private JwtService jwtService;
+
+    /** Verifier equal to the one in JwtService, without the cache */
+    private JWTVerifier verifier;
+
+    /** Token issued by the JwtService */
+    private String token;
+
+    /**
+     * Creates the JwtService and a token, and verifies the token once so the cached benchmark measures hits.
+     */
+    @Setup
+    public void setup() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "algorithmKey", "BenchmarkKey");
+        ReflectionTestUtils.setField(jwtService, "issuer", "WMS");
+        ReflectionTestUtils.setField(jwtService, "expiryInSeconds", 3600);
+        ReflectionTestUtils.setField(jwtService, "verifiedCacheMaximumSize", 10000L);
+        jwtService.postConstruct();
+        verifier = JWT.require(Algorithm.HMAC256("BenchmarkKey")).withIssuer("WMS").build();
+
+        Customer customer = new Customer();
+        customer.setEmail("benchmark@example.com");
+        token = jwtService.generateJWT(customer);
+        jwtService.verify(token);
+    }
+
+    /**
+     * Return the email claim of the token without verifying it.
+     *
+     * @return the email claim.
+     */
+    @Benchmark
+    public String decodeOnly() {
+        return JWT.decode(token).getClaim("EMAIL").asString();
+    }
+
+    /**
+     * Return the email claim of the token after a full verification.
+     *
+     * @return the email claim.
+     */
+    @Benchmark
+    public String coldVerification() {
+        return verifier.verify(token).getClaim("EMAIL").asString();
+    }
+
+    /**
+     * Return the email claim of the token through the verified token cache.
+     *
+     * @return the email claim.
+     */
+    @Benchmark
+    public String cachedVerification() {
+        return jwtService.getEmail(token);
+    }
+
+    /**
+     * Runs the JMH benchmarks in this class when -Dbenchmark=true is set.
+     *
+     * @throws Exception if the benchmark could not be run.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void runBenchmarks() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(JwtVerificationBenchmarkTest.class.getName() + "\\.")
+                .build();
+        new Runner(options).run();
+    }
+}
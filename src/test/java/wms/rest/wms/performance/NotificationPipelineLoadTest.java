@@ -0,0 +1,122 @@
+package wms.rest.wms.performance;
+
+import com.google.firebase.messaging.Message;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wms.rest.wms.exception.NotificationQueueFullException;
+import wms.rest.wms.service.fcm.NotificationDispatcher;
+import wms.rest.wms.unit.service.FakeFCMSender;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Offline load test for the notification pipeline against the FakeFCMSender.
+ * Many request threads submit notifications at once while every send to the fake FCM takes SEND_LATENCY_MILLIS.
+ * The test proves that no accepted notification is lost, and reports how long the request threads were held
+ * next to sending every notification on the request thread as FCMService did before.
+ * <p>
+ * The load can be raised with -Dloadtest.threads and -Dloadtest.notifications.
+ *
+ * @author Mikkel Stavelie.
+ */
+public class NotificationPipelineLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationPipelineLoadTest.class);
+
+    /** Number of concurrent request threads submitting notifications */
+    private static final int THREADS = Integer.getInteger("loadtest.threads", 16);
+
+    /** Number of notifications submitted by each thread */
+    private static final int NOTIFICATIONS_PER_THREAD = Integer.getInteger("loadtest.notifications", 250);
+
+    /** Simulated round trip of one send to FCM, whether it holds one Message or a full batch */
+    private static final long SEND_LATENCY_MILLIS = 10;
+
+    /**
+     * Runs the pipeline under load and compares it with blocking sends of a sample of the notifications.
+     *
+     * @throws Exception if the load test fails to run.
+     */
+    @Test
+    public void testPipelineUnderLoad() throws Exception {
+        FakeFCMSender sender = new FakeFCMSender(SEND_LATENCY_MILLIS, 0, false, false);
+        NotificationDispatcher dispatcher = new NotificationDispatcher(sender, 2_000, 2, 500, 5, 50, 1_000, 100, false);
+        dispatcher.start();
+        try {
+            AtomicInteger accepted = new AtomicInteger();
+            AtomicInteger refused = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < NOTIFICATIONS_PER_THREAD; i++) {
+                        try {
+                            dispatcher.submit(message(thread * NOTIFICATIONS_PER_THREAD + i));
+                            accepted.incrementAndGet();
+                        } catch (NotificationQueueFullException e) {
+                            refused.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            long startTime = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            long submitNanos = System.nanoTime() - startTime;
+            executor.shutdown();
+
+            long deadline = System.currentTimeMillis() + 60_000;
+            while (dispatcher.getSentCount() < accepted.get() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            long drainNanos = System.nanoTime() - startTime;
+
+            int total = THREADS * NOTIFICATIONS_PER_THREAD;
+            assertEquals(total, accepted.get() + refused.get());
+            assertEquals(accepted.get(), dispatcher.getSentCount());
+            assertEquals(accepted.get(), sender.getSent());
+            assertTrue(sender.getBatchSizes().size() < accepted.get());
+
+            // Blocking baseline: one FCM round trip per notification on the request thread
+            int sample = Math.min(100, total);
+            FakeFCMSender blockingSender = new FakeFCMSender(SEND_LATENCY_MILLIS, 0, false, false);
+            long blockingStart = System.nanoTime();
+            for (int i = 0; i < sample; i++) {
+                blockingSender.send(List.of(message(i)));
+            }
+            double blockingPerSecond = sample / ((System.nanoTime() - blockingStart) / 1e9) * THREADS;
+
+            log.info("Notification pipeline: {} submitted by {} threads, {} accepted, {} refused, {} batch sends",
+                    total, THREADS, accepted.get(), refused.get(), sender.getBatchSizes().size());
+            log.info("Request threads held {} ms in total ({} submits/s), all accepted sent after {} ms ({} sent/s)",
+                    submitNanos / 1_000_000, String.format("%.0f", total / (submitNanos / 1e9)),
+                    drainNanos / 1_000_000, String.format("%.0f", accepted.get() / (drainNanos / 1e9)));
+            log.info("Blocking sends on {} request threads: {} sent/s", THREADS, String.format("%.0f", blockingPerSecond));
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    /**
+     * Create a Message to a device token.
+     *
+     * @param i the number of the Message.
+     * @return the Message.
+     */
+    private Message message(int i) {
+        return Message.builder().setToken("device-token-" + i).putData("index", String.valueOf(i)).build();
+    }
+}
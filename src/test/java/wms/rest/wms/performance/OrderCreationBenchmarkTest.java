@@ -0,0 +1,240 @@
+package wms.rest.wms.performance;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import wms.rest.wms.api.model.OrderIntakeResult;
+import wms.rest.wms.model.*;
+import wms.rest.wms.repository.CustomerRepository;
+import wms.rest.wms.repository.OrderRepository;
+import wms.rest.wms.repository.ProductRepository;
+import wms.rest.wms.repository.StoreRepository;
+import wms.rest.wms.service.OrderService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark of Order creation against the H2 embedded database.
+ * Orders with LINES_PER_ORDER OrderQuantities are created in transactions of ORDERS_PER_TRANSACTION Orders,
+ * and the Orders per second are reported next to the JDBC statements Hibernate prepared per Order.
+ * With sequence generated IDs and hibernate.jdbc.batch_size the inserts are sent in JDBC batches, while IDENTITY
+ * columns forced one insert round trip per row.
+ * <p>
+ * The load can be raised with -Dbenchmark.orders.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class OrderCreationBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderCreationBenchmarkTest.class);
+
+    /** Number of Orders created by each run */
+    private static final int ORDERS = Integer.getInteger("benchmark.orders", 200);
+
+    /** Number of OrderQuantities lines in each Order, one per Product */
+    private static final int LINES_PER_ORDER = 20;
+
+    /** Number of Orders created in each transaction */
+    private static final int ORDERS_PER_TRANSACTION = 50;
+
+    /** Autowired OrderService for creating Orders through the batch intake */
+    @Autowired
+    private OrderService orderService;
+
+    /** Autowired OrderRepository for interaction with the H2 embedded database */
+    @Autowired
+    private OrderRepository orderRepository;
+
+    /** Autowired ProductRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Autowired StoreRepository for interaction with the H2 embedded database */
+    @Autowired
+    private StoreRepository storeRepository;
+
+    /** Autowired CustomerRepository for interaction with the H2 embedded database */
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    /** Autowired TransactionTemplate for saving each chunk of Orders in its own transaction */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /** Autowired EntityManagerFactory for reading the Hibernate statistics */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /** Declare Products at class level for easier accessibility */
+    private List<Product> products;
+
+    /** Declare Store at class level for easier accessibility */
+    private Store store;
+
+    /** Declare Customer at class level for easier accessibility */
+    private Customer customer;
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates a Store, a Customer and LINES_PER_ORDER Products with enough stock for every run.
+     */
+    @BeforeEach
+    public void setup() {
+        store = new Store();
+        store.setName("Benchmark store");
+        store.setAddress("Test address");
+        store.setCountry("Test country");
+        store.setCity("Test City");
+        store.setPostalCode(5004);
+        storeRepository.save(store);
+
+        customer = new Customer();
+        customer.setEmail("benchmark@example.com");
+        customer.setFirstName("John");
+        customer.setLastName("Doe");
+        customer.setPassword("secretpassword11");
+        customer.setStore(store);
+        customerRepository.save(customer);
+
+        products = new ArrayList<>();
+        for (int i = 0; i < LINES_PER_ORDER; i++) {
+            Product product = new Product();
+            product.setName("Benchmark product " + i);
+            product.setDescription("Description");
+            product.setSupplier("Supplier");
+            product.setBestBeforeDate(new Date());
+            product.setProductType(ProductType.DRY_GOODS);
+            product.setPrice(20.00);
+            product.setGtin(60000 + i);
+            product.setBatch(11111);
+            Inventory inventory = new Inventory();
+            inventory.setTotalStock(ORDERS);
+            inventory.setAvailableStock(ORDERS);
+            inventory.setProduct(product);
+            product.setInventory(inventory);
+            products.add(product);
+        }
+        products = productRepository.saveAll(products);
+    }
+
+    /**
+     * Removes the entities created by the benchmark, since it commits its transactions.
+     */
+    @AfterEach
+    public void cleanup() {
+        orderRepository.deleteAll(orderRepository.findByCustomer(customer));
+        productRepository.deleteAll(products);
+        customerRepository.delete(customer);
+        storeRepository.delete(store);
+    }
+
+    /**
+     * Benchmarks persisting Orders with their OrderQuantities, and asserts that the inserts are batched,
+     * so Hibernate prepares far fewer statements than it inserts rows.
+     */
+    @Test
+    public void testOrderInsertsAreBatched() {
+        Statistics statistics = statistics();
+        long begin = System.nanoTime();
+        for (int created = 0; created < ORDERS; created += ORDERS_PER_TRANSACTION) {
+            List<Order> chunk = newOrders(Math.min(ORDERS_PER_TRANSACTION, ORDERS - created));
+            transactionTemplate.executeWithoutResult(status -> orderRepository.saveAll(chunk));
+        }
+        long elapsedNanos = System.nanoTime() - begin;
+
+        long rows = statistics.getEntityInsertCount();
+        long statements = statistics.getPrepareStatementCount();
+        log.info("Order inserts: {} orders, {} rows, {} prepared statements, {} statements/order, {} orders/s",
+                ORDERS, rows, statements, String.format("%.2f", statements / (double) ORDERS), perSecond(ORDERS, elapsedNanos));
+        assertTrue(statements * 10 < rows, "Expected batched inserts, but " + statements + " statements were prepared for " + rows + " rows");
+    }
+
+    /**
+     * Benchmarks the batch intake in OrderService, including stock reservation, and reports the Orders per second.
+     * Nothing is asserted beyond every Order being created, since reservations cost one UPDATE per line either way.
+     */
+    @Test
+    public void testBatchIntakeThroughput() {
+        Statistics statistics = statistics();
+        long begin = System.nanoTime();
+        int created = 0;
+        while (created < ORDERS) {
+            List<Order> chunk = newOrders(Math.min(ORDERS_PER_TRANSACTION, ORDERS - created));
+            for (OrderIntakeResult result : orderService.createOrders(chunk, customer)) {
+                assertTrue(result.isSuccess(), result.getMessage());
+            }
+            created += chunk.size();
+        }
+        long elapsedNanos = System.nanoTime() - begin;
+
+        log.info("Batch intake: {} orders, {} prepared statements, {} statements/order, {} orders/s",
+                ORDERS, statistics.getPrepareStatementCount(),
+                String.format("%.2f", statistics.getPrepareStatementCount() / (double) ORDERS), perSecond(ORDERS, elapsedNanos));
+    }
+
+    /**
+     * Return the cleared Hibernate statistics of the application.
+     *
+     * @return the Hibernate statistics, counting from zero.
+     */
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    /**
+     * Create new Orders for the test Customer with one OrderQuantities line of quantity 1 per Product.
+     *
+     * @param count the number of Orders to create.
+     * @return the new, unsaved Orders.
+     */
+    private List<Order> newOrders(int count) {
+        List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Order order = new Order();
+            order.setOrderDate(LocalDate.now());
+            order.setOrderStatus(OrderStatus.REGISTERED);
+            order.setWishedDeliveryDate(LocalDate.of(2024, 4, 15));
+            order.setCustomer(customer);
+            order.setStore(store);
+            for (Product product : products) {
+                OrderQuantities line = new OrderQuantities();
+                line.setProduct(product);
+                line.setProductQuantity(1);
+                line.setOrder(order);
+                order.getQuantities().add(line);
+            }
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    /**
+     * Return a count per second, formatted without decimals.
+     *
+     * @param count the count reached.
+     * @param elapsedNanos the time it took in nanoseconds.
+     * @return the count per second.
+     */
+    private String perSecond(int count, long elapsedNanos) {
+        return String.format("%.0f", count / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1)));
+    }
+}
@@ -0,0 +1,218 @@
+package wms.rest.wms.performance;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import wms.rest.wms.model.*;
+import wms.rest.wms.repository.CustomerRepository;
+import wms.rest.wms.repository.OrderRepository;
+import wms.rest.wms.repository.OrderTrackingRepository;
+import wms.rest.wms.repository.StoreRepository;
+import wms.rest.wms.service.OrderTrackingBroadcaster;
+import wms.rest.wms.service.OrderTrackingService;
+import wms.rest.wms.service.security.JwtService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Load test for the order tracking streams against the H2 embedded database.
+ * Every Customer opens several streams and leaves them idle, then one Order of every Customer changes.
+ * The test proves that idle streams hold no threads and that every stream receives the change, and reports
+ * the heap each stream holds and how long the fan-out to every stream takes.
+ * <p>
+ * The load can be raised with -Dloadtest.customers and -Dloadtest.streams-per-customer.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class OrderTrackingStreamLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderTrackingStreamLoadTest.class);
+
+    /** Number of Customers with open streams */
+    private static final int CUSTOMERS = Integer.getInteger("loadtest.customers", 100);
+
+    /** Number of streams each Customer opens */
+    private static final int STREAMS_PER_CUSTOMER = Integer.getInteger("loadtest.streams-per-customer", 20);
+
+    /** Most threads the open streams may add, for the sender thread and threads started by the container */
+    private static final int THREAD_ALLOWANCE = 10;
+
+    /** Provides support for Spring MVC testing */
+    @Autowired
+    private MockMvc mockMvc;
+
+    /** Autowired JwtService for issuing the tokens of the Customers without logging each one in */
+    @Autowired
+    private JwtService jwtService;
+
+    /** Autowired OrderTrackingService for changing the Orders */
+    @Autowired
+    private OrderTrackingService orderTrackingService;
+
+    /** Autowired OrderTrackingBroadcaster under test */
+    @Autowired
+    private OrderTrackingBroadcaster orderTrackingBroadcaster;
+
+    /** Autowired StoreRepository for interaction with the H2 embedded database */
+    @Autowired
+    private StoreRepository storeRepository;
+
+    /** Autowired CustomerRepository for interaction with the H2 embedded database */
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    /** Autowired OrderRepository for interaction with the H2 embedded database */
+    @Autowired
+    private OrderRepository orderRepository;
+
+    /** Autowired OrderTrackingRepository for interaction with the H2 embedded database */
+    @Autowired
+    private OrderTrackingRepository orderTrackingRepository;
+
+    /** The Customers with open streams */
+    private final List<Customer> customers = new ArrayList<>();
+
+    /** The Order of every Customer */
+    private final List<Order> orders = new ArrayList<>();
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates CUSTOMERS Customers in one Store, each with one REGISTERED Order and its tracking row.
+     */
+    @BeforeEach
+    public void setup() {
+        Store store = new Store();
+        store.setName("Stream load test store");
+        store.setAddress("Test address");
+        store.setCountry("Test country");
+        store.setCity("Test City");
+        store.setPostalCode(5004);
+        storeRepository.save(store);
+        for (int c = 0; c < CUSTOMERS; c++) {
+            Customer customer = new Customer();
+            customer.setEmail("stream" + c + "@example.com");
+            customer.setFirstName("John");
+            customer.setLastName("Doe");
+            customer.setPassword("secretpassword11");
+            customer.setStore(store);
+            customers.add(customer);
+
+            Order order = new Order();
+            order.setOrderDate(LocalDate.now());
+            order.setOrderStatus(OrderStatus.REGISTERED);
+            order.setCustomer(customer);
+            order.setStore(store);
+            orders.add(order);
+        }
+        customerRepository.saveAll(customers);
+        orderRepository.saveAll(orders);
+        orderTrackingService.refresh(orders.stream().map(Order::getOrderId).toList(), List.of());
+    }
+
+    /**
+     * Clean up the test environment after each test method.
+     * Removes every tracking row, Order, Customer and Store created by the test.
+     */
+    @AfterEach
+    public void cleanup() {
+        orderTrackingRepository.deleteAll();
+        orderRepository.deleteAll();
+        customerRepository.deleteAll();
+        storeRepository.deleteAll();
+        customers.clear();
+        orders.clear();
+    }
+
+    /**
+     * Opens STREAMS_PER_CUSTOMER streams for every Customer, then changes the Order of every Customer and waits
+     * until every stream received the change.
+     *
+     * @throws Exception if a request fails.
+     */
+    @Test
+    public void testIdleStreamsUnderLoad() throws Exception {
+        int threadsBefore = Thread.activeCount();
+        long heapBefore = usedHeap();
+        long openStart = System.nanoTime();
+        List<MvcResult> streams = new ArrayList<>(CUSTOMERS * STREAMS_PER_CUSTOMER);
+        for (Customer customer : customers) {
+            String jwt = jwtService.generateJWT(customer);
+            for (int s = 0; s < STREAMS_PER_CUSTOMER; s++) {
+                streams.add(mockMvc.perform(get("/api/orders/tracking/stream")
+                                .header("Authorization", "Bearer " + jwt)
+                                .accept(MediaType.TEXT_EVENT_STREAM))
+                        .andExpect(request().asyncStarted())
+                        .andReturn());
+            }
+        }
+        long openNanos = System.nanoTime() - openStart;
+        long heapPerStream = (usedHeap() - heapBefore) / streams.size();
+        int addedThreads = Thread.activeCount() - threadsBefore;
+        assertEquals(streams.size(), orderTrackingBroadcaster.getStreamCount());
+        assertTrue(addedThreads <= THREAD_ALLOWANCE, streams.size() + " idle streams added " + addedThreads + " threads");
+
+        long fanOutStart = System.nanoTime();
+        orders.forEach(order -> order.setProgressInPercent(10));
+        orderRepository.saveAll(orders);
+        orderTrackingService.refresh(orders.stream().map(Order::getOrderId).toList(), List.of());
+        long deadline = System.currentTimeMillis() + 60_000;
+        List<MvcResult> waiting = new ArrayList<>(streams);
+        while (!waiting.isEmpty() && System.currentTimeMillis() < deadline) {
+            waiting.removeIf(stream -> contentOf(stream).contains("\"progressInPercent\":10"));
+            Thread.sleep(5);
+        }
+        long fanOutNanos = System.nanoTime() - fanOutStart;
+        assertTrue(waiting.isEmpty(), waiting.size() + " streams did not receive the change");
+
+        log.info("Order tracking streams: {} opened for {} customers in {} ms, {} threads added, about {} bytes of heap each",
+                streams.size(), CUSTOMERS, openNanos / 1_000_000, addedThreads, heapPerStream);
+        log.info("Changed {} orders and pushed them to every stream in {} ms", orders.size(), fanOutNanos / 1_000_000);
+
+        streams.forEach(stream -> stream.getRequest().getAsyncContext().complete());
+        assertEquals(0, orderTrackingBroadcaster.getStreamCount());
+    }
+
+    /**
+     * Return what has been written to a stream so far.
+     *
+     * @param stream the result of opening the stream.
+     * @return the content of the stream.
+     */
+    private static String contentOf(MvcResult stream) {
+        try {
+            return stream.getResponse().getContentAsString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Return the heap in use after a garbage collection.
+     *
+     * @return the used heap in bytes.
+     */
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,156 @@
+package wms.rest.wms.performance;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import wms.rest.wms.model.Inventory;
+import wms.rest.wms.model.Product;
+import wms.rest.wms.model.ProductType;
+import wms.rest.wms.repository.ProductRepository;
+import wms.rest.wms.service.ProductService;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Load test for reading the whole Product catalog against the H2 embedded database.
+ * Compares the List returned by findAll with the keyset Stream behind GET /api/products/stream, and with
+ * GET /api/products read through the ProductCatalogCache. Reports the statements and the time each needs.
+ * <p>
+ * The catalog size can be raised with -Dloadtest.products.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class ProductCatalogStreamLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCatalogStreamLoadTest.class);
+
+    /** Number of Products in the catalog */
+    private static final int PRODUCTS = Integer.getInteger("loadtest.products", 2000);
+
+    /** Number of Products fetched per statement by the Stream */
+    private static final int BATCH_SIZE = 500;
+
+    /** Autowired ProductService under test */
+    @Autowired
+    private ProductService productService;
+
+    /** Autowired ProductRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Autowired JdbcTemplate for removing the catalog after the test */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Autowired EntityManagerFactory for reading the Hibernate statistics */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates PRODUCTS Products, each with an Inventory.
+     */
+    @BeforeEach
+    public void setup() {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product();
+            product.setName("Load test product " + i);
+            product.setDescription("Description");
+            product.setSupplier("Supplier");
+            product.setBestBeforeDate(new Date());
+            product.setProductType(ProductType.DRY_GOODS);
+            product.setPrice(20.00);
+            product.setGtin(500_000 + i);
+            product.setBatch(11111);
+            Inventory inventory = new Inventory();
+            inventory.setTotalStock(100);
+            inventory.setAvailableStock(100);
+            inventory.setProduct(product);
+            product.setInventory(inventory);
+            products.add(product);
+        }
+        productRepository.saveAll(products);
+    }
+
+    /**
+     * Clean up the test environment after each test method.
+     */
+    @AfterEach
+    public void cleanup() {
+        jdbcTemplate.update("DELETE FROM inventory");
+        jdbcTemplate.update("DELETE FROM product");
+    }
+
+    /**
+     * Reads the catalog with findAll and with the keyset Stream and compares them.
+     */
+    @Test
+    public void testStreamAgainstFindAll() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        long start = System.nanoTime();
+        List<Product> all = productRepository.findAll();
+        long listNanos = System.nanoTime() - start;
+        long listStatements = statistics.getPrepareStatementCount();
+        assertEquals(PRODUCTS, all.size());
+
+        // GET /api/products reads through the ProductCatalogCache, first cold and then warm
+        statistics.clear();
+        start = System.nanoTime();
+        assertEquals(PRODUCTS, productService.getProducts().size());
+        long coldNanos = System.nanoTime() - start;
+        long coldStatements = statistics.getPrepareStatementCount();
+        statistics.clear();
+        start = System.nanoTime();
+        assertEquals(PRODUCTS, productService.getProducts().size());
+        long warmNanos = System.nanoTime() - start;
+        long warmStatements = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        start = System.nanoTime();
+        long streamed;
+        long lastProductId = 0;
+        boolean ordered = true;
+        try (Stream<Product> products = productService.streamProducts(BATCH_SIZE)) {
+            streamed = 0;
+            for (Product product : (Iterable<Product>) products::iterator) {
+                ordered &= product.getProductId() > lastProductId;
+                lastProductId = product.getProductId();
+                streamed++;
+            }
+        }
+        long streamNanos = System.nanoTime() - start;
+        long streamStatements = statistics.getPrepareStatementCount();
+
+        assertEquals(PRODUCTS, streamed);
+        assertTrue(ordered);
+        assertEquals(PRODUCTS / BATCH_SIZE + 1, streamStatements);
+        assertTrue(listStatements > PRODUCTS, "findAll loads Inventory and Packaging one Product at a time");
+        assertTrue(coldStatements <= 1 + (PRODUCTS + 999) / 1000);
+        assertEquals(1, warmStatements);
+
+        log.info("findAll: {} products in {} ms with {} statements", PRODUCTS, listNanos / 1_000_000, listStatements);
+        log.info("cached:  {} products in {} ms with {} statements cold, {} ms with {} statements warm", PRODUCTS,
+                coldNanos / 1_000_000, coldStatements, warmNanos / 1_000_000, warmStatements);
+        log.info("stream:  {} products in {} ms with {} statements", streamed, streamNanos / 1_000_000, streamStatements);
+    }
+}
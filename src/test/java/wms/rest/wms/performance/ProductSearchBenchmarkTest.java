@@ -0,0 +1,130 @@
+package wms.rest.wms.performance;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import wms.rest.wms.model.ProductType;
+import wms.rest.wms.repository.ProductRepository;
+import wms.rest.wms.service.search.ProductSearchIndex;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark of Product search against the H2 embedded database.
+ * Compares the LIKE '%name%' scan behind findByNameContainingIgnoreCase with the ProductSearchIndex for
+ * prefix, substring and misspelled queries, and reports the time to build the index.
+ * Run it with -Dbenchmark=true, the catalog size can be changed with -Dbenchmark.products.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ProductSearchBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchBenchmarkTest.class);
+
+    /** Number of Products in the catalog */
+    private static final int PRODUCTS = Integer.getInteger("benchmark.products", 100_000);
+
+    /** Number of times each query is run after warming up */
+    private static final int RUNS = 50;
+
+    /** Words the Product names, suppliers and descriptions are composed of */
+    private static final String[] WORDS = {"makrell", "tomat", "melk", "sjokolade", "brød", "ost", "skinke", "laks",
+            "kylling", "potet", "gulrot", "eple", "banan", "juice", "yoghurt", "smør", "rømme", "pizza", "taco", "ris",
+            "pasta", "kaffe", "te", "kjeks", "vaffel", "sukker", "mel", "havre", "egg", "fløte"};
+
+    /** Suppliers of the Products */
+    private static final String[] SUPPLIERS = {"Tine", "Stabburet", "Kings", "Nidar", "Gilde", "Prior", "Mills",
+            "Orkla", "Freia", "Bama"};
+
+    /** Autowired ProductSearchIndex under test */
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    /** Autowired ProductRepository for the LIKE query */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Autowired JdbcTemplate for inserting and removing the catalog */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Removes the catalog after the test.
+     */
+    @AfterEach
+    public void cleanup() {
+        this.jdbcTemplate.update("DELETE FROM product");
+    }
+
+    /**
+     * Runs the benchmark.
+     */
+    @Test
+    public void benchmarkProductSearch() {
+        Random random = new Random(42);
+        List<Object[]> rows = new ArrayList<>();
+        Date bestBefore = Date.valueOf(LocalDate.now().plusMonths(6));
+        for (int i = 1; i <= PRODUCTS; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + WORDS[random.nextInt(WORDS.length)]
+                    + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            String description = WORDS[random.nextInt(WORDS.length)] + " med " + WORDS[random.nextInt(WORDS.length)];
+            rows.add(new Object[]{i, name, description, SUPPLIERS[random.nextInt(SUPPLIERS.length)], bestBefore,
+                    ProductType.DRY_GOODS.name(), 20.00, 7_000_000_000L + i, 1});
+        }
+        this.jdbcTemplate.batchUpdate("INSERT INTO product (product_id, name, description, supplier, best_before_date,"
+                + " product_type, price, gtin, batch) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+
+        long buildStart = System.nanoTime();
+        this.productSearchIndex.rebuild();
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+        assertTrue(this.productSearchIndex.size() >= PRODUCTS);
+        log.info("Indexed {} products in {} ms", PRODUCTS, buildMillis);
+
+        String[][] queries = {{"prefix", "sjok"}, {"substring", "makrell"}, {"two words", "tomat tine"},
+                {"typo", "sjokolde"}};
+        for (String[] query : queries) {
+            String term = query[1];
+            double likeMicros = time(() -> this.productRepository.findByNameContainingIgnoreCase(term).size());
+            double indexMicros = time(() -> this.productSearchIndex.search(term).size());
+            int likeHits = this.productRepository.findByNameContainingIgnoreCase(term).size();
+            List<Integer> indexHits = this.productSearchIndex.search(term);
+            assertFalse(indexHits.isEmpty(), "No results for " + term);
+            log.info("{} query '{}': LIKE {} us ({} rows), index {} us (top {} of ranked results)", query[0], term,
+                    String.format("%.0f", likeMicros), likeHits, String.format("%.0f", indexMicros), indexHits.size());
+        }
+    }
+
+    /**
+     * Return the mean time of one run of a query, after warming it up.
+     *
+     * @param query the query to run.
+     * @return the mean time in microseconds.
+     */
+    private double time(Supplier<Integer> query) {
+        for (int i = 0; i < 5; i++) {
+            query.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            query.get();
+        }
+        return (System.nanoTime() - start) / 1e3 / RUNS;
+    }
+}
@@ -0,0 +1,195 @@
+package wms.rest.wms.performance;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import wms.rest.wms.service.trip.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark of route sequencing, trading the quality of the routes against the time spent sequencing them.
+ * Sequences random routes of several sizes with LocalSearchRouteSequencer at several time limits, where a limit of
+ * 0 is the nearest-neighbour tour, and reports how much shorter than the nearest-neighbour tour and the order the
+ * stops were planned in the routes get and how long they take. Then sequences a day of Trips over the distance
+ * matrix file with RoutePlanner on one worker and on one per processor.
+ * Run it with -Dbenchmark=true, the number of routes of each size can be changed with -Dbenchmark.routes.
+ *
+ * @author Mikkel Stavelie.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class RouteSequencerBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteSequencerBenchmarkTest.class);
+
+    /** Number of routes of each size */
+    private static final int ROUTES = Integer.getInteger("benchmark.routes", 50);
+
+    /** Number of stops of the routes */
+    private static final int[] STOPS = {10, 25, 50, 100};
+
+    /** Time limits the routes are sequenced with, in milliseconds */
+    private static final long[] TIME_LIMITS_MILLIS = {0, 1, 10, 100};
+
+    /** Number of Trips in a day */
+    private static final int TRIPS = Integer.getInteger("benchmark.trips", 1_000);
+
+    /** Number of stops of each Trip in a day */
+    private static final int STOPS_PER_TRIP = 20;
+
+    /**
+     * Runs the benchmark of quality against time limit.
+     */
+    @Test
+    public void benchmarkQualityAgainstTimeLimit() {
+        Random random = new Random(42);
+        for (int stops : STOPS) {
+            List<double[][]> routes = new ArrayList<>(ROUTES);
+            for (int i = 0; i < ROUTES; i++) {
+                routes.add(randomRoute(random, stops));
+            }
+            double plannedLength = 0;
+            for (double[][] route : routes) {
+                int[] planned = new int[stops];
+                for (int stop = 1; stop <= stops; stop++) {
+                    planned[stop - 1] = stop;
+                }
+                plannedLength += length(route, planned);
+            }
+            double nearestNeighbourLength = 0;
+            for (long timeLimitMillis : TIME_LIMITS_MILLIS) {
+                RouteSequencer sequencer = new LocalSearchRouteSequencer(timeLimitMillis);
+                // Warm up
+                sequencer.sequence(routes.get(0));
+                double totalLength = 0;
+                long start = System.nanoTime();
+                for (double[][] route : routes) {
+                    int[] order = sequencer.sequence(route);
+                    assertEquals(stops, order.length);
+                    totalLength += length(route, order);
+                }
+                double meanMillis = (System.nanoTime() - start) / 1e6 / ROUTES;
+                if (timeLimitMillis == 0) {
+                    nearestNeighbourLength = totalLength;
+                }
+                assertTrue(totalLength <= nearestNeighbourLength + 1e-6);
+                log.info("{} stops, limit {} ms: {} ms per route, {} % shorter than nearest neighbour, {} % shorter than planned order",
+                        stops, timeLimitMillis, String.format("%.2f", meanMillis),
+                        String.format("%.1f", 100 * (1 - totalLength / nearestNeighbourLength)),
+                        String.format("%.1f", 100 * (1 - totalLength / plannedLength)));
+            }
+        }
+    }
+
+    /**
+     * Runs the benchmark of sequencing a day of Trips over the distance matrix file in parallel.
+     *
+     * @throws Exception if the distance matrix cannot be read, or the workers are interrupted.
+     */
+    @Test
+    public void benchmarkDayOfTrips() throws Exception {
+        DistanceMatrix distanceMatrix = distanceMatrix();
+        String[] cities = {"Oslo", "Bergen", "Trondheim", "Stavanger", "Kristiansand", "Drammen", "Hamar",
+                "Lillehammer", "Ålesund", "Molde", "Kristiansund", "Steinkjer", "Bodø", "Tromsø"};
+        Random random = new Random(42);
+        List<Route> routes = new ArrayList<>(TRIPS);
+        for (int i = 0; i < TRIPS; i++) {
+            List<RouteStop> stops = new ArrayList<>(STOPS_PER_TRIP);
+            for (int stop = 0; stop < STOPS_PER_TRIP; stop++) {
+                stops.add(new RouteStop(cities[random.nextInt(cities.length)], 1000 + random.nextInt(9000)));
+            }
+            routes.add(new Route(new RouteStop("Trondheim", 0), stops));
+        }
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int workers : new int[]{1, processors}) {
+            RoutePlanner routePlanner = new RoutePlanner(distanceMatrix, new LocalSearchRouteSequencer(200), workers);
+            try {
+                routePlanner.sequenceAll(routes.subList(0, Math.min(50, routes.size())));
+                long start = System.nanoTime();
+                List<List<Integer>> orders = routePlanner.sequenceAll(routes);
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                double plannedKm = 0;
+                double sequencedKm = 0;
+                for (int i = 0; i < routes.size(); i++) {
+                    plannedKm += routePlanner.length(routes.get(i), inPlannedOrder(STOPS_PER_TRIP));
+                    sequencedKm += routePlanner.length(routes.get(i), orders.get(i));
+                }
+                log.info("{} trips of {} stops on {} workers in {} ms: {} km sequenced, {} km in planned order",
+                        TRIPS, STOPS_PER_TRIP, workers, millis, Math.round(sequencedKm), Math.round(plannedKm));
+                assertTrue(sequencedKm < plannedKm);
+            } finally {
+                routePlanner.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Return the distance matrix file of the application.
+     *
+     * @return the distance matrix.
+     * @throws IOException if the file cannot be read.
+     */
+    private static DistanceMatrix distanceMatrix() throws IOException {
+        return new DistanceMatrix(new ClassPathResource("trip/distance-matrix.csv"), 5, 500);
+    }
+
+    /**
+     * Return the stops of a route in the order they were planned in.
+     *
+     * @param stops the number of stops.
+     * @return the indexes of the stops in order.
+     */
+    private static List<Integer> inPlannedOrder(int stops) {
+        List<Integer> order = new ArrayList<>(stops);
+        for (int stop = 0; stop < stops; stop++) {
+            order.add(stop);
+        }
+        return order;
+    }
+
+    /**
+     * Return the distances of a route with the depot and stops at random points of a 100 by 100 km area.
+     *
+     * @param random the source of the points.
+     * @param stops the number of stops.
+     * @return the distance from each stop to each other stop, with the depot at index 0.
+     */
+    private static double[][] randomRoute(Random random, int stops) {
+        double[][] points = new double[stops + 1][];
+        for (int i = 0; i <= stops; i++) {
+            points[i] = new double[]{random.nextDouble() * 100, random.nextDouble() * 100};
+        }
+        double[][] distances = new double[stops + 1][stops + 1];
+        for (int i = 0; i <= stops; i++) {
+            for (int j = 0; j <= stops; j++) {
+                distances[i][j] = Math.hypot(points[i][0] - points[j][0], points[i][1] - points[j][1]);
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Return the length of a tour from the depot through the stops in order and back.
+     *
+     * @param distances the distance from each stop to each other stop, with the depot at index 0.
+     * @param order the stops in the order they are visited.
+     * @return the length of the tour.
+     */
+    private static double length(double[][] distances, int[] order) {
+        double length = 0;
+        int previous = 0;
+        for (int stop : order) {
+            length += distances[previous][stop];
+            previous = stop;
+        }
+        return length + distances[previous][0];
+    }
+}
@@ -0,0 +1,221 @@
+package wms.rest.wms.performance;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import wms.rest.wms.exception.NotEnoughStockException;
+import wms.rest.wms.model.Inventory;
+import wms.rest.wms.model.Product;
+import wms.rest.wms.model.ProductType;
+import wms.rest.wms.repository.InventoryRepository;
+import wms.rest.wms.repository.ProductRepository;
+import wms.rest.wms.service.StockReservationService;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Load test for StockReservationService against the H2 embedded database.
+ * Many threads reserve the same Product at once. The test proves that the conditional UPDATE never
+ * reserves more than the available stock, and reports reservations per second next to the
+ * read-modify-write reservation OrderService used before.
+ * <p>
+ * The load can be raised with -Dloadtest.threads and -Dloadtest.attempts.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class StockReservationLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(StockReservationLoadTest.class);
+
+    /** Number of concurrent threads reserving stock */
+    private static final int THREADS = Integer.getInteger("loadtest.threads", 16);
+
+    /** Number of reservations attempted by each thread */
+    private static final int ATTEMPTS_PER_THREAD = Integer.getInteger("loadtest.attempts", 150);
+
+    /** Available stock of the Product at the start of each run, lower than the number of attempts */
+    private static final int INITIAL_STOCK = THREADS * ATTEMPTS_PER_THREAD / 2;
+
+    /** Autowired StockReservationService under test */
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    /** Autowired ProductRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Autowired InventoryRepository for the read-modify-write baseline */
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    /** Autowired TransactionTemplate for running the read-modify-write baseline in its own transactions */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /** Declare Product at class level for easier accessibility */
+    private Product product;
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates a Product with INITIAL_STOCK in available stock.
+     */
+    @BeforeEach
+    public void setup() {
+        product = new Product();
+        product.setName("Load test product");
+        product.setDescription("Description");
+        product.setSupplier("Supplier");
+        product.setBestBeforeDate(new Date());
+        product.setProductType(ProductType.DRY_GOODS);
+        product.setPrice(20.00);
+        product.setGtin(77777);
+        product.setBatch(11111);
+        Inventory inventory = new Inventory();
+        inventory.setTotalStock(INITIAL_STOCK);
+        inventory.setAvailableStock(INITIAL_STOCK);
+        inventory.setProduct(product);
+        product.setInventory(inventory);
+        product = productRepository.save(product);
+    }
+
+    /**
+     * Removes the Product created by the test, since the load test commits its transactions.
+     */
+    @AfterEach
+    public void cleanup() {
+        productRepository.deleteById(product.getProductId());
+    }
+
+    /**
+     * Tests that concurrent reservations through the conditional UPDATE reserve exactly the available stock.
+     *
+     * @throws Exception if the load could not be run.
+     */
+    @Test
+    public void testConcurrentReservationsNeverOversell() throws Exception {
+        int productId = product.getProductId();
+        LoadResult result = runLoad(() -> {
+            try {
+                stockReservationService.reserve(productId, 1);
+                return true;
+            } catch (NotEnoughStockException e) {
+                return false;
+            }
+        });
+
+        Inventory inventory = productRepository.findById(productId).orElseThrow().getInventory();
+        log.info("Conditional UPDATE: {}", result.report());
+        assertEquals(INITIAL_STOCK, result.reserved.get());
+        assertEquals(0, result.failed.get());
+        assertEquals(INITIAL_STOCK, inventory.getReservedStock());
+        assertEquals(0, inventory.getAvailableStock());
+    }
+
+    /**
+     * Runs the same load through the read-modify-write reservation used by OrderService before, for comparison.
+     * Nothing is asserted, since lost updates and oversell are exactly what this baseline is prone to.
+     *
+     * @throws Exception if the load could not be run.
+     */
+    @Test
+    public void testReadModifyWriteBaseline() throws Exception {
+        int productId = product.getProductId();
+        LoadResult result = runLoad(() -> transactionTemplate.execute(status -> {
+            Inventory inventory = productRepository.findById(productId).orElseThrow().getInventory();
+            if (inventory.getAvailableStock() < 1) {
+                return false;
+            }
+            inventory.setReservedStock(inventory.getReservedStock() + 1);
+            inventory.setAvailableStock(inventory.getAvailableStock() - 1);
+            inventoryRepository.save(inventory);
+            return true;
+        }));
+
+        Inventory inventory = productRepository.findById(productId).orElseThrow().getInventory();
+        log.info("Read-modify-write: {}, reserved stock in database: {}, lost updates: {}",
+                result.report(), inventory.getReservedStock(), result.reserved.get() - inventory.getReservedStock());
+    }
+
+    /**
+     * Runs THREADS threads that each attempt ATTEMPTS_PER_THREAD reservations of one unit.
+     *
+     * @param reservation the reservation to attempt, returning true if a unit was reserved.
+     * @return the outcome of the run.
+     * @throws Exception if the threads could not be run.
+     */
+    private LoadResult runLoad(Callable<Boolean> reservation) throws Exception {
+        LoadResult result = new LoadResult();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    try {
+                        if (reservation.call()) {
+                            result.reserved.incrementAndGet();
+                        } else {
+                            result.rejected.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        result.failed.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        result.elapsedNanos = System.nanoTime() - begin;
+        executor.shutdown();
+        return result;
+    }
+
+    /**
+     * Outcome of a load run.
+     */
+    private static class LoadResult {
+
+        /** Attempts that reserved a unit */
+        private final AtomicInteger reserved = new AtomicInteger();
+
+        /** Attempts rejected for lack of stock */
+        private final AtomicInteger rejected = new AtomicInteger();
+
+        /** Attempts that failed with an exception */
+        private final AtomicInteger failed = new AtomicInteger();
+
+        /** Duration of the run in nanoseconds */
+        private long elapsedNanos;
+
+        /**
+         * Return a one-line summary of the run.
+         *
+         * @return the counts of the run and the attempts per second.
+         */
+        private String report() {
+            int attempts = reserved.get() + rejected.get() + failed.get();
+            double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+            return String.format("%d threads, %d attempts, %d reserved, %d rejected, %d failed, %.0f reservations/s",
+                    THREADS, attempts, reserved.get(), rejected.get(), failed.get(), attempts / seconds);
+        }
+    }
+}
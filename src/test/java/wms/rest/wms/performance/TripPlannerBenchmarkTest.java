@@ -0,0 +1,132 @@
+package wms.rest.wms.performance;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wms.rest.wms.model.ProductType;
+import wms.rest.wms.service.trip.ShipmentLoad;
+import wms.rest.wms.service.trip.TripPlan;
+import wms.rest.wms.service.trip.TripPlanner;
+import wms.rest.wms.service.trip.VehicleCapacity;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark of TripPlanner for the Shipments of a normal day, a peak day and a backlog of several days.
+ * The Shipments are generated with the weights and densities of store deliveries, and every plan must be made in
+ * under a second. The number of Trips is reported against the lower bound of the total weight or volume of each
+ * group divided by the capacity of one vehicle. TripPlannerTest verifies the plans themselves.
+ * Run it with -Dbenchmark=true, the number of Shipments on a normal day can be changed with -Dbenchmark.shipments.
+ *
+ * @author Mikkel Stavelie.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class TripPlannerBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(TripPlannerBenchmarkTest.class);
+
+    /** Number of Shipments on a normal day */
+    private static final int SHIPMENTS = Integer.getInteger("benchmark.shipments", 5_000);
+
+    /** Longest time a plan may take */
+    private static final long MAX_PLAN_MILLIS = 1_000;
+
+    /** Locations the Shipments are loaded at */
+    private static final String[] LOAD_LOCATIONS = {"Trondheim", "Oslo", "Bergen"};
+
+    /** Number of times each scenario is planned before it is timed */
+    private static final int WARMUP_RUNS = 5;
+
+    /** Planner with the default vehicle capacities of the configuration */
+    private final TripPlanner planner = new TripPlanner(9_000, 40, 8_000, 35, 7_500, 30);
+
+    /**
+     * Benchmarks a normal day of Shipments.
+     */
+    @Test
+    public void benchmarkNormalDay() {
+        benchmark("normal day", SHIPMENTS, 1);
+    }
+
+    /**
+     * Benchmarks a peak day with four times the Shipments of a normal day.
+     */
+    @Test
+    public void benchmarkPeakDay() {
+        benchmark("peak day", SHIPMENTS * 4, 1);
+    }
+
+    /**
+     * Benchmarks a backlog of a normal day of Shipments for each of five delivery dates, planned at once.
+     */
+    @Test
+    public void benchmarkBacklog() {
+        benchmark("backlog", SHIPMENTS * 5, 5);
+    }
+
+    /**
+     * Plans a generated set of Shipments and reports its time and number of Trips.
+     *
+     * @param scenario the name of the scenario.
+     * @param shipments the number of Shipments.
+     * @param deliveryDates the number of delivery dates the Shipments are spread over.
+     */
+    private void benchmark(String scenario, int shipments, int deliveryDates) {
+        List<ShipmentLoad> loads = generate(shipments, deliveryDates);
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            this.planner.plan(loads);
+        }
+
+        long start = System.nanoTime();
+        List<TripPlan> trips = this.planner.plan(loads);
+        long planMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Map<String, double[]> groupTotals = new HashMap<>();
+        for (TripPlan trip : trips) {
+            double[] totals = groupTotals.computeIfAbsent(trip.getDeliveryDate() + "/" + trip.getLoadLocation() + "/"
+                    + trip.getTemperatureClass(), key -> new double[]{0, 0, trip.getTemperatureClass().ordinal()});
+            totals[0] += trip.getWeightInGrams();
+            totals[1] += trip.getVolumeInCm3();
+        }
+
+        long lowerBound = 0;
+        for (double[] totals : groupTotals.values()) {
+            VehicleCapacity capacity = this.planner.getCapacity(ProductType.values()[(int) totals[2]]);
+            lowerBound += (long) Math.ceil(Math.max(totals[0] / capacity.getMaxWeightInGrams(),
+                    totals[1] / capacity.getMaxVolumeInCm3()));
+        }
+        log.info("{}: planned {} shipments on {} trips in {} ms, lower bound {} trips ({} % above)", scenario,
+                shipments, trips.size(), planMillis, lowerBound,
+                String.format("%.1f", 100.0 * (trips.size() - lowerBound) / lowerBound));
+        assertTrue(planMillis < MAX_PLAN_MILLIS, scenario + " took " + planMillis + " ms to plan");
+    }
+
+    /**
+     * Return generated Shipments of store deliveries. Most Shipments are dry goods and weigh from a few hundred
+     * kilograms up to a couple of tonnes, at densities from light packaged goods to beverages.
+     *
+     * @param shipments the number of Shipments.
+     * @param deliveryDates the number of delivery dates the Shipments are spread over.
+     * @return the loads of the Shipments.
+     */
+    private static List<ShipmentLoad> generate(int shipments, int deliveryDates) {
+        Random random = new Random(42);
+        LocalDate firstDate = LocalDate.of(2024, 4, 15);
+        List<ShipmentLoad> loads = new ArrayList<>(shipments);
+        for (int id = 1; id <= shipments; id++) {
+            double draw = random.nextDouble();
+            ProductType temperatureClass = draw < 0.6 ? ProductType.DRY_GOODS
+                    : draw < 0.85 ? ProductType.REFRIGERATED_GOODS : ProductType.FROZEN_GOODS;
+            double weightInGrams = Math.min(Math.exp(13.3 + 0.7 * random.nextGaussian()), 8_000_000);
+            double kgPerM3 = 150 + random.nextDouble() * 350;
+            loads.add(new ShipmentLoad(id, LOAD_LOCATIONS[random.nextInt(LOAD_LOCATIONS.length)],
+                    firstDate.plusDays(random.nextInt(deliveryDates)))
+                    .add(temperatureClass, weightInGrams, weightInGrams / kgPerM3 * 1_000));
+        }
+        return loads;
+    }
+}
@@ -0,0 +1,189 @@
+package wms.rest.wms.performance;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import wms.rest.wms.ProductManagementSystemApplication;
+import wms.rest.wms.model.Order;
+import wms.rest.wms.model.OrderStatus;
+import wms.rest.wms.repository.OrderRepository;
+import wms.rest.wms.service.OrderTrackingService;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Load test comparing request handling on Tomcat's platform thread pool, the default, with the virtual-threads
+ * profile. Each mode starts the application on a random port against its own H2 embedded database, and more
+ * concurrent clients than Tomcat has platform threads poll the progress of Orders, which reads a row over JDBC.
+ * The test proves that every request succeeds in both modes, and reports the throughput and p99 latency of each.
+ * <p>
+ * Virtual threads need Java 21, so on older runtimes only the platform thread mode is measured. The test starts
+ * the whole application twice, so it only runs when -Dbenchmark=true is set, and reports numbers that are only
+ * comparable between runs on the same machine. The load can be raised with -Dloadtest.clients and -Dloadtest.requests.
+ *
+ * @author Mikkel Stavelie.
+ */
+public class VirtualThreadLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadLoadTest.class);
+
+    /** Number of concurrent clients, more than the 200 platform threads of Tomcat */
+    private static final int CLIENTS = Integer.getInteger("loadtest.clients", 256);
+
+    /** Number of requests sent by each client */
+    private static final int REQUESTS_PER_CLIENT = Integer.getInteger("loadtest.requests", 20);
+
+    /** Number of Orders the clients poll */
+    private static final int ORDERS = 100;
+
+    /**
+     * Runs the load against the platform thread mode, then against the virtual-threads profile,
+     * when -Dbenchmark=true is set.
+     *
+     * @throws Exception if the load test fails to run.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void testPlatformAndVirtualThreads() throws Exception {
+        LoadResult platform = run("test");
+        log.info("Platform threads: {}", platform);
+        if (Runtime.version().feature() < 21) {
+            log.info("Virtual threads skipped, they need Java 21 and this is Java {}", Runtime.version().feature());
+            return;
+        }
+        LoadResult virtual = run("test", "virtual-threads");
+        log.info("Virtual threads: {}", virtual);
+        log.info("Virtual threads reached {} of the platform thread throughput, at {} of its p99 latency",
+                String.format("%.2f", virtual.perSecond() / platform.perSecond()),
+                String.format("%.2f", (double) virtual.p99Micros() / platform.p99Micros()));
+    }
+
+    /**
+     * Starts the application with the specified profiles, warms it up and measures it under load.
+     *
+     * @param profiles the profiles to start the application with.
+     * @return the result of the measured load.
+     * @throws Exception if the load fails to run.
+     */
+    private LoadResult run(String... profiles) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ProductManagementSystemApplication.class)
+                .profiles(profiles)
+                .properties("server.port=0")
+                .run()) {
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            List<Integer> orderIds = createOrders(context);
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            load(client, port, orderIds, Math.max(1, REQUESTS_PER_CLIENT / 4));
+            return load(client, port, orderIds, REQUESTS_PER_CLIENT);
+        }
+    }
+
+    /**
+     * Creates ORDERS Orders with their tracking rows.
+     *
+     * @param context the context of the running application.
+     * @return the orderIds of the Orders.
+     */
+    private List<Integer> createOrders(ConfigurableApplicationContext context) {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = new Order();
+            order.setOrderDate(LocalDate.now());
+            order.setOrderStatus(OrderStatus.REGISTERED);
+            orders.add(order);
+        }
+        List<Integer> orderIds = context.getBean(OrderRepository.class).saveAll(orders).stream()
+                .map(Order::getOrderId)
+                .toList();
+        context.getBean(OrderTrackingService.class).refresh(orderIds, List.of());
+        return orderIds;
+    }
+
+    /**
+     * Sends requestsPerClient progress polls from each of CLIENTS concurrent clients.
+     *
+     * @param client the HttpClient sending the requests.
+     * @param port the port of the application.
+     * @param orderIds the orderIds of the Orders to poll.
+     * @param requestsPerClient the number of requests sent by each client.
+     * @return the result of the load.
+     * @throws Exception if the load fails to run.
+     */
+    private LoadResult load(HttpClient client, int port, List<Integer> orderIds, int requestsPerClient) throws Exception {
+        long[] latencies = new long[CLIENTS * requestsPerClient];
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int c = 0; c < CLIENTS; c++) {
+            int clientIndex = c;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int r = 0; r < requestsPerClient; r++) {
+                    int orderId = orderIds.get((clientIndex + r) % orderIds.size());
+                    HttpRequest request = HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + port + "/api/orders/progressinpercent/" + orderId)).build();
+                    long requestStart = System.nanoTime();
+                    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                    latencies[clientIndex * requestsPerClient + r] = System.nanoTime() - requestStart;
+                    if (response.statusCode() != 200) {
+                        failures.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(120, TimeUnit.SECONDS);
+        }
+        long elapsedNanos = System.nanoTime() - startTime;
+        executor.shutdown();
+
+        assertEquals(0, failures.get());
+        Arrays.sort(latencies);
+        return new LoadResult(latencies.length, elapsedNanos, latencies[latencies.length / 2] / 1_000,
+                latencies[(int) Math.ceil(latencies.length * 0.99) - 1] / 1_000);
+    }
+
+    /**
+     * Result of one load run.
+     *
+     * @param requests the number of requests sent.
+     * @param elapsedNanos how long sending every request took.
+     * @param p50Micros the median latency in microseconds.
+     * @param p99Micros the 99th percentile latency in microseconds.
+     */
+    private record LoadResult(int requests, long elapsedNanos, long p50Micros, long p99Micros) {
+
+        /**
+         * Return the number of requests answered per second.
+         *
+         * @return the number of requests answered per second.
+         */
+        double perSecond() {
+            return this.requests / (this.elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests from %d clients, %.0f requests/s, p50 %d us, p99 %d us",
+                    this.requests, CLIENTS, perSecond(), this.p50Micros, this.p99Micros);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package wms.rest.wms.unit.configuration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import wms.rest.wms.configuration.IdSequenceMigration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Integration tests for IdSequenceMigration against the H2 embedded database.
+ * Verifies that a sequence is moved past rows inserted before the switch from AUTO_INCREMENT columns,
+ * and that a sequence already ahead of its table is left alone.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class IdSequenceMigrationTest {
+
+    /** ID of the Store inserted as if it was created before the migration */
+    private static final int LEGACY_STORE_ID = 100000;
+
+    /** Autowired IdSequenceMigration under test */
+    @Autowired
+    private IdSequenceMigration idSequenceMigration;
+
+    /** Autowired JdbcTemplate for inserting rows and reading the sequence directly */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Removes the Store inserted by the test, since DDL on the sequence commits the transaction.
+     */
+    @AfterEach
+    public void cleanup() {
+        jdbcTemplate.update("DELETE FROM store WHERE store_id = ?", LEGACY_STORE_ID);
+    }
+
+    /**
+     * Tests that the next block of IDs Hibernate takes from the sequence starts above the existing rows,
+     * and that running the migration again does not restart the sequence.
+     */
+    @Test
+    public void testMigrateMovesSequencePastExistingIds() {
+        jdbcTemplate.update("INSERT INTO store (store_id, name, address, country, city, postal_code) VALUES (?, ?, ?, ?, ?, ?)",
+                LEGACY_STORE_ID, "Legacy store", "Test address", "Test country", "Test City", 5004);
+
+        idSequenceMigration.migrate();
+        long next = nextValue();
+        assertTrue(next - IdSequenceMigration.ALLOCATION_SIZE >= LEGACY_STORE_ID);
+
+        idSequenceMigration.migrate();
+        // The migration itself takes one value when it checks the sequence
+        assertEquals(next + 2L * IdSequenceMigration.ALLOCATION_SIZE, nextValue());
+    }
+
+    /**
+     * Return the next value of the Store sequence.
+     *
+     * @return the next value of the Store sequence.
+     */
+    private long nextValue() {
+        return jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR store_seq", Long.class);
+    }
+}
@@ -0,0 +1,432 @@
+package wms.rest.wms.unit.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import wms.rest.wms.api.model.LoginBody;
+import wms.rest.wms.model.*;
+import wms.rest.wms.repository.*;
+import wms.rest.wms.service.OrderTrackingService;
+import wms.rest.wms.service.ShipmentService;
+import wms.rest.wms.service.TripService;
+import wms.rest.wms.service.WorkQueueService;
+import wms.rest.wms.service.fcm.OrderNotificationRelay;
+import wms.rest.wms.service.search.ProductSearchIndex;
+import wms.rest.wms.service.security.EncryptionService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Regression test for the fetch plans of the Shipment, Trip and Order endpoints and scheduled jobs.
+ * The JDBC statements prepared by Hibernate for each request or job are counted, including those run while
+ * the response is serialized, and must stay at or below a ceiling that does not grow with the number of
+ * Shipments and Orders. A test failing here means an association is loaded one row at a time again.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class FetchPlanIntegrationTest {
+
+    private static final Logger log = LoggerFactory.getLogger(FetchPlanIntegrationTest.class);
+
+    /** Number of Shipments on the Trip created for the test */
+    private static final int SHIPMENTS = 3;
+
+    /** Number of Orders on each Shipment */
+    private static final int ORDERS_PER_SHIPMENT = 4;
+
+    /** Most statements a read endpoint may run */
+    private static final long READ_CEILING = 1;
+
+    /*
+     * Each job ceiling includes the three statements refreshing the tracking rows of the Orders it changed:
+     * reading their source columns, reading their tracking rows and writing the changed rows in one batch.
+     */
+    /** Most statements updating the Orders of the Shipments to PICKED may run */
+    private static final long PICKED_CEILING = 13;
+
+    /** Most statements creating the Trip for the picked Shipments may run, including reading the Drivers and Vehicles */
+    private static final long CREATE_TRIP_CEILING = 13;
+
+    /** Most statements delivering the next Shipment of a Trip may run */
+    private static final long DELIVER_CEILING = 8;
+
+    /** Statements a job may run on top of its ceiling, to allocate IDs from the sequences of the rows it inserts */
+    private static final long SEQUENCE_ALLOWANCE = 2;
+
+    /** Provides support for Spring MVC testing */
+    @Autowired
+    private MockMvc mockMvc;
+
+    /** Autowired Objectmapper for object serialization and JSON deserialization */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /** Autowired ShipmentService for running the Shipment scheduled jobs */
+    @Autowired
+    private ShipmentService shipmentService;
+
+    /** Autowired TripService for running the Trip scheduled jobs */
+    @Autowired
+    private TripService tripService;
+
+    /** Autowired OrderTrackingService for creating the tracking rows of the Orders saved by the test */
+    @Autowired
+    private OrderTrackingService orderTrackingService;
+
+    /** Autowired OrderTrackingRepository for interaction with the H2 embedded database */
+    @Autowired
+    private OrderTrackingRepository orderTrackingRepository;
+
+    /** Autowired WorkQueueService for recording the Shipments the scheduled jobs consume */
+    @Autowired
+    private WorkQueueService workQueueService;
+
+    /** Autowired StoreRepository for interaction with the H2 embedded database */
+    @Autowired
+    private StoreRepository storeRepository;
+
+    /** Autowired CustomerRepository for interaction with the H2 embedded database */
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    /** Autowired ProductRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Autowired OrderRepository for interaction with the H2 embedded database */
+    @Autowired
+    private OrderRepository orderRepository;
+
+    /** Autowired ShipmentRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    /** Autowired TripRepository for interaction with the H2 embedded database */
+    @Autowired
+    private TripRepository tripRepository;
+
+    /** Autowired OrderNotificationRepository for checking the outbox is drained */
+    @Autowired
+    private OrderNotificationRepository orderNotificationRepository;
+
+    /** Autowired OrderNotificationRelay for draining the outbox before counting the statements of a job */
+    @Autowired
+    private OrderNotificationRelay orderNotificationRelay;
+
+    /** Autowired JdbcTemplate for freeing the Drivers and Vehicles reserved by the Trips */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Autowired EncryptionService for required password encryption in login */
+    @Autowired
+    private EncryptionService encryptionService;
+
+    /** Autowired ProductSearchIndex, awaited so its build does not run statements during a test */
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    /** Autowired EntityManagerFactory for reading the Hibernate statistics */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /** Declare Store at class level for easier accessibility */
+    private Store store;
+
+    /** Declare Customer at class level for easier accessibility */
+    private Customer customer;
+
+    /** Declare Trip at class level for easier accessibility */
+    private Trip trip;
+
+    /** The Products ordered in every Order */
+    private final List<Product> products = new ArrayList<>();
+
+    /** The Orders on the Trip */
+    private final List<Order> orders = new ArrayList<>();
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates a Trip IN_TRANSIT with Shipments of Orders, each ordering two Products.
+     *
+     * @throws InterruptedException if interrupted while waiting for the search index.
+     */
+    @BeforeEach
+    public void setup() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!productSearchIndex.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        store = new Store();
+        store.setName("Fetch plan store");
+        store.setAddress("Test address");
+        store.setCountry("Test country");
+        store.setCity("Test City");
+        store.setPostalCode(5004);
+        storeRepository.save(store);
+
+        customer = new Customer();
+        customer.setEmail("fetchplan@example.com");
+        customer.setFirstName("John");
+        customer.setLastName("Doe");
+        customer.setPassword(encryptionService.encryptPassword("secretpassword11"));
+        customer.setStore(store);
+        customerRepository.save(customer);
+
+        for (int p = 0; p < 2; p++) {
+            Product product = new Product();
+            product.setName("Fetch plan product " + p);
+            product.setDescription("Description");
+            product.setSupplier("Supplier");
+            product.setBestBeforeDate(new Date());
+            product.setProductType(ProductType.DRY_GOODS);
+            product.setPrice(20.00);
+            product.setGtin(77770 + p);
+            product.setBatch(11111);
+            Inventory inventory = new Inventory();
+            inventory.setTotalStock(100);
+            inventory.setAvailableStock(100);
+            inventory.setProduct(product);
+            product.setInventory(inventory);
+            products.add(productRepository.save(product));
+        }
+
+        trip = new Trip();
+        trip.setTripStatus(TripStatus.IN_TRANSIT);
+        trip.setTripStartLocation("Warehouse");
+        trip.setTripCurrentLocation("Warehouse");
+        trip.setTripStartDate(LocalDate.now());
+        trip.setTripDriver("Hans Pettersen");
+        trip.setTripDriverPhone(49285943);
+        tripRepository.save(trip);
+        for (int s = 0; s < SHIPMENTS; s++) {
+            orders.addAll(saveShipment(s, trip, OrderStatus.PICKED).getOrders());
+        }
+        orderTrackingService.refresh(orders.stream().map(Order::getOrderId).toList(), List.of());
+    }
+
+    /**
+     * Clean up the test environment after each test method.
+     * Removes every tracking row, outbox row, Order, Shipment, Trip, Customer, Store and Product created by the
+     * test, and frees the Drivers and Vehicles the Trips reserved.
+     */
+    @AfterEach
+    public void cleanup() {
+        orderTrackingRepository.deleteAll();
+        orderNotificationRepository.deleteAll();
+        orderRepository.deleteAll();
+        shipmentRepository.deleteAll();
+        tripRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM fleet_reservation");
+        customerRepository.deleteAll();
+        storeRepository.deleteAll();
+        productRepository.deleteAll(products);
+        products.clear();
+        orders.clear();
+    }
+
+    /**
+     * Create and save a Shipment with Orders, which are saved together with the Shipment.
+     *
+     * @param sequenceAtTrip the position of the Shipment on its Trip.
+     * @param trip the Trip of the Shipment, can be null.
+     * @param status the OrderStatus of the Orders.
+     * @return the saved Shipment.
+     */
+    private Shipment saveShipment(int sequenceAtTrip, Trip trip, OrderStatus status) {
+        Shipment shipment = new Shipment();
+        shipment.setShipmentLoadLocation("Warehouse");
+        shipment.setShipmentUnloadLocation(store.getName());
+        shipment.setSequenceAtTrip(sequenceAtTrip);
+        shipment.setShipmentDeliveryDate(LocalDate.now());
+        shipment.setTrip(trip);
+        for (int o = 0; o < ORDERS_PER_SHIPMENT; o++) {
+            shipment.getOrders().add(order(status, shipment));
+        }
+        return shipmentRepository.save(shipment);
+    }
+
+    /**
+     * Create an Order of every Product.
+     *
+     * @param status the OrderStatus of the Order.
+     * @param shipment the Shipment of the Order.
+     * @return the Order.
+     */
+    private Order order(OrderStatus status, Shipment shipment) {
+        Order order = new Order();
+        order.setOrderDate(LocalDate.now());
+        order.setOrderStatus(status);
+        order.setWishedDeliveryDate(LocalDate.now());
+        order.setCustomer(customer);
+        order.setStore(store);
+        order.setShipment(shipment);
+        for (Product product : products) {
+            OrderQuantities quantity = new OrderQuantities();
+            quantity.setProductQuantity(2);
+            quantity.setProduct(product);
+            quantity.setOrder(order);
+            order.getQuantities().add(quantity);
+        }
+        return order;
+    }
+
+    /**
+     * Return the number of statements prepared while running a request or job, and check it against a ceiling.
+     *
+     * @param name the name of the request or job in the log and the assertion message.
+     * @param ceiling the most statements the request or job may prepare.
+     * @param request the request or job to run.
+     * @throws Throwable if the request or job fails.
+     */
+    private void assertStatements(String name, long ceiling, Executable request) throws Throwable {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        request.execute();
+        long statements = statistics.getPrepareStatementCount();
+        log.info("{}: {} statements", name, statements);
+        assertTrue(statements <= ceiling, name + " ran " + statements + " statements, more than " + ceiling);
+    }
+
+    /**
+     * Relay the outbox until no notification is waiting for an answer of the notification pipeline, failing the
+     * test after 10 seconds. Without Firebase every notification FAILED and its row is put back until it has been
+     * relayed max-attempts times.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private void drainOutbox() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (orderNotificationRelay.relayPending() > 0
+                || orderNotificationRepository.findAll().stream().anyMatch(row -> row.getRelayedAt() != null)) {
+            assertTrue(System.currentTimeMillis() < deadline, "Outbox not drained within 10 seconds");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Return a JWT token for the Customer.
+     *
+     * @return a JWT token for the Customer.
+     * @throws Exception if the perform request of expect actions fail.
+     */
+    private String authenticateAndGetJwt() throws Exception {
+        String jsonRequest = objectMapper.writeValueAsString(new LoginBody("fetchplan@example.com", "secretpassword11"));
+        MvcResult result = mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(jsonRequest))
+                .andExpect(status().isOk())
+                .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString()).path("jwt").asText();
+    }
+
+    /**
+     * Tests that the list of every Shipment and every Trip, and a single Trip, are each read with one statement.
+     *
+     * @throws Throwable if a request fails.
+     */
+    @Test
+    public void testAdminListsUseOneStatement() throws Throwable {
+        assertStatements("GET /api/shipments", READ_CEILING, () -> mockMvc.perform(get("/api/shipments"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(SHIPMENTS)))
+                .andExpect(jsonPath("$[0].tripId").value(trip.getTripId()))
+                .andExpect(jsonPath("$[0].tripStatus").value("IN_TRANSIT"))
+                .andExpect(jsonPath("$[0].orderIds", hasSize(ORDERS_PER_SHIPMENT))));
+
+        assertStatements("GET /api/trips", READ_CEILING, () -> mockMvc.perform(get("/api/trips"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].shipmentIds", hasSize(SHIPMENTS))));
+
+        assertStatements("GET /api/trips/{id}", READ_CEILING, () -> mockMvc.perform(get("/api/trips/{id}", trip.getTripId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tripId").value(trip.getTripId()))
+                .andExpect(jsonPath("$.shipmentIds", hasSize(SHIPMENTS))));
+    }
+
+    /**
+     * Tests that the Orders of a Customer, a single Order and its current location are each read with one statement,
+     * including the Customer, Products and Trip in the response.
+     *
+     * @throws Throwable if a request fails.
+     */
+    @Test
+    public void testTrackingViewUsesOneStatement() throws Throwable {
+        String jwt = authenticateAndGetJwt();
+        // The first request loads the Customer behind the JWT into the principal cache
+        mockMvc.perform(get("/api/orders").header("Authorization", "Bearer " + jwt)).andExpect(status().isOk());
+        int orderId = orders.get(0).getOrderId();
+
+        assertStatements("GET /api/orders", READ_CEILING, () -> mockMvc.perform(get("/api/orders")
+                        .header("Authorization", "Bearer " + jwt))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(SHIPMENTS * ORDERS_PER_SHIPMENT)))
+                .andExpect(jsonPath("$[0].customer.email").value("fetchplan@example.com"))
+                .andExpect(jsonPath("$[0].quantities", hasSize(products.size()))));
+
+        assertStatements("GET /api/orders/{id}", READ_CEILING, () -> mockMvc.perform(get("/api/orders/{id}", orderId)
+                        .header("Authorization", "Bearer " + jwt))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orderId").value(orderId))
+                .andExpect(jsonPath("$.quantities[0].product.inventory").exists()));
+
+        assertStatements("GET /api/orders/currentlocation/{id}", READ_CEILING, () -> mockMvc.perform(
+                        get("/api/orders/currentlocation/{id}", orderId))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Warehouse")));
+    }
+
+    /**
+     * Tests that the scheduled jobs read the Shipments with their Orders together, and the delivery of a Shipment
+     * reads the Trip with its Shipments, Orders and Stores together.
+     *
+     * @throws Throwable if a job fails.
+     */
+    @Test
+    public void testSchedulerJobsDoNotReadOrdersOneByOne() throws Throwable {
+        List<Integer> shipmentIds = new ArrayList<>();
+        for (int s = 0; s < SHIPMENTS; s++) {
+            shipmentIds.add(saveShipment(0, null, OrderStatus.PICKING).getShipmentId());
+        }
+        workQueueService.enqueueAll(WorkQueueTopic.SHIPMENT_PICKING, shipmentIds);
+
+        assertStatements("updateShipmentOrdersToPicked", PICKED_CEILING + SEQUENCE_ALLOWANCE, () -> shipmentService.updateShipmentOrdersToPicked());
+        // The relay drains the notifications of the picked Orders on its own thread, which would be counted as well
+        drainOutbox();
+        assertStatements("createTrip", CREATE_TRIP_CEILING + SEQUENCE_ALLOWANCE, () -> tripService.createTrip());
+        assertEquals(SHIPMENTS, shipmentRepository.findWithOrdersByShipmentIdIn(shipmentIds).stream()
+                .filter(shipment -> shipment.getTrip() != null)
+                .count());
+
+        assertStatements("deliverNextShipment", DELIVER_CEILING + SEQUENCE_ALLOWANCE, () -> assertEquals(
+                "Shipment with sequence 0 has been delivered.", tripService.deliverNextShipment(trip.getTripId())));
+    }
+}
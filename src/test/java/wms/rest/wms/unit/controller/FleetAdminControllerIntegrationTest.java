@@ -0,0 +1,189 @@
+package wms.rest.wms.unit.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import wms.rest.wms.api.model.LoginBody;
+import wms.rest.wms.model.Customer;
+import wms.rest.wms.model.Driver;
+import wms.rest.wms.model.Store;
+import wms.rest.wms.repository.CustomerRepository;
+import wms.rest.wms.repository.DriverRepository;
+import wms.rest.wms.repository.StoreRepository;
+import wms.rest.wms.service.security.EncryptionService;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for FleetAdminController using MockMvc.
+ * Verifies that only administrators may read and change the registry of Drivers and Vehicles.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class FleetAdminControllerIntegrationTest {
+
+    /** Provides support for Spring MVC testing */
+    @Autowired
+    private MockMvc mockMvc;
+
+    /** Autowired CustomerRepository for interaction with the H2 embedded database */
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    /** Autowired StoreRepository for interaction with the H2 embedded database */
+    @Autowired
+    private StoreRepository storeRepository;
+
+    /** Autowired DriverRepository for interaction with the H2 embedded database */
+    @Autowired
+    private DriverRepository driverRepository;
+
+    /** Autowired Objectmapper for object serialization and JSON deserialization */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /** Autowired EncryptionService for required password encryption in login */
+    @Autowired
+    private EncryptionService encryptionService;
+
+    /** Declare Store at class level for easier accessibility */
+    private Store store;
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates an administrator and a Customer who is not one.
+     */
+    @BeforeEach
+    public void setup() {
+        store = new Store();
+        store.setName("Fleet store");
+        store.setAddress("Test address");
+        store.setCountry("Test country");
+        store.setCity("Test City");
+        store.setPostalCode(5004);
+        storeRepository.save(store);
+        saveCustomer("admin@example.com", true);
+        saveCustomer("customer@example.com", false);
+    }
+
+    /**
+     * Clean up the test environment after each test method.
+     * Removes the Customers and the Store created by the test.
+     */
+    @AfterEach
+    public void cleanup() {
+        customerRepository.deleteAll();
+        storeRepository.deleteById(store.getStoreId());
+    }
+
+    /**
+     * Create and save a Customer with the password secretpassword11.
+     *
+     * @param email the email of the Customer.
+     * @param admin whether the Customer is an administrator.
+     */
+    private void saveCustomer(String email, boolean admin) {
+        Customer customer = new Customer();
+        customer.setEmail(email);
+        customer.setFirstName("John");
+        customer.setLastName("Doe");
+        customer.setStore(store);
+        customer.setPassword(encryptionService.encryptPassword("secretpassword11"));
+        customer.setAdmin(admin);
+        customerRepository.save(customer);
+    }
+
+    /**
+     * Return a JWT token of a Customer.
+     *
+     * @param email the email of the Customer.
+     * @return the JWT token given at login.
+     * @throws Exception if the perform request of expect actions fail.
+     */
+    private String login(String email) throws Exception {
+        MvcResult result = mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new LoginBody(email, "secretpassword11"))))
+                .andExpect(status().isOk())
+                .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString()).path("jwt").asText();
+    }
+
+    /**
+     * Tests that an administrator registers a Driver, lists it and deactivates it.
+     *
+     * @throws Exception if the perform request or expect actions fail.
+     */
+    @Test
+    public void testAdministratorManagesDrivers() throws Exception {
+        String jwt = login("admin@example.com");
+        Map<String, Object> driver = Map.of("name", "New driver", "phone", 12345678,
+                "shiftStart", "06:00", "shiftEnd", "14:00", "active", true);
+
+        MvcResult created = mockMvc.perform(post("/api/admin/fleet/drivers")
+                        .header("Authorization", "Bearer " + jwt)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(driver)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.name").value("New driver"))
+                .andReturn();
+        int driverId = objectMapper.readTree(created.getResponse().getContentAsString()).path("driverId").asInt();
+
+        try {
+            mockMvc.perform(get("/api/admin/fleet/drivers").header("Authorization", "Bearer " + jwt))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[?(@.driverId == " + driverId + ")].name").value("New driver"));
+
+            mockMvc.perform(put("/api/admin/fleet/drivers/{id}", driverId)
+                            .header("Authorization", "Bearer " + jwt)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(Map.of("name", "New driver", "phone", 12345678,
+                                    "shiftStart", "06:00", "shiftEnd", "14:00", "active", false))))
+                    .andExpect(status().isOk());
+            assertFalse(driverRepository.findById(driverId).orElseThrow().isActive());
+
+            mockMvc.perform(post("/api/admin/fleet/drivers")
+                            .header("Authorization", "Bearer " + jwt)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(Map.of("phone", 12345678))))
+                    .andExpect(status().isBadRequest());
+        } finally {
+            driverRepository.deleteById(driverId);
+        }
+    }
+
+    /**
+     * Tests that a Customer who is not an administrator, and a request without authentication, are refused.
+     *
+     * @throws Exception if the perform request or expect actions fail.
+     */
+    @Test
+    public void testOthersAreRefused() throws Exception {
+        String jwt = login("customer@example.com");
+        mockMvc.perform(get("/api/admin/fleet/drivers").header("Authorization", "Bearer " + jwt))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/api/admin/fleet/vehicles")
+                        .header("Authorization", "Bearer " + jwt)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("registrationNumber", "TEST-01",
+                                "temperatureClass", "DRY_GOODS"))))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/admin/fleet/vehicles"))
+                .andExpect(status().isForbidden());
+    }
+}
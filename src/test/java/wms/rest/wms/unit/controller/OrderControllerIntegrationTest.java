@@ -12,18 +12,20 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import wms.rest.wms.api.model.LoginBody;
-import wms.rest.wms.model.Customer;
-import wms.rest.wms.model.Order;
-import wms.rest.wms.model.OrderStatus;
-import wms.rest.wms.model.Store;
+import wms.rest.wms.model.*;
 import wms.rest.wms.repository.CustomerRepository;
 import wms.rest.wms.repository.OrderRepository;
+import wms.rest.wms.repository.ProductRepository;
 import wms.rest.wms.repository.StoreRepository;
 import wms.rest.wms.service.security.EncryptionService;
 
 import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -52,6 +54,10 @@ public class OrderControllerIntegrationTest {
     @Autowired
     private StoreRepository storeRepository;
 
+    /** Autowired ProductRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ProductRepository productRepository;
+
     /** Autowired Objectmapper for object serialization and JSON deserialization */
     @Autowired
     private ObjectMapper objectMapper;
@@ -69,6 +75,9 @@ public class OrderControllerIntegrationTest {
     /** Declare Order at class level for easier accessibility */
     private Order order;
 
+    /** Declare Product with 10 in available stock at class level for easier accessibility */
+    private Product product;
+
     /**
      * Prepare the test environment before each test method.
      * This method is run before each test method to ensure the testing environment is properly initialized.
@@ -106,6 +115,22 @@ public class OrderControllerIntegrationTest {
         order.setCustomer(customer);
         order.setStore(store);
         this.orderRepository.save(order);
+
+        product = new Product();
+        product.setName("Product");
+        product.setDescription("Description");
+        product.setSupplier("Supplier");
+        product.setBestBeforeDate(new Date());
+        product.setProductType(ProductType.DRY_GOODS);
+        product.setPrice(20.00);
+        product.setGtin(99999);
+        product.setBatch(11111);
+        Inventory inventory = new Inventory();
+        inventory.setTotalStock(10);
+        inventory.setAvailableStock(10);
+        inventory.setProduct(product);
+        product.setInventory(inventory);
+        this.productRepository.save(product);
     }
 
     /**
@@ -116,6 +141,7 @@ public class OrderControllerIntegrationTest {
     @AfterEach
     public void cleanup() {
         this.orderRepository.deleteAll();
+        this.productRepository.deleteById(product.getProductId());
         this.customerRepository.deleteAll();
         this.storeRepository.deleteAll();
     }
@@ -179,4 +205,76 @@ public class OrderControllerIntegrationTest {
                 .andExpect(jsonPath("$.orderId").value(order.getOrderId()))
                 .andExpect(jsonPath("$.orderStatus").value("DELIVERED"));
     }
+
+    /**
+     * Tests that a batch of Orders is created Order by Order by an authenticated Customer, where an Order
+     * exceeding the available stock is rejected without reserving stock, and the other Order is still created.
+     *
+     * @throws Exception if the perform request or expect actions fail.
+     */
+    @Test
+    public void testCreateOrdersWithAuthentication() throws Exception {
+        String jwt = authenticateAndGetJwt();
+        Map<String, Object> productRef = Map.of("productId", product.getProductId());
+        List<Map<String, Object>> orders = List.of(
+                Map.of("wishedDeliveryDate", "2024-08-24",
+                        "quantities", List.of(Map.of("product", productRef, "productQuantity", 4))),
+                Map.of("wishedDeliveryDate", "2024-08-24",
+                        "quantities", List.of(Map.of("product", productRef, "productQuantity", 20))));
+
+        mockMvc.perform(post("/api/orders/createorders")
+                        .header("Authorization", "Bearer " + jwt)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(orders)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].index").value(0))
+                .andExpect(jsonPath("$[0].success").value(true))
+                .andExpect(jsonPath("$[0].orderId").isNumber())
+                .andExpect(jsonPath("$[1].index").value(1))
+                .andExpect(jsonPath("$[1].success").value(false));
+
+        Inventory inventory = productRepository.findById(product.getProductId()).orElseThrow().getInventory();
+        assertEquals(4, inventory.getReservedStock());
+        assertEquals(6, inventory.getAvailableStock());
+    }
+
+    /**
+     * Tests that an Order with a line of a quantity that is not positive is rejected with HTTP 400, with the same
+     * reason the batch reports for it, and reserves no stock.
+     *
+     * @throws Exception if the perform request or expect actions fail.
+     */
+    @Test
+    public void testCreateOrderWithInvalidQuantity() throws Exception {
+        String jwt = authenticateAndGetJwt();
+        Map<String, Object> productRef = Map.of("productId", product.getProductId());
+        Map<String, Object> newOrder = Map.of("wishedDeliveryDate", "2024-08-24",
+                "quantities", List.of(Map.of("product", productRef, "productQuantity", 2),
+                        Map.of("product", productRef, "productQuantity", 0)));
+
+        mockMvc.perform(post("/api/orders/createorder")
+                        .header("Authorization", "Bearer " + jwt)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(newOrder)))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Quantity must be positive for product with ID: " + product.getProductId()));
+
+        Inventory inventory = productRepository.findById(product.getProductId()).orElseThrow().getInventory();
+        assertEquals(0, inventory.getReservedStock());
+        assertEquals(10, inventory.getAvailableStock());
+    }
+
+    /**
+     * Tests that a batch of Orders is rejected with HTTP 403 when the Customer is not authenticated.
+     *
+     * @throws Exception if the perform request or expect actions fail.
+     */
+    @Test
+    public void testCreateOrdersWithoutAuthentication() throws Exception {
+        mockMvc.perform(post("/api/orders/createorders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isForbidden());
+    }
 }
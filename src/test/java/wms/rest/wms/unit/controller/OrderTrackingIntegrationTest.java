@@ -0,0 +1,453 @@
+package wms.rest.wms.unit.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import wms.rest.wms.api.model.LoginBody;
+import wms.rest.wms.exception.NotEnoughStockException;
+import wms.rest.wms.model.*;
+import wms.rest.wms.repository.*;
+import wms.rest.wms.service.OrderService;
+import wms.rest.wms.service.OrderTrackingBroadcaster;
+import wms.rest.wms.service.OrderTrackingService;
+import wms.rest.wms.service.ShipmentService;
+import wms.rest.wms.service.TripService;
+import wms.rest.wms.service.search.ProductSearchIndex;
+import wms.rest.wms.service.security.EncryptionService;
+
+import java.io.UnsupportedEncodingException;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration test for the order tracking read model against the H2 embedded database.
+ * Verifies that the tracking row follows an Order through every scheduled job, and that the progress and
+ * location polls are answered from it with one statement and with 304 while it has not changed, and that its
+ * committed changes are pushed to the tracking stream of the Customer.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class OrderTrackingIntegrationTest {
+
+    /** Provides support for Spring MVC testing */
+    @Autowired
+    private MockMvc mockMvc;
+
+    /** Autowired Objectmapper for object serialization and JSON deserialization */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /** Autowired OrderService for placing and cancelling Orders */
+    @Autowired
+    private OrderService orderService;
+
+    /** Autowired ShipmentService for running the Shipment scheduled jobs */
+    @Autowired
+    private ShipmentService shipmentService;
+
+    /** Autowired TripService for running the Trip scheduled jobs */
+    @Autowired
+    private TripService tripService;
+
+    /** Autowired OrderTrackingService for backfilling untracked Orders */
+    @Autowired
+    private OrderTrackingService orderTrackingService;
+
+    /** Autowired OrderTrackingBroadcaster for counting the open tracking streams */
+    @Autowired
+    private OrderTrackingBroadcaster orderTrackingBroadcaster;
+
+    /** Autowired OrderTrackingRepository for reading the tracking rows */
+    @Autowired
+    private OrderTrackingRepository orderTrackingRepository;
+
+    /** Autowired StoreRepository for interaction with the H2 embedded database */
+    @Autowired
+    private StoreRepository storeRepository;
+
+    /** Autowired CustomerRepository for interaction with the H2 embedded database */
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    /** Autowired ProductRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Autowired OrderRepository for interaction with the H2 embedded database */
+    @Autowired
+    private OrderRepository orderRepository;
+
+    /** Autowired ShipmentRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    /** Autowired TripRepository for interaction with the H2 embedded database */
+    @Autowired
+    private TripRepository tripRepository;
+
+    /** Autowired JdbcTemplate for freeing the Drivers and Vehicles reserved by the Trips */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Autowired EncryptionService for required password encryption in login */
+    @Autowired
+    private EncryptionService encryptionService;
+
+    /** Autowired ProductSearchIndex, awaited so its build does not run statements during a test */
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    /** Autowired EntityManagerFactory for reading the Hibernate statistics */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /** Declare Store at class level for easier accessibility */
+    private Store store;
+
+    /** Declare Customer at class level for easier accessibility */
+    private Customer customer;
+
+    /** Declare Product with 10 in available stock at class level for easier accessibility */
+    private Product product;
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates a Store, a Customer and a Product with 10 in available stock.
+     *
+     * @throws InterruptedException if interrupted while waiting for the search index.
+     */
+    @BeforeEach
+    public void setup() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!productSearchIndex.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        store = new Store();
+        store.setName("Tracking store");
+        store.setAddress("Test address");
+        store.setCountry("Test country");
+        store.setCity("Test City");
+        store.setPostalCode(5004);
+        storeRepository.save(store);
+
+        customer = new Customer();
+        customer.setEmail("tracking@example.com");
+        customer.setFirstName("John");
+        customer.setLastName("Doe");
+        customer.setPassword(encryptionService.encryptPassword("secretpassword11"));
+        customer.setStore(store);
+        customerRepository.save(customer);
+
+        product = new Product();
+        product.setName("Tracked product");
+        product.setDescription("Description");
+        product.setSupplier("Supplier");
+        product.setBestBeforeDate(new Date());
+        product.setProductType(ProductType.DRY_GOODS);
+        product.setPrice(20.00);
+        product.setGtin(66660);
+        product.setBatch(11111);
+        Inventory inventory = new Inventory();
+        inventory.setTotalStock(10);
+        inventory.setAvailableStock(10);
+        inventory.setProduct(product);
+        product.setInventory(inventory);
+        productRepository.save(product);
+    }
+
+    /**
+     * Clean up the test environment after each test method.
+     * Removes every tracking row, Order, Shipment, Trip, Customer, Store and the Product created by the test,
+     * and frees the Drivers and Vehicles the Trips reserved.
+     */
+    @AfterEach
+    public void cleanup() {
+        orderTrackingRepository.deleteAll();
+        orderRepository.deleteAll();
+        shipmentRepository.deleteAll();
+        tripRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM fleet_reservation");
+        customerRepository.deleteAll();
+        storeRepository.deleteAll();
+        productRepository.deleteById(product.getProductId());
+    }
+
+    /**
+     * Place an Order of one Product through the OrderService.
+     *
+     * @return the placed Order.
+     * @throws NotEnoughStockException if there is not enough stock of the Product.
+     */
+    private Order placeOrder() throws NotEnoughStockException {
+        Order order = new Order();
+        order.setWishedDeliveryDate(LocalDate.now());
+        OrderQuantities quantity = new OrderQuantities();
+        quantity.setProductQuantity(1);
+        quantity.setProduct(product);
+        order.getQuantities().add(quantity);
+        return orderService.createOrder(order, customer);
+    }
+
+    /**
+     * Return the tracking row of an Order.
+     *
+     * @param orderId the orderId of the Order.
+     * @return the tracking row.
+     */
+    private OrderTracking tracking(int orderId) {
+        return orderTrackingRepository.findById(orderId).orElseThrow();
+    }
+
+    /**
+     * Assert the OrderStatus, progress and current location of a tracking row, and that its revision increased.
+     *
+     * @param tracking the tracking row.
+     * @param orderStatus the expected OrderStatus.
+     * @param progressInPercent the expected progressInPercent.
+     * @param currentLocation the expected current location.
+     * @param previousRevision the revision of the row before the change.
+     */
+    private void assertTracking(OrderTracking tracking, OrderStatus orderStatus, int progressInPercent,
+                                String currentLocation, long previousRevision) {
+        assertEquals(orderStatus, tracking.getOrderStatus());
+        assertEquals(progressInPercent, tracking.getProgressInPercent());
+        assertEquals(currentLocation, tracking.getCurrentLocation());
+        assertTrue(tracking.getRevision() > previousRevision);
+    }
+
+    /**
+     * Return a JWT token for the Customer.
+     *
+     * @return a JWT token for the Customer.
+     * @throws Exception if the perform request of expect actions fail.
+     */
+    private String authenticateAndGetJwt() throws Exception {
+        String jsonRequest = objectMapper.writeValueAsString(new LoginBody("tracking@example.com", "secretpassword11"));
+        MvcResult result = mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(jsonRequest))
+                .andExpect(status().isOk())
+                .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString()).path("jwt").asText();
+    }
+
+    /**
+     * Wait until a condition holds, as the tracking stream is written by the sender thread.
+     *
+     * @param condition the condition to wait for.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    /**
+     * Tests that the tracking row follows an Order from REGISTERED to DELIVERED through every scheduled job,
+     * and is only written when something the Customer sees changes.
+     *
+     * @throws NotEnoughStockException if there is not enough stock of the Product.
+     */
+    @Test
+    public void testTrackingFollowsTheOrderLifecycle() throws NotEnoughStockException {
+        int orderId = placeOrder().getOrderId();
+        OrderTracking registered = tracking(orderId);
+        assertTracking(registered, OrderStatus.REGISTERED, 0, null, 0);
+
+        shipmentService.createShipment();
+        OrderTracking picking = tracking(orderId);
+        assertTracking(picking, OrderStatus.PICKING, 10, null, registered.getRevision());
+
+        shipmentService.updateShipmentOrdersToPicked();
+        OrderTracking picked = tracking(orderId);
+        assertTracking(picked, OrderStatus.PICKED, 20, null, picking.getRevision());
+
+        tripService.createTrip();
+        OrderTracking loading = tracking(orderId);
+        assertTracking(loading, OrderStatus.PICKED, 20, "Trondheim", picked.getRevision());
+
+        tripService.updateTripStatusFromLoadingToDeparted();
+        assertEquals(loading.getRevision(), tracking(orderId).getRevision());
+
+        tripService.updateTripStatusFromDepartedToInTransit();
+        OrderTracking inTransit = tracking(orderId);
+        assertTracking(inTransit, OrderStatus.PICKED, 50, "Trondheim", loading.getRevision());
+
+        int tripId = orderRepository.findTrackingByOrderId(orderId).orElseThrow().getShipment().getTrip().getTripId();
+        tripService.deliverNextShipment(tripId);
+        assertTracking(tracking(orderId), OrderStatus.DELIVERED, 100, store.getName(), inTransit.getRevision());
+    }
+
+    /**
+     * Tests that a poll is answered with one statement, with 304 and no body while the tracking row is unchanged,
+     * and with the new value and ETag once the Order changes.
+     *
+     * @throws Exception if a request fails.
+     */
+    @Test
+    public void testPollsAreAnsweredWithNotModified() throws Exception {
+        int orderId = placeOrder().getOrderId();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        String eTag = mockMvc.perform(get("/api/orders/progressinpercent/{id}", orderId))
+                .andExpect(status().isOk())
+                .andExpect(content().string("0"))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertNotNull(eTag);
+
+        mockMvc.perform(get("/api/orders/progressinpercent/{id}", orderId).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/orders/currentlocation/{id}", orderId).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+
+        assertTrue(orderService.cancelOrderById(orderId));
+        mockMvc.perform(get("/api/orders/currentlocation/{id}", orderId).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Location information not available"))
+                .andExpect(header().string(HttpHeaders.ETAG, tracking(orderId).getETag()));
+
+        mockMvc.perform(get("/api/orders/progressinpercent/{id}", Integer.MAX_VALUE))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Tests that an Order placed before the tracking read model existed is answered from the Order without an ETag,
+     * and gets its tracking row from the backfill.
+     *
+     * @throws Exception if a request fails.
+     */
+    @Test
+    public void testUntrackedOrdersAreBackfilled() throws Exception {
+        Order order = new Order();
+        order.setOrderDate(LocalDate.now());
+        order.setOrderStatus(OrderStatus.REGISTERED);
+        order.setProgressInPercent(5);
+        order.setCustomer(customer);
+        order.setStore(store);
+        int orderId = orderRepository.save(order).getOrderId();
+
+        mockMvc.perform(get("/api/orders/progressinpercent/{id}", orderId))
+                .andExpect(status().isOk())
+                .andExpect(content().string("5"))
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+
+        orderTrackingService.backfill();
+        assertTracking(tracking(orderId), OrderStatus.REGISTERED, 5, null, 0);
+        mockMvc.perform(get("/api/orders/progressinpercent/{id}", orderId))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, tracking(orderId).getETag()));
+    }
+
+    /**
+     * Tests that the tracking stream starts with the current state of the Orders of the Customer, receives the
+     * changes once they commit, and is closed with its request.
+     *
+     * @throws Exception if a request fails.
+     */
+    @Test
+    public void testStreamPushesCommittedChanges() throws Exception {
+        int orderId = placeOrder().getOrderId();
+        MvcResult stream = mockMvc.perform(get("/api/orders/tracking/stream")
+                        .header("Authorization", "Bearer " + authenticateAndGetJwt())
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(1, orderTrackingBroadcaster.getStreamCount());
+        String registered = "\"orderId\":" + orderId + ",\"orderStatus\":\"REGISTERED\"";
+        await(() -> streamContent(stream).contains(registered));
+        assertTrue(streamContent(stream).contains("event:" + OrderTrackingBroadcaster.EVENT_NAME));
+
+        assertTrue(orderService.cancelOrderById(orderId));
+        String cancelled = "\"orderId\":" + orderId + ",\"orderStatus\":\"CANCELLED\"";
+        await(() -> streamContent(stream).contains(cancelled));
+        assertTrue(streamContent(stream).contains("id:" + orderId + "-" + tracking(orderId).getRevision()));
+
+        stream.getRequest().getAsyncContext().complete();
+        assertEquals(0, orderTrackingBroadcaster.getStreamCount());
+    }
+
+    /**
+     * Tests that a change committed on another instance, which this instance was never told about, reaches the
+     * stream through the poll, and that polling again does not send it twice.
+     *
+     * @throws Exception if a request fails.
+     */
+    @Test
+    public void testStreamPollPushesChangesFromOtherInstances() throws Exception {
+        int orderId = placeOrder().getOrderId();
+        MvcResult stream = mockMvc.perform(get("/api/orders/tracking/stream")
+                        .header("Authorization", "Bearer " + authenticateAndGetJwt())
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        await(() -> streamContent(stream).contains("\"orderId\":" + orderId + ",\"orderStatus\":\"REGISTERED\""));
+
+        // Another instance picks the Order and commits the tracking row without an event on this one
+        jdbcTemplate.update("UPDATE order_tracking SET order_status = 'PICKED', progress_in_percent = 25, " +
+                "revision = revision + 1 WHERE order_id = ?", orderId);
+        String picked = "id:" + orderId + "-" + tracking(orderId).getRevision();
+        orderTrackingBroadcaster.poll();
+        await(() -> streamContent(stream).contains(picked));
+        orderTrackingBroadcaster.poll();
+        Thread.sleep(100);
+        assertEquals(1, streamContent(stream).split(picked, -1).length - 1);
+
+        stream.getRequest().getAsyncContext().complete();
+        assertEquals(0, orderTrackingBroadcaster.getStreamCount());
+    }
+
+    /**
+     * Tests that a tracking stream is only opened for an authenticated Customer.
+     *
+     * @throws Exception if a request fails.
+     */
+    @Test
+    public void testStreamRequiresAuthentication() throws Exception {
+        mockMvc.perform(get("/api/orders/tracking/stream").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isUnauthorized());
+        assertEquals(0, orderTrackingBroadcaster.getStreamCount());
+    }
+
+    /**
+     * Return what has been written to a tracking stream so far.
+     *
+     * @param stream the result of opening the stream.
+     * @return the content of the stream.
+     */
+    private static String streamContent(MvcResult stream) {
+        try {
+            return stream.getResponse().getContentAsString();
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
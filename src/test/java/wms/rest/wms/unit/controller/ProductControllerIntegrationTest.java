@@ -10,11 +10,16 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import wms.rest.wms.model.Inventory;
 import wms.rest.wms.model.Product;
 import wms.rest.wms.model.ProductType;
 import wms.rest.wms.repository.ProductRepository;
+import wms.rest.wms.service.ProductService;
+import wms.rest.wms.service.StockReservationService;
 
+import java.time.LocalDateTime;
 import java.util.Date;
+import java.util.List;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -43,6 +48,14 @@ public class ProductControllerIntegrationTest {
     @Autowired
     private ProductRepository productRepository;
 
+    /** Autowired ProductService for creating a Product with stock */
+    @Autowired
+    private ProductService productService;
+
+    /** Autowired StockReservationService for moving the stock of a Product */
+    @Autowired
+    private StockReservationService stockReservationService;
+
     /**
      * Prepare the test environment before each test method.
      * This method is run before each test method to ensure the testing environment is properly initialized.
@@ -91,6 +104,33 @@ public class ProductControllerIntegrationTest {
                 .andExpect(jsonPath("$[1].name").value("Product2"));
     }
 
+    /**
+     * Tests the GET /api/products/page endpoint by walking the catalog one Product at a time with the returned cursor.
+     *
+     * @throws Exception if the perform request or expect actions fail.
+     */
+    @Test
+    public void testGetProductPages() throws Exception {
+        List<Product> products = productRepository.findAll();
+        int first = Math.min(products.get(0).getProductId(), products.get(1).getProductId());
+        int second = Math.max(products.get(0).getProductId(), products.get(1).getProductId());
+
+        mockMvc.perform(get("/api/products/page").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products", hasSize(1)))
+                .andExpect(jsonPath("$.products[0].productId").value(first))
+                .andExpect(jsonPath("$.nextCursor").value(first));
+
+        mockMvc.perform(get("/api/products/page").param("after", String.valueOf(first)).param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products", hasSize(1)))
+                .andExpect(jsonPath("$.products[0].productId").value(second))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        mockMvc.perform(get("/api/products/page").param("size", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
     /**
      * Tests the GET /api/products/{productId} endpoint and the correct HTTP response status code.
      *
@@ -129,4 +169,51 @@ public class ProductControllerIntegrationTest {
                 .andExpect(status().isCreated())
                 .andExpect(jsonPath("$.name").value("New Product"));
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests the GET /api/products/{productId}/stock and /stock/movements endpoints, which read the stock ledger of
+     * a Product, and the correct HTTP response status codes.
+     *
+     * @throws Exception if the perform request or expect actions fail.
+     */
+    @Test
+    public void testGetStockFromLedger() throws Exception {
+        LocalDateTime start = LocalDateTime.now();
+        Product product = new Product();
+        product.setName("Stocked Product");
+        product.setDescription("Description");
+        product.setSupplier("Supplier");
+        product.setBestBeforeDate(new Date());
+        product.setProductType(ProductType.DRY_GOODS);
+        product.setPrice(25.00);
+        product.setGtin(54322);
+        product.setBatch(12345);
+        Inventory inventory = new Inventory();
+        inventory.setTotalStock(10);
+        inventory.setAvailableStock(10);
+        inventory.setProduct(product);
+        product.setInventory(inventory);
+        int productId = productService.createProduct(product).getProductId();
+        stockReservationService.reserve(productId, 4);
+
+        mockMvc.perform(get("/api/products/{id}/stock", productId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalStock").value(10))
+                .andExpect(jsonPath("$.reservedStock").value(4))
+                .andExpect(jsonPath("$.availableStock").value(6));
+
+        mockMvc.perform(get("/api/products/{id}/stock", productId).param("asOf", start.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalStock").value(0));
+
+        mockMvc.perform(get("/api/products/{id}/stock/movements", productId).param("from", start.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].movementType").value("RECEIPT"))
+                .andExpect(jsonPath("$[1].movementType").value("RESERVATION"));
+
+        mockMvc.perform(get("/api/products/{id}/stock/movements", productId)
+                        .param("from", LocalDateTime.now().plusDays(1).toString()))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,161 @@
+package wms.rest.wms.unit.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import wms.rest.wms.model.Inventory;
+import wms.rest.wms.model.Product;
+import wms.rest.wms.model.ProductType;
+import wms.rest.wms.repository.ProductRepository;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for the streaming GET /api/products/stream endpoint using MockMvc.
+ * The Products are committed before each test, since the response is written on another thread than the test.
+ * Verifies both the NDJSON and the JSON array format, and that the catalog is fetched one statement per batch.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ProductStreamIntegrationTest {
+
+    /** Number of Products in the catalog, more than two stream batches */
+    private static final int PRODUCTS = 1200;
+
+    /** Provides support for Spring MVC testing. Allows to send HTTP requests into the DispatcherServlet and make assertions about the result */
+    @Autowired
+    private MockMvc mockMvc;
+
+    /** Autowired ProductRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Autowired JdbcTemplate for removing the catalog after each test */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Autowired EntityManagerFactory for reading the Hibernate statistics */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /** Declare ObjectMapper at class level for parsing the responses */
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates PRODUCTS Products, each with an Inventory.
+     */
+    @BeforeEach
+    public void setup() {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product();
+            product.setName("Product" + i);
+            product.setDescription("Description");
+            product.setSupplier("Supplier");
+            product.setBestBeforeDate(new Date());
+            product.setProductType(ProductType.DRY_GOODS);
+            product.setPrice(20.00);
+            product.setGtin(100_000 + i);
+            product.setBatch(11111);
+            Inventory inventory = new Inventory();
+            inventory.setTotalStock(i);
+            inventory.setAvailableStock(i);
+            inventory.setProduct(product);
+            product.setInventory(inventory);
+            products.add(product);
+        }
+        productRepository.saveAll(products);
+    }
+
+    /**
+     * Clean up the test environment after each test method.
+     * Deletes the catalog with plain statements rather than loading and removing every Product.
+     */
+    @AfterEach
+    public void cleanup() {
+        jdbcTemplate.update("DELETE FROM inventory");
+        jdbcTemplate.update("DELETE FROM product");
+    }
+
+    /**
+     * Perform a GET /api/products/stream request and return the written response body.
+     *
+     * @param accept the media type to accept.
+     * @return the response body.
+     * @throws Exception if the perform request or expect actions fail.
+     */
+    private String stream(MediaType accept) throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/products/stream").accept(accept))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(accept))
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    /**
+     * Tests that NDJSON streaming writes every Product on its own line in productId order with its Inventory,
+     * with one statement per batch.
+     *
+     * @throws Exception if the perform request or expect actions fail.
+     */
+    @Test
+    public void testStreamProductsAsNdjson() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        String body = stream(MediaType.APPLICATION_NDJSON);
+
+        String[] lines = body.split("\n");
+        assertEquals(PRODUCTS, lines.length);
+        int previous = 0;
+        for (String line : lines) {
+            JsonNode product = objectMapper.readTree(line);
+            assertTrue(product.get("productId").asInt() > previous);
+            assertTrue(product.get("inventory").has("totalStock"));
+            previous = product.get("productId").asInt();
+        }
+        // Three pages of 500, the last one partial: no statement per Product for Inventory or Packaging
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Tests that JSON array streaming writes every Product in one valid JSON array.
+     *
+     * @throws Exception if the perform request or expect actions fail.
+     */
+    @Test
+    public void testStreamProductsAsJsonArray() throws Exception {
+        JsonNode products = objectMapper.readTree(stream(MediaType.APPLICATION_JSON));
+
+        assertTrue(products.isArray());
+        assertEquals(PRODUCTS, products.size());
+        assertEquals("Product0", products.get(0).get("name").asText());
+        assertEquals("Product" + (PRODUCTS - 1), products.get(PRODUCTS - 1).get("name").asText());
+    }
+}
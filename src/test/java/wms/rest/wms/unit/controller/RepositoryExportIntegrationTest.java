@@ -0,0 +1,93 @@
+package wms.rest.wms.unit.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.rest.core.mapping.RepositoryResourceMappings;
+import org.springframework.test.context.ActiveProfiles;
+import wms.rest.wms.model.Driver;
+import wms.rest.wms.model.Inventory;
+import wms.rest.wms.model.OrderNotification;
+import wms.rest.wms.model.OrderTracking;
+import wms.rest.wms.model.Product;
+import wms.rest.wms.model.Vehicle;
+import wms.rest.wms.model.WorkQueueItem;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Integration tests for the repositories Spring Data REST exports under /api.
+ * Verifies that the repositories holding internal state of the application are not exported, so they can only be
+ * changed through the services and controllers that guard them.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class RepositoryExportIntegrationTest {
+
+    /** Autowired RepositoryResourceMappings of the repositories found by Spring Data REST */
+    @Autowired
+    private RepositoryResourceMappings resourceMappings;
+
+    /**
+     * Asserts that the repository of a domain type is not exported.
+     *
+     * @param domainType the domain type of the repository.
+     */
+    private void assertNotExported(Class<?> domainType) {
+        assertFalse(resourceMappings.getMetadataFor(domainType).isExported(), domainType.getSimpleName());
+    }
+
+    /**
+     * Tests that the scheduler work queue is not exported.
+     */
+    @Test
+    public void testWorkQueueIsNotExported() {
+        assertNotExported(WorkQueueItem.class);
+    }
+
+    /**
+     * Tests that the order notification outbox is not exported.
+     */
+    @Test
+    public void testOrderNotificationOutboxIsNotExported() {
+        assertNotExported(OrderNotification.class);
+    }
+
+    /**
+     * Tests that the order tracking read model is not exported.
+     */
+    @Test
+    public void testOrderTrackingIsNotExported() {
+        assertNotExported(OrderTracking.class);
+    }
+
+    /**
+     * Tests that the registry of Drivers and Vehicles is not exported, as it is administered through the
+     * FleetAdminController.
+     */
+    @Test
+    public void testFleetRegistryIsNotExported() {
+        assertNotExported(Driver.class);
+        assertNotExported(Vehicle.class);
+    }
+
+    /**
+     * Tests that the Inventories are not exported, so their stock is only changed through the services recording
+     * it in the stock ledger.
+     */
+    @Test
+    public void testInventoryIsNotExported() {
+        assertNotExported(Inventory.class);
+    }
+
+    /**
+     * Tests that the Products are not exported, so every change of a Product goes through ProductService and
+     * reaches the search index.
+     */
+    @Test
+    public void testProductIsNotExported() {
+        assertNotExported(Product.class);
+    }
+}
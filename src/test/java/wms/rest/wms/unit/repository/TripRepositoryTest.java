@@ -0,0 +1,89 @@
+package wms.rest.wms.unit.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+import wms.rest.wms.model.Trip;
+import wms.rest.wms.model.TripStatus;
+import wms.rest.wms.repository.TripRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for TripRepository.
+ * Verifying that the bulk status transition works as expected.
+ *
+ * @author Mikkel Stavelie.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+public class TripRepositoryTest {
+
+    /** Autowired TripRepository for access to its methods in testing */
+    @Autowired
+    private TripRepository tripRepository;
+
+    /** Autowired TestEntityManager for handling database operations directly in tests */
+    @Autowired
+    private TestEntityManager entityManager;
+
+    /** Declare Trip with TripStatus LOADING at class level for easier accessibility */
+    private Trip loadingTrip;
+
+    /** Declare Trip with TripStatus DEPARTED at class level for easier accessibility */
+    private Trip departedTrip;
+
+    /**
+     * Prepare the test environment before each test method.
+     * This method is run before each test method to ensure the testing environment is properly initialized.
+     */
+    @BeforeEach
+    public void setup() {
+        loadingTrip = persistTrip(TripStatus.LOADING);
+        departedTrip = persistTrip(TripStatus.DEPARTED);
+        entityManager.flush();
+    }
+
+    /**
+     * Persist a Trip with the specified TripStatus.
+     *
+     * @param tripStatus the TripStatus of the Trip.
+     * @return the persisted Trip.
+     */
+    private Trip persistTrip(TripStatus tripStatus) {
+        Trip trip = new Trip();
+        trip.setTripStatus(tripStatus);
+        trip.setTripStartLocation("Trondheim");
+        trip.setTripDriver("Pietr Didrik");
+        trip.setTripDriverPhone(48056693);
+        return entityManager.persist(trip);
+    }
+
+    /**
+     * Tests that only Trips with the from TripStatus are moved, and that exactly their tripIds are returned.
+     */
+    @Test
+    public void testTransitionTripStatus() {
+        List<Integer> moved = tripRepository.transitionTripStatus(
+                List.of(loadingTrip.getTripId(), departedTrip.getTripId()), TripStatus.LOADING, TripStatus.DEPARTED);
+
+        assertEquals(List.of(loadingTrip.getTripId()), moved);
+        assertEquals(TripStatus.DEPARTED, tripRepository.findById(loadingTrip.getTripId()).orElseThrow().getTripStatus());
+        assertEquals(TripStatus.DEPARTED, tripRepository.findById(departedTrip.getTripId()).orElseThrow().getTripStatus());
+    }
+
+    /**
+     * Tests that an empty List of tripIds moves nothing.
+     */
+    @Test
+    public void testTransitionTripStatusWithoutTrips() {
+        assertTrue(tripRepository.transitionTripStatus(List.of(), TripStatus.LOADING, TripStatus.DEPARTED).isEmpty());
+        assertEquals(TripStatus.LOADING, tripRepository.findById(loadingTrip.getTripId()).orElseThrow().getTripStatus());
+    }
+}
@@ -0,0 +1,159 @@
+package wms.rest.wms.unit.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import wms.rest.wms.api.model.LoginBody;
+import wms.rest.wms.model.Customer;
+import wms.rest.wms.model.Store;
+import wms.rest.wms.repository.CustomerRepository;
+import wms.rest.wms.repository.StoreRepository;
+import wms.rest.wms.service.security.CustomerPrincipalCache;
+import wms.rest.wms.service.security.EncryptionService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration tests for CustomerPrincipalCache through JWTRequestFilter using MockMvc.
+ * Verifies that repeated requests with the same JWT are served from the cache, and that a changed
+ * Customer is evicted so the next request sees the change.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class CustomerPrincipalCacheIntegrationTest {
+
+    /** Provides support for Spring MVC testing */
+    @Autowired
+    private MockMvc mockMvc;
+
+    /** Autowired CustomerPrincipalCache under test */
+    @Autowired
+    private CustomerPrincipalCache customerPrincipalCache;
+
+    /** Autowired CustomerRepository for interaction with the H2 embedded database */
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    /** Autowired StoreRepository for interaction with the H2 embedded database */
+    @Autowired
+    private StoreRepository storeRepository;
+
+    /** Autowired Objectmapper for object serialization and JSON deserialization */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /** Autowired EncryptionService for required password encryption in login */
+    @Autowired
+    private EncryptionService encryptionService;
+
+    /** Declare Customer at class level for easier accessibility */
+    private Customer customer;
+
+    /** Declare Store at class level for easier accessibility */
+    private Store store;
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates a Store and a Customer that can log in, and empties the cache.
+     */
+    @BeforeEach
+    public void setup() {
+        store = new Store();
+        store.setName("Test store");
+        store.setAddress("Test address");
+        store.setCountry("Test country");
+        store.setCity("Test City");
+        store.setPostalCode(5004);
+        storeRepository.save(store);
+
+        customer = new Customer();
+        customer.setEmail("principal@example.com");
+        customer.setFirstName("John");
+        customer.setLastName("Doe");
+        customer.setPassword(encryptionService.encryptPassword("secretpassword11"));
+        customer.setStore(store);
+        customer = customerRepository.save(customer);
+
+        customerPrincipalCache.evictAll();
+    }
+
+    /**
+     * Removes the Customer and Store created by the test.
+     */
+    @AfterEach
+    public void cleanup() {
+        customerRepository.deleteById(customer.getCustomerId());
+        storeRepository.deleteById(store.getStoreId());
+    }
+
+    /**
+     * Return a JWT token when the login request is performed and successful.
+     *
+     * @return a JWT token when the login request if performed and successful.
+     * @throws Exception if the perform request of expect actions fail.
+     */
+    private String authenticateAndGetJwt() throws Exception {
+        MvcResult result = mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new LoginBody("principal@example.com", "secretpassword11"))))
+                .andExpect(status().isOk())
+                .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString()).path("jwt").asText();
+    }
+
+    /**
+     * Tests that the first authenticated request loads the Customer and the following requests hit the cache.
+     *
+     * @throws Exception if the perform request or expect actions fail.
+     */
+    @Test
+    public void testRepeatedRequestsAreServedFromCache() throws Exception {
+        String jwt = authenticateAndGetJwt();
+        CacheStats before = customerPrincipalCache.getStats();
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/auth/me").header("Authorization", "Bearer " + jwt))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.email").value("principal@example.com"));
+        }
+
+        CacheStats stats = customerPrincipalCache.getStats().minus(before);
+        assertEquals(1, stats.missCount());
+        assertEquals(2, stats.hitCount());
+    }
+
+    /**
+     * Tests that updating the Customer evicts it, so the next request loads the updated Customer.
+     *
+     * @throws Exception if the perform request or expect actions fail.
+     */
+    @Test
+    public void testUpdatedCustomerIsEvicted() throws Exception {
+        String jwt = authenticateAndGetJwt();
+        mockMvc.perform(get("/auth/me").header("Authorization", "Bearer " + jwt))
+                .andExpect(jsonPath("$.firstName").value("John"));
+
+        customer.setFirstName("Jane");
+        customerRepository.save(customer);
+
+        mockMvc.perform(get("/auth/me").header("Authorization", "Bearer " + jwt))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstName").value("Jane"));
+    }
+}
@@ -0,0 +1,124 @@
+package wms.rest.wms.unit.service;
+
+import com.google.firebase.messaging.Message;
+import wms.rest.wms.service.fcm.FCMSender;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local FCMSender for testing the notification pipeline offline.
+ * It can simulate network latency, temporary failures for the first attempts of every Message,
+ * permanent rejection, and a sender that hangs until released.
+ *
+ * @author Mikkel Stavelie.
+ */
+public class FakeFCMSender implements FCMSender {
+
+    /** Simulated time one batch send takes */
+    private final long latencyMillis;
+
+    /** Number of attempts of every Message answered with RETRYABLE before it is SENT */
+    private final int temporaryFailures;
+
+    /** Whether every Message is rejected with FAILED */
+    private volatile boolean rejectAll;
+
+    /** Latch a send waits for before it answers, released by release() */
+    private volatile CountDownLatch gate;
+
+    /** Number of times each Message has been sent */
+    private final Map<Message, Integer> attempts = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /** Size of every batch sent */
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+    /** Number of Messages answered with SENT */
+    private final AtomicInteger sent = new AtomicInteger();
+
+    /**
+     * Creates a fake sender.
+     *
+     * @param latencyMillis the simulated time one batch send takes.
+     * @param temporaryFailures the number of attempts of every Message answered with RETRYABLE before it is SENT.
+     * @param rejectAll whether every Message is rejected with FAILED.
+     * @param blocked whether sends hang until release() is called.
+     */
+    public FakeFCMSender(long latencyMillis, int temporaryFailures, boolean rejectAll, boolean blocked) {
+        this.latencyMillis = latencyMillis;
+        this.temporaryFailures = temporaryFailures;
+        this.rejectAll = rejectAll;
+        this.gate = new CountDownLatch(blocked ? 1 : 0);
+    }
+
+    @Override
+    public List<SendOutcome> send(List<Message> messages) {
+        try {
+            gate.await(30, TimeUnit.SECONDS);
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        batchSizes.add(messages.size());
+        List<SendOutcome> outcomes = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            int attempt = attempts.merge(message, 1, Integer::sum);
+            if (rejectAll) {
+                outcomes.add(SendOutcome.FAILED);
+            } else if (attempt <= temporaryFailures) {
+                outcomes.add(SendOutcome.RETRYABLE);
+            } else {
+                sent.incrementAndGet();
+                outcomes.add(SendOutcome.SENT);
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Makes the following sends hang until release() is called.
+     */
+    public void block() {
+        gate = new CountDownLatch(1);
+    }
+
+    /**
+     * Makes the following sends reject every Message with FAILED, or stop rejecting them.
+     *
+     * @param rejectAll whether every Message is rejected with FAILED.
+     */
+    public void reject(boolean rejectAll) {
+        this.rejectAll = rejectAll;
+    }
+
+    /**
+     * Lets blocked sends continue.
+     */
+    public void release() {
+        gate.countDown();
+    }
+
+    /**
+     * Return the number of Messages answered with SENT.
+     *
+     * @return the number of sent Messages.
+     */
+    public int getSent() {
+        return sent.get();
+    }
+
+    /**
+     * Return the size of every batch sent so far.
+     *
+     * @return a copy of the batch sizes.
+     */
+    public List<Integer> getBatchSizes() {
+        synchronized (batchSizes) {
+            return new ArrayList<>(batchSizes);
+        }
+    }
+}
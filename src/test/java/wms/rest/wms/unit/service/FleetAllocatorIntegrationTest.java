@@ -0,0 +1,315 @@
+package wms.rest.wms.unit.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import wms.rest.wms.model.*;
+import wms.rest.wms.repository.DriverRepository;
+import wms.rest.wms.repository.FleetReservationRepository;
+import wms.rest.wms.repository.VehicleRepository;
+import wms.rest.wms.service.trip.FleetAllocator;
+import wms.rest.wms.service.trip.FleetAssignment;
+import wms.rest.wms.service.trip.FleetAvailability;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for FleetAllocator against the H2 embedded database.
+ * The Drivers and Vehicles registered at startup are set aside, so every test allocates from a registry of its own.
+ * Trips depart at 06:00, drive at 70 km/h and stop 20 minutes at each Store, for at most 9 hours a day.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class FleetAllocatorIntegrationTest {
+
+    /** The date the test Trips depart */
+    private static final LocalDate DEPARTURE = LocalDate.of(2030, 1, 7);
+
+    /** Autowired FleetAllocator under test */
+    @Autowired
+    private FleetAllocator fleetAllocator;
+
+    /** Autowired DriverRepository for interaction with the H2 embedded database */
+    @Autowired
+    private DriverRepository driverRepository;
+
+    /** Autowired VehicleRepository for interaction with the H2 embedded database */
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    /** Autowired FleetReservationRepository for reading the reservations in the H2 embedded database */
+    @Autowired
+    private FleetReservationRepository fleetReservationRepository;
+
+    /** Autowired JdbcTemplate for setting aside the Drivers and Vehicles registered at startup */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** The Drivers created by the test */
+    private final List<Driver> drivers = new ArrayList<>();
+
+    /** The Vehicles created by the test */
+    private final List<Vehicle> vehicles = new ArrayList<>();
+
+    /**
+     * Prepare the test environment before each test method.
+     * Sets aside the Drivers and Vehicles registered at startup.
+     */
+    @BeforeEach
+    public void setup() {
+        jdbcTemplate.update("UPDATE driver SET active = FALSE");
+        jdbcTemplate.update("UPDATE vehicle SET active = FALSE");
+    }
+
+    /**
+     * Clean up the test environment after each test method.
+     * Removes the Drivers and Vehicles created by the test and every reservation, and frees the ones registered at
+     * startup.
+     */
+    @AfterEach
+    public void cleanup() {
+        driverRepository.deleteAll(drivers);
+        vehicleRepository.deleteAll(vehicles);
+        drivers.clear();
+        vehicles.clear();
+        jdbcTemplate.update("DELETE FROM fleet_reservation");
+        jdbcTemplate.update("UPDATE driver SET active = TRUE");
+        jdbcTemplate.update("UPDATE vehicle SET active = TRUE");
+    }
+
+    /**
+     * Create and save a Driver.
+     *
+     * @param name the name of the Driver.
+     * @param shiftStart the time of day the shift of the Driver starts.
+     * @param shiftEnd the time of day the shift of the Driver ends.
+     * @return the saved Driver.
+     */
+    private Driver saveDriver(String name, LocalTime shiftStart, LocalTime shiftEnd) {
+        Driver driver = new Driver();
+        driver.setName(name);
+        driver.setPhone(12345678);
+        driver.setShiftStart(shiftStart);
+        driver.setShiftEnd(shiftEnd);
+        drivers.add(driverRepository.save(driver));
+        return driver;
+    }
+
+    /**
+     * Create and save a Vehicle.
+     *
+     * @param registrationNumber the registration number of the Vehicle.
+     * @param temperatureClass the temperature class of the Vehicle.
+     * @return the saved Vehicle.
+     */
+    private Vehicle saveVehicle(String registrationNumber, ProductType temperatureClass) {
+        Vehicle vehicle = new Vehicle();
+        vehicle.setRegistrationNumber(registrationNumber);
+        vehicle.setTemperatureClass(temperatureClass);
+        vehicles.add(vehicleRepository.save(vehicle));
+        return vehicle;
+    }
+
+    /**
+     * Return the dates a Driver or Vehicle is reserved for in the database.
+     *
+     * @param type whether the resource is a Driver or a Vehicle.
+     * @param id the ID of the Driver or Vehicle.
+     * @return the first and last date of each reservation, earliest first.
+     */
+    private List<List<LocalDate>> reservations(FleetResourceType type, int id) {
+        return fleetReservationRepository.findByResourceTypeAndResourceIdOrderByReservedFromAsc(type, id).stream()
+                .map(reservation -> List.of(reservation.getReservedFrom(), reservation.getReservedUntil()))
+                .toList();
+    }
+
+    /**
+     * Return the dates a Driver is reserved for in the database.
+     *
+     * @param driver the Driver.
+     * @return the first and last date of each reservation, earliest first.
+     */
+    private List<List<LocalDate>> reservations(Driver driver) {
+        return reservations(FleetResourceType.DRIVER, driver.getDriverId());
+    }
+
+    /**
+     * Tests that only Drivers whose shift has started at the departure time and has not ended are given Trips,
+     * and that only Vehicles of the temperature class of the Trip are.
+     */
+    @Test
+    public void testOnlyDriversOnShiftAndVehiclesOfTheClassAreGiven() {
+        Driver onShift = saveDriver("On shift", LocalTime.of(6, 0), LocalTime.of(14, 0));
+        saveDriver("Starts later", LocalTime.of(8, 0), LocalTime.of(16, 0));
+        saveDriver("Ends at departure", LocalTime.of(2, 0), LocalTime.of(6, 0));
+        Vehicle dry = saveVehicle("TEST-DRY", ProductType.DRY_GOODS);
+        saveVehicle("TEST-FRZ", ProductType.FROZEN_GOODS);
+
+        FleetAvailability availability = fleetAllocator.availability();
+        assertTrue(fleetAllocator.allocate(availability, ProductType.REFRIGERATED_GOODS, DEPARTURE, 100, 2).isEmpty());
+
+        FleetAssignment assignment = fleetAllocator.allocate(availability, ProductType.DRY_GOODS, DEPARTURE, 100, 2)
+                .orElseThrow();
+        assertEquals(onShift.getDriverId(), assignment.getDriver().getDriverId());
+        assertEquals(dry.getVehicleId(), assignment.getVehicle().getVehicleId());
+        assertTrue(fleetAllocator.allocate(availability, ProductType.FROZEN_GOODS, DEPARTURE, 100, 2).isEmpty());
+    }
+
+    /**
+     * Tests that a Driver is not given a second Trip on a date it is reserved for, neither by the same planner run
+     * nor by a later one, and is given one on the next date.
+     */
+    @Test
+    public void testDriverIsNotDoubleBooked() {
+        Driver driver = saveDriver("Only driver", LocalTime.of(6, 0), LocalTime.of(16, 0));
+        saveVehicle("TEST-DRY-1", ProductType.DRY_GOODS);
+        saveVehicle("TEST-DRY-2", ProductType.DRY_GOODS);
+
+        FleetAvailability availability = fleetAllocator.availability();
+        FleetAssignment assignment = fleetAllocator.allocate(availability, ProductType.DRY_GOODS, DEPARTURE, 100, 2)
+                .orElseThrow();
+        assertEquals(DEPARTURE, assignment.getUntil());
+        assertEquals(List.of(List.of(DEPARTURE, DEPARTURE)), reservations(driver));
+        assertTrue(fleetAllocator.allocate(availability, ProductType.DRY_GOODS, DEPARTURE, 100, 2).isEmpty());
+        assertTrue(fleetAllocator.allocate(fleetAllocator.availability(), ProductType.DRY_GOODS, DEPARTURE, 100, 2)
+                .isEmpty());
+
+        assertTrue(fleetAllocator.allocate(availability, ProductType.DRY_GOODS, DEPARTURE.plusDays(1), 100, 2)
+                .isPresent());
+        assertEquals(List.of(List.of(DEPARTURE, DEPARTURE), List.of(DEPARTURE.plusDays(1), DEPARTURE.plusDays(1))),
+                reservations(driver));
+    }
+
+    /**
+     * Tests that a route longer than the shift of the Driver reserves the Driver and Vehicle for several days.
+     * 1,120 km at 70 km/h and two stops take 16 hours and 40 minutes, which is three shifts of 8 hours.
+     */
+    @Test
+    public void testLongRouteReservesSeveralDays() {
+        Driver driver = saveDriver("Short shift", LocalTime.of(6, 0), LocalTime.of(14, 0));
+        Vehicle vehicle = saveVehicle("TEST-REF", ProductType.REFRIGERATED_GOODS);
+
+        FleetAssignment assignment = fleetAllocator.allocate(fleetAllocator.availability(),
+                ProductType.REFRIGERATED_GOODS, DEPARTURE, 1_120, 2).orElseThrow();
+
+        assertEquals(DEPARTURE, assignment.getFrom());
+        assertEquals(DEPARTURE.plusDays(2), assignment.getUntil());
+        assertEquals(List.of(List.of(DEPARTURE, DEPARTURE.plusDays(2))), reservations(driver));
+        assertEquals(List.of(List.of(DEPARTURE, DEPARTURE.plusDays(2))),
+                reservations(FleetResourceType.VEHICLE, vehicle.getVehicleId()));
+    }
+
+    /**
+     * Tests that a Driver reserved by a planner run that read the registry at the same time as this one
+     * is skipped, and that a Driver reserved for a Trip without a Vehicle is given back.
+     */
+    @Test
+    public void testOverlappingPlannerRunsSkipReservedResources() {
+        Driver first = saveDriver("First", LocalTime.of(6, 0), LocalTime.of(14, 0));
+        Driver second = saveDriver("Second", LocalTime.of(6, 0), LocalTime.of(14, 0));
+        saveVehicle("TEST-DRY", ProductType.DRY_GOODS);
+        FleetAvailability run = fleetAllocator.availability();
+        FleetAvailability overlappingRun = fleetAllocator.availability();
+
+        FleetAssignment assignment = fleetAllocator.allocate(overlappingRun, ProductType.DRY_GOODS, DEPARTURE, 100, 2)
+                .orElseThrow();
+        assertEquals(first.getDriverId(), assignment.getDriver().getDriverId());
+
+        // The run still sees the first Driver and the Vehicle as free, and finds both reserved
+        assertTrue(fleetAllocator.allocate(run, ProductType.DRY_GOODS, DEPARTURE, 100, 2).isEmpty());
+        assertTrue(reservations(second).isEmpty());
+    }
+
+    /**
+     * Tests that of several planner runs allocating the only Driver and Vehicle at the same time, one gets them.
+     *
+     * @throws Exception if a planner run fails.
+     */
+    @Test
+    public void testConcurrentPlannerRunsHaveOneWinner() throws Exception {
+        saveDriver("Only driver", LocalTime.of(6, 0), LocalTime.of(14, 0));
+        saveVehicle("TEST-DRY", ProductType.DRY_GOODS);
+        int runs = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(runs);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<FleetAssignment>>> attempts = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            FleetAvailability availability = fleetAllocator.availability();
+            attempts.add(executor.submit(() -> {
+                start.await();
+                return fleetAllocator.allocate(availability, ProductType.DRY_GOODS, DEPARTURE, 100, 2);
+            }));
+        }
+        start.countDown();
+        int winners = 0;
+        for (Future<Optional<FleetAssignment>> attempt : attempts) {
+            winners += attempt.get(30, TimeUnit.SECONDS).isPresent() ? 1 : 0;
+        }
+        executor.shutdown();
+        assertEquals(1, winners);
+    }
+
+    /**
+     * Tests that a Driver reserved for a later Trip is still given a Trip on an earlier date it is free on, and on
+     * the free dates between two of its Trips, but never on dates overlapping one.
+     */
+    @Test
+    public void testDriverIsGivenTripsOnFreeDatesBeforeAndBetweenReservations() {
+        Driver driver = saveDriver("Only driver", LocalTime.of(6, 0), LocalTime.of(16, 0));
+        saveVehicle("TEST-DRY-1", ProductType.DRY_GOODS);
+        saveVehicle("TEST-DRY-2", ProductType.DRY_GOODS);
+
+        FleetAvailability availability = fleetAllocator.availability();
+        assertTrue(fleetAllocator.allocate(availability, ProductType.DRY_GOODS, DEPARTURE.plusDays(4), 100, 2)
+                .isPresent());
+        assertTrue(fleetAllocator.allocate(availability, ProductType.DRY_GOODS, DEPARTURE, 100, 2).isPresent());
+
+        // A route of three days starting two days before the later Trip overlaps it
+        assertTrue(fleetAllocator.allocate(fleetAllocator.availability(), ProductType.DRY_GOODS,
+                DEPARTURE.plusDays(2), 1_400, 2).isEmpty());
+        assertTrue(fleetAllocator.allocate(fleetAllocator.availability(), ProductType.DRY_GOODS,
+                DEPARTURE.plusDays(1), 1_000, 2).isPresent());
+
+        assertEquals(List.of(List.of(DEPARTURE, DEPARTURE), List.of(DEPARTURE.plusDays(1), DEPARTURE.plusDays(2)),
+                List.of(DEPARTURE.plusDays(4), DEPARTURE.plusDays(4))), reservations(driver));
+    }
+
+    /**
+     * Tests that a Trip finished early gives back the rest of its dates, that a removed Trip gives back every date,
+     * and that the reservations of other Trips are kept.
+     */
+    @Test
+    public void testReleaseGivesBackRemainingDates() {
+        Driver driver = saveDriver("Short shift", LocalTime.of(6, 0), LocalTime.of(14, 0));
+        saveVehicle("TEST-DRY", ProductType.DRY_GOODS);
+        FleetAssignment assignment = fleetAllocator.allocate(fleetAllocator.availability(), ProductType.DRY_GOODS,
+                DEPARTURE, 1_120, 2).orElseThrow();
+        Trip trip = new Trip();
+        trip.setDriver(assignment.getDriver());
+        trip.setVehicle(assignment.getVehicle());
+        trip.setTripStartDate(assignment.getFrom());
+        trip.setTripEndDate(assignment.getUntil());
+
+        fleetAllocator.release(trip, DEPARTURE);
+        assertEquals(List.of(List.of(DEPARTURE, DEPARTURE)), reservations(driver));
+
+        FleetAssignment next = fleetAllocator.allocate(fleetAllocator.availability(), ProductType.DRY_GOODS,
+                DEPARTURE.plusDays(1), 1_120, 2).orElseThrow();
+        trip.setTripEndDate(DEPARTURE);
+        fleetAllocator.release(trip, DEPARTURE.minusDays(1));
+        assertEquals(List.of(List.of(next.getFrom(), next.getUntil())), reservations(driver));
+    }
+}
@@ -0,0 +1,107 @@
+package wms.rest.wms.unit.service;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import wms.rest.wms.model.Customer;
+import wms.rest.wms.service.security.JwtService;
+
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test class for JwtService.
+ * Verifies that only tokens signed by the service, from its issuer and not yet expired are accepted,
+ * and that a verified token is served from the verified token cache.
+ *
+ * @author Mikkel Stavelie.
+ */
+public class JwtServiceTest {
+
+    /** Key the JwtService under test signs with */
+    private static final String KEY = "TestKey";
+
+    /** Issuer of the JwtService under test */
+    private static final String ISSUER = "TestIssuer";
+
+    /** JwtService under test */
+    private JwtService jwtService;
+
+    /** Declare Customer at class level for easier accessibility */
+    private Customer customer;
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates a JwtService with the same properties as the test profile.
+     */
+    @BeforeEach
+    public void setup() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "algorithmKey", KEY);
+        ReflectionTestUtils.setField(jwtService, "issuer", ISSUER);
+        ReflectionTestUtils.setField(jwtService, "expiryInSeconds", 3600);
+        ReflectionTestUtils.setField(jwtService, "verifiedCacheMaximumSize", 100L);
+        jwtService.postConstruct();
+
+        customer = new Customer();
+        customer.setEmail("jwt@example.com");
+    }
+
+    /**
+     * Tests that a token generated by the service is verified once and then served from the cache.
+     */
+    @Test
+    public void testGeneratedTokenIsVerifiedOnceThenCached() {
+        String token = jwtService.generateJWT(customer);
+
+        assertEquals("jwt@example.com", jwtService.getEmail(token));
+        assertEquals("jwt@example.com", jwtService.getEmail(token));
+
+        assertEquals(1, jwtService.getVerifiedTokenStats().missCount());
+        assertEquals(1, jwtService.getVerifiedTokenStats().hitCount());
+    }
+
+    /**
+     * Tests that a token with a changed payload but the signature of a cached token is rejected.
+     */
+    @Test
+    public void testTamperedPayloadIsRejectedEvenWhenSignatureIsCached() {
+        String token = jwtService.generateJWT(customer);
+        jwtService.getEmail(token);
+
+        String[] parts = token.split("\\.");
+        String forgedPayload = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                ("{\"EMAIL\":\"admin@example.com\",\"iss\":\"" + ISSUER + "\",\"exp\":4102444800}").getBytes());
+        String forged = parts[0] + "." + forgedPayload + "." + parts[2];
+
+        assertThrows(JWTVerificationException.class, () -> jwtService.getEmail(forged));
+    }
+
+    /**
+     * Tests that tokens signed with another key, from another issuer, expired or without expiry are rejected.
+     */
+    @Test
+    public void testInvalidTokensAreRejected() {
+        Date inOneHour = new Date(System.currentTimeMillis() + 3600_000);
+        String otherKey = JWT.create().withClaim("EMAIL", "jwt@example.com").withIssuer(ISSUER)
+                .withExpiresAt(inOneHour).sign(Algorithm.HMAC256("OtherKey"));
+        String otherIssuer = JWT.create().withClaim("EMAIL", "jwt@example.com").withIssuer("OtherIssuer")
+                .withExpiresAt(inOneHour).sign(Algorithm.HMAC256(KEY));
+        String expired = JWT.create().withClaim("EMAIL", "jwt@example.com").withIssuer(ISSUER)
+                .withExpiresAt(new Date(System.currentTimeMillis() - 1000)).sign(Algorithm.HMAC256(KEY));
+        String withoutExpiry = JWT.create().withClaim("EMAIL", "jwt@example.com").withIssuer(ISSUER)
+                .sign(Algorithm.HMAC256(KEY));
+
+        assertThrows(JWTVerificationException.class, () -> jwtService.getEmail(otherKey));
+        assertThrows(JWTVerificationException.class, () -> jwtService.getEmail(otherIssuer));
+        assertThrows(JWTVerificationException.class, () -> jwtService.getEmail(expired));
+        assertThrows(JWTVerificationException.class, () -> jwtService.getEmail(withoutExpiry));
+        assertThrows(JWTVerificationException.class, () -> jwtService.getEmail("not.a.token"));
+    }
+}
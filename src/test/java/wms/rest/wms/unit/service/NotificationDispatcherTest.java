@@ -0,0 +1,192 @@
+package wms.rest.wms.unit.service;
+
+import com.google.firebase.messaging.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import wms.rest.wms.exception.NotificationQueueFullException;
+import wms.rest.wms.model.NotificationStatus;
+import wms.rest.wms.service.fcm.NotificationDispatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for NotificationDispatcher against the FakeFCMSender.
+ * Verifies batching, retry with backoff, giving up after the maximum attempts, the completion callback, and
+ * backpressure on a full queue.
+ *
+ * @author Mikkel Stavelie.
+ */
+public class NotificationDispatcherTest {
+
+    /** Declare NotificationDispatcher at class level, so it can be stopped after each test */
+    private NotificationDispatcher dispatcher;
+
+    /**
+     * Stops the dispatcher started by the test.
+     *
+     * @throws InterruptedException if interrupted while stopping.
+     */
+    @AfterEach
+    public void cleanup() throws InterruptedException {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    /**
+     * Create and start a dispatcher with short backoff delays.
+     *
+     * @param sender the fake sender.
+     * @param capacity the queue capacity.
+     * @param workers the number of workers.
+     * @param maxAttempts the maximum number of attempts.
+     * @return the started dispatcher.
+     */
+    private NotificationDispatcher startDispatcher(FakeFCMSender sender, int capacity, int workers, int maxAttempts) {
+        dispatcher = new NotificationDispatcher(sender, capacity, workers, 100, maxAttempts, 5, 40, 10, false);
+        dispatcher.start();
+        return dispatcher;
+    }
+
+    /**
+     * Create a Message to a device token.
+     *
+     * @param i the number of the Message.
+     * @return the Message.
+     */
+    private Message message(int i) {
+        return Message.builder().setToken("device-token-" + i).putData("index", String.valueOf(i)).build();
+    }
+
+    /**
+     * Wait until a condition holds, failing the test after 10 seconds.
+     *
+     * @param condition the condition to wait for.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Condition not reached within 10 seconds");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Tests that queued notifications are sent in batches of at most the batch size, and marked SENT.
+     *
+     * @throws Exception if submitting or waiting fails.
+     */
+    @Test
+    public void testNotificationsAreSentInBatches() throws Exception {
+        FakeFCMSender sender = new FakeFCMSender(5, 0, false, false);
+        startDispatcher(sender, 1000, 1, 3);
+
+        List<String> trackingIds = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            trackingIds.add(dispatcher.submit(message(i)));
+        }
+        await(() -> dispatcher.getSentCount() == 500);
+
+        List<Integer> batchSizes = sender.getBatchSizes();
+        assertTrue(batchSizes.size() < 500, "Expected notifications to be batched, but got " + batchSizes.size() + " sends");
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 100));
+        for (String trackingId : trackingIds) {
+            assertEquals(NotificationStatus.SENT, dispatcher.getStatus(trackingId).orElseThrow());
+        }
+    }
+
+    /**
+     * Tests that a notification that fails temporarily is retried until it is sent.
+     *
+     * @throws Exception if submitting or waiting fails.
+     */
+    @Test
+    public void testTemporaryFailuresAreRetried() throws Exception {
+        FakeFCMSender sender = new FakeFCMSender(0, 2, false, false);
+        startDispatcher(sender, 100, 2, 5);
+
+        String trackingId = dispatcher.submit(message(1));
+        await(() -> dispatcher.getStatus(trackingId).orElseThrow() == NotificationStatus.SENT);
+
+        assertEquals(2, dispatcher.getRetryCount());
+        assertEquals(0, dispatcher.getFailedCount());
+    }
+
+    /**
+     * Tests that a notification is FAILED once it runs out of attempts, and that a rejected one is not retried.
+     *
+     * @throws Exception if submitting or waiting fails.
+     */
+    @Test
+    public void testNotificationFailsAfterMaxAttempts() throws Exception {
+        startDispatcher(new FakeFCMSender(0, 10, false, false), 100, 1, 3);
+        String retried = dispatcher.submit(message(1));
+        await(() -> dispatcher.getStatus(retried).orElseThrow() == NotificationStatus.FAILED);
+        assertEquals(2, dispatcher.getRetryCount());
+        dispatcher.shutdown();
+
+        startDispatcher(new FakeFCMSender(0, 0, true, false), 100, 1, 3);
+        String rejected = dispatcher.submit(message(2));
+        await(() -> dispatcher.getStatus(rejected).orElseThrow() == NotificationStatus.FAILED);
+        assertEquals(0, dispatcher.getRetryCount());
+    }
+
+    /**
+     * Tests that the completion callback of a notification is told it was SENT after its retries, or FAILED once it
+     * is rejected, and is not told about the attempts in between.
+     *
+     * @throws Exception if submitting or waiting fails.
+     */
+    @Test
+    public void testCompletionCallbackIsToldTheFinalStatus() throws Exception {
+        Map<Integer, List<NotificationStatus>> answers = new ConcurrentHashMap<>();
+        startDispatcher(new FakeFCMSender(0, 2, false, false), 100, 1, 5);
+        dispatcher.submit(message(1), status -> answers.computeIfAbsent(1, i -> new ArrayList<>()).add(status));
+        await(() -> answers.containsKey(1));
+        dispatcher.shutdown();
+
+        startDispatcher(new FakeFCMSender(0, 0, true, false), 100, 1, 5);
+        dispatcher.submit(message(2), status -> answers.computeIfAbsent(2, i -> new ArrayList<>()).add(status));
+        await(() -> answers.containsKey(2));
+
+        assertEquals(List.of(NotificationStatus.SENT), answers.get(1));
+        assertEquals(List.of(NotificationStatus.FAILED), answers.get(2));
+    }
+
+    /**
+     * Tests that submit refuses notifications once the queue is full, and accepts them again once it drains.
+     *
+     * @throws Exception if submitting or waiting fails.
+     */
+    @Test
+    public void testFullQueueRefusesNotifications() throws Exception {
+        FakeFCMSender sender = new FakeFCMSender(0, 0, false, true);
+        startDispatcher(sender, 10, 1, 3);
+
+        int accepted = 0;
+        boolean refused = false;
+        while (!refused && accepted < 1000) {
+            try {
+                dispatcher.submit(message(accepted));
+                accepted++;
+            } catch (NotificationQueueFullException e) {
+                refused = true;
+            }
+        }
+        assertTrue(refused);
+        // The queue holds 10, and the blocked worker holds at most one batch
+        assertTrue(accepted <= 10 + 100);
+
+        sender.release();
+        int submitted = accepted;
+        await(() -> dispatcher.getSentCount() == submitted);
+        assertNotNull(dispatcher.submit(message(accepted)));
+    }
+}
@@ -0,0 +1,335 @@
+package wms.rest.wms.unit.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import wms.rest.wms.model.*;
+import wms.rest.wms.repository.*;
+import wms.rest.wms.service.OrderService;
+import wms.rest.wms.service.SchedulerLeaseService;
+import wms.rest.wms.service.TripService;
+import wms.rest.wms.service.WorkQueueService;
+import wms.rest.wms.service.fcm.FCMSender;
+import wms.rest.wms.service.fcm.OrderNotificationRelay;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the order notification outbox against the H2 embedded database and the FakeFCMSender.
+ * Verifies that a committed status change is sent after commit, that a rolled back one is never sent, that a
+ * row stays in the outbox until its notification is SENT and is put back when it FAILED, that a scheduler run
+ * finishes without waiting for the notifications it causes, and that only the instance holding the lease of the
+ * relay job relays the outbox.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class OrderNotificationOutboxIntegrationTest {
+
+    /**
+     * Replaces the Firebase sender with the FakeFCMSender.
+     */
+    @TestConfiguration
+    static class FakeSenderConfiguration {
+
+        @Bean
+        @Primary
+        FCMSender fakeFCMSender() {
+            return new FakeFCMSender(0, 0, false, false);
+        }
+    }
+
+    /** Autowired FakeFCMSender the notifications end up in */
+    @Autowired
+    private FCMSender fcmSender;
+
+    /** Autowired OrderService for running the Order status transitions */
+    @Autowired
+    private OrderService orderService;
+
+    /** Autowired TripService for running the Trip scheduled jobs */
+    @Autowired
+    private TripService tripService;
+
+    /** Autowired WorkQueueService for recording the departed Trip */
+    @Autowired
+    private WorkQueueService workQueueService;
+
+    /** Autowired OrderNotificationRelay for draining the outbox on demand */
+    @Autowired
+    private OrderNotificationRelay orderNotificationRelay;
+
+    /** Autowired OrderNotificationRepository for reading the outbox */
+    @Autowired
+    private OrderNotificationRepository orderNotificationRepository;
+
+    /** Autowired OrderRepository for interaction with the H2 embedded database */
+    @Autowired
+    private OrderRepository orderRepository;
+
+    /** Autowired ShipmentRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    /** Autowired TripRepository for interaction with the H2 embedded database */
+    @Autowired
+    private TripRepository tripRepository;
+
+    /** Autowired JdbcTemplate for freeing the Drivers and Vehicles reserved by the Trips */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Autowired StoreRepository for interaction with the H2 embedded database */
+    @Autowired
+    private StoreRepository storeRepository;
+
+    /** Autowired CustomerRepository for interaction with the H2 embedded database */
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    /** Autowired NamedParameterJdbcTemplate for the SchedulerLeaseService of another instance */
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    /** Autowired PlatformTransactionManager for the SchedulerLeaseService of another instance */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /** Autowired TransactionTemplate for committing or rolling back the status changes */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /** Declare FakeFCMSender at class level for easier accessibility */
+    private FakeFCMSender sender;
+
+    /** Declare Store at class level for easier accessibility */
+    private Store store;
+
+    /** Declare Customer at class level for easier accessibility */
+    private Customer customer;
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates a Store and a Customer the Orders are placed by.
+     */
+    @BeforeEach
+    public void setup() {
+        sender = (FakeFCMSender) fcmSender;
+
+        store = new Store();
+        store.setName("Test store");
+        store.setAddress("Test address");
+        store.setCountry("Test country");
+        store.setCity("Test City");
+        store.setPostalCode(5004);
+        storeRepository.save(store);
+
+        customer = new Customer();
+        customer.setEmail("outbox@example.com");
+        customer.setFirstName("John");
+        customer.setLastName("Doe");
+        customer.setPassword("secretpassword11");
+        customer.setStore(store);
+        customerRepository.save(customer);
+    }
+
+    /**
+     * Clean up the test environment after each test method.
+     * Removes the outbox rows, Trips, Shipments, Orders, Customer and Store created by the test,
+     * and frees the Drivers and Vehicles the Trips reserved.
+     */
+    @AfterEach
+    public void cleanup() {
+        sender.reject(false);
+        sender.release();
+        orderNotificationRepository.deleteAll();
+        orderRepository.deleteAll();
+        shipmentRepository.deleteAll();
+        tripRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM fleet_reservation");
+        customerRepository.deleteAll();
+        storeRepository.deleteAll();
+    }
+
+    /**
+     * Create and save an Order.
+     *
+     * @param status the OrderStatus of the Order.
+     * @param shipment the Shipment of the Order, can be null.
+     * @return the saved Order.
+     */
+    private Order saveOrder(OrderStatus status, Shipment shipment) {
+        Order order = new Order();
+        order.setOrderDate(LocalDate.now());
+        order.setOrderStatus(status);
+        order.setWishedDeliveryDate(LocalDate.of(2024, 4, 15));
+        order.setCustomer(customer);
+        order.setStore(store);
+        order.setShipment(shipment);
+        return orderRepository.save(order);
+    }
+
+    /**
+     * Wait until a condition holds, failing the test after 10 seconds.
+     *
+     * @param condition the condition to wait for.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Condition not reached within 10 seconds");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Tests that a committed status change writes an outbox row that is sent after commit.
+     *
+     * @throws Exception if waiting fails.
+     */
+    @Test
+    public void testCommittedStatusChangeIsSentAfterCommit() throws Exception {
+        Order order = saveOrder(OrderStatus.PICKING, null);
+        int sentBefore = sender.getSent();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            orderService.updateFromPickingToPicked(order);
+            assertEquals(1, orderNotificationRepository.count());
+            assertEquals(sentBefore, sender.getSent());
+        });
+
+        await(() -> sender.getSent() == sentBefore + 1);
+        await(() -> orderNotificationRepository.count() == 0);
+    }
+
+    /**
+     * Tests that a rolled back status change leaves no notification behind.
+     */
+    @Test
+    public void testRolledBackStatusChangeIsNotSent() {
+        Order order = saveOrder(OrderStatus.PICKING, null);
+        int sentBefore = sender.getSent();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            orderService.updateFromPickingToPicked(order);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, orderNotificationRepository.count());
+        assertEquals(0, orderNotificationRelay.relayPending());
+        assertEquals(sentBefore, sender.getSent());
+        assertEquals(OrderStatus.PICKING, orderRepository.findById(order.getOrderId()).orElseThrow().getOrderStatus());
+    }
+
+    /**
+     * Tests that the outbox is left to another instance while it holds the lease of the relay job, and is relayed
+     * once the lease is released.
+     *
+     * @throws Exception if waiting fails.
+     */
+    @Test
+    public void testOutboxIsRelayedByTheInstanceHoldingTheLease() throws Exception {
+        SchedulerLeaseService otherInstance = new SchedulerLeaseService(namedParameterJdbcTemplate, transactionManager,
+                "other-instance", 30_000, 8);
+        Optional<SchedulerLease> lease = otherInstance.tryAcquire(OrderNotificationRelay.RELAY_NOTIFICATIONS_JOB);
+        while (lease.isEmpty()) {
+            Thread.sleep(10);
+            lease = otherInstance.tryAcquire(OrderNotificationRelay.RELAY_NOTIFICATIONS_JOB);
+        }
+        Order order = saveOrder(OrderStatus.PICKING, null);
+        int sentBefore = sender.getSent();
+
+        transactionTemplate.executeWithoutResult(status -> orderService.updateFromPickingToPicked(order));
+
+        assertEquals(0, orderNotificationRelay.relayPending());
+        assertEquals(1, orderNotificationRepository.count());
+        assertEquals(sentBefore, sender.getSent());
+
+        otherInstance.release(lease.get());
+        otherInstance.releaseAll();
+        orderNotificationRelay.wakeUp();
+        await(() -> orderNotificationRepository.count() == 0);
+        await(() -> sender.getSent() == sentBefore + 1);
+    }
+
+    /**
+     * Tests that the IN TRANSIT scheduler finishes while FCM does not answer, and that the notifications
+     * it recorded are sent once FCM answers again.
+     *
+     * @throws Exception if waiting fails.
+     */
+    @Test
+    public void testSchedulerDoesNotWaitForNotifications() throws Exception {
+        Trip trip = new Trip();
+        trip.setTripStatus(TripStatus.DEPARTED);
+        trip.setTripStartLocation("Trondheim");
+        trip.setTripDriver("Pietr Didrik");
+        trip.setTripDriverPhone(48056693);
+        tripRepository.save(trip);
+        Shipment shipment = new Shipment();
+        shipment.setShipmentLoadLocation("Trondheim");
+        shipment.setShipmentUnloadLocation(store.getName());
+        shipment.setTrip(trip);
+        shipmentRepository.save(shipment);
+        int orders = 200;
+        transactionTemplate.executeWithoutResult(status -> {
+            Shipment managed = shipmentRepository.findById(shipment.getShipmentId()).orElseThrow();
+            for (int i = 0; i < orders; i++) {
+                saveOrder(OrderStatus.PICKED, managed);
+            }
+        });
+        workQueueService.enqueue(WorkQueueTopic.TRIP_DEPARTED, trip.getTripId());
+        int sentBefore = sender.getSent();
+        sender.block();
+
+        tripService.updateTripStatusFromDepartedToInTransit();
+
+        assertEquals(TripStatus.IN_TRANSIT, tripRepository.findById(trip.getTripId()).orElseThrow().getTripStatus());
+        assertEquals(sentBefore, sender.getSent());
+        // The relay hands every row to the notification queue even while FCM does not answer, and keeps the rows
+        await(() -> orderNotificationRepository.findAll().stream().filter(row -> row.getRelayedAt() != null).count() == orders);
+        assertEquals(orders, orderNotificationRepository.count());
+
+        sender.release();
+        await(() -> sender.getSent() == sentBefore + orders);
+        await(() -> orderNotificationRepository.count() == 0);
+    }
+
+    /**
+     * Tests that a notification FCM rejects puts its row back in the outbox until it has been relayed
+     * max-attempts times, after which the row is left there and not relayed again.
+     *
+     * @throws Exception if waiting fails.
+     */
+    @Test
+    public void testFailedNotificationIsPutBackUntilMaxAttempts() throws Exception {
+        Order order = saveOrder(OrderStatus.PICKING, null);
+        int sentBefore = sender.getSent();
+        sender.reject(true);
+
+        transactionTemplate.executeWithoutResult(status -> orderService.updateFromPickingToPicked(order));
+
+        await(() -> orderNotificationRepository.findAll().stream()
+                .anyMatch(row -> row.getRelayAttempts() == 5 && row.getRelayedAt() == null));
+        sender.reject(false);
+        assertEquals(0, orderNotificationRelay.relayPending());
+        assertEquals(1, orderNotificationRepository.count());
+        assertEquals(sentBefore, sender.getSent());
+    }
+}
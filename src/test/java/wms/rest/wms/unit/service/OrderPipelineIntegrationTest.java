@@ -0,0 +1,268 @@
+package wms.rest.wms.unit.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import wms.rest.wms.api.model.OrderIntakeResult;
+import wms.rest.wms.model.*;
+import wms.rest.wms.repository.*;
+import wms.rest.wms.service.OrderService;
+import wms.rest.wms.service.pipeline.OrderPipeline;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the OrderPipeline against the H2 embedded database, with the pipeline switched on and
+ * without any Scheduled job. Verifies that registered Orders are driven through every stage to IN_TRANSIT by the
+ * events of the stages before them, that Orders registered without an event are picked up by a sweep, and that
+ * Orders wait for the cutoff of their delivery date before the poll of the pipeline releases them together.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest(properties = "pipeline.enabled=true")
+@ActiveProfiles("test")
+public class OrderPipelineIntegrationTest {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderPipelineIntegrationTest.class);
+
+    /** Autowired OrderPipeline under test */
+    @Autowired
+    private OrderPipeline orderPipeline;
+
+    /** Autowired OrderService for placing Orders */
+    @Autowired
+    private OrderService orderService;
+
+    /** Autowired OrderRepository for interaction with the H2 embedded database */
+    @Autowired
+    private OrderRepository orderRepository;
+
+    /** Autowired OrderTrackingRepository for interaction with the H2 embedded database */
+    @Autowired
+    private OrderTrackingRepository orderTrackingRepository;
+
+    /** Autowired ShipmentRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    /** Autowired TripRepository for interaction with the H2 embedded database */
+    @Autowired
+    private TripRepository tripRepository;
+
+    /** Autowired StoreRepository for interaction with the H2 embedded database */
+    @Autowired
+    private StoreRepository storeRepository;
+
+    /** Autowired CustomerRepository for interaction with the H2 embedded database */
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    /** Autowired ProductRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Autowired JdbcTemplate for freeing the Drivers and Vehicles reserved by the Trips */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Declare Customer at class level for easier accessibility */
+    private Customer customer;
+
+    /** Declare Product with 10 in available stock at class level for easier accessibility */
+    private Product product;
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates a Store, a Customer and a Product with 10 in available stock.
+     */
+    @BeforeEach
+    public void setup() {
+        Store store = new Store();
+        store.setName("Pipeline store");
+        store.setAddress("Test address");
+        store.setCountry("Test country");
+        store.setCity("Oslo");
+        store.setPostalCode(150);
+        storeRepository.save(store);
+
+        customer = new Customer();
+        customer.setEmail("pipeline@example.com");
+        customer.setFirstName("John");
+        customer.setLastName("Doe");
+        customer.setPassword("secretpassword11");
+        customer.setStore(store);
+        customerRepository.save(customer);
+
+        product = new Product();
+        product.setName("Pipeline product");
+        product.setDescription("Description");
+        product.setSupplier("Supplier");
+        product.setBestBeforeDate(new Date());
+        product.setProductType(ProductType.DRY_GOODS);
+        product.setPrice(20.00);
+        product.setGtin(77770);
+        product.setBatch(11111);
+        Inventory inventory = new Inventory();
+        inventory.setTotalStock(10);
+        inventory.setAvailableStock(10);
+        inventory.setProduct(product);
+        product.setInventory(inventory);
+        productRepository.save(product);
+    }
+
+    /**
+     * Clean up the test environment after each test method.
+     * Removes every tracking row, Order, Shipment, Trip, Customer, Store and the Product created by the test,
+     * and frees the Drivers and Vehicles the Trips reserved.
+     */
+    @AfterEach
+    public void cleanup() {
+        orderTrackingRepository.deleteAll();
+        orderRepository.deleteAll();
+        shipmentRepository.deleteAll();
+        tripRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM fleet_reservation");
+        customerRepository.deleteAll();
+        storeRepository.deleteAll();
+        productRepository.deleteById(product.getProductId());
+    }
+
+    /**
+     * Create an Order of one Product.
+     *
+     * @return the Order.
+     */
+    private Order order() {
+        return order(LocalDate.now());
+    }
+
+    /**
+     * Create an Order of one Product for a delivery date.
+     *
+     * @param deliveryDate the wished delivery date of the Order.
+     * @return the Order.
+     */
+    private Order order(LocalDate deliveryDate) {
+        Order order = new Order();
+        order.setWishedDeliveryDate(deliveryDate);
+        OrderQuantities quantity = new OrderQuantities();
+        quantity.setProductQuantity(1);
+        quantity.setProduct(product);
+        order.getQuantities().add(quantity);
+        return order;
+    }
+
+    /**
+     * Return whether every Order is on a Trip IN_TRANSIT, with a progress of 50 percent.
+     *
+     * @param orderIds the orderIds of the Orders.
+     * @return true if every Order is in transit.
+     */
+    private boolean inTransit(List<Integer> orderIds) {
+        return orderRepository.findAllById(orderIds).stream().allMatch(order -> order.getProgressInPercent() == 50)
+                && tripRepository.findAll().stream().allMatch(trip -> trip.getTripStatus() == TripStatus.IN_TRANSIT);
+    }
+
+    /**
+     * Wait until a condition holds, failing after 10 seconds.
+     *
+     * @param condition the condition.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "The pipeline did not finish within 10 seconds");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Tests that Orders placed together are driven from REGISTERED to a Trip IN_TRANSIT by the pipeline alone,
+     * sharing one Shipment and one Trip.
+     *
+     * @throws InterruptedException if interrupted while waiting for the pipeline.
+     */
+    @Test
+    public void testRegisteredOrdersReachInTransitWithoutScheduler() throws InterruptedException {
+        long start = System.nanoTime();
+        List<Integer> orderIds = new ArrayList<>();
+        for (OrderIntakeResult result : orderService.createOrders(List.of(order(), order(), order()), customer)) {
+            assertTrue(result.isSuccess());
+            orderIds.add(result.getOrderId());
+        }
+
+        await(() -> inTransit(orderIds));
+        log.info("{} orders went from REGISTERED to IN_TRANSIT in {} ms", orderIds.size(),
+                (System.nanoTime() - start) / 1_000_000);
+
+        assertEquals(1, shipmentRepository.count());
+        assertEquals(1, tripRepository.count());
+        assertTrue(orderRepository.findAllById(orderIds).stream()
+                .allMatch(order -> order.getOrderStatus() == OrderStatus.PICKED));
+    }
+
+    /**
+     * Tests that Orders left REGISTERED without handing them over to the pipeline, as after a crash between the
+     * commit and the event, are driven to IN_TRANSIT once the stages are swept.
+     *
+     * @throws InterruptedException if interrupted while waiting for the pipeline.
+     */
+    @Test
+    public void testSweepPicksUpWorkLeftBehind() throws InterruptedException {
+        Order order = new Order();
+        order.setOrderDate(LocalDate.now());
+        order.setOrderStatus(OrderStatus.REGISTERED);
+        order.setWishedDeliveryDate(LocalDate.now());
+        order.setCustomer(customer);
+        order.setStore(customer.getStore());
+        int orderId = orderRepository.save(order).getOrderId();
+        assertEquals(0, shipmentRepository.count());
+
+        orderPipeline.sweep();
+
+        await(() -> inTransit(List.of(orderId)));
+        assertEquals(1, tripRepository.count());
+    }
+
+    /**
+     * Tests that Orders registered one at a time for a later delivery date stay REGISTERED until its cutoff has
+     * passed, and are then released by the poll of the pipeline onto one Shipment and one Trip together.
+     *
+     * @throws Exception if an Order cannot be created or the test is interrupted.
+     */
+    @Test
+    public void testOrdersWaitForTheirCutoffAndLeaveTogether() throws Exception {
+        LocalDate deliveryDate = LocalDate.now().plusDays(3);
+        List<Integer> orderIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            orderIds.add(orderService.createOrder(order(deliveryDate), customer).getOrderId());
+        }
+
+        orderPipeline.poll();
+        Thread.sleep(200);
+        assertEquals(0, shipmentRepository.count());
+        assertTrue(orderRepository.findAllById(orderIds).stream()
+                .allMatch(order -> order.getOrderStatus() == OrderStatus.REGISTERED));
+
+        // The cutoff of the delivery date passes
+        jdbcTemplate.update("UPDATE customer_order SET wished_delivery_date = ?", LocalDate.now());
+        orderPipeline.poll();
+
+        await(() -> inTransit(orderIds));
+        assertEquals(1, shipmentRepository.count());
+        assertEquals(1, tripRepository.count());
+    }
+}
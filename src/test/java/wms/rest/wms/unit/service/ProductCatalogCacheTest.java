@@ -0,0 +1,200 @@
+package wms.rest.wms.unit.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import wms.rest.wms.model.Inventory;
+import wms.rest.wms.model.Packaging;
+import wms.rest.wms.model.Product;
+import wms.rest.wms.model.ProductType;
+import wms.rest.wms.repository.InventoryRepository;
+import wms.rest.wms.repository.InventoryRepository.StockLevel;
+import wms.rest.wms.repository.ProductRepository;
+import wms.rest.wms.service.cache.ProductCatalogCache;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for ProductCatalogCache with mocked repositories and a Ticker the tests move forward.
+ * Verifies that reads are served from the cache, that the stock tier expires long before the catalog tier,
+ * that eviction is precise, and that the metrics are published.
+ *
+ * @author Mikkel Stavelie.
+ */
+@ExtendWith(MockitoExtension.class)
+public class ProductCatalogCacheTest {
+
+    /** Mocked instance of ProductRepository the catalog tier loads from */
+    @Mock
+    private ProductRepository productRepository;
+
+    /** Mocked instance of InventoryRepository the stock tier loads from */
+    @Mock
+    private InventoryRepository inventoryRepository;
+
+    /** The current time of the cache in nanoseconds */
+    private final AtomicLong nanos = new AtomicLong();
+
+    /** MeterRegistry the cache publishes its metrics to */
+    private SimpleMeterRegistry meterRegistry;
+
+    /** Declare ProductCatalogCache at class level for easier accessibility */
+    private ProductCatalogCache cache;
+
+    /**
+     * Prepare the test environment before each test method.
+     * The catalog tier expires after 10 minutes and the stock tier after 5 seconds.
+     */
+    @BeforeEach
+    public void setup() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.cache = new ProductCatalogCache(this.productRepository, this.inventoryRepository, this.meterRegistry,
+                100, Duration.ofMinutes(10), Duration.ofSeconds(5), this.nanos::get);
+    }
+
+    /**
+     * Create a Product with an Inventory and a Packaging.
+     *
+     * @param productId the productId of the Product.
+     * @param availableStock the available stock of the Product.
+     * @return the Product.
+     */
+    private Product product(int productId, int availableStock) {
+        Product product = new Product(productId, "Product " + productId, "Description", "Supplier", new Date(),
+                ProductType.DRY_GOODS, 20.00, 1000 + productId, 1, null, null);
+        product.setInventory(new Inventory(productId, availableStock, 0, availableStock, product));
+        product.setPackaging(new Packaging(productId, Packaging.PackageType.D_PAK, 10, 500, 1000, product));
+        return product;
+    }
+
+    /**
+     * Create a StockLevel projection.
+     *
+     * @param productId the productId of the Product.
+     * @param availableStock the available stock of the Product.
+     * @return the StockLevel.
+     */
+    private StockLevel stockLevel(int productId, int availableStock) {
+        return new StockLevel() {
+            public int getProductId() { return productId; }
+            public int getInventoryId() { return productId; }
+            public int getTotalStock() { return availableStock; }
+            public int getReservedStock() { return 0; }
+            public int getAvailableStock() { return availableStock; }
+        };
+    }
+
+    /**
+     * Tests that a Product is loaded once, and that every read returns a copy callers can change freely.
+     */
+    @Test
+    public void testReadsAreServedFromTheCache() {
+        when(this.productRepository.findAllWithDetailsByIdIn(List.of(1))).thenReturn(List.of(product(1, 40)));
+
+        Product first = this.cache.get(1).orElseThrow();
+        first.setName("Changed by the caller");
+        first.getInventory().setAvailableStock(0);
+        Product second = this.cache.get(1).orElseThrow();
+
+        verify(this.productRepository, times(1)).findAllWithDetailsByIdIn(anyCollection());
+        verifyNoInteractions(this.inventoryRepository);
+        assertNotSame(first, second);
+        assertEquals("Product 1", second.getName());
+        assertEquals(40, second.getInventory().getAvailableStock());
+        assertEquals(Packaging.PackageType.D_PAK, second.getPackaging().getPackageType());
+        assertEquals(1, this.cache.getCatalogStats().hitCount());
+    }
+
+    /**
+     * Tests that the stock is loaded again once the stock tier expires, while the catalog tier is still used.
+     */
+    @Test
+    public void testStockExpiresBeforeTheCatalog() {
+        when(this.productRepository.findAllWithDetailsByIdIn(List.of(1))).thenReturn(List.of(product(1, 40)));
+        when(this.inventoryRepository.findStockLevelsByProductIdIn(List.of(1))).thenReturn(List.of(stockLevel(1, 35)));
+        assertEquals(40, this.cache.get(1).orElseThrow().getInventory().getAvailableStock());
+
+        this.nanos.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        assertEquals(35, this.cache.get(1).orElseThrow().getInventory().getAvailableStock());
+        assertEquals(35, this.cache.get(1).orElseThrow().getInventory().getAvailableStock());
+
+        verify(this.productRepository, times(1)).findAllWithDetailsByIdIn(anyCollection());
+        verify(this.inventoryRepository, times(1)).findStockLevelsByProductIdIn(anyCollection());
+    }
+
+    /**
+     * Tests that every Product is read with one statement for the productIds and one for the missing Products,
+     * and only the productIds once they are cached.
+     */
+    @Test
+    public void testGetProductsLoadsMissingProductsTogether() {
+        when(this.productRepository.findAllProductIds()).thenReturn(List.of(1, 2, 3));
+        when(this.productRepository.findAllWithDetailsByIdIn(anyCollection()))
+                .thenReturn(List.of(product(1, 10), product(2, 20), product(3, 30)));
+
+        assertEquals(List.of(1, 2, 3), this.cache.getProducts().stream().map(Product::getProductId).toList());
+        assertEquals(List.of(1, 2, 3), this.cache.getProducts().stream().map(Product::getProductId).toList());
+
+        verify(this.productRepository, times(2)).findAllProductIds();
+        verify(this.productRepository, times(1)).findAllWithDetailsByIdIn(anyCollection());
+        verifyNoInteractions(this.inventoryRepository);
+    }
+
+    /**
+     * Tests that evicting a Product only reloads that Product, including its cached GTIN.
+     */
+    @Test
+    public void testEvictionIsPrecise() {
+        when(this.productRepository.findByGtin(1001)).thenReturn(Optional.of(product(1, 40)));
+        when(this.productRepository.findAllWithDetailsByIdIn(List.of(2))).thenReturn(List.of(product(2, 20)));
+        assertEquals(1, this.cache.getByGtin(1001).orElseThrow().getProductId());
+        this.cache.get(2);
+
+        // Outside a transaction the entries are evicted at once
+        this.cache.evictAfterCommit(1);
+        Product updated = product(1, 40);
+        updated.setName("Updated");
+        when(this.productRepository.findByGtin(1001)).thenReturn(Optional.of(updated));
+        assertEquals("Updated", this.cache.getByGtin(1001).orElseThrow().getName());
+        this.cache.get(2);
+
+        verify(this.productRepository, times(2)).findByGtin(1001);
+        verify(this.productRepository, times(1)).findAllWithDetailsByIdIn(List.of(2));
+    }
+
+    /**
+     * Tests that a missing Product is not cached, and that the hit ratio is published.
+     */
+    @Test
+    public void testMetricsArePublished() {
+        when(this.productRepository.findAllWithDetailsByIdIn(anyCollection())).thenReturn(List.of());
+        assertTrue(this.cache.get(404).isEmpty());
+        assertTrue(this.cache.get(404).isEmpty());
+        verify(this.productRepository, times(2)).findAllWithDetailsByIdIn(anyCollection());
+
+        when(this.productRepository.findAllWithDetailsByIdIn(List.of(1))).thenReturn(List.of(product(1, 40)));
+        this.cache.get(1);
+        this.cache.get(1);
+        this.cache.get(1);
+
+        double hitRatio = this.meterRegistry.get("cache.hit.ratio").tag("cache", ProductCatalogCache.CATALOG_CACHE_NAME)
+                .gauge().value();
+        assertEquals(2.0 / 5.0, hitRatio, 0.001);
+        assertNotNull(this.meterRegistry.get("cache.gets").tag("cache", ProductCatalogCache.STOCK_CACHE_NAME)
+                .tag("result", "hit").functionCounter());
+        assertNotNull(this.meterRegistry.find("cache.load.duration").tag("cache", ProductCatalogCache.CATALOG_CACHE_NAME)
+                .timeGauge());
+    }
+}
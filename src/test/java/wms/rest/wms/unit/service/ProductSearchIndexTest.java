@@ -0,0 +1,166 @@
+package wms.rest.wms.unit.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import wms.rest.wms.repository.ProductRepository;
+import wms.rest.wms.repository.ProductRepository.ProductSearchFields;
+import wms.rest.wms.service.search.ProductSearchIndex;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for ProductSearchIndex without a database.
+ * Verifies prefix, substring and typo tolerant queries, the ranking, incremental updates, and the periodic rebuild.
+ *
+ * @author Mikkel Stavelie.
+ */
+public class ProductSearchIndexTest {
+
+    /** Declare ProductSearchIndex at class level for easier accessibility */
+    private ProductSearchIndex index;
+
+    /**
+     * Prepare the test environment before each test method.
+     * Indexes a small catalog.
+     */
+    @BeforeEach
+    public void setup() {
+        index = new ProductSearchIndex(null, 10);
+        index.index(1, "Makrell i tomat", "Stabburet", "Makrellfilet i tomatsaus");
+        index.index(2, "Tomatmakrell", "Kings", "Røkt makrell i tomat");
+        index.index(3, "Lettmelk", "Tine", "Melk med 0,5 % fett");
+        index.index(4, "Helmelk", "Tine", "Melk med 3,5 % fett");
+        index.index(5, "Sjokolademelk", "Q-meieriene", "Kakao");
+        index.index(6, "Crème fraîche", "Tine", "Rømme med 35 % fett");
+    }
+
+    /**
+     * Tests that one and two letter queries match the start of words.
+     */
+    @Test
+    public void testPrefixQuery() {
+        assertEquals(List.of(3), index.search("le"));
+        assertTrue(index.search("t").containsAll(List.of(1, 2, 3, 4, 6)));
+        assertEquals(List.of(5), index.search("sjok"));
+    }
+
+    /**
+     * Tests that a query is found inside composed words, and that an exact word match ranks first.
+     */
+    @Test
+    public void testSubstringQueryIsRanked() {
+        List<Integer> results = index.search("makrell");
+        assertEquals(List.of(1, 2), results);
+
+        List<Integer> milk = index.search("melk");
+        assertEquals(3, milk.size());
+        assertTrue(milk.containsAll(List.of(3, 4, 5)));
+    }
+
+    /**
+     * Tests that queries with a typo, a swapped pair of letters or a missing letter still match.
+     */
+    @Test
+    public void testTypoTolerantQuery() {
+        assertEquals(List.of(4), index.search("hlemelk"));
+        assertEquals(List.of(1, 2), index.search("makrel"));
+        assertEquals(List.of(5), index.search("sjokolde"));
+        assertTrue(index.search("xyzxyz").isEmpty());
+    }
+
+    /**
+     * Tests that every query word has to match, that accents and case are ignored, and that the supplier is searched.
+     */
+    @Test
+    public void testMultiWordQuery() {
+        assertEquals(List.of(4), index.search("Tine HELMELK"));
+        assertEquals(List.of(6), index.search("creme fraiche"));
+        assertEquals(List.of(2), index.search("kings makrell"));
+    }
+
+    /**
+     * Tests that updates and removals are visible to the next search.
+     */
+    @Test
+    public void testIncrementalUpdates() {
+        index.index(3, "Skummet kulturmjølk", "Tine", "Syrnet mjølk");
+        assertFalse(index.search("lettmelk").contains(3));
+        assertEquals(List.of(3), index.search("kulturmjolk"));
+
+        index.remove(1);
+        assertEquals(List.of(2), index.search("makrell"));
+        assertEquals(5, index.size());
+
+        index.index(7, "Makrell i olje", "Stabburet", "Makrellfilet");
+        assertEquals(List.of(2, 7), index.search("makrell").stream().sorted().toList());
+    }
+
+    /**
+     * Create the searchable fields of a Product as read from the database.
+     *
+     * @param productId the productId of the Product.
+     * @param name the name of the Product.
+     * @param supplier the supplier of the Product.
+     * @param description the description of the Product.
+     * @return the ProductSearchFields projection.
+     */
+    private ProductSearchFields fields(int productId, String name, String supplier, String description) {
+        return new ProductSearchFields() {
+            @Override
+            public int getProductId() {
+                return productId;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String getSupplier() {
+                return supplier;
+            }
+
+            @Override
+            public String getDescription() {
+                return description;
+            }
+        };
+    }
+
+    /**
+     * Tests that the periodic rebuild waits for the first build, and then replaces the content of the index with
+     * the database, dropping Products removed and picking up Products changed without the index being told.
+     */
+    @Test
+    public void testPeriodicRebuildPicksUpChangesMadeElsewhere() {
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.findSearchFieldsAfter(eq(0), any(Pageable.class))).thenReturn(List.of(
+                fields(2, "Tomatmakrell", "Kings", "Røkt makrell i tomat"),
+                fields(3, "Skummet kulturmjølk", "Tine", "Syrnet mjølk")));
+        when(productRepository.findSearchFieldsAfter(eq(3), any(Pageable.class))).thenReturn(List.of());
+        ProductSearchIndex rebuilt = new ProductSearchIndex(productRepository, 10);
+        rebuilt.index(1, "Makrell i tomat", "Stabburet", "Makrellfilet i tomatsaus");
+        rebuilt.index(3, "Lettmelk", "Tine", "Melk med 0,5 % fett");
+
+        rebuilt.rebuildPeriodically();
+        assertFalse(rebuilt.isReady());
+        assertEquals(List.of(1), rebuilt.search("stabburet"));
+
+        rebuilt.rebuild();
+        rebuilt.index(1, "Makrell i tomat", "Stabburet", "Makrellfilet i tomatsaus");
+        rebuilt.rebuildPeriodically();
+        assertTrue(rebuilt.isReady());
+        assertEquals(List.of(), rebuilt.search("stabburet"));
+        assertEquals(List.of(3), rebuilt.search("kulturmjolk"));
+        assertEquals(List.of(), rebuilt.search("lettmelk"));
+        assertEquals(2, rebuilt.size());
+    }
+}
@@ -7,8 +7,12 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import wms.rest.wms.model.Product;
 import wms.rest.wms.model.ProductType;
+import wms.rest.wms.repository.InventoryRepository;
 import wms.rest.wms.repository.ProductRepository;
 import wms.rest.wms.service.ProductService;
+import wms.rest.wms.service.cache.ProductCatalogCache;
+import wms.rest.wms.service.ledger.StockLedgerService;
+import wms.rest.wms.service.search.ProductSearchIndex;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -17,6 +21,7 @@ import java.util.Date;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.util.AssertionErrors.assertEquals;
@@ -33,13 +38,29 @@ public class ProductServiceTest {
     @Mock
     private ProductRepository productRepository;
 
+    /** Mocked instance of InventoryRepository for reading the stock a Product had */
+    @Mock
+    private InventoryRepository inventoryRepository;
+
+    /** Mocked instance of StockLedgerService the stock changes are recorded in */
+    @Mock
+    private StockLedgerService stockLedgerService;
+
+    /** Mocked instance of ProductSearchIndex, not ready unless a test says so */
+    @Mock
+    private ProductSearchIndex productSearchIndex;
+
+    /** Mocked instance of ProductCatalogCache the Products are read through */
+    @Mock
+    private ProductCatalogCache productCatalogCache;
+
     /** Mocked instance of ProductService with mocks for testing business logic */
     @InjectMocks
     private ProductService productService;
 
     /**
      * Tests the retrieval of all Products in ProductService.
-     * Ensures the ProductRepository's findAll method is called and correctly retrieves a List of all Products.
+     * Ensures the Products are read through the ProductCatalogCache and correctly retrieves a List of all Products.
      * Verifies the correct number of Products are returned.
      *
      * @throws ParseException if the beginning of the String can't be parsed.
@@ -49,7 +70,7 @@ public class ProductServiceTest {
         SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
         Date fixedDate = dateFormat.parse("2024-08-24");
 
-        when(productRepository.findAll()).thenReturn(Arrays.asList(
+        when(productCatalogCache.getProducts()).thenReturn(Arrays.asList(
                 new Product(1, "Sample Product", "Sample Description", "Sample Supplier", fixedDate, ProductType.DRY_GOODS, 10.99, 54321, 78905, null, null),
                 new Product(2, "Sample Product2", "Sample Description2", "Sample Supplier2", fixedDate, ProductType.REFRIGERATED_GOODS, 10.50, 54321, 52135, null, null)
         ));
@@ -58,7 +79,8 @@ public class ProductServiceTest {
         List<Product> products = productService.getProducts();
 
         // Verify the interaction with the mock
-        verify(productRepository).findAll();
+        verify(productCatalogCache).getProducts();
+        verify(productRepository, never()).findAll();
         assertEquals("Products should contains two products", 2, products.size());
     }
 
@@ -83,6 +105,24 @@ public class ProductServiceTest {
         assertEquals("Should return a list of products containing the term", mockProducts, foundProducts);
     }
 
+    /**
+     * Tests that the search query is answered by the ProductSearchIndex once it is built,
+     * and that the Products are returned in the order the index ranked them.
+     */
+    @Test
+    public void testFindByNameContainingUsesSearchIndex() {
+        Product first = new Product(1, "Test Product", "Description", "Supplier", new Date(), ProductType.DRY_GOODS, 20.00, 1000, 2000, null, null);
+        Product second = new Product(2, "Test", "Description2", "Supplier2", new Date(), ProductType.REFRIGERATED_GOODS, 25.00, 2001, 3000, null, null);
+        when(productSearchIndex.isReady()).thenReturn(true);
+        when(productSearchIndex.search("test")).thenReturn(List.of(2, 1));
+        when(productCatalogCache.getAll(List.of(2, 1))).thenReturn(List.of(second, first));
+
+        List<Product> foundProducts = productService.findByNameContaining("test");
+
+        verify(productRepository, never()).findByNameContainingIgnoreCase(any());
+        assertEquals("Should return the products in ranked order", List.of(second, first), foundProducts);
+    }
+
     /**
      * Tests the creation of a new Product.
      */
@@ -97,6 +137,8 @@ public class ProductServiceTest {
 
         // Verification
         verify(productRepository).save(testProduct);
+        verify(productSearchIndex).indexAfterCommit(testProduct);
+        verify(productCatalogCache).evictAfterCommit(1);
         assertEquals("Returned product should be the same as the test product", testProduct, returnedProduct);
     }
 }
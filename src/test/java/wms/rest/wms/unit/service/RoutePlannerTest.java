@@ -0,0 +1,213 @@
+package wms.rest.wms.unit.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import wms.rest.wms.service.trip.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the route sequencing of Trips without a database.
+ * Verifies that LocalSearchRouteSequencer visits every stop once and finds the shortest tour where it is known,
+ * that DistanceMatrix reads the distance matrix file, and that RoutePlanner sequences Trips in parallel.
+ *
+ * @author Mikkel Stavelie.
+ */
+public class RoutePlannerTest {
+
+    /** Distance matrix file of the tests */
+    private static final String MATRIX = """
+            # Road distances in kilometres
+            Trondheim,Oslo,495
+            Trondheim,Steinkjer,120
+            Trondheim,Drammen,535
+            Oslo,Steinkjer,615
+            Oslo,Drammen,40
+            Steinkjer,Drammen,655
+            """;
+
+    /** Declare DistanceMatrix at class level for easier accessibility */
+    private DistanceMatrix distanceMatrix;
+
+    /** Declare RoutePlanner at class level for easier accessibility */
+    private RoutePlanner routePlanner;
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates a RoutePlanner over the test distance matrix with two workers.
+     *
+     * @throws IOException if the distance matrix cannot be read.
+     */
+    @BeforeEach
+    public void setup() throws IOException {
+        distanceMatrix = new DistanceMatrix(matrix(MATRIX), 5, 500);
+        routePlanner = new RoutePlanner(distanceMatrix, new LocalSearchRouteSequencer(1_000), 2);
+    }
+
+    /**
+     * Clean up the test environment after each test method.
+     *
+     * @throws InterruptedException if interrupted while waiting for the workers to finish.
+     */
+    @AfterEach
+    public void cleanup() throws InterruptedException {
+        routePlanner.shutdown();
+    }
+
+    /**
+     * Create a distance matrix file.
+     *
+     * @param content the lines of the file.
+     * @return the file.
+     */
+    private static ByteArrayResource matrix(String content) {
+        return new ByteArrayResource(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tests that stops on a circle, given in a shuffled order, are visited round the circle,
+     * which is the shortest tour through them.
+     */
+    @Test
+    public void testFindsShortestTourAroundCircle() {
+        int size = 40;
+        List<Integer> angles = new ArrayList<>(IntStream.range(0, size).boxed().toList());
+        Collections.shuffle(angles, new Random(7));
+        double[][] points = new double[size][];
+        for (int i = 0; i < size; i++) {
+            double angle = 2 * Math.PI * angles.get(i) / size;
+            points[i] = new double[]{Math.cos(angle), Math.sin(angle)};
+        }
+        double[][] distances = euclidean(points);
+
+        int[] order = new LocalSearchRouteSequencer(1_000).sequence(distances);
+
+        assertPermutation(order, size - 1);
+        assertEquals(size * 2 * Math.sin(Math.PI / size), length(distances, order), 1e-9);
+    }
+
+    /**
+     * Tests that improving a tour never makes it longer than the nearest-neighbour tour, and that without time to
+     * improve it the nearest-neighbour tour is still a valid sequence.
+     */
+    @Test
+    public void testImprovesNearestNeighbourTour() {
+        Random random = new Random(42);
+        double[][] points = new double[60][];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new double[]{random.nextDouble() * 100, random.nextDouble() * 100};
+        }
+        double[][] distances = euclidean(points);
+
+        int[] nearestNeighbour = new LocalSearchRouteSequencer(0).sequence(distances);
+        int[] improved = new LocalSearchRouteSequencer(1_000).sequence(distances);
+
+        assertPermutation(nearestNeighbour, points.length - 1);
+        assertPermutation(improved, points.length - 1);
+        assertTrue(length(distances, improved) < length(distances, nearestNeighbour));
+    }
+
+    /**
+     * Tests that routes with no, one or two stops are sequenced.
+     */
+    @Test
+    public void testSequencesShortRoutes() {
+        LocalSearchRouteSequencer sequencer = new LocalSearchRouteSequencer(1_000);
+        assertArrayEquals(new int[0], sequencer.sequence(new double[][]{{0}}));
+        assertArrayEquals(new int[]{1}, sequencer.sequence(new double[][]{{0, 3}, {3, 0}}));
+        assertArrayEquals(new int[]{2, 1}, sequencer.sequence(new double[][]{{0, 5, 2}, {5, 0, 4}, {2, 4, 0}}));
+    }
+
+    /**
+     * Tests that distances apply both ways regardless of case, that stops in the same city are a local distance
+     * apart unless they share a postal code, and that cities missing from the file are far apart.
+     */
+    @Test
+    public void testReadsDistanceMatrix() {
+        assertEquals(120, distanceMatrix.distance(new RouteStop("Trondheim", 0), new RouteStop("steinkjer", 7700)));
+        assertEquals(120, distanceMatrix.distance(new RouteStop("STEINKJER", 7700), new RouteStop("Trondheim", 0)));
+        assertEquals(0, distanceMatrix.distance(new RouteStop("Oslo", 150), new RouteStop("Oslo", 150)));
+        assertEquals(5, distanceMatrix.distance(new RouteStop("Oslo", 150), new RouteStop("Oslo", 250)));
+        assertEquals(500, distanceMatrix.distance(new RouteStop("Oslo", 150), new RouteStop("Bergen", 5004)));
+        assertThrows(IllegalArgumentException.class, () -> new DistanceMatrix(matrix("Oslo;Bergen;463"), 5, 500));
+        assertThrows(IllegalArgumentException.class, () -> new DistanceMatrix(matrix("Oslo,Bergen,far"), 5, 500));
+    }
+
+    /**
+     * Tests that a Trip from Trondheim drives to Steinkjer first and visits Oslo and Drammen together,
+     * and that Trips sequenced in parallel are sequenced as they are one at a time.
+     */
+    @Test
+    public void testSequencesTripsInParallel() {
+        RouteStop depot = new RouteStop("Trondheim", 0);
+        Route route = new Route(depot, List.of(new RouteStop("Oslo", 150), new RouteStop("Steinkjer", 7700),
+                new RouteStop("Drammen", 3000)));
+        List<Integer> order = routePlanner.sequence(route);
+        assertEquals(List.of(1, 0, 2), order);
+        assertEquals(120 + 615 + 40 + 535, routePlanner.length(route, order), 1e-9);
+
+        List<Route> routes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            List<RouteStop> stops = new ArrayList<>(route.getStops());
+            Collections.rotate(stops, i);
+            routes.add(new Route(depot, stops));
+        }
+        List<List<Integer>> orders = routePlanner.sequenceAll(routes);
+        assertEquals(routes.size(), orders.size());
+        for (int i = 0; i < routes.size(); i++) {
+            assertEquals(routePlanner.sequence(routes.get(i)), orders.get(i));
+        }
+    }
+
+    /**
+     * Return the Euclidean distances between points.
+     *
+     * @param points the points.
+     * @return the distance from each point to each other point.
+     */
+    private static double[][] euclidean(double[][] points) {
+        double[][] distances = new double[points.length][points.length];
+        for (int i = 0; i < points.length; i++) {
+            for (int j = 0; j < points.length; j++) {
+                distances[i][j] = Math.hypot(points[i][0] - points[j][0], points[i][1] - points[j][1]);
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Return the length of a tour from stop 0 through the stops in order and back.
+     *
+     * @param distances the distance from each stop to each other stop.
+     * @param order the stops in the order they are visited.
+     * @return the length of the tour.
+     */
+    private static double length(double[][] distances, int[] order) {
+        double length = 0;
+        int previous = 0;
+        for (int stop : order) {
+            length += distances[previous][stop];
+            previous = stop;
+        }
+        return length + distances[previous][0];
+    }
+
+    /**
+     * Asserts that a sequence visits each stop from 1 up to the number of stops exactly once.
+     *
+     * @param order the sequence.
+     * @param stops the number of stops.
+     */
+    private static void assertPermutation(int[] order, int stops) {
+        int[] sorted = order.clone();
+        Arrays.sort(sorted);
+        assertArrayEquals(IntStream.rangeClosed(1, stops).toArray(), sorted);
+    }
+}
@@ -0,0 +1,257 @@
+package wms.rest.wms.unit.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import wms.rest.wms.exception.LeaseLostException;
+import wms.rest.wms.model.SchedulerLease;
+import wms.rest.wms.model.Store;
+import wms.rest.wms.repository.StoreRepository;
+import wms.rest.wms.service.SchedulerLeaseService;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for SchedulerLeaseService against the H2 embedded database.
+ * Every test plays several instances of the application with services of their own instanceId sharing the database.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class SchedulerLeaseServiceIntegrationTest {
+
+    /** How long the leases of the test instances are held */
+    private static final long TTL_MILLIS = 200;
+
+    /** Number of partitions of the partitioned test job */
+    private static final int PARTITIONS = 4;
+
+    /** Autowired JDBC template handed to the services under test */
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    /** Autowired transaction manager handed to the services under test */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /** Autowired TransactionTemplate for running fenced transactions */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /** Autowired StoreRepository for writing under a lease */
+    @Autowired
+    private StoreRepository storeRepository;
+
+    /**
+     * Clean up the test environment after each test method.
+     * Removes every lease and Store created by the test.
+     */
+    @AfterEach
+    public void cleanup() {
+        jdbcTemplate.getJdbcTemplate().update("DELETE FROM scheduler_lease");
+        storeRepository.deleteAll();
+    }
+
+    /**
+     * Create the SchedulerLeaseService of a test instance.
+     *
+     * @param instanceId the instanceId of the instance.
+     * @return the SchedulerLeaseService.
+     */
+    private SchedulerLeaseService instance(String instanceId) {
+        return new SchedulerLeaseService(jdbcTemplate, transactionManager, instanceId, TTL_MILLIS, PARTITIONS);
+    }
+
+    /**
+     * Tests that only one instance holds a lease at a time, and that its owner renews it with a higher fencing token.
+     */
+    @Test
+    public void testOnlyOneInstanceHoldsALease() {
+        SchedulerLeaseService first = instance("first");
+        SchedulerLeaseService second = instance("second");
+
+        SchedulerLease lease = first.tryAcquire("job").orElseThrow();
+        assertEquals("first", lease.getOwner());
+        assertTrue(second.tryAcquire("job").isEmpty());
+
+        SchedulerLease renewed = first.tryAcquire("job").orElseThrow();
+        assertTrue(renewed.getFencingToken() > lease.getFencingToken());
+        assertTrue(second.tryAcquire("job").isEmpty());
+    }
+
+    /**
+     * Tests that an expired lease is taken over by another instance with a higher fencing token,
+     * and that releasing the leases of an instance lets others take them over at once.
+     *
+     * @throws InterruptedException if interrupted while waiting for the lease to expire.
+     */
+    @Test
+    public void testExpiredOrReleasedLeaseIsTakenOver() throws InterruptedException {
+        SchedulerLeaseService first = instance("first");
+        SchedulerLeaseService second = instance("second");
+        SchedulerLease lease = first.tryAcquire("job").orElseThrow();
+
+        Thread.sleep(TTL_MILLIS * 2);
+        SchedulerLease takenOver = second.tryAcquire("job").orElseThrow();
+        assertEquals("second", takenOver.getOwner());
+        assertTrue(takenOver.getFencingToken() > lease.getFencingToken());
+        assertTrue(first.tryAcquire("job").isEmpty());
+
+        second.releaseAll();
+        assertEquals("first", first.tryAcquire("job").orElseThrow().getOwner());
+    }
+
+    /**
+     * Tests that a transaction fenced with a lease that is taken over before it commits is rolled back,
+     * while a transaction fenced with the current lease commits.
+     *
+     * @throws InterruptedException if interrupted while waiting for the lease to expire.
+     */
+    @Test
+    public void testFencedTransactionOfLostLeaseRollsBack() throws InterruptedException {
+        SchedulerLeaseService first = instance("first");
+        SchedulerLeaseService second = instance("second");
+        SchedulerLease lease = first.tryAcquire("job").orElseThrow();
+
+        assertThrows(LeaseLostException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            first.fence(lease);
+            storeRepository.save(store("Written by the first instance"));
+            try {
+                Thread.sleep(TTL_MILLIS * 2);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            // The second instance takes the expired lease over before the first one commits
+            assertTrue(second.tryAcquire("job").isPresent());
+        }));
+        assertEquals(0, storeRepository.count());
+        assertThrows(LeaseLostException.class, () -> first.fence(lease));
+
+        SchedulerLease current = second.tryAcquire("job").orElseThrow();
+        transactionTemplate.executeWithoutResult(status -> {
+            second.fence(current);
+            storeRepository.save(store("Written by the second instance"));
+        });
+        assertEquals(1, storeRepository.count());
+    }
+
+    /**
+     * Tests that the lease of a job run under lead() is kept by the heartbeat for as long as the run takes, even
+     * past its time to live, and released as soon as the run's transaction commits.
+     */
+    @Test
+    public void testLeadKeepsLeaseDuringRunAndReleasesItAfter() {
+        SchedulerLeaseService first = instance("first");
+        SchedulerLeaseService second = instance("second");
+
+        transactionTemplate.executeWithoutResult(status -> {
+            assertTrue(first.lead("job"));
+            storeRepository.save(store("Written during a long run"));
+            try {
+                Thread.sleep(TTL_MILLIS * 3);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            assertFalse(second.lead("job"));
+        });
+        assertEquals(1, storeRepository.count());
+
+        SchedulerLease next = second.tryAcquire("job").orElseThrow();
+        assertEquals("second", next.getOwner());
+    }
+
+    /**
+     * Tests that exactly one of several instances asking for a new lease at the same time gets it.
+     *
+     * @throws Exception if an instance fails.
+     */
+    @Test
+    public void testConcurrentAcquireHasOneWinner() throws Exception {
+        int instances = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(instances);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<SchedulerLease>>> attempts = new ArrayList<>();
+        for (int i = 0; i < instances; i++) {
+            SchedulerLeaseService service = instance("instance-" + i);
+            attempts.add(executor.submit(() -> {
+                start.await();
+                return service.tryAcquire("job");
+            }));
+        }
+        start.countDown();
+        int winners = 0;
+        for (Future<Optional<SchedulerLease>> attempt : attempts) {
+            winners += attempt.get(30, TimeUnit.SECONDS).isPresent() ? 1 : 0;
+        }
+        executor.shutdown();
+        assertEquals(1, winners);
+    }
+
+    /**
+     * Tests that two instances running a partitioned job at the same time run every partition exactly once
+     * between them, and that keys are spread over every partition.
+     *
+     * @throws Exception if an instance fails.
+     */
+    @Test
+    public void testInstancesSplitPartitions() throws Exception {
+        SchedulerLeaseService first = instance("first");
+        SchedulerLeaseService second = instance("second");
+        List<Integer> ran = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> runs = new ArrayList<>();
+        for (SchedulerLeaseService service : List.of(first, second)) {
+            runs.add(executor.submit(() -> {
+                start.await();
+                return service.runPartitions("partitioned", (partition, lease) -> {
+                    ran.add(partition);
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+            }));
+        }
+        start.countDown();
+        int total = 0;
+        for (Future<Integer> run : runs) {
+            total += run.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(PARTITIONS, total);
+        assertEquals(List.of(0, 1, 2, 3), ran.stream().sorted().toList());
+        Set<Integer> partitionsOfKeys = new HashSet<>();
+        for (int storeId = 1; storeId <= 100; storeId++) {
+            partitionsOfKeys.add(first.partitionOf(storeId));
+        }
+        assertEquals(Set.of(0, 1, 2, 3), partitionsOfKeys);
+    }
+
+    /**
+     * Create a Store.
+     *
+     * @param name the name of the Store.
+     * @return the Store.
+     */
+    private static Store store(String name) {
+        Store store = new Store();
+        store.setName(name);
+        store.setAddress("Test address");
+        store.setCountry("Test country");
+        store.setCity("Test City");
+        store.setPostalCode(5004);
+        return store;
+    }
+}
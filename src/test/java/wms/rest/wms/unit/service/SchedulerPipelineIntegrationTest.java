@@ -0,0 +1,399 @@
+package wms.rest.wms.unit.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import wms.rest.wms.model.*;
+import wms.rest.wms.repository.*;
+import wms.rest.wms.service.OrderService;
+import wms.rest.wms.service.ShipmentService;
+import wms.rest.wms.service.TripService;
+import wms.rest.wms.service.WorkQueueService;
+import wms.rest.wms.service.shipment.ShipmentBuilder;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the scheduled jobs in ShipmentService and TripService against the H2 embedded database.
+ * Runs the jobs one after another and verifies that each job picks up the work recorded by the previous one,
+ * that entities that were never recorded in the work queue are left alone, and that work waits for the time the
+ * PlanningWindow gives it.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@Transactional
+@ActiveProfiles("test")
+public class SchedulerPipelineIntegrationTest {
+
+    /** Autowired ShipmentService for running the Shipment scheduled jobs */
+    @Autowired
+    private ShipmentService shipmentService;
+
+    /** Autowired TripService for running the Trip scheduled jobs */
+    @Autowired
+    private TripService tripService;
+
+    /** Autowired OrderService for cancelling Orders */
+    @Autowired
+    private OrderService orderService;
+
+    /** Autowired ShipmentBuilder for building Shipments ahead of their cutoff */
+    @Autowired
+    private ShipmentBuilder shipmentBuilder;
+
+    /** Autowired WorkQueueService for recording Trips ahead of their start date */
+    @Autowired
+    private WorkQueueService workQueueService;
+
+    /** Autowired OrderRepository for interaction with the H2 embedded database */
+    @Autowired
+    private OrderRepository orderRepository;
+
+    /** Autowired TripRepository for interaction with the H2 embedded database */
+    @Autowired
+    private TripRepository tripRepository;
+
+    /** Autowired FleetReservationRepository for reading the reservations of the Drivers */
+    @Autowired
+    private FleetReservationRepository fleetReservationRepository;
+
+    /** Autowired StoreRepository for interaction with the H2 embedded database */
+    @Autowired
+    private StoreRepository storeRepository;
+
+    /** Autowired CustomerRepository for interaction with the H2 embedded database */
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    /** Autowired ProductRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Autowired EntityManager for flushing and clearing the persistence context between jobs */
+    @Autowired
+    private EntityManager entityManager;
+
+    /** Declare Store at class level for easier accessibility */
+    private Store store;
+
+    /** Declare Customer at class level for easier accessibility */
+    private Customer customer;
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates a Store and a Customer the Orders are placed by.
+     */
+    @BeforeEach
+    public void setup() {
+        store = new Store();
+        store.setName("Test store");
+        store.setAddress("Test address");
+        store.setCountry("Test country");
+        store.setCity("Test City");
+        store.setPostalCode(5004);
+        storeRepository.save(store);
+
+        customer = new Customer();
+        customer.setEmail("pipeline@example.com");
+        customer.setFirstName("John");
+        customer.setLastName("Doe");
+        customer.setPassword("secretpassword11");
+        customer.setStore(store);
+        customerRepository.save(customer);
+    }
+
+    /**
+     * Create and save an Order without OrderQuantities.
+     *
+     * @param status the OrderStatus of the Order.
+     * @return the saved Order.
+     */
+    private Order saveOrder(OrderStatus status) {
+        Order order = new Order();
+        order.setOrderDate(LocalDate.now());
+        order.setOrderStatus(status);
+        order.setWishedDeliveryDate(LocalDate.of(2024, 4, 15));
+        order.setCustomer(customer);
+        order.setStore(store);
+        return orderRepository.save(order);
+    }
+
+    /**
+     * Create and save a Store.
+     *
+     * @param name the name of the Store.
+     * @return the saved Store.
+     */
+    private Store saveStore(String name) {
+        return saveStore(name, "Test City");
+    }
+
+    /**
+     * Create and save a Store in a city.
+     *
+     * @param name the name of the Store.
+     * @param city the city of the Store.
+     * @return the saved Store.
+     */
+    private Store saveStore(String name, String city) {
+        Store other = new Store();
+        other.setName(name);
+        other.setAddress("Test address");
+        other.setCountry("Test country");
+        other.setCity(city);
+        other.setPostalCode(5004);
+        return storeRepository.save(other);
+    }
+
+    /**
+     * Create and save a Product with Packaging.
+     *
+     * @param productType the ProductType of the Product.
+     * @param gtin the unique GTIN of the Product.
+     * @param weightInGrams the weight of one package of the Product.
+     * @param dimensionInCm3 the volume of one package of the Product.
+     * @return the saved Product.
+     */
+    private Product saveProduct(ProductType productType, long gtin, double weightInGrams, double dimensionInCm3) {
+        Product product = new Product();
+        product.setName("Product");
+        product.setDescription("Description");
+        product.setSupplier("Supplier");
+        product.setBestBeforeDate(new Date());
+        product.setProductType(productType);
+        product.setPrice(20.00);
+        product.setGtin(gtin);
+        product.setBatch(11111);
+        Packaging packaging = new Packaging();
+        packaging.setPackageType(Packaging.PackageType.D_PAK);
+        packaging.setQuantityPrPackage(1);
+        packaging.setWeightInGrams(weightInGrams);
+        packaging.setDimensionInCm3(dimensionInCm3);
+        packaging.setProduct(product);
+        product.setPackaging(packaging);
+        return productRepository.save(product);
+    }
+
+    /**
+     * Create and save a REGISTERED Order with one OrderQuantities line.
+     *
+     * @param orderStore the Store the Order is delivered to.
+     * @param product the Product of the OrderQuantities line.
+     * @param quantity the quantity of the Product.
+     * @return the saved Order.
+     */
+    private Order saveOrder(Store orderStore, Product product, int quantity) {
+        Order order = new Order();
+        order.setOrderDate(LocalDate.now());
+        order.setOrderStatus(OrderStatus.REGISTERED);
+        order.setWishedDeliveryDate(LocalDate.of(2024, 4, 15));
+        order.setCustomer(customer);
+        order.setStore(orderStore);
+        OrderQuantities line = new OrderQuantities();
+        line.setProduct(product);
+        line.setProductQuantity(quantity);
+        line.setOrder(order);
+        order.getQuantities().add(line);
+        return orderRepository.save(order);
+    }
+
+    /**
+     * Runs the jobs from REGISTERED Orders up to planned Trips.
+     */
+    private void runUpToTrips() {
+        flushAndClear();
+        shipmentService.createShipment();
+        flushAndClear();
+        shipmentService.updateShipmentOrdersToPicked();
+        flushAndClear();
+        tripService.createTrip();
+        flushAndClear();
+    }
+
+    /**
+     * Flush pending changes and clear the persistence context, so the next job reads from the database.
+     */
+    private void flushAndClear() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    /**
+     * Tests the full chain from REGISTERED Orders to a Trip IN_TRANSIT, one scheduled job at a time.
+     */
+    @Test
+    public void testJobsConsumeWorkRecordedByPreviousJob() {
+        Order first = saveOrder(OrderStatus.REGISTERED);
+        Order second = saveOrder(OrderStatus.REGISTERED);
+        flushAndClear();
+
+        shipmentService.createShipment();
+        flushAndClear();
+        shipmentService.updateShipmentOrdersToPicked();
+        flushAndClear();
+        assertEquals(OrderStatus.PICKED, orderRepository.findById(first.getOrderId()).orElseThrow().getOrderStatus());
+
+        tripService.createTrip();
+        flushAndClear();
+        List<Trip> trips = tripRepository.findAll();
+        assertEquals(1, trips.size());
+        assertEquals(TripStatus.LOADING, trips.get(0).getTripStatus());
+        Driver driver = trips.get(0).getDriver();
+        assertNotNull(driver);
+        assertEquals(driver.getName(), trips.get(0).getTripDriver());
+        assertEquals(driver.getPhone(), trips.get(0).getTripDriverPhone());
+        assertEquals(ProductType.DRY_GOODS, trips.get(0).getVehicle().getTemperatureClass());
+        assertEquals(1, fleetReservationRepository.findByResourceTypeAndResourceIdOrderByReservedFromAsc(
+                FleetResourceType.DRIVER, driver.getDriverId()).size());
+
+        tripService.updateTripStatusFromLoadingToDeparted();
+        flushAndClear();
+        assertEquals(TripStatus.DEPARTED, tripRepository.findById(trips.get(0).getTripId()).orElseThrow().getTripStatus());
+
+        tripService.updateTripStatusFromDepartedToInTransit();
+        flushAndClear();
+        assertEquals(TripStatus.IN_TRANSIT, tripRepository.findById(trips.get(0).getTripId()).orElseThrow().getTripStatus());
+        assertEquals(50, orderRepository.findById(first.getOrderId()).orElseThrow().getProgressInPercent());
+        assertEquals(50, orderRepository.findById(second.getOrderId()).orElseThrow().getProgressInPercent());
+    }
+
+    /**
+     * Tests that Trips which were never recorded in the work queue are not swept by the Trip jobs.
+     */
+    @Test
+    public void testJobsIgnoreTripsNotInWorkQueue() {
+        Trip trip = new Trip();
+        trip.setTripStatus(TripStatus.LOADING);
+        trip.setTripStartLocation("Trondheim");
+        trip.setTripDriver("Pietr Didrik");
+        trip.setTripDriverPhone(48056693);
+        tripRepository.save(trip);
+        flushAndClear();
+
+        tripService.updateTripStatusFromLoadingToDeparted();
+        flushAndClear();
+
+        assertEquals(TripStatus.LOADING, tripRepository.findById(trip.getTripId()).orElseThrow().getTripStatus());
+    }
+
+    /**
+     * Tests that Orders stay REGISTERED and cancellable until the cutoff of their delivery date, and that the
+     * picked Shipments of a date are not planned into Trips before the planning time of the date.
+     */
+    @Test
+    public void testWorkWaitsForTheCutoffAndPlanningTimeOfItsDate() {
+        Order kept = saveOrder(OrderStatus.REGISTERED);
+        kept.setWishedDeliveryDate(LocalDate.now().plusDays(3));
+        Order cancelled = saveOrder(OrderStatus.REGISTERED);
+        cancelled.setWishedDeliveryDate(LocalDate.now().plusDays(3));
+        flushAndClear();
+
+        shipmentService.createShipment();
+        flushAndClear();
+        assertEquals(OrderStatus.REGISTERED, orderRepository.findById(kept.getOrderId()).orElseThrow().getOrderStatus());
+        assertTrue(orderService.cancelOrderById(cancelled.getOrderId()));
+
+        // Built as if the cutoff had passed, the Shipment is still planned at the planning time of its date
+        shipmentBuilder.buildShipments();
+        flushAndClear();
+        shipmentService.updateShipmentOrdersToPicked();
+        flushAndClear();
+        assertEquals(OrderStatus.PICKED, orderRepository.findById(kept.getOrderId()).orElseThrow().getOrderStatus());
+        assertEquals(OrderStatus.CANCELLED, orderRepository.findById(cancelled.getOrderId()).orElseThrow().getOrderStatus());
+
+        tripService.createTrip();
+        flushAndClear();
+        assertEquals(0, tripRepository.count());
+    }
+
+    /**
+     * Tests that a Trip loaded for a later start date does not depart before it.
+     */
+    @Test
+    public void testTripsDepartOnTheirStartDate() {
+        Trip trip = new Trip();
+        trip.setTripStatus(TripStatus.LOADING);
+        trip.setTripStartLocation("Trondheim");
+        trip.setTripDriver("Pietr Didrik");
+        trip.setTripDriverPhone(48056693);
+        trip.setTripStartDate(LocalDate.now().plusDays(1));
+        tripRepository.save(trip);
+        workQueueService.enqueue(WorkQueueTopic.TRIP_LOADING, trip.getTripId(), LocalDate.now().plusDays(1).atStartOfDay());
+        flushAndClear();
+
+        tripService.updateTripStatusFromLoadingToDeparted();
+        flushAndClear();
+
+        assertEquals(TripStatus.LOADING, tripRepository.findById(trip.getTripId()).orElseThrow().getTripStatus());
+    }
+
+    /**
+     * Tests that Shipments weighing more than one vehicle together are planned on separate Trips,
+     * each carrying the weight and volume of its Packaging times the ordered quantities.
+     */
+    @Test
+    public void testHeavyShipmentsAreSplitOverTrips() {
+        Product pallet = saveProduct(ProductType.DRY_GOODS, 88888, 1_000_000, 2_000_000);
+        saveOrder(store, pallet, 5);
+        saveOrder(saveStore("Other store"), pallet, 5);
+
+        runUpToTrips();
+
+        List<Trip> trips = tripRepository.findAll();
+        assertEquals(2, trips.size());
+        for (Trip trip : trips) {
+            assertEquals(ProductType.DRY_GOODS, trip.getTripTemperatureClass());
+            assertEquals(5_000_000, trip.getTripLoadWeightInGrams(), 0.001);
+            assertEquals(10_000_000, trip.getTripLoadVolumeInCm3(), 0.001);
+            assertEquals(1, trip.getShipments().size());
+        }
+    }
+
+    /**
+     * Tests that a Shipment with frozen goods is not planned on the same Trip as a Shipment of dry goods.
+     */
+    @Test
+    public void testTemperatureClassesTravelApart() {
+        saveOrder(store, saveProduct(ProductType.DRY_GOODS, 88888, 1_000, 1_000), 1);
+        saveOrder(saveStore("Other store"), saveProduct(ProductType.FROZEN_GOODS, 88889, 1_000, 1_000), 1);
+
+        runUpToTrips();
+
+        List<ProductType> classes = tripRepository.findAll().stream().map(Trip::getTripTemperatureClass).sorted().toList();
+        assertEquals(List.of(ProductType.DRY_GOODS, ProductType.FROZEN_GOODS), classes);
+    }
+
+    /**
+     * Tests that the Shipments of a Trip leaving Trondheim are sequenced by the road distances between the cities
+     * of their Stores rather than in the order they were created, and are delivered in that sequence.
+     */
+    @Test
+    public void testShipmentsAreSequencedByRoute() {
+        Product product = saveProduct(ProductType.DRY_GOODS, 88888, 1_000, 1_000);
+        saveOrder(saveStore("Oslo store", "Oslo"), product, 1);
+        saveOrder(saveStore("Steinkjer store", "Steinkjer"), product, 1);
+        saveOrder(saveStore("Drammen store", "Drammen"), product, 1);
+
+        runUpToTrips();
+
+        Trip trip = tripRepository.findAll().get(0);
+        List<String> stores = trip.getShipments().stream()
+                .sorted(Comparator.comparingInt(Shipment::getSequenceAtTrip))
+                .map(Shipment::getShipmentUnloadLocation).toList();
+        assertEquals(List.of("Steinkjer store", "Oslo store", "Drammen store"), stores);
+
+        tripService.deliverNextShipment(trip.getTripId());
+        flushAndClear();
+        assertEquals("Steinkjer", tripRepository.findById(trip.getTripId()).orElseThrow().getTripCurrentLocation());
+    }
+}
@@ -0,0 +1,244 @@
+package wms.rest.wms.unit.service;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import wms.rest.wms.model.*;
+import wms.rest.wms.repository.CustomerRepository;
+import wms.rest.wms.repository.OrderRepository;
+import wms.rest.wms.repository.StoreRepository;
+import wms.rest.wms.service.StoreService;
+import wms.rest.wms.service.search.ProductSearchIndex;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration test for the Hibernate second-level cache against the H2 embedded database.
+ * Every read is run in its own transaction, first with the second-level cache emptied and then again
+ * with it filled, and the JDBC statements prepared by Hibernate are counted for both.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class SecondLevelCacheIntegrationTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SecondLevelCacheIntegrationTest.class);
+
+    /** Number of Stores created for the test */
+    private static final int STORES = 4;
+
+    /** Number of Customers created in each Store */
+    private static final int CUSTOMERS_PER_STORE = 2;
+
+    /** Number of Orders placed by each Customer */
+    private static final int ORDERS_PER_CUSTOMER = 3;
+
+    /** Autowired StoreService for reading the Stores */
+    @Autowired
+    private StoreService storeService;
+
+    /** Autowired StoreRepository for interaction with the H2 embedded database */
+    @Autowired
+    private StoreRepository storeRepository;
+
+    /** Autowired CustomerRepository for interaction with the H2 embedded database */
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    /** Autowired OrderRepository for interaction with the H2 embedded database */
+    @Autowired
+    private OrderRepository orderRepository;
+
+    /** Autowired ProductSearchIndex, awaited so its build does not run statements during a test */
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    /** Autowired TransactionTemplate for running every read in its own persistence context */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /** Autowired EntityManagerFactory for reading the Hibernate statistics and emptying the cache */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /** The Stores created for the test */
+    private final List<Store> stores = new ArrayList<>();
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates Stores with Customers who placed Orders.
+     *
+     * @throws InterruptedException if interrupted while waiting for the search index.
+     */
+    @BeforeEach
+    public void setup() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!productSearchIndex.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        for (int s = 0; s < STORES; s++) {
+            Store store = new Store();
+            store.setName("Cached store " + s);
+            store.setAddress("Test address");
+            store.setCountry("Test country");
+            store.setCity("Test City");
+            store.setPostalCode(5000 + s);
+            stores.add(storeRepository.save(store));
+            for (int c = 0; c < CUSTOMERS_PER_STORE; c++) {
+                Customer customer = new Customer();
+                customer.setEmail("cached" + s + "-" + c + "@example.com");
+                customer.setFirstName("John");
+                customer.setLastName("Doe");
+                customer.setPassword("secretpassword11");
+                customer.setStore(store);
+                customerRepository.save(customer);
+                for (int o = 0; o < ORDERS_PER_CUSTOMER; o++) {
+                    Order order = new Order();
+                    order.setOrderDate(LocalDate.now());
+                    order.setOrderStatus(OrderStatus.REGISTERED);
+                    order.setWishedDeliveryDate(LocalDate.now().plusDays(o));
+                    order.setCustomer(customer);
+                    order.setStore(store);
+                    orderRepository.save(order);
+                }
+            }
+        }
+    }
+
+    /**
+     * Clean up the test environment after each test method.
+     * Removes the Orders, Customers and Stores created by the test.
+     */
+    @AfterEach
+    public void cleanup() {
+        orderRepository.deleteAll();
+        customerRepository.deleteAll();
+        storeRepository.deleteAll();
+        stores.clear();
+    }
+
+    /**
+     * Return the number of statements a read prepares in its own transaction.
+     *
+     * @param read the read to run.
+     * @return the number of prepared statements.
+     */
+    private long statements(Runnable read) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        transactionTemplate.executeWithoutResult(status -> read.run());
+        return statistics.getPrepareStatementCount();
+    }
+
+    /**
+     * Return the number of statements a read prepares with an empty and with a filled second-level cache.
+     *
+     * @param name the name of the read in the log.
+     * @param read the read to run.
+     * @return the number of prepared statements, cold first and warm second.
+     */
+    private long[] coldAndWarm(String name, Runnable read) {
+        entityManagerFactory.getCache().evictAll();
+        long cold = statements(read);
+        long warm = statements(read);
+        log.info("{}: {} statements without the second-level cache, {} with it", name, cold, warm);
+        return new long[]{cold, warm};
+    }
+
+    /**
+     * Tests that the list of every Store is answered by the query cache, and single Stores and the Customers
+     * of a Store by the second-level cache, without a statement.
+     */
+    @Test
+    public void testStoresAreReadFromTheCache() {
+        long[] getStores = coldAndWarm("getStores", () -> assertEquals(STORES, storeService.getStores().size()));
+        assertEquals(1, getStores[0]);
+        assertEquals(0, getStores[1]);
+
+        int storeId = stores.get(0).getStoreId();
+        long[] getStoreById = coldAndWarm("getStoreById", () -> assertTrue(storeService.getStoreById(storeId).isPresent()));
+        assertEquals(1, getStoreById[0]);
+        assertEquals(0, getStoreById[1]);
+
+        long[] customers = coldAndWarm("Store.customers", () -> assertEquals(CUSTOMERS_PER_STORE,
+                storeRepository.findById(storeId).orElseThrow().getCustomers().size()));
+        assertTrue(customers[0] >= 2);
+        assertEquals(0, customers[1]);
+    }
+
+    /**
+     * Tests that a new Store is in the list of every Store right away, as the cached query is invalidated.
+     */
+    @Test
+    public void testCachedStoresAreInvalidatedByChanges() {
+        assertEquals(STORES, storeService.getStores().size());
+        Store store = new Store();
+        store.setName("New store");
+        store.setAddress("Test address");
+        store.setCountry("Test country");
+        store.setCity("Test City");
+        store.setPostalCode(6000);
+        stores.add(storeRepository.save(store));
+        assertEquals(STORES + 1, storeService.getStores().size());
+
+        Store renamed = storeRepository.findById(store.getStoreId()).orElseThrow();
+        renamed.setName("Renamed store");
+        storeRepository.save(renamed);
+        assertEquals("Renamed store", storeService.getStoreById(store.getStoreId()).orElseThrow().getName());
+    }
+
+    /**
+     * Tests that loading Orders no longer selects their Customer and its Store.
+     */
+    @Test
+    public void testOrdersReadCustomersAndStoresFromTheCache() {
+        long[] orders = coldAndWarm("Orders with Store and Customer", () -> {
+            List<Order> all = orderRepository.findAll();
+            assertEquals(STORES * CUSTOMERS_PER_STORE * ORDERS_PER_CUSTOMER, all.size());
+            all.forEach(order -> assertNotNull(order.getCustomer().getStore().getName()));
+        });
+        assertEquals(1 + STORES * CUSTOMERS_PER_STORE, orders[0]);
+        assertEquals(1, orders[1]);
+    }
+
+    /**
+     * Tests that every region Hibernate uses is configured in hibernate-jcache.conf, which production requires.
+     * The test profile prefixes the regions per context, so they are not looked up there.
+     *
+     * @throws Exception if the configuration can not be read.
+     */
+    @Test
+    public void testRegionsAreConfigured() throws Exception {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        URI uri = getClass().getClassLoader().getResource("hibernate-jcache.conf").toURI();
+        // A class loader of its own gives a CacheManager of its own, not the one the test context uses
+        ClassLoader classLoader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        try (CacheManager cacheManager = provider.getCacheManager(uri, classLoader)) {
+            for (String region : List.of("store", "store-customers", "customer",
+                    "default-query-results-region", "default-update-timestamps-region")) {
+                assertNotNull(cacheManager.getCache(region), "Region " + region + " is not configured");
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package wms.rest.wms.unit.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import wms.rest.wms.configuration.OrderStoreMigration;
+import wms.rest.wms.model.*;
+import wms.rest.wms.repository.*;
+import wms.rest.wms.service.OrderNotificationService;
+import wms.rest.wms.service.OrderTrackingService;
+import wms.rest.wms.service.WorkQueueService;
+import wms.rest.wms.service.ledger.StockLedgerService;
+import wms.rest.wms.service.shipment.ShipmentBuildReport;
+import wms.rest.wms.service.shipment.ShipmentBuilder;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for ShipmentBuilder against the H2 embedded database.
+ * Verifies that REGISTERED Orders are grouped into Shipments chunk by chunk and that
+ * the reserved stock is withdrawn from Inventory. The tests run in a transaction, which the builder joins.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@Transactional
+@ActiveProfiles("test")
+public class ShipmentBuilderIntegrationTest {
+
+    /** Autowired OrderRepository for interaction with the H2 embedded database */
+    @Autowired
+    private OrderRepository orderRepository;
+
+    /** Autowired ShipmentRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    /** Autowired StoreRepository for interaction with the H2 embedded database */
+    @Autowired
+    private StoreRepository storeRepository;
+
+    /** Autowired CustomerRepository for interaction with the H2 embedded database */
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    /** Autowired ProductRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Autowired OrderNotificationRepository for reading the order notification outbox */
+    @Autowired
+    private OrderNotificationRepository orderNotificationRepository;
+
+    /** Autowired JDBC template handed to the ShipmentBuilder under test */
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    /** Autowired EntityManager for flushing and clearing the persistence context between steps */
+    @Autowired
+    private EntityManager entityManager;
+
+    /** Autowired WorkQueueService handed to the ShipmentBuilder under test */
+    @Autowired
+    private WorkQueueService workQueueService;
+
+    /** Autowired OrderNotificationService handed to the ShipmentBuilder under test */
+    @Autowired
+    private OrderNotificationService orderNotificationService;
+
+    /** Autowired OrderTrackingService handed to the ShipmentBuilder under test */
+    @Autowired
+    private OrderTrackingService orderTrackingService;
+
+    /** Autowired StockLedgerService handed to the ShipmentBuilder under test */
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
+    /** Autowired OrderStoreMigration giving the Orders without a Store the Store of their Customer */
+    @Autowired
+    private OrderStoreMigration orderStoreMigration;
+
+    /** Autowired TransactionTemplate handed to the ShipmentBuilder under test */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /** ShipmentBuilder with a small chunk size, so a single group spans several chunks */
+    private ShipmentBuilder shipmentBuilder;
+
+    /** Declare Product at class level for easier accessibility */
+    private Product product;
+
+    /** Declare Store at class level for easier accessibility */
+    private Store store;
+
+    /** Declare Customer at class level for easier accessibility */
+    private Customer customer;
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates a Store, a Customer and a Product with 100 in total stock where 50 is reserved.
+     */
+    @BeforeEach
+    public void setup() {
+        shipmentBuilder = new ShipmentBuilder(orderRepository, shipmentRepository, jdbcTemplate, workQueueService,
+                orderNotificationService, orderTrackingService, stockLedgerService, transactionTemplate, 2, 2, 3, 10);
+
+        store = new Store();
+        store.setName("Test store");
+        store.setAddress("Test address");
+        store.setCountry("Test country");
+        store.setCity("Test City");
+        store.setPostalCode(5004);
+        storeRepository.save(store);
+
+        customer = new Customer();
+        customer.setEmail("builder@example.com");
+        customer.setFirstName("John");
+        customer.setLastName("Doe");
+        customer.setPassword("secretpassword11");
+        customer.setStore(store);
+        customerRepository.save(customer);
+
+        product = new Product();
+        product.setName("Product");
+        product.setDescription("Description");
+        product.setSupplier("Supplier");
+        product.setBestBeforeDate(new Date());
+        product.setProductType(ProductType.DRY_GOODS);
+        product.setPrice(20.00);
+        product.setGtin(88888);
+        product.setBatch(11111);
+        Inventory inventory = new Inventory();
+        inventory.setTotalStock(100);
+        inventory.setReservedStock(50);
+        inventory.setAvailableStock(50);
+        inventory.setProduct(product);
+        product.setInventory(inventory);
+        productRepository.save(product);
+    }
+
+    /**
+     * Create and save an Order with one OrderQuantities line of the test Product.
+     *
+     * @param status the OrderStatus of the Order.
+     * @param deliveryDate the wished delivery date of the Order.
+     * @param quantity the quantity of the test Product in the Order.
+     * @return the saved Order.
+     */
+    private Order saveOrder(OrderStatus status, LocalDate deliveryDate, int quantity) {
+        Order order = new Order();
+        order.setOrderDate(LocalDate.now());
+        order.setOrderStatus(status);
+        order.setWishedDeliveryDate(deliveryDate);
+        order.setCustomer(customer);
+        order.setStore(store);
+        OrderQuantities line = new OrderQuantities();
+        line.setProduct(product);
+        line.setProductQuantity(quantity);
+        line.setOrder(order);
+        order.getQuantities().add(line);
+        return orderRepository.save(order);
+    }
+
+    /**
+     * Tests that every (Store, delivery date) group gets exactly one Shipment, that all REGISTERED
+     * Orders are moved to PICKING across chunks with a PICKING notification each, and that other Orders are left untouched.
+     */
+    @Test
+    public void testBuildShipmentsGroupsRegisteredOrders() {
+        LocalDate monday = LocalDate.of(2024, 4, 15);
+        LocalDate tuesday = LocalDate.of(2024, 4, 16);
+        Order first = saveOrder(OrderStatus.REGISTERED, monday, 5);
+        Order second = saveOrder(OrderStatus.REGISTERED, monday, 5);
+        Order third = saveOrder(OrderStatus.REGISTERED, monday, 5);
+        Order fourth = saveOrder(OrderStatus.REGISTERED, tuesday, 10);
+        Order delivered = saveOrder(OrderStatus.DELIVERED, monday, 20);
+        entityManager.flush();
+        entityManager.clear();
+
+        ShipmentBuildReport report = shipmentBuilder.buildShipments();
+
+        assertEquals(2, report.getGroups());
+        assertEquals(2, report.getShipments());
+        assertEquals(4, report.getOrders());
+        assertTrue(report.getRowsWritten() > 0);
+
+        List<Shipment> shipments = shipmentRepository.findAll();
+        assertEquals(2, shipments.size());
+        for (int orderId : List.of(first.getOrderId(), second.getOrderId(), third.getOrderId(), fourth.getOrderId())) {
+            Order order = orderRepository.findById(orderId).orElseThrow();
+            assertEquals(OrderStatus.PICKING, order.getOrderStatus());
+            assertEquals(10, order.getProgressInPercent());
+            assertNotNull(order.getShipment());
+            assertEquals(order.getWishedDeliveryDate(), order.getShipment().getShipmentDeliveryDate());
+        }
+        Order untouched = orderRepository.findById(delivered.getOrderId()).orElseThrow();
+        assertEquals(OrderStatus.DELIVERED, untouched.getOrderStatus());
+        assertNull(untouched.getShipment());
+
+        List<Integer> queued = workQueueService.poll(WorkQueueTopic.SHIPMENT_PICKING, 10);
+        assertEquals(shipments.stream().map(Shipment::getShipmentId).sorted().toList(), queued.stream().sorted().toList());
+
+        List<OrderNotification> notifications = orderNotificationRepository.findAll();
+        assertTrue(notifications.stream().allMatch(n -> n.getNotificationType() == OrderNotificationType.PICKING));
+        assertEquals(List.of(first.getOrderId(), second.getOrderId(), third.getOrderId(), fourth.getOrderId()),
+                notifications.stream().map(OrderNotification::getOrderId).sorted().toList());
+    }
+
+    /**
+     * Tests that the quantities of the claimed Orders are withdrawn from both reserved and total stock,
+     * and that a second run finds nothing left to do.
+     */
+    @Test
+    public void testBuildShipmentsWithdrawsReservedStock() {
+        saveOrder(OrderStatus.REGISTERED, LocalDate.of(2024, 4, 15), 5);
+        saveOrder(OrderStatus.REGISTERED, LocalDate.of(2024, 4, 15), 15);
+        saveOrder(OrderStatus.REGISTERED, LocalDate.of(2024, 4, 15), 30);
+        entityManager.flush();
+        entityManager.clear();
+
+        shipmentBuilder.buildShipments();
+        ShipmentBuildReport secondRun = shipmentBuilder.buildShipments();
+
+        Inventory inventory = productRepository.findById(product.getProductId()).orElseThrow().getInventory();
+        assertEquals(50, inventory.getTotalStock());
+        assertEquals(0, inventory.getReservedStock());
+        assertEquals(50, inventory.getAvailableStock());
+        assertEquals(0, secondRun.getShipments());
+    }
+
+    /**
+     * Tests that an Order from before Orders referred to their Store is given the Store of its Customer and shipped,
+     * and that an Order without a Customer is left REGISTERED.
+     */
+    @Test
+    public void testOrdersWithoutStoreAreGivenTheStoreOfTheirCustomer() {
+        Order withCustomer = saveOrder(OrderStatus.REGISTERED, LocalDate.of(2024, 4, 15), 5);
+        withCustomer.setStore(null);
+        Order withoutCustomer = saveOrder(OrderStatus.REGISTERED, LocalDate.of(2024, 4, 15), 5);
+        withoutCustomer.setStore(null);
+        withoutCustomer.setCustomer(null);
+        entityManager.flush();
+        entityManager.clear();
+
+        orderStoreMigration.migrate();
+        ShipmentBuildReport report = shipmentBuilder.buildShipments();
+        entityManager.clear();
+
+        assertEquals(1, report.getOrders());
+        Order shipped = orderRepository.findById(withCustomer.getOrderId()).orElseThrow();
+        assertEquals(store.getStoreId(), shipped.getStore().getStoreId());
+        assertEquals(OrderStatus.PICKING, shipped.getOrderStatus());
+        Order skipped = orderRepository.findById(withoutCustomer.getOrderId()).orElseThrow();
+        assertNull(skipped.getStore());
+        assertEquals(OrderStatus.REGISTERED, skipped.getOrderStatus());
+    }
+}
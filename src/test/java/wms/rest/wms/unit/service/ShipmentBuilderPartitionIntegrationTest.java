@@ -0,0 +1,318 @@
+package wms.rest.wms.unit.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import wms.rest.wms.model.*;
+import wms.rest.wms.repository.*;
+import wms.rest.wms.service.OrderNotificationService;
+import wms.rest.wms.service.OrderTrackingService;
+import wms.rest.wms.service.WorkQueueService;
+import wms.rest.wms.service.ledger.StockLedgerService;
+import wms.rest.wms.service.shipment.ShipmentBuildReport;
+import wms.rest.wms.service.shipment.ShipmentBuilder;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the partitioned runs of ShipmentBuilder against the H2 embedded database.
+ * The tests run outside a transaction, so every (Store, delivery date) group is built in its own transaction
+ * on the workers of the builder. Failures are injected by a WorkQueueService rejecting the Shipments of one Store.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class ShipmentBuilderPartitionIntegrationTest {
+
+    /** Number of Stores, each with one group of REGISTERED Orders */
+    private static final int STORES = 4;
+
+    /** Number of REGISTERED Orders of every Store */
+    private static final int ORDERS_PER_STORE = 3;
+
+    /** Quantity of the test Product in every Order */
+    private static final int QUANTITY = 5;
+
+    /** Autowired OrderRepository for interaction with the H2 embedded database */
+    @Autowired
+    private OrderRepository orderRepository;
+
+    /** Autowired ShipmentRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    /** Autowired StoreRepository for interaction with the H2 embedded database */
+    @Autowired
+    private StoreRepository storeRepository;
+
+    /** Autowired CustomerRepository for interaction with the H2 embedded database */
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    /** Autowired ProductRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Autowired WorkQueueRepository backing the WorkQueueService handed to the ShipmentBuilder under test */
+    @Autowired
+    private WorkQueueRepository workQueueRepository;
+
+    /** Autowired ApplicationEventPublisher handed to the WorkQueueService handed to the ShipmentBuilder under test */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /** Autowired OrderTrackingRepository for clearing the tracking rows */
+    @Autowired
+    private OrderTrackingRepository orderTrackingRepository;
+
+    /** Autowired JDBC template handed to the ShipmentBuilder under test */
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    /** Autowired OrderNotificationService handed to the ShipmentBuilder under test */
+    @Autowired
+    private OrderNotificationService orderNotificationService;
+
+    /** Autowired OrderTrackingService handed to the ShipmentBuilder under test */
+    @Autowired
+    private OrderTrackingService orderTrackingService;
+
+    /** Autowired StockLedgerService handed to the ShipmentBuilder under test */
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
+    /** Autowired TransactionTemplate handed to the ShipmentBuilder under test */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /** Declare Product with 100 in total stock at class level for easier accessibility */
+    private Product product;
+
+    /** The orderIds of the Orders of every Store, by the name of the Store */
+    private final Map<String, List<Integer>> orderIdsByStore = new HashMap<>();
+
+    /** Names of the threads the Shipments were recorded on */
+    private final Set<String> threadNames = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates a Product with 100 in total stock where 80 is reserved, and STORES Stores with a Customer and
+     * ORDERS_PER_STORE REGISTERED Orders each, all for the same delivery date.
+     */
+    @BeforeEach
+    public void setup() {
+        product = new Product();
+        product.setName("Product");
+        product.setDescription("Description");
+        product.setSupplier("Supplier");
+        product.setBestBeforeDate(new Date());
+        product.setProductType(ProductType.DRY_GOODS);
+        product.setPrice(20.00);
+        product.setGtin(77777);
+        product.setBatch(11111);
+        Inventory inventory = new Inventory();
+        inventory.setTotalStock(100);
+        inventory.setReservedStock(STORES * ORDERS_PER_STORE * QUANTITY);
+        inventory.setAvailableStock(100 - STORES * ORDERS_PER_STORE * QUANTITY);
+        inventory.setProduct(product);
+        product.setInventory(inventory);
+        productRepository.save(product);
+
+        for (int s = 0; s < STORES; s++) {
+            Store store = new Store();
+            store.setName("Store " + s);
+            store.setAddress("Test address");
+            store.setCountry("Test country");
+            store.setCity("Test City");
+            store.setPostalCode(5004);
+            storeRepository.save(store);
+
+            Customer customer = new Customer();
+            customer.setEmail("partition" + s + "@example.com");
+            customer.setFirstName("John");
+            customer.setLastName("Doe");
+            customer.setPassword("secretpassword11");
+            customer.setStore(store);
+            customerRepository.save(customer);
+
+            List<Integer> orderIds = new ArrayList<>();
+            for (int o = 0; o < ORDERS_PER_STORE; o++) {
+                Order order = new Order();
+                order.setOrderDate(LocalDate.now());
+                order.setOrderStatus(OrderStatus.REGISTERED);
+                order.setWishedDeliveryDate(LocalDate.of(2024, 4, 15));
+                order.setCustomer(customer);
+                order.setStore(store);
+                OrderQuantities line = new OrderQuantities();
+                line.setProduct(product);
+                line.setProductQuantity(QUANTITY);
+                line.setOrder(order);
+                order.getQuantities().add(line);
+                orderIds.add(orderRepository.save(order).getOrderId());
+            }
+            orderIdsByStore.put(store.getName(), orderIds);
+        }
+    }
+
+    /**
+     * Clean up the test environment after each test method.
+     * Removes every row created by the test. The order notification outbox is drained by the relay meanwhile,
+     * so it is cleared with one statement rather than row by row.
+     */
+    @AfterEach
+    public void cleanup() {
+        workQueueRepository.deleteAll();
+        jdbcTemplate.getJdbcTemplate().update("DELETE FROM order_notification");
+        orderTrackingRepository.deleteAll();
+        orderRepository.deleteAll();
+        shipmentRepository.deleteAll();
+        customerRepository.deleteAll();
+        storeRepository.deleteAll();
+        productRepository.deleteById(product.getProductId());
+        orderIdsByStore.clear();
+        threadNames.clear();
+    }
+
+    /**
+     * Create a ShipmentBuilder with two workers and three attempts per partition, whose WorkQueueService fails
+     * to record the Shipments the specified predicate rejects.
+     *
+     * @param fails decides by the attempt number whether recording a Shipment of 'Store 0' fails.
+     * @return the ShipmentBuilder.
+     */
+    private ShipmentBuilder shipmentBuilder(IntPredicate fails) {
+        Map<Integer, Integer> attempts = new ConcurrentHashMap<>();
+        WorkQueueService workQueueService = new WorkQueueService(workQueueRepository, eventPublisher) {
+            @Override
+            public void enqueue(WorkQueueTopic topic, int entityId) {
+                threadNames.add(Thread.currentThread().getName());
+                String store = shipmentRepository.findById(entityId).orElseThrow().getShipmentUnloadLocation();
+                if (store.equals("Store 0") && fails.test(attempts.merge(0, 1, Integer::sum))) {
+                    throw new IllegalStateException("Work queue rejected the shipment of " + store);
+                }
+                super.enqueue(topic, entityId);
+            }
+        };
+        return new ShipmentBuilder(orderRepository, shipmentRepository, jdbcTemplate, workQueueService,
+                orderNotificationService, orderTrackingService, stockLedgerService, transactionTemplate, 2, 2, 3, 10);
+    }
+
+    /**
+     * Return the total and reserved stock of the test Product.
+     *
+     * @return the total stock followed by the reserved stock.
+     */
+    private List<Integer> stock() {
+        return jdbcTemplate.queryForObject("SELECT total_stock, reserved_stock FROM inventory WHERE product_id = :productId",
+                new MapSqlParameterSource("productId", product.getProductId()),
+                (rs, rowNum) -> List.of(rs.getInt("total_stock"), rs.getInt("reserved_stock")));
+    }
+
+    /**
+     * Tests that every group is built on the workers of the builder and gets exactly one Shipment.
+     */
+    @Test
+    public void testBuildShipmentsInPartitions() {
+        ShipmentBuildReport report = shipmentBuilder(attempt -> false).buildShipments();
+
+        assertEquals(STORES, report.getGroups());
+        assertEquals(STORES, report.getShipments());
+        assertEquals(STORES * ORDERS_PER_STORE, report.getOrders());
+        assertEquals(0, report.getFailedGroups());
+        assertEquals(0, report.getRetries());
+        assertEquals(STORES, shipmentRepository.count());
+        assertFalse(threadNames.isEmpty());
+        assertTrue(threadNames.stream().allMatch(name -> name.startsWith("shipment-builder-")), threadNames.toString());
+        assertEquals(List.of(100 - STORES * ORDERS_PER_STORE * QUANTITY, 0), stock());
+    }
+
+    /**
+     * Tests that a partition failing once is rolled back and retried, without leaving a second Shipment
+     * behind or withdrawing its stock twice.
+     */
+    @Test
+    public void testFailedPartitionIsRetried() {
+        ShipmentBuildReport report = shipmentBuilder(attempt -> attempt == 1).buildShipments();
+
+        assertEquals(STORES, report.getShipments());
+        assertEquals(1, report.getRetries());
+        assertEquals(0, report.getFailedGroups());
+        assertEquals(STORES, shipmentRepository.count());
+        for (int orderId : orderIdsByStore.get("Store 0")) {
+            assertEquals(OrderStatus.PICKING, orderRepository.findById(orderId).orElseThrow().getOrderStatus());
+        }
+        assertEquals(List.of(100 - STORES * ORDERS_PER_STORE * QUANTITY, 0), stock());
+    }
+
+    /**
+     * Tests that a partition failing on every attempt is reported without holding up the other groups,
+     * and that the next run builds it and finds nothing else left to do.
+     */
+    @Test
+    public void testFailingPartitionDoesNotAbortTheRun() {
+        ShipmentBuildReport report = shipmentBuilder(attempt -> true).buildShipments();
+
+        assertEquals(STORES, report.getGroups());
+        assertEquals(STORES - 1, report.getShipments());
+        assertEquals(1, report.getFailedGroups());
+        assertEquals(2, report.getRetries());
+        assertEquals(STORES - 1, shipmentRepository.count());
+        for (int orderId : orderIdsByStore.get("Store 0")) {
+            Order order = orderRepository.findById(orderId).orElseThrow();
+            assertEquals(OrderStatus.REGISTERED, order.getOrderStatus());
+            assertNull(order.getShipment());
+        }
+        assertEquals(List.of(100 - (STORES - 1) * ORDERS_PER_STORE * QUANTITY, ORDERS_PER_STORE * QUANTITY), stock());
+
+        ShipmentBuildReport nextRun = shipmentBuilder(attempt -> false).buildShipments();
+        assertEquals(1, nextRun.getShipments());
+        assertEquals(0, shipmentBuilder(attempt -> false).buildShipments().getShipments());
+        assertEquals(STORES, shipmentRepository.count());
+        assertEquals(List.of(100 - STORES * ORDERS_PER_STORE * QUANTITY, 0), stock());
+    }
+
+    /**
+     * Tests that two runs started at the same time claim every Order once, between them create one Shipment
+     * per group and withdraw the stock of every Order once.
+     *
+     * @throws Exception if a run fails.
+     */
+    @Test
+    public void testConcurrentRunsAreIdempotent() throws Exception {
+        ShipmentBuilder first = shipmentBuilder(attempt -> false);
+        ShipmentBuilder second = shipmentBuilder(attempt -> false);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        Future<ShipmentBuildReport> firstRun = executor.submit(() -> {
+            start.await();
+            return first.buildShipments();
+        });
+        Future<ShipmentBuildReport> secondRun = executor.submit(() -> {
+            start.await();
+            return second.buildShipments();
+        });
+        start.countDown();
+        ShipmentBuildReport firstReport = firstRun.get(60, TimeUnit.SECONDS);
+        ShipmentBuildReport secondReport = secondRun.get(60, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertEquals(STORES, firstReport.getShipments() + secondReport.getShipments());
+        assertEquals(STORES * ORDERS_PER_STORE, firstReport.getOrders() + secondReport.getOrders());
+        assertEquals(0, firstReport.getFailedGroups() + secondReport.getFailedGroups());
+        assertEquals(STORES, shipmentRepository.count());
+        assertEquals(List.of(100 - STORES * ORDERS_PER_STORE * QUANTITY, 0), stock());
+    }
+}
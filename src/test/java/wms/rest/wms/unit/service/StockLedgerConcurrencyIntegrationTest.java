@@ -0,0 +1,149 @@
+package wms.rest.wms.unit.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import wms.rest.wms.api.model.StockBalance;
+import wms.rest.wms.model.Inventory;
+import wms.rest.wms.model.Product;
+import wms.rest.wms.model.ProductType;
+import wms.rest.wms.repository.InventoryRepository;
+import wms.rest.wms.repository.InventoryRepository.StockLevel;
+import wms.rest.wms.service.ProductService;
+import wms.rest.wms.service.StockReservationService;
+import wms.rest.wms.service.ledger.StockLedgerService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Integration tests for the stock ledger under concurrent writers against the H2 embedded database. Unlike
+ * StockLedgerIntegrationTest the tests do not run in a transaction, so every reservation and correction commits
+ * on its own and they can interleave.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class StockLedgerConcurrencyIntegrationTest {
+
+    /** Number of reservations of one unit made while the stock is corrected */
+    private static final int RESERVATIONS = 200;
+
+    /** Number of corrections of the total stock made while the stock is reserved */
+    private static final int UPDATES = 50;
+
+    /** Autowired ProductService for creating and correcting the Product */
+    @Autowired
+    private ProductService productService;
+
+    /** Autowired StockReservationService for reserving the stock */
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    /** Autowired StockLedgerService for reading the balance of the ledger */
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
+    /** Autowired InventoryRepository for reading the stock of the Inventory */
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    /** Autowired JdbcTemplate for removing the movements of the Product */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Declare productId at class level for easier accessibility */
+    private int productId;
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates a Product with 1000 in total and available stock.
+     */
+    @BeforeEach
+    public void setup() {
+        Product product = new Product();
+        product.setName("Concurrent ledger product");
+        product.setDescription("Description");
+        product.setSupplier("Supplier");
+        product.setBestBeforeDate(new Date());
+        product.setProductType(ProductType.DRY_GOODS);
+        product.setPrice(20.00);
+        product.setGtin(77770);
+        product.setBatch(11111);
+        Inventory inventory = new Inventory();
+        inventory.setTotalStock(1000);
+        inventory.setAvailableStock(1000);
+        inventory.setProduct(product);
+        product.setInventory(inventory);
+        productId = productService.createProduct(product).getProductId();
+    }
+
+    /**
+     * Clean up the test environment after each test method.
+     * Removes the Product and its movements.
+     */
+    @AfterEach
+    public void cleanup() {
+        productService.deleteById(productId);
+        jdbcTemplate.update("DELETE FROM stock_movement WHERE product_id = ?", productId);
+    }
+
+    /**
+     * Tests that correcting the total stock of a Product while it is reserved neither loses a reservation nor
+     * records a correction the Inventory did not get, so the ledger still sums to the Inventory.
+     *
+     * @throws Exception if a writer fails.
+     */
+    @Test
+    public void testReservationsAreNotLostToConcurrentUpdates() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger reserved = new AtomicInteger();
+        List<Future<?>> writers = new ArrayList<>();
+        for (int i = 0; i < RESERVATIONS; i++) {
+            writers.add(executor.submit(() -> {
+                start.await();
+                if (stockReservationService.tryReserve(productId, 1)) {
+                    reserved.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        for (int i = 0; i < UPDATES; i++) {
+            int totalStock = 2000 + i;
+            writers.add(executor.submit(() -> {
+                start.await();
+                Product update = new Product();
+                Inventory inventory = new Inventory();
+                inventory.setTotalStock(totalStock);
+                update.setInventory(inventory);
+                productService.updateProduct(productId, update);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        StockLevel stock = inventoryRepository.findStockLevelsByProductIdIn(List.of(productId)).get(0);
+        assertEquals(RESERVATIONS, reserved.get());
+        assertEquals(RESERVATIONS, stock.getReservedStock());
+        assertEquals(1000 - RESERVATIONS, stock.getAvailableStock());
+        StockBalance balance = stockLedgerService.getBalanceAsOf(productId, LocalDateTime.now());
+        assertEquals(List.of(stock.getTotalStock(), stock.getReservedStock(), stock.getAvailableStock()),
+                List.of(balance.getTotalStock(), balance.getReservedStock(), balance.getAvailableStock()));
+    }
+}
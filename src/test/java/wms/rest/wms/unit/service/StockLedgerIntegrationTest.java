@@ -0,0 +1,373 @@
+package wms.rest.wms.unit.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import wms.rest.wms.api.model.StockBalance;
+import wms.rest.wms.configuration.StockLedgerMigration;
+import wms.rest.wms.exception.NotEnoughStockException;
+import wms.rest.wms.model.*;
+import wms.rest.wms.repository.*;
+import wms.rest.wms.repository.InventoryRepository.StockLevel;
+import wms.rest.wms.service.OrderService;
+import wms.rest.wms.service.ProductService;
+import wms.rest.wms.service.ShipmentService;
+import wms.rest.wms.service.StockReservationService;
+import wms.rest.wms.service.ledger.StockLedgerCompactor;
+import wms.rest.wms.service.ledger.StockLedgerService;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the stock ledger against the H2 embedded database. Verifies that every change to the stock
+ * of an Inventory is appended to the ledger and that the ledger sums to the Inventory, that the stock can be read
+ * as of earlier times, and that compacting the ledger into snapshots does not change any balance.
+ *
+ * @author Mikkel Stavelie.
+ */
+@SpringBootTest
+@Transactional
+@ActiveProfiles("test")
+public class StockLedgerIntegrationTest {
+
+    /** Autowired StockLedgerService under test */
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
+    /** Autowired StockLedgerCompactor under test */
+    @Autowired
+    private StockLedgerCompactor stockLedgerCompactor;
+
+    /** Autowired StockLedgerMigration under test */
+    @Autowired
+    private StockLedgerMigration stockLedgerMigration;
+
+    /** Autowired ProductService for receiving and adjusting stock */
+    @Autowired
+    private ProductService productService;
+
+    /** Autowired StockReservationService for reserving and releasing stock */
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    /** Autowired OrderService for placing Orders */
+    @Autowired
+    private OrderService orderService;
+
+    /** Autowired ShipmentService for picking the stock of the Orders */
+    @Autowired
+    private ShipmentService shipmentService;
+
+    /** Autowired ProductRepository for interaction with the H2 embedded database */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Autowired StockMovementRepository for appending movements stamped before they are saved */
+    @Autowired
+    private StockMovementRepository stockMovementRepository;
+
+    /** Autowired InventoryRepository for reading the stock of the Inventories */
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    /** Autowired StoreRepository for interaction with the H2 embedded database */
+    @Autowired
+    private StoreRepository storeRepository;
+
+    /** Autowired CustomerRepository for interaction with the H2 embedded database */
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    /** Autowired EntityManager for flushing and clearing the persistence context between steps */
+    @Autowired
+    private EntityManager entityManager;
+
+    /** Declare Customer at class level for easier accessibility */
+    private Customer customer;
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates a Store and a Customer the Orders are placed by.
+     */
+    @BeforeEach
+    public void setup() {
+        Store store = new Store();
+        store.setName("Ledger store");
+        store.setAddress("Test address");
+        store.setCountry("Test country");
+        store.setCity("Oslo");
+        store.setPostalCode(150);
+        storeRepository.save(store);
+
+        customer = new Customer();
+        customer.setEmail("ledger@example.com");
+        customer.setFirstName("John");
+        customer.setLastName("Doe");
+        customer.setPassword("secretpassword11");
+        customer.setStore(store);
+        customerRepository.save(customer);
+    }
+
+    /**
+     * Create a Product with an Inventory.
+     *
+     * @param gtin the unique GTIN of the Product.
+     * @param totalStock the total and available stock of the Inventory.
+     * @return the Product, not saved.
+     */
+    private static Product product(long gtin, int totalStock) {
+        Product product = new Product();
+        product.setName("Ledger product");
+        product.setDescription("Description");
+        product.setSupplier("Supplier");
+        product.setBestBeforeDate(new Date());
+        product.setProductType(ProductType.DRY_GOODS);
+        product.setPrice(20.00);
+        product.setGtin(gtin);
+        product.setBatch(11111);
+        Inventory inventory = new Inventory();
+        inventory.setTotalStock(totalStock);
+        inventory.setAvailableStock(totalStock);
+        inventory.setProduct(product);
+        product.setInventory(inventory);
+        return product;
+    }
+
+    /**
+     * Return the stock of a Product as held by its Inventory.
+     *
+     * @param productId the productId of the Product.
+     * @return the StockLevel of the Inventory.
+     */
+    private StockLevel inventory(int productId) {
+        return inventoryRepository.findStockLevelsByProductIdIn(List.of(productId)).get(0);
+    }
+
+    /**
+     * Flush pending changes and clear the persistence context, and wait a moment so the next movement is recorded
+     * at a later time than anything before.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private void flushAndClear() throws InterruptedException {
+        entityManager.flush();
+        entityManager.clear();
+        Thread.sleep(5);
+    }
+
+    /**
+     * Asserts that a StockBalance holds the given stock.
+     *
+     * @param total the expected total stock.
+     * @param reserved the expected reserved stock.
+     * @param available the expected available stock.
+     * @param balance the StockBalance.
+     */
+    private static void assertBalance(int total, int reserved, int available, StockBalance balance) {
+        assertEquals(List.of(total, reserved, available),
+                List.of(balance.getTotalStock(), balance.getReservedStock(), balance.getAvailableStock()));
+    }
+
+    /**
+     * Tests that receiving, reserving, picking, releasing and adjusting stock each append a movement, and that the
+     * ledger sums to the Inventory afterwards.
+     *
+     * @throws Exception if an Order cannot be created or the test is interrupted.
+     */
+    @Test
+    public void testEveryStockChangeIsRecorded() throws Exception {
+        LocalDateTime start = LocalDateTime.now();
+        int productId = productService.createProduct(product(66660, 10)).getProductId();
+        flushAndClear();
+
+        Order order = new Order();
+        order.setWishedDeliveryDate(LocalDate.now());
+        OrderQuantities quantity = new OrderQuantities();
+        quantity.setProductQuantity(3);
+        quantity.setProduct(productRepository.findById(productId).orElseThrow());
+        order.getQuantities().add(quantity);
+        orderService.createOrder(order, customer);
+        flushAndClear();
+        shipmentService.createShipment();
+        flushAndClear();
+
+        assertTrue(stockReservationService.tryReserve(productId, 2));
+        assertTrue(stockReservationService.release(productId, 2));
+        Product adjusted = new Product();
+        Inventory inventory = new Inventory();
+        inventory.setTotalStock(20);
+        inventory.setAvailableStock(20);
+        adjusted.setInventory(inventory);
+        productService.updateProduct(productId, adjusted);
+        flushAndClear();
+
+        List<StockMovement> movements = stockLedgerService.getMovements(productId, start, LocalDateTime.now());
+        assertEquals(List.of(StockMovementType.RECEIPT, StockMovementType.RESERVATION, StockMovementType.PICK,
+                        StockMovementType.RESERVATION, StockMovementType.RELEASE, StockMovementType.ADJUSTMENT),
+                movements.stream().map(StockMovement::getMovementType).toList());
+        assertNotNull(movements.get(2).getReferenceId());
+        assertEquals(-3, movements.get(2).getTotalDelta());
+
+        StockLevel stock = inventory(productId);
+        assertEquals(20, stock.getTotalStock());
+        assertBalance(stock.getTotalStock(), stock.getReservedStock(), stock.getAvailableStock(),
+                stockLedgerService.getBalanceAsOf(productId, LocalDateTime.now()));
+    }
+
+    /**
+     * Tests that merging a Product that already exists records only the change of its stock as received, and that
+     * deleting a Product records the stock it is deleted with, so the ledger sums to the Inventory before and to no
+     * stock after.
+     *
+     * @throws Exception if the test is interrupted.
+     */
+    @Test
+    public void testMergeAndDeleteRecordOnlyTheChangedStock() throws Exception {
+        LocalDateTime start = LocalDateTime.now();
+        int productId = productService.createProduct(product(66665, 10)).getProductId();
+        flushAndClear();
+        Product merged = product(66665, 15);
+        merged.setProductId(productId);
+        merged.getInventory().setInventoryId(inventory(productId).getInventoryId());
+        productService.createProduct(merged);
+        flushAndClear();
+
+        List<StockMovement> movements = stockLedgerService.getMovements(productId, start, LocalDateTime.now());
+        assertEquals(List.of(10, 5), movements.stream().map(StockMovement::getTotalDelta).toList());
+        assertBalance(15, 0, 15, stockLedgerService.getBalanceAsOf(productId, LocalDateTime.now()));
+
+        productService.deleteById(productId);
+        flushAndClear();
+        assertBalance(0, 0, 0, stockLedgerService.getBalanceAsOf(productId, LocalDateTime.now()));
+    }
+
+    /**
+     * Tests that the stock is given as it was at earlier times, and that a failed reservation records nothing.
+     *
+     * @throws Exception if the test is interrupted.
+     */
+    @Test
+    public void testBalanceAsOfEarlierTimes() throws Exception {
+        LocalDateTime beforeReceipt = LocalDateTime.now();
+        Thread.sleep(5);
+        int productId = productService.createProduct(product(66661, 10)).getProductId();
+        flushAndClear();
+        LocalDateTime afterReceipt = LocalDateTime.now();
+        Thread.sleep(5);
+        stockReservationService.reserve(productId, 4);
+        assertThrows(NotEnoughStockException.class, () -> stockReservationService.reserve(productId, 7));
+        flushAndClear();
+        LocalDateTime afterReservation = LocalDateTime.now();
+        Thread.sleep(5);
+        stockReservationService.release(productId, 1);
+        flushAndClear();
+
+        assertBalance(0, 0, 0, stockLedgerService.getBalanceAsOf(productId, beforeReceipt));
+        assertBalance(10, 0, 10, stockLedgerService.getBalanceAsOf(productId, afterReceipt));
+        assertBalance(10, 4, 6, stockLedgerService.getBalanceAsOf(productId, afterReservation));
+        assertBalance(10, 3, 7, stockLedgerService.getBalanceAsOf(productId, LocalDateTime.now()));
+    }
+
+    /**
+     * Tests that compacting the ledger takes snapshots of the Products that moved, keeps the earlier snapshots,
+     * and gives the same balances at every time before and after.
+     *
+     * @throws Exception if the test is interrupted.
+     */
+    @Test
+    public void testCompactionKeepsBalances() throws Exception {
+        int moving = productService.createProduct(product(66662, 10)).getProductId();
+        int still = productService.createProduct(product(66663, 5)).getProductId();
+        flushAndClear();
+        LocalDateTime afterReceipts = LocalDateTime.now();
+        Thread.sleep(5);
+        stockReservationService.reserve(moving, 2);
+        flushAndClear();
+        LocalDateTime firstCompaction = LocalDateTime.now();
+        Thread.sleep(5);
+        stockReservationService.reserve(moving, 3);
+        flushAndClear();
+        LocalDateTime afterSecondReservation = LocalDateTime.now();
+
+        assertTrue(stockLedgerCompactor.compactUntil(firstCompaction) >= 2);
+        flushAndClear();
+        assertEquals(0, stockLedgerCompactor.compactUntil(firstCompaction));
+        stockReservationService.release(moving, 1);
+        flushAndClear();
+        LocalDateTime secondCompaction = LocalDateTime.now();
+        assertTrue(stockLedgerCompactor.compactUntil(secondCompaction) >= 1);
+        flushAndClear();
+
+        assertBalance(10, 0, 10, stockLedgerService.getBalanceAsOf(moving, afterReceipts));
+        assertBalance(10, 2, 8, stockLedgerService.getBalanceAsOf(moving, firstCompaction));
+        assertBalance(10, 5, 5, stockLedgerService.getBalanceAsOf(moving, afterSecondReservation));
+        assertBalance(10, 4, 6, stockLedgerService.getBalanceAsOf(moving, secondCompaction));
+        assertBalance(10, 4, 6, stockLedgerService.getBalanceAsOf(moving, LocalDateTime.now()));
+        assertBalance(5, 0, 5, stockLedgerService.getBalanceAsOf(still, LocalDateTime.now()));
+    }
+
+    /**
+     * Tests that a movement committed after a compaction folded the time it was stamped at is folded in by the next
+     * compaction, which corrects the snapshot of a Product that moved and adds one for a Product that did not.
+     *
+     * @throws Exception if the test is interrupted.
+     */
+    @Test
+    public void testCompactionCorrectsSnapshotsForLateMovements() throws Exception {
+        int moving = productService.createProduct(product(66666, 10)).getProductId();
+        int late = productService.createProduct(product(66667, 5)).getProductId();
+        flushAndClear();
+        LocalDateTime stamped = LocalDateTime.now();
+        Thread.sleep(5);
+        LocalDateTime firstCompaction = LocalDateTime.now();
+        stockLedgerCompactor.compactUntil(firstCompaction);
+        flushAndClear();
+
+        stockMovementRepository.save(new StockMovement(0, moving, StockMovementType.RESERVATION, 0, 2, -2, null, stamped));
+        stockMovementRepository.save(new StockMovement(0, late, StockMovementType.RESERVATION, 0, 1, -1, null, stamped));
+        stockReservationService.reserve(moving, 1);
+        flushAndClear();
+        LocalDateTime secondCompaction = LocalDateTime.now();
+        assertEquals(3, stockLedgerCompactor.compactUntil(secondCompaction));
+        flushAndClear();
+
+        assertBalance(10, 2, 8, stockLedgerService.getBalanceAsOf(moving, firstCompaction));
+        assertBalance(5, 1, 4, stockLedgerService.getBalanceAsOf(late, firstCompaction));
+        assertBalance(10, 3, 7, stockLedgerService.getBalanceAsOf(moving, secondCompaction));
+        assertEquals(0, stockLedgerCompactor.compactUntil(secondCompaction));
+    }
+
+    /**
+     * Tests that an Inventory from before the ledger is given its current stock as its opening balance, once.
+     *
+     * @throws Exception if the test is interrupted.
+     */
+    @Test
+    public void testMigrationOpensLedgerForExistingInventories() throws Exception {
+        LocalDateTime start = LocalDateTime.now();
+        Product product = product(66664, 8);
+        product.getInventory().setReservedStock(3);
+        product.getInventory().setAvailableStock(5);
+        int productId = productRepository.save(product).getProductId();
+        flushAndClear();
+        assertBalance(0, 0, 0, stockLedgerService.getBalanceAsOf(productId, LocalDateTime.now()));
+
+        stockLedgerMigration.migrate();
+        stockLedgerMigration.migrate();
+        flushAndClear();
+
+        List<StockMovement> movements = stockLedgerService.getMovements(productId, start, LocalDateTime.now());
+        assertEquals(1, movements.size());
+        assertEquals(StockMovementType.ADJUSTMENT, movements.get(0).getMovementType());
+        assertBalance(8, 3, 5, stockLedgerService.getBalanceAsOf(productId, LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,188 @@
+package wms.rest.wms.unit.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import wms.rest.wms.model.ProductType;
+import wms.rest.wms.service.trip.ShipmentLoad;
+import wms.rest.wms.service.trip.TripPlan;
+import wms.rest.wms.service.trip.TripPlanner;
+import wms.rest.wms.service.trip.VehicleCapacity;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TripPlanner without a database.
+ * Verifies that Shipments are packed within the vehicle capacities and only share Trips with Shipments of the
+ * same load location, delivery date and temperature class, and that every Shipment of a generated day is planned
+ * exactly once.
+ *
+ * @author Mikkel Stavelie.
+ */
+public class TripPlannerTest {
+
+    /** Delivery date of the Shipments */
+    private static final LocalDate MONDAY = LocalDate.of(2024, 4, 15);
+
+    /** Every vehicle carries 1000 kg and 10 m3 */
+    private static final VehicleCapacity CAPACITY = new VehicleCapacity(1_000_000, 10_000_000);
+
+    /** Declare TripPlanner at class level for easier accessibility */
+    private TripPlanner planner;
+
+    /** Next shipmentId handed out by shipment() */
+    private int nextShipmentId;
+
+    /**
+     * Prepare the test environment before each test method.
+     * Creates a planner with the same capacity for every temperature class.
+     */
+    @BeforeEach
+    public void setup() {
+        planner = new TripPlanner(Map.of(ProductType.DRY_GOODS, CAPACITY, ProductType.REFRIGERATED_GOODS, CAPACITY,
+                ProductType.FROZEN_GOODS, CAPACITY));
+        nextShipmentId = 1;
+    }
+
+    /**
+     * Create the load of a dry goods Shipment loaded in Trondheim on MONDAY.
+     *
+     * @param weightKg the weight of the Shipment in kilograms.
+     * @param volumeM3 the volume of the Shipment in cubic metres.
+     * @return the load of the Shipment.
+     */
+    private ShipmentLoad shipment(double weightKg, double volumeM3) {
+        return new ShipmentLoad(nextShipmentId++, "Trondheim", MONDAY)
+                .add(ProductType.DRY_GOODS, weightKg * 1_000, volumeM3 * 1_000_000);
+    }
+
+    /**
+     * Tests that first-fit decreasing fills the vehicles exactly when the sizes allow it,
+     * and that no Trip carries more than its vehicle.
+     */
+    @Test
+    public void testPacksLargestShipmentsFirst() {
+        List<ShipmentLoad> shipments = List.of(shipment(200, 1), shipment(500, 1), shipment(300, 1),
+                shipment(500, 1), shipment(300, 1), shipment(200, 1));
+
+        List<TripPlan> trips = planner.plan(shipments);
+
+        assertEquals(2, trips.size());
+        for (TripPlan trip : trips) {
+            assertEquals(1_000_000, trip.getWeightInGrams(), 0.001);
+        }
+        assertEquals(2, trips.get(0).getShipments().size());
+        assertEquals(6, trips.stream().mapToInt(trip -> trip.getShipments().size()).sum());
+    }
+
+    /**
+     * Tests that volume limits a Trip as well as weight.
+     */
+    @Test
+    public void testVolumeLimitsTrips() {
+        List<ShipmentLoad> shipments = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            shipments.add(shipment(10, 4));
+        }
+
+        List<TripPlan> trips = planner.plan(shipments);
+
+        assertEquals(2, trips.size());
+        assertTrue(trips.stream().allMatch(trip -> trip.getVolumeInCm3() <= CAPACITY.getMaxVolumeInCm3()));
+    }
+
+    /**
+     * Tests that Shipments of different temperature classes, load locations or delivery dates never share a Trip,
+     * and that a Shipment travels in the class of its coldest Product.
+     */
+    @Test
+    public void testSplitsByTemperatureClassLocationAndDate() {
+        ShipmentLoad dry = shipment(100, 1);
+        ShipmentLoad mixed = new ShipmentLoad(nextShipmentId++, "Trondheim", MONDAY)
+                .add(ProductType.DRY_GOODS, 50_000, 500_000)
+                .add(ProductType.FROZEN_GOODS, 50_000, 500_000)
+                .add(ProductType.REFRIGERATED_GOODS, 50_000, 500_000);
+        ShipmentLoad otherLocation = new ShipmentLoad(nextShipmentId++, "Oslo", MONDAY).add(ProductType.DRY_GOODS, 100_000, 1_000_000);
+        ShipmentLoad otherDate = new ShipmentLoad(nextShipmentId++, "Trondheim", MONDAY.plusDays(1)).add(ProductType.DRY_GOODS, 100_000, 1_000_000);
+        assertEquals(ProductType.FROZEN_GOODS, mixed.getTemperatureClass());
+
+        List<TripPlan> trips = planner.plan(List.of(dry, mixed, otherLocation, otherDate));
+
+        assertEquals(4, trips.size());
+        for (TripPlan trip : trips) {
+            assertEquals(1, trip.getShipments().size());
+            ShipmentLoad shipment = trip.getShipments().get(0);
+            assertEquals(shipment.getTemperatureClass(), trip.getTemperatureClass());
+            assertEquals(shipment.getLoadLocation(), trip.getLoadLocation());
+            assertEquals(shipment.getDeliveryDate(), trip.getDeliveryDate());
+        }
+    }
+
+    /**
+     * Tests that a Shipment larger than a vehicle gets a Trip of its own and nothing is added to it.
+     */
+    @Test
+    public void testOversizedShipmentTravelsAlone() {
+        ShipmentLoad oversized = shipment(1_500, 2);
+
+        List<TripPlan> trips = planner.plan(List.of(oversized, shipment(100, 1)));
+
+        assertEquals(2, trips.size());
+        TripPlan alone = trips.stream().filter(trip -> trip.getShipments().contains(oversized)).findFirst().orElseThrow();
+        assertEquals(1, alone.getShipments().size());
+    }
+
+    /**
+     * Tests that Shipments without Packaging are planned as empty loads.
+     */
+    @Test
+    public void testShipmentsWithoutLoadShareOneTrip() {
+        List<ShipmentLoad> shipments = List.of(new ShipmentLoad(1, "Trondheim", MONDAY),
+                new ShipmentLoad(2, "Trondheim", MONDAY));
+
+        List<TripPlan> trips = planner.plan(shipments);
+
+        assertEquals(1, trips.size());
+        assertEquals(ProductType.DRY_GOODS, trips.get(0).getTemperatureClass());
+    }
+
+    /**
+     * Tests that a generated day of Shipments of every temperature class, load location and delivery date, some of
+     * them larger than a vehicle, is planned with no vehicle overloaded, no Trip mixing groups, and every Shipment
+     * on exactly one Trip.
+     */
+    @Test
+    public void testGeneratedDayIsPlannedWithinCapacity() {
+        Random random = new Random(42);
+        String[] loadLocations = {"Trondheim", "Oslo", "Bergen"};
+        List<ShipmentLoad> shipments = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            ProductType temperatureClass = ProductType.values()[random.nextInt(ProductType.values().length)];
+            shipments.add(new ShipmentLoad(nextShipmentId++, loadLocations[random.nextInt(loadLocations.length)],
+                    MONDAY.plusDays(random.nextInt(2)))
+                    .add(temperatureClass, random.nextDouble() * 1_200_000, random.nextDouble() * 12_000_000));
+        }
+
+        List<TripPlan> trips = planner.plan(shipments);
+
+        Set<Integer> planned = new HashSet<>();
+        for (TripPlan trip : trips) {
+            assertTrue(trip.getShipments().size() == 1 || (trip.getWeightInGrams() <= CAPACITY.getMaxWeightInGrams()
+                    && trip.getVolumeInCm3() <= CAPACITY.getMaxVolumeInCm3()), "Overloaded trip");
+            for (ShipmentLoad shipment : trip.getShipments()) {
+                assertTrue(planned.add(shipment.getShipmentId()), "Shipment planned twice");
+                assertEquals(shipment.getTemperatureClass(), trip.getTemperatureClass());
+                assertEquals(shipment.getLoadLocation(), trip.getLoadLocation());
+                assertEquals(shipment.getDeliveryDate(), trip.getDeliveryDate());
+            }
+        }
+        assertEquals(shipments.size(), planned.size());
+    }
+}